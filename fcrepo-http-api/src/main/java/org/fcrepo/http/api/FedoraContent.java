@@ -25,6 +25,7 @@ import static org.apache.http.HttpStatus.SC_CONFLICT;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -55,6 +56,7 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 import org.fcrepo.http.commons.AbstractResource;
 import org.fcrepo.http.commons.api.rdf.HttpGraphSubjects;
 import org.fcrepo.http.commons.domain.Range;
+import org.fcrepo.http.commons.responses.FileRangeStreamingOutput;
 import org.fcrepo.http.commons.responses.RangeRequestInputStream;
 import org.fcrepo.http.commons.session.InjectedSession;
 import org.fcrepo.kernel.Datastream;
@@ -277,14 +279,19 @@ public class FedoraContent extends AbstractResource {
 
             if (builder == null) {
 
-                final InputStream content = ds.getContent();
+                final long contentSize = ds.getContentSize();
+
+                // if the content is in a local file, serve it (or the
+                // requested range of it) straight from the file's channel
+                final File contentFile = datastreamService.getContentFile(ds);
+                final boolean fromFile =
+                        contentFile != null &&
+                                contentFile.length() == contentSize;
 
                 if (rangeValue != null && rangeValue.startsWith("bytes")) {
 
                     final Range range = Range.convert(rangeValue);
 
-                    final long contentSize = ds.getContentSize();
-
                     final String endAsString;
 
                     if (range.end() == -1) {
@@ -304,10 +311,27 @@ public class FedoraContent extends AbstractResource {
                                         REQUESTED_RANGE_NOT_SATISFIABLE)
                                         .header("Content-Range",
                                                 contentRangeValue);
+                    } else if (fromFile) {
+                        final long length =
+                                range.size() == -1 ? contentSize -
+                                        range.start() : range.size();
+
+                        builder =
+                                status(PARTIAL_CONTENT).entity(
+                                        new FileRangeStreamingOutput(
+                                                contentFile, range.start(),
+                                                length)).header(
+                                        "Content-Range", contentRangeValue);
                     } else {
+                        // prefer a stream that can seek straight to the
+                        // chunk holding the start of the range
+                        final InputStream seekable =
+                                datastreamService.getSeekableContent(ds);
                         final RangeRequestInputStream rangeInputStream =
-                                new RangeRequestInputStream(content, range
-                                        .start(), range.size());
+                                new RangeRequestInputStream(
+                                        seekable != null ? seekable : ds
+                                                .getContent(), range.start(),
+                                        range.size());
 
                         builder =
                                 status(PARTIAL_CONTENT).entity(
@@ -316,8 +340,12 @@ public class FedoraContent extends AbstractResource {
                                                 contentRangeValue);
                     }
 
+                } else if (fromFile) {
+                    builder =
+                            ok(new FileRangeStreamingOutput(contentFile, 0,
+                                    contentSize));
                 } else {
-                    builder = ok(content);
+                    builder = ok(ds.getContent());
                 }
             }
 
@@ -21,6 +21,7 @@ import static com.hp.hpl.jena.graph.Triple.create;
 import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static com.sun.jersey.api.Responses.clientError;
 import static com.sun.jersey.api.Responses.notAcceptable;
+import static java.lang.Boolean.getBoolean;
 import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
 import static javax.ws.rs.core.MediaType.TEXT_HTML;
 import static javax.ws.rs.core.Response.created;
@@ -44,8 +45,9 @@ import static org.fcrepo.http.commons.domain.RDFMediaType.TURTLE;
 import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_DATASTREAM;
 import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_OBJECT;
 import static org.fcrepo.kernel.RdfLexicon.FIRST_PAGE;
-import static org.fcrepo.kernel.RdfLexicon.NEXT_PAGE;
+import static org.fcrepo.kernel.RdfLexicon.HAS_LOCATION;
 import static org.fcrepo.kernel.rdf.GraphProperties.PROBLEMS_MODEL_NAME;
+import static org.fcrepo.kernel.services.TransactionService.getCurrentTransactionId;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
@@ -80,6 +82,7 @@ import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import com.hp.hpl.jena.rdf.model.ResourceFactory;
@@ -91,17 +94,24 @@ import org.fcrepo.http.commons.api.rdf.HttpGraphSubjects;
 import org.fcrepo.http.commons.domain.MOVE;
 import org.fcrepo.http.commons.domain.PATCH;
 import org.fcrepo.http.commons.domain.COPY;
+import org.fcrepo.http.commons.domain.Prefer;
+import org.fcrepo.http.commons.session.AuthenticatedSessionProvider;
 import org.fcrepo.http.commons.session.InjectedSession;
 import org.fcrepo.kernel.Datastream;
 import org.fcrepo.kernel.FedoraResource;
 import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.HierarchyRdfContextOptions;
+import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.utils.iterators.RdfStream;
 import org.modeshape.jcr.api.JcrConstants;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.codahale.metrics.annotation.Timed;
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -119,6 +129,19 @@ public class FedoraNodes extends AbstractResource {
 
     private static final Logger logger = getLogger(FedoraNodes.class);
 
+    /**
+     * System property turning on parallel description of child nodes (see
+     * {@link HierarchyRdfContextOptions#getWorkerSessions()}). Each worker
+     * reads children in a session of its own, so this is off by default.
+     */
+    public static final String PARALLEL_CHILDREN_PROPERTY =
+        "fcrepo.hierarchy.parallel";
+
+    static boolean parallelChildren = getBoolean(PARALLEL_CHILDREN_PROPERTY);
+
+    @Autowired(required = false)
+    protected LowLevelStorageService llStoreService;
+
     /**
      * Retrieve the node profile
      *
@@ -127,6 +150,12 @@ public class FedoraNodes extends AbstractResource {
      *        child nodes
      * @param limit with offset, control the pagination window of details for
      *        child nodes
+     * @param membershipOnly if present, list the child nodes without their
+     *        details
+     * @param continuation a token from a previous page's next-page link, used
+     *        in place of offset
+     * @param prefer a Prefer header, which may ask (with include="...") for
+     *        where content is stored
      * @param request
      * @param uriInfo
      * @return
@@ -140,6 +169,9 @@ public class FedoraNodes extends AbstractResource {
             @QueryParam("offset") @DefaultValue("0") final int offset,
             @QueryParam("limit") @DefaultValue("-1") final int limit,
             @QueryParam("non-member-properties") final String nonMemberProperties,
+            @QueryParam("membership-only") final String membershipOnly,
+            @QueryParam("continue") final String continuation,
+            @HeaderParam("Prefer") final String prefer,
             @Context final Request request,
             @Context final HttpServletResponse servletResponse,
             @Context final UriInfo uriInfo) throws RepositoryException, IOException {
@@ -176,25 +208,59 @@ public class FedoraNodes extends AbstractResource {
             realLimit = limit;
         }
 
+        // paging is done by the hierarchy context as it walks the child
+        // nodes, so children outside the page are never described
+        final Supplier<Session> workerSessions =
+            membershipOnly == null ? workerSessions() : null;
+        final HierarchyRdfContextOptions hierarchyOptions;
+        if (realLimit == -2) {
+            hierarchyOptions =
+                new HierarchyRdfContextOptions(0, -1, membershipOnly != null,
+                        null, null, workerSessions, workerSubjects(subjects));
+        } else {
+            hierarchyOptions =
+                new HierarchyRdfContextOptions(offset, limit,
+                        membershipOnly != null, continuation,
+                        nextPage(uriInfo.getRequestUriBuilder()),
+                        workerSessions, workerSubjects(subjects));
+        }
+
+        // finding out where content is stored may mean asking every cluster
+        // member, so it's only done when asked for
+        final LowLevelStorageService locations;
+        if (llStoreService != null &&
+                Prefer.convert(prefer).includes(HAS_LOCATION.getURI())) {
+            locations = llStoreService;
+            servletResponse.addHeader("Preference-Applied",
+                    "return=representation");
+        } else {
+            locations = null;
+        }
+
+        final RdfStream hierarchy;
+        try {
+            hierarchy =
+                resource.getHierarchyTriples(subjects, hierarchyOptions,
+                        locations);
+        } catch (final IllegalArgumentException e) {
+            throw new WebApplicationException(status(SC_BAD_REQUEST).entity(
+                    e.getMessage()).build());
+        }
+
         final RdfStream rdfStream =
-            resource.getTriples(subjects).concat(
-                    resource.getHierarchyTriples(subjects)).session(session)
+            resource.getTriples(subjects, locations).concat(hierarchy)
+                    .session(session)
                     .topic(subjects.getGraphSubject(resource.getNode())
                             .asNode());
         if (realLimit != -2) {
             final Node firstPage =
                 createURI(uriInfo.getRequestUriBuilder().replaceQueryParam(
-                        "offset", 0).replaceQueryParam("limit", limit).build()
+                        "offset", 0).replaceQueryParam("limit", limit)
+                        .replaceQueryParam("continue").build()
                         .toString().replace("&", "&amp;"));
-            final Node nextPage =
-                createURI(uriInfo.getRequestUriBuilder().replaceQueryParam(
-                        "offset", offset + limit).replaceQueryParam("limit",
-                        limit).build().toString().replace("&", "&amp;"));
             rdfStream.concat(
-                    create(subjects.getContext().asNode(), NEXT_PAGE.asNode(),
-                            nextPage),
                     create(subjects.getContext().asNode(), FIRST_PAGE.asNode(),
-                            firstPage)).limit(realLimit).skip(offset);
+                            firstPage));
 
             servletResponse.addHeader("Link", firstPage + ";rel=\"first\"");
         }
@@ -220,6 +286,64 @@ public class FedoraNodes extends AbstractResource {
 
     }
 
+    /**
+     * Sessions for describing children in parallel, if that's turned on and
+     * they would see what this request's session sees
+     *
+     * @return
+     * @throws RepositoryException
+     */
+    private Supplier<Session> workerSessions() throws RepositoryException {
+        if (!parallelChildren || session.hasPendingChanges() ||
+                getCurrentTransactionId(session) != null) {
+            return null;
+        }
+        final AuthenticatedSessionProvider provider = getSessionProvider();
+        return new Supplier<Session>() {
+
+            @Override
+            public Session get() {
+                return provider.getAuthenticatedSession();
+            }
+        };
+    }
+
+    /**
+     * Each worker's own copy of this request's subjects, bound to the
+     * worker's session
+     *
+     * @param subjects
+     * @return
+     */
+    private static Function<Session, GraphSubjects> workerSubjects(
+            final HttpGraphSubjects subjects) {
+        return new Function<Session, GraphSubjects>() {
+
+            @Override
+            public GraphSubjects apply(final Session workerSession) {
+                return subjects.withSession(workerSession);
+            }
+        };
+    }
+
+    /**
+     * Builds next-page links that resume from a continuation token
+     *
+     * @param requestUri
+     * @return
+     */
+    private static Function<String, Node> nextPage(final UriBuilder requestUri) {
+        return new Function<String, Node>() {
+
+            @Override
+            public Node apply(final String token) {
+                return createURI(requestUri.clone().replaceQueryParam("offset")
+                        .replaceQueryParam("continue", token).build()
+                        .toString().replace("&", "&amp;"));
+            }
+        };
+    }
+
     /**
      * Update an object using SPARQL-UPDATE
      *
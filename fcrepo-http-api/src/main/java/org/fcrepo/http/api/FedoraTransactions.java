@@ -16,6 +16,7 @@
 
 package org.fcrepo.http.api;
 
+import static java.lang.Boolean.parseBoolean;
 import static java.util.Collections.singletonMap;
 import static javax.ws.rs.core.Response.created;
 import static javax.ws.rs.core.Response.noContent;
@@ -29,6 +30,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -56,6 +58,14 @@ public class FedoraTransactions extends AbstractResource {
 
     private static final Logger LOGGER = getLogger(FedoraTransactions.class);
 
+    /**
+     * A header with which a client committing a transaction asks for its
+     * version checkpoints to be made before the response, rather than in the
+     * background
+     */
+    public static final String SYNC_VERSIONING_HEADER =
+        "Fedora-Sync-Versioning";
+
     @Autowired
     private TransactionService txService;
 
@@ -103,18 +113,22 @@ public class FedoraTransactions extends AbstractResource {
     }
 
     /**
-     * Commit a transaction resource
+     * Commit a transaction resource. Its version checkpoints are made in the
+     * background unless the {@value #SYNC_VERSIONING_HEADER} header is
+     * "true".
      *
      * @param pathList
+     * @param syncVersioning
      * @return
      * @throws RepositoryException
      */
     @POST
     @Path("fcr:commit")
     public Response commit(@PathParam("path")
-        final List<PathSegment> pathList) throws RepositoryException {
+        final List<PathSegment> pathList, @HeaderParam(SYNC_VERSIONING_HEADER)
+        final String syncVersioning) throws RepositoryException {
 
-        return finalizeTransaction(pathList, true);
+        return finalizeTransaction(pathList, true, parseBoolean(syncVersioning));
 
     }
 
@@ -126,12 +140,12 @@ public class FedoraTransactions extends AbstractResource {
     public Response rollback(@PathParam("path")
         final List<PathSegment> pathList) throws RepositoryException {
 
-        return finalizeTransaction(pathList, false);
+        return finalizeTransaction(pathList, false, false);
     }
 
     private Response finalizeTransaction(@PathParam("path")
-        final List<PathSegment> pathList, final boolean commit)
-        throws RepositoryException {
+        final List<PathSegment> pathList, final boolean commit,
+        final boolean syncVersioning) throws RepositoryException {
 
         final String path = toPath(pathList);
         if (!path.equals("/")) {
@@ -153,7 +167,11 @@ public class FedoraTransactions extends AbstractResource {
 
         if (commit) {
             LOGGER.debug("commiting transaction {} at path {}", txId, path);
-            txService.commit(txId);
+            if (syncVersioning) {
+                txService.commit(txId, true);
+            } else {
+                txService.commit(txId);
+            }
 
         } else {
             LOGGER.debug("rolling back transaction {} at path {}", txId,
@@ -16,9 +16,11 @@
 
 package org.fcrepo.http.api;
 
+import static java.io.File.createTempFile;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
 import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.NO_CONTENT;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
 import static org.fcrepo.http.commons.test.util.PathSegmentImpl.createPathList;
 import static org.fcrepo.http.commons.test.util.TestHelpers.getUriInfoImpl;
 import static org.fcrepo.http.commons.test.util.TestHelpers.mockDatastream;
@@ -35,6 +37,8 @@ import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -49,6 +53,7 @@ import javax.jcr.version.VersionManager;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.io.IOUtils;
 import org.fcrepo.kernel.Datastream;
@@ -270,4 +275,59 @@ public class FedoraContentTest {
         assertEquals("asdf", actualContent);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetContentRangeFromLocalFile() throws RepositoryException,
+        IOException {
+        final String pid = "FedoraDatastreamsTest1";
+        final String dsId = "testDS";
+        final String path = "/" + pid + "/" + dsId;
+        final String dsContent = "0123456789";
+        final File contentFile = createTempFile("fcrepo", "content");
+        contentFile.deleteOnExit();
+        writeStringToFile(contentFile, dsContent);
+        final Datastream mockDs = mockDatastream(pid, dsId, dsContent);
+        when(mockDs.getContentSize()).thenReturn(10L);
+        when(mockDatastreams.getDatastream(mockSession, path)).thenReturn(
+                mockDs);
+        when(mockDatastreams.getContentFile(mockDs)).thenReturn(contentFile);
+        when(mockDs.getNode()).thenReturn(mockNode);
+        when(mockNode.getPath()).thenReturn(path);
+        final Request mockRequest = mock(Request.class);
+        final Response actual =
+            testObj.getContent(createPathList(pid, dsId), "bytes=7-",
+                    mockRequest);
+        verify(mockDs, never()).getContent();
+        assertEquals(FedoraContent.PARTIAL_CONTENT, actual.getStatus());
+        assertEquals("bytes 7-9/10", actual.getMetadata().getFirst(
+                "Content-Range"));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) actual.getEntity()).write(out);
+        assertEquals("789", out.toString());
+    }
+
+    @Test
+    public void testGetContentRangeFromSeekableContent()
+        throws RepositoryException, IOException {
+        final String pid = "FedoraDatastreamsTest1";
+        final String dsId = "testDS";
+        final String path = "/" + pid + "/" + dsId;
+        final String dsContent = "0123456789";
+        final Datastream mockDs = mockDatastream(pid, dsId, dsContent);
+        when(mockDs.getContentSize()).thenReturn(10L);
+        when(mockDatastreams.getDatastream(mockSession, path)).thenReturn(
+                mockDs);
+        when(mockDatastreams.getSeekableContent(mockDs)).thenReturn(
+                IOUtils.toInputStream(dsContent));
+        when(mockDs.getNode()).thenReturn(mockNode);
+        when(mockNode.getPath()).thenReturn(path);
+        final Request mockRequest = mock(Request.class);
+        final Response actual =
+            testObj.getContent(createPathList(pid, dsId), "bytes=2-4",
+                    mockRequest);
+        verify(mockDs, never()).getContent();
+        assertEquals(FedoraContent.PARTIAL_CONTENT, actual.getStatus());
+        assertEquals("234", IOUtils.toString((InputStream) actual
+                .getEntity()));
+    }
+
+}
@@ -18,6 +18,7 @@ package org.fcrepo.http.api;
 
 import static com.hp.hpl.jena.graph.NodeFactory.createAnon;
 import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.CONFLICT;
 import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.NO_CONTENT;
@@ -29,14 +30,18 @@ import static org.fcrepo.http.commons.test.util.TestHelpers.mockSession;
 import static org.fcrepo.http.commons.test.util.TestHelpers.setField;
 import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_DATASTREAM;
 import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_OBJECT;
+import static org.fcrepo.kernel.RdfLexicon.HAS_LOCATION;
 import static org.fcrepo.kernel.rdf.GraphProperties.PROBLEMS_MODEL_NAME;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -59,18 +64,23 @@ import javax.jcr.ValueFactory;
 import javax.jcr.Workspace;
 import javax.jcr.version.VersionManager;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.io.IOUtils;
+import org.fcrepo.http.commons.session.AuthenticatedSessionProvider;
+import org.fcrepo.http.commons.session.SessionFactory;
 import org.fcrepo.kernel.Datastream;
 import org.fcrepo.kernel.FedoraObject;
 import org.fcrepo.kernel.FedoraResource;
 import org.fcrepo.kernel.identifiers.PidMinter;
 import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.HierarchyRdfContextOptions;
 import org.fcrepo.kernel.services.DatastreamService;
+import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.services.NodeService;
 import org.fcrepo.kernel.services.ObjectService;
 import org.fcrepo.kernel.services.VersionService;
@@ -78,6 +88,7 @@ import org.fcrepo.kernel.utils.iterators.RdfStream;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
 import com.hp.hpl.jena.query.Dataset;
@@ -283,16 +294,18 @@ public class FedoraNodesTest {
         when(mockDataset.getContext()).thenReturn(mockContext);
         when(mockObject.getLastModifiedDate()).thenReturn(mockDate);
         when(mockObject.getEtagValue()).thenReturn("");
-        when(mockObject.getTriples(any(GraphSubjects.class))).thenReturn(
-                mockRdfStream);
-        when(mockObject.getHierarchyTriples(any(GraphSubjects.class))).thenReturn(
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
                 mockRdfStream2);
         when(mockNodes.getObject(isA(Session.class), isA(String.class)))
                 .thenReturn(mockObject);
         final Request mockRequest = mock(Request.class);
         final RdfStream rdfStream =
-            testObj.describe(createPathList(path), 0, -2, null, mockRequest,
-                    mockResponse, mockUriInfo);
+            testObj.describe(createPathList(path), 0, -2, null, null, null,
+                    null, mockRequest, mockResponse, mockUriInfo);
         assertEquals("Got wrong triples!", mockRdfStream.concat(mockRdfStream2),
                 rdfStream);
         verify(mockResponse).addHeader("Accept-Patch", "application/sparql-update");
@@ -309,21 +322,171 @@ public class FedoraNodesTest {
 
         when(mockObject.getEtagValue()).thenReturn("");
         when(mockObject.getLastModifiedDate()).thenReturn(mockDate);
-        when(mockObject.getTriples(any(GraphSubjects.class))).thenReturn(
-                mockRdfStream);
-        when(mockObject.getHierarchyTriples(any(GraphSubjects.class))).thenReturn(
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
                 mockRdfStream2);
         when(mockNodes.getObject(isA(Session.class), isA(String.class)))
             .thenReturn(mockObject);
         final Request mockRequest = mock(Request.class);
         final RdfStream rdfStream =
-            testObj.describe(createPathList(path), 0, -1, "", mockRequest, mockResponse,
-                                mockUriInfo);
+            testObj.describe(createPathList(path), 0, -1, "", null, null,
+                    null, mockRequest, mockResponse, mockUriInfo);
         assertEquals("Got wrong RDF!", mockRdfStream.concat(mockRdfStream2),
                 rdfStream);
 
     }
 
+    @Test
+    public void testDescribeObjectPagesChildren() throws RepositoryException,
+                                                 IOException {
+        when(mockObject.getEtagValue()).thenReturn("");
+        when(mockObject.getLastModifiedDate()).thenReturn(mockDate);
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
+                mockRdfStream2);
+        when(mockNodes.getObject(isA(Session.class), isA(String.class)))
+            .thenReturn(mockObject);
+        testObj.describe(createPathList("/FedoraObjectsRdfTest1"), 90000, 100,
+                null, "", "some-token", null, mock(Request.class),
+                mockResponse, mockUriInfo);
+
+        final ArgumentCaptor<HierarchyRdfContextOptions> options =
+            ArgumentCaptor.forClass(HierarchyRdfContextOptions.class);
+        verify(mockObject).getHierarchyTriples(any(GraphSubjects.class),
+                options.capture(), any(LowLevelStorageService.class));
+        assertEquals(90000, options.getValue().getOffset());
+        assertEquals(100, options.getValue().getLimit());
+        assertTrue(options.getValue().isMembershipOnly());
+        assertEquals("some-token", options.getValue().getContinuation());
+        assertNotNull(options.getValue().getNextPage());
+    }
+
+    @Test
+    public void testDescribeObjectWithLocations() throws RepositoryException,
+                                                 IOException {
+        final LowLevelStorageService mockLowLevelStorageService =
+            mock(LowLevelStorageService.class);
+        setField(testObj, "llStoreService", mockLowLevelStorageService);
+        when(mockObject.getEtagValue()).thenReturn("");
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
+                mockRdfStream2);
+        when(mockNodes.getObject(isA(Session.class), isA(String.class)))
+            .thenReturn(mockObject);
+        testObj.describe(createPathList("/FedoraObjectsRdfTest1"), 0, -1,
+                null, null, null, "return=representation; include=\""
+                        + HAS_LOCATION.getURI() + "\"", mock(Request.class),
+                mockResponse, mockUriInfo);
+        verify(mockObject).getTriples(any(GraphSubjects.class),
+                eq(mockLowLevelStorageService));
+        verify(mockResponse).addHeader("Preference-Applied",
+                "return=representation");
+    }
+
+    @Test
+    public void testDescribeObjectWithoutLocations()
+        throws RepositoryException, IOException {
+        setField(testObj, "llStoreService", mock(LowLevelStorageService.class));
+        when(mockObject.getEtagValue()).thenReturn("");
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
+                mockRdfStream2);
+        when(mockNodes.getObject(isA(Session.class), isA(String.class)))
+            .thenReturn(mockObject);
+        testObj.describe(createPathList("/FedoraObjectsRdfTest1"), 0, -1,
+                null, null, null, null, mock(Request.class), mockResponse,
+                mockUriInfo);
+        verify(mockObject).getTriples(any(GraphSubjects.class),
+                (LowLevelStorageService) isNull());
+    }
+
+    @Test
+    public void testDescribeObjectChildrenInParallel()
+        throws RepositoryException, IOException {
+        final SessionFactory mockSessionFactory = mock(SessionFactory.class);
+        final AuthenticatedSessionProvider mockProvider =
+            mock(AuthenticatedSessionProvider.class);
+        final Session mockWorkerSession = mock(Session.class);
+        setField(testObj, "sessions", mockSessionFactory);
+        when(mockSessionFactory.getSessionProvider(null, null)).thenReturn(
+                mockProvider);
+        when(mockProvider.getAuthenticatedSession()).thenReturn(
+                mockWorkerSession);
+        final HierarchyRdfContextOptions options =
+            describeWithParallelChildren();
+        assertEquals(mockWorkerSession, options.getWorkerSessions().get());
+        assertNotNull("Workers have no subjects of their own!", options
+                .getWorkerSubjects());
+    }
+
+    @Test
+    public void testDescribeObjectWithPendingChangesNotInParallel()
+        throws RepositoryException, IOException {
+        when(mockSession.hasPendingChanges()).thenReturn(true);
+        assertNull(describeWithParallelChildren().getWorkerSessions());
+    }
+
+    private HierarchyRdfContextOptions describeWithParallelChildren()
+        throws RepositoryException, IOException {
+        when(mockObject.getEtagValue()).thenReturn("");
+        when(mockObject.getTriples(any(GraphSubjects.class),
+                any(LowLevelStorageService.class))).thenReturn(mockRdfStream);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenReturn(
+                mockRdfStream2);
+        when(mockNodes.getObject(isA(Session.class), isA(String.class)))
+            .thenReturn(mockObject);
+        FedoraNodes.parallelChildren = true;
+        try {
+            testObj.describe(createPathList("/FedoraObjectsRdfTest1"), 0, -1,
+                    null, null, null, null, mock(Request.class),
+                    mockResponse, mockUriInfo);
+        } finally {
+            FedoraNodes.parallelChildren = false;
+        }
+        final ArgumentCaptor<HierarchyRdfContextOptions> options =
+            ArgumentCaptor.forClass(HierarchyRdfContextOptions.class);
+        verify(mockObject).getHierarchyTriples(any(GraphSubjects.class),
+                options.capture(), any(LowLevelStorageService.class));
+        return options.getValue();
+    }
+
+    @Test
+    public void testDescribeObjectWithBadContinuation()
+        throws RepositoryException, IOException {
+        when(mockObject.getEtagValue()).thenReturn("");
+        when(mockObject.getLastModifiedDate()).thenReturn(mockDate);
+        when(mockObject.getHierarchyTriples(any(GraphSubjects.class),
+                any(HierarchyRdfContextOptions.class),
+                any(LowLevelStorageService.class))).thenThrow(
+                new IllegalArgumentException("Invalid continuation token"));
+        when(mockNodes.getObject(isA(Session.class), isA(String.class)))
+            .thenReturn(mockObject);
+        try {
+            testObj.describe(createPathList("/FedoraObjectsRdfTest1"), 0, 100,
+                    null, null, "garbage", null, mock(Request.class),
+                    mockResponse, mockUriInfo);
+        } catch (final WebApplicationException e) {
+            assertEquals(BAD_REQUEST.getStatusCode(), e.getResponse()
+                    .getStatus());
+            return;
+        }
+        fail("Expected a bad continuation token to be rejected");
+    }
+
     @Test
     public void testSparqlUpdate() throws RepositoryException, IOException {
         final String pid = "FedoraObjectsRdfTest1";
@@ -86,10 +86,17 @@ public class FedoraTransactionsTest {
 
     @Test
     public void shouldCommitATransaction() throws RepositoryException {
-        testObj.commit(createPathList());
+        testObj.commit(createPathList(), null);
         verify(mockTxService).commit("123");
     }
 
+    @Test
+    public void shouldCommitATransactionWithSynchronousVersioning()
+        throws RepositoryException {
+        testObj.commit(createPathList(), "true");
+        verify(mockTxService).commit("123", true);
+    }
+
     @Test
     public
             void
@@ -97,7 +104,7 @@ public class FedoraTransactionsTest {
                                                              throws RepositoryException,
                                                              NoSuchFieldException {
         setField(testObj, "session", regularSession);
-        final Response commit = testObj.commit(createPathList());
+        final Response commit = testObj.commit(createPathList(), null);
         assertEquals(400, commit.getStatus());
     }
 
@@ -108,13 +115,13 @@ public class FedoraTransactionsTest {
                                                          throws RepositoryException,
                                                          NoSuchFieldException {
         setField(testObj, "session", regularSession);
-        final Response commit = testObj.commit(createPathList("a"));
+        final Response commit = testObj.commit(createPathList("a"), null);
         assertEquals(400, commit.getStatus());
     }
 
     @Test
     public void shouldRollBackATransaction() throws RepositoryException {
-        testObj.commit(createPathList());
+        testObj.commit(createPathList(), null);
         verify(mockTxService).commit("123");
     }
 
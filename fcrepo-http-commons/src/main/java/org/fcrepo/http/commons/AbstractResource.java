@@ -44,6 +44,7 @@ import com.hp.hpl.jena.rdf.model.Model;
 import org.apache.commons.io.IOUtils;
 import org.apache.jena.riot.Lang;
 import org.fcrepo.http.commons.api.rdf.HttpTripleUtil;
+import org.fcrepo.http.commons.session.AuthenticatedSessionProvider;
 import org.fcrepo.http.commons.session.SessionFactory;
 import org.fcrepo.kernel.Datastream;
 import org.fcrepo.kernel.FedoraResource;
@@ -128,6 +129,16 @@ public abstract class AbstractResource {
      */
     protected static final JcrTools jcrTools = new JcrTools(true);
 
+    /**
+     * Get more sessions for the user behind the current request, in the same
+     * workspace (but never in its transaction)
+     *
+     * @return
+     */
+    protected AuthenticatedSessionProvider getSessionProvider() {
+        return sessions.getSessionProvider(securityContext, servletRequest);
+    }
+
     /**
      * Convert a JAX-RS list of PathSegments to a JCR path
      *
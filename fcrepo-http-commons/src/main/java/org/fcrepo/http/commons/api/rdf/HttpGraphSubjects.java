@@ -18,6 +18,7 @@ package org.fcrepo.http.commons.api.rdf;
 
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
 import static java.util.Collections.singletonMap;
+import static java.util.regex.Pattern.compile;
 import static javax.jcr.PropertyType.PATH;
 import static org.fcrepo.jcr.FedoraJcrTypes.FCR_CONTENT;
 import static org.fcrepo.kernel.services.TransactionService.getCurrentTransactionId;
@@ -25,7 +26,7 @@ import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.net.URI;
-import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -37,15 +38,49 @@ import javax.ws.rs.core.UriInfo;
 
 import org.fcrepo.kernel.rdf.GraphSubjects;
 import org.slf4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.hp.hpl.jena.rdf.model.Resource;
 
 /**
- * Translate JCR paths to URLs to the given class
+ * Translate JCR paths to URLs to the given class. An instance lives for a
+ * single request, and remembers the translations it has made in both
+ * directions, since the same parent, child and content nodes come up again
+ * and again while describing a resource.
  */
 public class HttpGraphSubjects implements GraphSubjects {
 
     private static final Logger LOGGER = getLogger(HttpGraphSubjects.class);
 
+    /**
+     * The most translations remembered in each direction
+     */
+    static final int CACHE_SIZE = 10000;
+
+    /**
+     * Paths that come out of URI template expansion unchanged, so we can just
+     * append them to the base path
+     */
+    private static final Pattern SIMPLE_PATH = compile("[\\w\\-.~/:]*");
+
+    private final Cache<String, Resource> subjects = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE).build();
+
+    private final Cache<String, String> paths = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE).build();
+
+    /**
+     * Whether expanding the URI template is just appending to the base path
+     */
+    private final boolean simpleTemplate;
+
+    /**
+     * The tx: or workspace: segment our URIs start with (worked out on first
+     * use)
+     */
+    private volatile String pathPrefix;
+
     private final UriBuilder nodesBuilder;
 
     private final String basePath;
@@ -75,17 +110,55 @@ public class HttpGraphSubjects implements GraphSubjects {
         this.basePath = basePath;
         this.pathIx = basePath.length() - 1;
         this.session = session;
+        this.simpleTemplate =
+            nodesBuilder.buildFromMap(singletonMap("path", "a/b:c")).toString()
+                    .equals(basePath + "a/b:c");
         LOGGER.debug("Resolving graph subjects to a base URI of \"{}\"",
                 basePath);
     }
 
+    private HttpGraphSubjects(final HttpGraphSubjects original,
+            final Session session) {
+        this.context = original.context;
+        this.nodesBuilder = original.nodesBuilder.clone();
+        this.basePath = original.basePath;
+        this.pathIx = original.pathIx;
+        this.simpleTemplate = original.simpleTemplate;
+        this.pathPrefix = original.getPathPrefix();
+        this.session = session;
+    }
+
+    /**
+     * The same translation, for use on another thread and looking nodes up in
+     * another session (UriInfo belongs to the request's thread, so a copy is
+     * the only way to get one there). Subjects keep the tx: or workspace:
+     * segment of this instance's session.
+     *
+     * @param otherSession
+     * @return
+     */
+    public HttpGraphSubjects withSession(final Session otherSession) {
+        return new HttpGraphSubjects(this, otherSession);
+    }
+
     @Override
     public Resource getGraphSubject(final String absPath)
         throws RepositoryException {
-        final URI result =
-                nodesBuilder.buildFromMap(getPathMap(absPath));
+        final Resource cached = subjects.getIfPresent(absPath);
+        if (cached != null) {
+            return cached;
+        }
+        final String path = getPathParam(absPath);
+        final String result;
+        if (simpleTemplate && SIMPLE_PATH.matcher(path).matches()) {
+            result = basePath + path;
+        } else {
+            result = nodesBuilder.buildFromMap(singletonMap("path", path)).toString();
+        }
         LOGGER.debug("Translated path {} into RDF subject {}", absPath, result);
-        return createResource(result.toString());
+        final Resource subject = createResource(result);
+        subjects.put(absPath, subject);
+        return subject;
     }
 
     @Override
@@ -95,9 +168,7 @@ public class HttpGraphSubjects implements GraphSubjects {
 
     @Override
     public Resource getGraphSubject(final Node node) throws RepositoryException {
-        final URI result = nodesBuilder.buildFromMap(getPathMap(node));
-        LOGGER.debug("Translated node {} into RDF subject {}", node, result);
-        return createResource(result.toString());
+        return getGraphSubject(node.getPath());
     }
 
     @Override
@@ -135,6 +206,11 @@ public class HttpGraphSubjects implements GraphSubjects {
             return null;
         }
 
+        final String cached = paths.getIfPresent(subject.getURI());
+        if (cached != null) {
+            return cached;
+        }
+
         final StringBuilder pathBuilder = new StringBuilder();
         final String absPath;
         final String[] pathSegments =
@@ -177,6 +253,7 @@ public class HttpGraphSubjects implements GraphSubjects {
         }
 
         if (isValidJcrPath(absPath)) {
+            paths.put(subject.getURI(), absPath);
             return absPath;
         } else {
             return null;
@@ -198,34 +275,37 @@ public class HttpGraphSubjects implements GraphSubjects {
     @Override
     public boolean isFedoraGraphSubject(final Resource subject) {
         return subject.isURIResource() && subject.getURI().startsWith(basePath)
-                && isValidJcrPath(subject.getURI().substring(pathIx));
-    }
-
-    private Map<String, String> getPathMap(final Node node)
-        throws RepositoryException {
-        return getPathMap(node.getPath());
+                && (paths.getIfPresent(subject.getURI()) != null ||
+                isValidJcrPath(subject.getURI().substring(pathIx)));
     }
 
-    private Map<String, String> getPathMap(final String absPath) throws RepositoryException {
+    private String getPathParam(final String absPath) {
         // the path param value doesn't start with a slash
         String path = absPath.substring(1);
         if (path.endsWith(JCR_CONTENT)) {
             path = path.replace(JCR_CONTENT, FCR_CONTENT);
         }
 
-        if (session != null) {
-            final Workspace workspace = session.getWorkspace();
+        return getPathPrefix() + path;
+    }
+
+    private String getPathPrefix() {
+        if (pathPrefix == null) {
+            String prefix = "";
+            if (session != null) {
+                final Workspace workspace = session.getWorkspace();
 
-            final String txId = getCurrentTransactionId(session);
+                final String txId = getCurrentTransactionId(session);
 
-            if (txId != null) {
-                path = "tx:" + txId + "/" + path;
-            } else if (workspace != null &&
-                    !workspace.getName().equals("default")) {
-                path = "workspace:" + workspace.getName() + "/" + path;
+                if (txId != null) {
+                    prefix = "tx:" + txId + "/";
+                } else if (workspace != null &&
+                        !workspace.getName().equals("default")) {
+                    prefix = "workspace:" + workspace.getName() + "/";
+                }
             }
+            pathPrefix = prefix;
         }
-
-        return singletonMap("path", path);
+        return pathPrefix;
     }
 }
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.domain;
+
+import static java.util.regex.Pattern.compile;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Prefer header parsing logic, for the include="..." parameter with which a
+ * client asks for extra parts of a representation, e.g.
+ * <code>Prefer: return=representation;
+ * include="http://fedora.info/definitions/v4/repository#hasLocation"</code>
+ */
+public class Prefer {
+
+    private final Set<String> includes;
+
+    private static Pattern includePattern =
+        compile("(?i)\\binclude\\s*=\\s*(?:\"([^\"]*)\"|([^\\s;,]+))");
+
+    /**
+     * No preferences
+     */
+    public Prefer() {
+        this(Collections.<String> emptySet());
+    }
+
+    /**
+     * @param includes the URIs of the extra parts asked for
+     */
+    public Prefer(final Set<String> includes) {
+        this.includes = ImmutableSet.copyOf(includes);
+    }
+
+    /**
+     * Whether the client asked for a part of the representation
+     * @param uri
+     * @return
+     */
+    public boolean includes(final String uri) {
+        return includes.contains(uri);
+    }
+
+    /**
+     * The URIs of the extra parts asked for
+     * @return
+     */
+    public Set<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Convert an HTTP Prefer header to a Prefer object
+     * @param source the header's value, or null if there wasn't one
+     * @return
+     */
+    public static Prefer convert(final String source) {
+
+        if (source == null) {
+            return new Prefer();
+        }
+
+        final ImmutableSet.Builder<String> includes = ImmutableSet.builder();
+        final Matcher matcher = includePattern.matcher(source);
+        while (matcher.find()) {
+            final String value =
+                matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            for (final String uri : value.trim().split("\\s+")) {
+                if (!uri.isEmpty()) {
+                    includes.add(uri);
+                }
+            }
+        }
+        return new Prefer(includes.build());
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.exceptionhandlers;
+
+import static java.net.URI.create;
+import static javax.ws.rs.core.Response.temporaryRedirect;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.fcrepo.kernel.exception.RemoteTransactionException;
+
+/**
+ * If a transaction is requested that is open on another node of the cluster,
+ * send the client there with an HTTP 307 Temporary Redirect, which keeps the
+ * method and body of the request.
+ */
+@Provider
+public class RemoteTransactionExceptionMapper implements
+        ExceptionMapper<RemoteTransactionException> {
+
+    @Override
+    public Response toResponse(final RemoteTransactionException exception) {
+        return temporaryRedirect(create(exception.getLocation())).build();
+    }
+}
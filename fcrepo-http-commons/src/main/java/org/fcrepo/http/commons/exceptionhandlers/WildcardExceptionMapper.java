@@ -26,6 +26,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
 
+import org.fcrepo.kernel.exception.RemoteTransactionException;
 import org.fcrepo.kernel.exception.TransactionMissingException;
 import org.slf4j.Logger;
 
@@ -61,6 +62,11 @@ public class WildcardExceptionMapper implements ExceptionMapper<Exception> {
                     .toResponse((AccessControlException) e);
         }
 
+        if (e.getCause() instanceof RemoteTransactionException) {
+            return new RemoteTransactionExceptionMapper()
+                    .toResponse((RemoteTransactionException) e.getCause());
+        }
+
         if (e.getCause() instanceof TransactionMissingException) {
             return new TransactionMissingExceptionMapper()
                     .toResponse((TransactionMissingException) e.getCause());
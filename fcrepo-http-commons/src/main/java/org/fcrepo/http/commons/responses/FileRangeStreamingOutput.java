@@ -0,0 +1,80 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.responses;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Streams a byte range of a local file straight from its FileChannel, so the
+ * range's start is a seek rather than a read of every preceding byte
+ */
+public class FileRangeStreamingOutput implements StreamingOutput {
+
+    private final File file;
+
+    private final long start;
+
+    private final long length;
+
+    /**
+     * @param file the file to stream
+     * @param start the offset of the first byte to stream
+     * @param length the number of bytes to stream
+     */
+    public FileRangeStreamingOutput(final File file, final long start,
+            final long length) {
+        this.file = file;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        try (final FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            final WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                final long sent =
+                        channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    // the file is shorter than the requested range
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Get the number of bytes this will stream
+     * @return
+     */
+    public long getLength() {
+        return length;
+    }
+}
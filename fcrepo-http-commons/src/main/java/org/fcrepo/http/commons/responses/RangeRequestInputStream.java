@@ -20,7 +20,6 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.io.input.ProxyInputStream;
 
@@ -52,7 +51,27 @@ public class RangeRequestInputStream extends FilterInputStream {
         public SkipInputStream(final InputStream in,
                                final long skip) throws IOException {
             super(in);
-            IOUtils.skip(in, skip);
+            skipFully(in, skip);
+        }
+
+        /**
+         * Skip with the stream's own skip(), so streams that can seek (files,
+         * chunked cache stores) do, rather than reading and discarding the
+         * prefix the way IOUtils.skip does
+         */
+        private static void skipFully(final InputStream in, final long skip)
+            throws IOException {
+            long remaining = skip;
+            while (remaining > 0) {
+                final long skipped = in.skip(remaining);
+                if (skipped > 0) {
+                    remaining -= skipped;
+                } else if (in.read() == -1) {
+                    return;
+                } else {
+                    remaining--;
+                }
+            }
         }
     }
 }
@@ -16,6 +16,7 @@
 
 package org.fcrepo.http.commons.responses;
 
+import static com.google.common.collect.ImmutableSet.of;
 import static javax.ws.rs.core.Response.Status.NOT_ACCEPTABLE;
 import static org.openrdf.model.impl.ValueFactoryImpl.getInstance;
 import static org.openrdf.model.util.Literals.createLiteral;
@@ -24,6 +25,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.Set;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
@@ -46,7 +48,9 @@ import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 
 /**
- * Serializes an {@link RdfStream}.
+ * Serializes an {@link RdfStream}. N-Triples and Turtle (which also serves for
+ * N3) are written directly from the stream's triples; other formats go
+ * through a Sesame writer.
  *
  * @author ajs6f
  * @date Oct 30, 2013
@@ -65,6 +69,20 @@ public class RdfStreamStreamingOutput extends AbstractFuture<Void> implements
 
     private static final Void finishedMarker = null;
 
+    /**
+     * Formats we write ourselves as Turtle (N-Triples we also write ourselves)
+     */
+    private static final Set<RDFFormat> TURTLE_FORMATS = of(RDFFormat.TURTLE,
+            RDFFormat.N3);
+
+    static {
+        for (final RDFFormat format : RDFWriterRegistry.getInstance().getKeys()) {
+            LOGGER.debug("Discovered RDF writer format: {} with mimeTypes: {}",
+                    format.getName(), Joiner.on(" ")
+                            .join(format.getMIMETypes()));
+        }
+    }
+
     /**
      * Normal constructor
      *
@@ -74,11 +92,6 @@ public class RdfStreamStreamingOutput extends AbstractFuture<Void> implements
     public RdfStreamStreamingOutput(final RdfStream rdfStream,
             final MediaType mediaType) {
         super();
-        for (final RDFFormat format : RDFWriterRegistry.getInstance().getKeys()) {
-            LOGGER.debug("Discovered RDF writer format: {} with mimeTypes: {}",
-                    format.getName(), Joiner.on(" ")
-                            .join(format.getMIMETypes()));
-        }
         final RDFFormat format = Rio.getWriterFormatForMIMEType(mediaType.toString());
         if (format != null) {
             this.format = format;
@@ -95,11 +108,29 @@ public class RdfStreamStreamingOutput extends AbstractFuture<Void> implements
         WebApplicationException {
         LOGGER.debug("Serializing RDF stream in: {}", format);
         try {
-            Rio.write(asStatements(), output, format);
-            set(finishedMarker);
-        } catch (final RDFHandlerException e) {
-            setException(e);
-            throw new WebApplicationException(e);
+            if (format.equals(RDFFormat.NTRIPLES) ||
+                    TURTLE_FORMATS.contains(format)) {
+                try {
+                    new StreamingTripleWriter(output, TURTLE_FORMATS
+                            .contains(format), rdfStream.namespaces())
+                            .write(rdfStream);
+                    set(finishedMarker);
+                } catch (final IOException e) {
+                    setException(e);
+                    throw new WebApplicationException(e);
+                }
+                return;
+            }
+            try {
+                Rio.write(asStatements(), output, format);
+                set(finishedMarker);
+            } catch (final RDFHandlerException e) {
+                setException(e);
+                throw new WebApplicationException(e);
+            }
+        } finally {
+            // the client may have gone away before the end of the stream
+            rdfStream.close();
         }
     }
 
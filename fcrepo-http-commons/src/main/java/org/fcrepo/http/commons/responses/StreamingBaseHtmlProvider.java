@@ -95,7 +95,12 @@ public class StreamingBaseHtmlProvider implements MessageBodyWriter<RdfStream>,
             final MultivaluedMap<String, Object> httpHeaders,
             final OutputStream entityStream) throws IOException,
                                             WebApplicationException {
-        final Dataset dataset = DatasetFactory.create(rdfStream.asModel());
+        final Dataset dataset;
+        try {
+            dataset = DatasetFactory.create(rdfStream.asModel());
+        } finally {
+            rdfStream.close();
+        }
         dataset.getContext().set(subjectKey, rdfStream.topic());
         delegate.writeTo(dataset, type, genericType, annotations, mediaType,
                 httpHeaders, entityStream);
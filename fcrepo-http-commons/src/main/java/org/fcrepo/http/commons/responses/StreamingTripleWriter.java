@@ -0,0 +1,262 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.responses;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.regex.Pattern.compile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Writes Jena {@link Triple}s straight out as N-Triples or Turtle, without
+ * building an intermediate statement for each of them. Output goes through a
+ * fixed-size buffer, so it reaches the client in bounded chunks however large
+ * the stream is.
+ *
+ * @author ajs6f
+ * @date Oct 30, 2013
+ */
+class StreamingTripleWriter {
+
+    /**
+     * Characters buffered before they're handed on to the output stream
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern PREFIX = compile("([A-Za-z][\\w\\-]*)?");
+
+    private static final Pattern LOCAL_NAME = compile("[A-Za-z_][\\w\\-]*");
+
+    /**
+     * Characters besides controls and spaces that can't appear unescaped in
+     * an IRIREF
+     */
+    private static final String IRI_FORBIDDEN = "<>\"{}|^`\\";
+
+    private final Writer out;
+
+    private final boolean turtle;
+
+    /**
+     * Namespace URI to prefix, for abbreviating IRIs in Turtle
+     */
+    private final Map<String, String> prefixes = new LinkedHashMap<>();
+
+    private Node lastSubject;
+
+    /**
+     * @param output
+     * @param turtle whether to write Turtle (with prefixes and grouped
+     *        subjects) rather than N-Triples
+     * @param namespaces prefix to namespace URI mappings to abbreviate with
+     */
+    StreamingTripleWriter(final OutputStream output, final boolean turtle,
+            final Map<String, String> namespaces) {
+        this.out =
+            new BufferedWriter(new OutputStreamWriter(output, UTF_8),
+                    BUFFER_SIZE);
+        this.turtle = turtle;
+        if (turtle) {
+            // sorted, so the prefix declarations come out in a stable order
+            for (final Map.Entry<String, String> ns : new TreeMap<>(namespaces)
+                    .entrySet()) {
+                if (PREFIX.matcher(ns.getKey()).matches() &&
+                        !prefixes.containsKey(ns.getValue())) {
+                    prefixes.put(ns.getValue(), ns.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Write all of the triples and flush them to the output stream
+     *
+     * @param triples
+     * @throws IOException
+     */
+    void write(final Iterator<Triple> triples) throws IOException {
+        if (turtle) {
+            writePrefixes();
+        }
+        while (triples.hasNext()) {
+            write(triples.next());
+        }
+        if (lastSubject != null) {
+            out.write(" .\n");
+        }
+        out.flush();
+    }
+
+    private void writePrefixes() throws IOException {
+        for (final Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            out.write("@prefix ");
+            out.write(prefix.getValue());
+            out.write(": <");
+            writeEscapedIri(prefix.getKey());
+            out.write("> .\n");
+        }
+        if (!prefixes.isEmpty()) {
+            out.write('\n');
+        }
+    }
+
+    private void write(final Triple t) throws IOException {
+        if (!turtle) {
+            writeNode(t.getSubject());
+            out.write(' ');
+            writeNode(t.getPredicate());
+            out.write(' ');
+            writeNode(t.getObject());
+            out.write(" .\n");
+            return;
+        }
+        if (t.getSubject().equals(lastSubject)) {
+            out.write(" ;\n    ");
+        } else {
+            if (lastSubject != null) {
+                out.write(" .\n\n");
+            }
+            writeNode(t.getSubject());
+            out.write("\n    ");
+            lastSubject = t.getSubject();
+        }
+        writeNode(t.getPredicate());
+        out.write(' ');
+        writeNode(t.getObject());
+    }
+
+    private void writeNode(final Node node) throws IOException {
+        if (node.isURI()) {
+            writeIri(node.getURI());
+        } else if (node.isLiteral()) {
+            out.write('"');
+            writeEscaped(node.getLiteralLexicalForm());
+            out.write('"');
+            final String lang = node.getLiteralLanguage();
+            final String datatype = node.getLiteralDatatypeURI();
+            if (lang != null && !lang.isEmpty()) {
+                out.write('@');
+                out.write(lang);
+            } else if (datatype != null) {
+                out.write("^^");
+                writeIri(datatype);
+            }
+        } else {
+            throw new UnsupportedOperationException(
+                    "We do not serialize blank nodes!");
+        }
+    }
+
+    private void writeIri(final String iri) throws IOException {
+        if (turtle) {
+            final int split =
+                Math.max(iri.lastIndexOf('#'), iri.lastIndexOf('/')) + 1;
+            final String prefix = prefixes.get(iri.substring(0, split));
+            if (prefix != null &&
+                    LOCAL_NAME.matcher(iri.substring(split)).matches()) {
+                out.write(prefix);
+                out.write(':');
+                out.write(iri, split, iri.length() - split);
+                return;
+            }
+        }
+        out.write('<');
+        writeEscapedIri(iri);
+        out.write('>');
+    }
+
+    /**
+     * Escape an IRI for either syntax. IRIs may not use the backslash escapes
+     * strings do, so the characters IRIREF forbids (and, for N-Triples,
+     * anything outside ASCII) are written as numeric (UCHAR) escapes.
+     */
+    private void writeEscapedIri(final String iri) throws IOException {
+        final int length = iri.length();
+        int start = 0;
+        for (int i = 0; i < length;) {
+            final int c = iri.codePointAt(i);
+            final int next = i + Character.charCount(c);
+            if (c > 0x20 && IRI_FORBIDDEN.indexOf(c) < 0 &&
+                    (c < 0x7f || turtle)) {
+                i = next;
+                continue;
+            }
+            out.write(iri, start, i - start);
+            out.write(uchar(c));
+            start = i = next;
+        }
+        out.write(iri, start, length - start);
+    }
+
+    /**
+     * Escape a string for either syntax. N-Triples is kept to ASCII, as older
+     * parsers expect.
+     */
+    private void writeEscaped(final String s) throws IOException {
+        final int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length;) {
+            final int c = s.codePointAt(i);
+            final int next = i + Character.charCount(c);
+            final String escape;
+            switch (c) {
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                default:
+                    if (c >= 0x20 && (c < 0x7f || turtle)) {
+                        i = next;
+                        continue;
+                    }
+                    escape = uchar(c);
+            }
+            out.write(s, start, i - start);
+            out.write(escape);
+            start = i = next;
+        }
+        out.write(s, start, length - start);
+    }
+
+    private static String uchar(final int c) {
+        return c > 0xffff ? String.format("\\U%08X", c) : String.format(
+                "\\u%04X", c);
+    }
+}
@@ -32,6 +32,8 @@ public class AuthenticatedSessionProviderImpl implements
 
     private final Credentials credentials;
 
+    private final String workspace;
+
     /**
      * Get a new session provider for the JCR repository
      *
@@ -40,15 +42,28 @@ public class AuthenticatedSessionProviderImpl implements
      */
     public AuthenticatedSessionProviderImpl(final Repository repo,
             final Credentials creds) {
+        this(repo, creds, null);
+    }
+
+    /**
+     * Get a new session provider for a workspace of the JCR repository
+     *
+     * @param repo
+     * @param creds
+     * @param workspace the workspace, or null for the default one
+     */
+    public AuthenticatedSessionProviderImpl(final Repository repo,
+            final Credentials creds, final String workspace) {
         repository = repo;
         credentials = creds;
+        this.workspace = workspace;
     }
 
     @Override
     public Session getAuthenticatedSession() {
         try {
-            return (credentials != null) ? repository.login(credentials)
-                    : repository.login();
+            return (credentials != null) ? repository.login(credentials,
+                    workspace) : repository.login(workspace);
         } catch (final RepositoryException e) {
             throw new IllegalStateException(e);
         }
@@ -29,6 +29,7 @@ import javax.servlet.http.HttpSession;
 import javax.ws.rs.core.SecurityContext;
 
 import org.fcrepo.kernel.Transaction;
+import org.fcrepo.kernel.exception.RemoteTransactionException;
 import org.fcrepo.kernel.exception.TransactionMissingException;
 import org.fcrepo.kernel.services.TransactionService;
 import org.modeshape.jcr.api.ServletCredentials;
@@ -202,7 +203,8 @@ public class SessionFactory {
             final SecurityContext securityContext,
             final HttpServletRequest servletRequest) {
         final ServletCredentials creds = new ServletCredentials(servletRequest);
-        return new AuthenticatedSessionProviderImpl(repo, creds);
+        return new AuthenticatedSessionProviderImpl(repo, creds,
+                getEmbeddedWorkspace(servletRequest));
     }
 
     /**
@@ -248,10 +250,35 @@ public class SessionFactory {
 
         if (part.length > 1 && part[1].startsWith("tx:")) {
             final String txid = part[1].substring("tx:".length());
-            return transactionService.getTransaction(txid);
+            try {
+                return transactionService.getTransaction(txid);
+            } catch (final RemoteTransactionException e) {
+                throw new RemoteTransactionException(e.getMessage(),
+                        remoteLocation(e.getLocation(), servletRequest));
+            }
         } else {
             return null;
         }
     }
 
+    /**
+     * The same request URL on another node, given that node's base URL
+     *
+     * @param nodeUrl
+     * @param servletRequest
+     * @return
+     */
+    private static String remoteLocation(final String nodeUrl,
+            final HttpServletRequest servletRequest) {
+        final String base =
+            nodeUrl.endsWith("/") ? nodeUrl.substring(0, nodeUrl.length() - 1)
+                    : nodeUrl;
+        final String path =
+            servletRequest.getRequestURI().substring(
+                    servletRequest.getContextPath().length() +
+                            servletRequest.getServletPath().length());
+        final String query = servletRequest.getQueryString();
+        return base + path + (query == null ? "" : "?" + query);
+    }
+
 }
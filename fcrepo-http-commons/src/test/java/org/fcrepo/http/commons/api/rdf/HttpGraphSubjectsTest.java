@@ -16,9 +16,14 @@
 
 package org.fcrepo.http.commons.api.rdf;
 
+import static javax.jcr.PropertyType.PATH;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -91,6 +96,57 @@ public class HttpGraphSubjectsTest {
         assertEquals(expected + "/fcr:content", actual.getURI());
     }
 
+    @Test
+    public void testGetGraphSubjectIsRemembered() throws RepositoryException {
+        when(mockWorkspace.getName()).thenReturn("default");
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        final Resource first = testObj.getGraphSubject(testPath);
+        final Resource second = testObj.getGraphSubject(testPath);
+        assertSame(first, second);
+        testObj.getGraphSubject(testPath + "/baz");
+        // the workspace segment is only worked out once
+        verify(mockSession, times(1)).getWorkspace();
+    }
+
+    @Test
+    public void testGetGraphSubjectEncodesUnusualPaths()
+        throws RepositoryException {
+        when(mockWorkspace.getName()).thenReturn("some-workspace");
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        assertEquals(
+                "http://localhost:8080/fcrepo/rest/workspace:some-workspace/foo%20bar",
+                testObj.getGraphSubject("/foo bar").getURI());
+    }
+
+    @Test
+    public void testGetPathFromGraphSubjectIsRemembered()
+        throws RepositoryException {
+        final Resource subject =
+            ResourceFactory.createResource("http://localhost:8080/fcrepo/rest/abc");
+        assertEquals("/abc", testObj.getPathFromGraphSubject(subject));
+        assertEquals("/abc", testObj.getPathFromGraphSubject(subject));
+        assertTrue(testObj.isFedoraGraphSubject(subject));
+        // once for the first isFedoraGraphSubject check, once for the path
+        verify(mockValueFactory, times(2)).createValue("/abc", PATH);
+    }
+
+    @Test
+    public void testWithSession() throws RepositoryException {
+        when(mockWorkspace.getName()).thenReturn("some-workspace");
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        final Session otherSession = mock(Session.class);
+        when(otherSession.getValueFactory()).thenReturn(mockValueFactory);
+        when(otherSession.nodeExists(testPath)).thenReturn(true);
+        when(otherSession.getNode(testPath)).thenReturn(mockNode);
+        final HttpGraphSubjects other = testObj.withSession(otherSession);
+        assertEquals(testObj.getGraphSubject(testPath), other
+                .getGraphSubject(testPath));
+        assertEquals(mockNode, other.getNodeFromGraphSubject(ResourceFactory
+                .createResource("http://localhost:8080/fcrepo/rest"
+                        + testPath)));
+        verify(mockSession, never()).getNode(testPath);
+    }
+
     @Test
     public void testGetNodeFromGraphSubject() throws PathNotFoundException,
             RepositoryException {
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PreferTest {
+
+    @Test
+    public void testNoHeader() {
+        final Prefer prefer = Prefer.convert(null);
+
+        assertTrue(prefer.getIncludes().isEmpty());
+    }
+
+    @Test
+    public void testQuotedIncludes() {
+        final Prefer prefer =
+            Prefer.convert("return=representation; "
+                    + "include=\"info:a  info:b\"");
+
+        assertEquals(2, prefer.getIncludes().size());
+        assertTrue(prefer.includes("info:a"));
+        assertTrue(prefer.includes("info:b"));
+    }
+
+    @Test
+    public void testUnquotedInclude() {
+        final Prefer prefer =
+            Prefer.convert("return=representation;include=info:a, wait=10");
+
+        assertTrue(prefer.includes("info:a"));
+        assertFalse(prefer.includes("wait=10"));
+    }
+
+    @Test
+    public void testGarbagePreferParsing() {
+        final Prefer prefer = Prefer.convert("something-thats-not-a-preference");
+
+        assertTrue(prefer.getIncludes().isEmpty());
+    }
+}
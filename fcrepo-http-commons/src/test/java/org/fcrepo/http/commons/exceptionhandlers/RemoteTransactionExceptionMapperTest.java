@@ -0,0 +1,46 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.exceptionhandlers;
+
+import static javax.ws.rs.core.Response.Status.TEMPORARY_REDIRECT;
+import static org.junit.Assert.assertEquals;
+
+import javax.ws.rs.core.Response;
+
+import org.fcrepo.kernel.exception.RemoteTransactionException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RemoteTransactionExceptionMapperTest {
+
+    private RemoteTransactionExceptionMapper testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new RemoteTransactionExceptionMapper();
+    }
+
+    @Test
+    public void testToResponse() {
+        final Response actual =
+            testObj.toResponse(new RemoteTransactionException("",
+                    "http://node2/rest/tx:123/some/path"));
+        assertEquals(TEMPORARY_REDIRECT.getStatusCode(), actual.getStatus());
+        assertEquals("http://node2/rest/tx:123/some/path", actual.getMetadata()
+                .getFirst("Location").toString());
+    }
+}
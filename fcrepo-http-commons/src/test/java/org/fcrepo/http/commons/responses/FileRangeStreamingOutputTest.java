@@ -0,0 +1,54 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.responses;
+
+import static java.io.File.createTempFile;
+import static org.apache.commons.io.FileUtils.writeStringToFile;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRangeStreamingOutputTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile("fcrepo", "range");
+        file.deleteOnExit();
+        writeStringToFile(file, "0123456789");
+    }
+
+    @Test
+    public void shouldStreamTheRange() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FileRangeStreamingOutput(file, 5L, 3L).write(out);
+        assertEquals("567", out.toString());
+    }
+
+    @Test
+    public void shouldStopAtTheEndOfTheFile() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FileRangeStreamingOutput(file, 8L, 10L).write(out);
+        assertEquals("89", out.toString());
+    }
+}
@@ -17,6 +17,9 @@
 package org.fcrepo.http.commons.responses;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -43,4 +46,13 @@ public class RangeRequestInputStreamTest {
         final String s = IOUtils.toString(out);
         assertEquals("0123456789", s);
     }
+
+    @Test
+    public void shouldSkipWithTheUnderlyingStream() throws IOException {
+        final InputStream in = spy(new ByteArrayInputStream("0123456789".getBytes()));
+        final RangeRequestInputStream out = new RangeRequestInputStream(in, 5L, 3L);
+        verify(in).skip(5L);
+        verify(in, never()).read();
+        assertEquals("567", IOUtils.toString(out));
+    }
 }
@@ -120,6 +120,45 @@ public class RdfStreamStreamingOutputTest {
         }
     }
 
+    @Test
+    public void testWriteNTriples() throws IOException {
+        final Model result =
+            writeAndRead(new RdfStream(triple), "application/n-triples",
+                    "N-TRIPLE");
+        assertTrue("Didn't find our test triple!", result.contains(result
+                .asStatement(triple)));
+    }
+
+    @Test
+    public void testWriteTurtle() throws IOException {
+        final Triple literalTriple =
+            create(createURI("info:testSubject"),
+                    createURI("http://example.com/ns#title"), NodeFactory
+                            .createLiteral("a \"quoted\"\ntitle", "en", false));
+        final RdfStream stream =
+            new RdfStream(triple, literalTriple).namespace("ex",
+                    "http://example.com/ns#");
+        final Model result = writeAndRead(stream, "text/turtle", "TTL");
+        assertTrue("Didn't find our test triple!", result.contains(result
+                .asStatement(triple)));
+        assertTrue("Didn't find our literal triple!", result.contains(result
+                .asStatement(literalTriple)));
+    }
+
+    private static Model writeAndRead(final RdfStream stream,
+            final String mediaType, final String lang) throws IOException {
+        try (final ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            new RdfStreamStreamingOutput(stream, valueOf(mediaType))
+                    .write(output);
+            LOGGER.debug("Wrote {}:\n{}", mediaType, output.toString("UTF-8"));
+            try (
+                final InputStream resultStream =
+                    new ByteArrayInputStream(output.toByteArray())) {
+                return createDefaultModel().read(resultStream, null, lang);
+            }
+        }
+    }
+
     @Test(expected=WebApplicationException.class)
     public void testWriteWithException() throws IOException {
 
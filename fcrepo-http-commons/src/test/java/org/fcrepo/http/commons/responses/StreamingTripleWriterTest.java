@@ -0,0 +1,113 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.http.commons.responses;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static com.hp.hpl.jena.graph.NodeFactory.createAnon;
+import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
+import static com.hp.hpl.jena.graph.NodeFactory.createURI;
+import static com.hp.hpl.jena.graph.Triple.create;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.hp.hpl.jena.graph.Triple;
+
+public class StreamingTripleWriterTest {
+
+    private static final Triple typeTriple = create(
+            createURI("http://example.com/a"),
+            createURI("http://example.com/ns#type"),
+            createURI("http://example.com/ns#Thing"));
+
+    private static final Triple titleTriple = create(
+            createURI("http://example.com/a"),
+            createURI("http://example.com/ns#title"),
+            createLiteral("caf\u00e9 \"x\"\n", "fr", false));
+
+    private static final Triple otherTriple = create(
+            createURI("http://example.com/b"),
+            createURI("http://example.com/ns#has.dot"),
+            createURI("http://example.com/a"));
+
+    @Test
+    public void testNTriples() throws IOException {
+        assertEquals("<http://example.com/a> <http://example.com/ns#type> "
+                + "<http://example.com/ns#Thing> .\n"
+                + "<http://example.com/a> <http://example.com/ns#title> "
+                + "\"caf\\u00E9 \\\"x\\\"\\n\"@fr .\n", write(false,
+                Collections.<String, String> emptyMap(), typeTriple,
+                titleTriple));
+    }
+
+    @Test
+    public void testTurtle() throws IOException {
+        assertEquals("@prefix ex: <http://example.com/ns#> .\n\n"
+                + "<http://example.com/a>\n"
+                + "    ex:type ex:Thing ;\n"
+                + "    ex:title \"caf\u00e9 \\\"x\\\"\\n\"@fr .\n\n"
+                + "<http://example.com/b>\n"
+                + "    <http://example.com/ns#has.dot> <http://example.com/a> .\n",
+                write(true, of("ex", "http://example.com/ns#"), typeTriple,
+                        titleTriple, otherTriple));
+    }
+
+    @Test
+    public void testSupplementaryCharacters() throws IOException {
+        final Triple t =
+            create(createURI("info:a"), createURI("info:b"),
+                    createLiteral("\ud834\udd1e"));
+        assertEquals("<info:a> <info:b> \"\\U0001D11E\" .\n", write(false,
+                Collections.<String, String> emptyMap(), t));
+    }
+
+    @Test
+    public void testIrisOnlyUseNumericEscapes() throws IOException {
+        final Triple t =
+            create(createURI("info:a b\\c\"d"), createURI("info:{e}"),
+                    createURI("info:caf\u00e9\n"));
+        final String expected =
+            "<info:a\\u0020b\\u005Cc\\u0022d> <info:\\u007Be\\u007D> ";
+        assertEquals(expected + "<info:caf\\u00E9\\u000A> .\n", write(false,
+                Collections.<String, String> emptyMap(), t));
+        // Turtle can carry the non-ASCII character as it is
+        assertEquals(expected.replace("> <", ">\n    <") +
+                "<info:caf\u00e9\\u000A> .\n", write(true, Collections
+                .<String, String> emptyMap(), t));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testBlankNodes() throws IOException {
+        write(false, Collections.<String, String> emptyMap(), create(
+                createAnon(), createURI("info:b"), createURI("info:c")));
+    }
+
+    private static String write(final boolean turtle,
+            final Map<String, String> namespaces, final Triple... triples)
+        throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StreamingTripleWriter(output, turtle, namespaces).write(Iterators
+                .forArray(triples));
+        return output.toString("UTF-8");
+    }
+}
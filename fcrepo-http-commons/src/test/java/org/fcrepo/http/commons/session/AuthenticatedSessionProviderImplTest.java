@@ -42,7 +42,7 @@ public class AuthenticatedSessionProviderImplTest {
         final AuthenticatedSessionProviderImpl test =
             new AuthenticatedSessionProviderImpl(mockRepo, mockCreds);
         test.getAuthenticatedSession();
-        verify(mockRepo).login(mockCreds);
+        verify(mockRepo).login(mockCreds, null);
     }
 
     @Test
@@ -50,6 +50,15 @@ public class AuthenticatedSessionProviderImplTest {
         final AuthenticatedSessionProviderImpl test =
             new AuthenticatedSessionProviderImpl(mockRepo, null);
         test.getAuthenticatedSession();
-        verify(mockRepo).login();
+        verify(mockRepo).login((String) null);
+    }
+
+    @Test
+    public void testWorkspaceProvided() throws RepositoryException {
+        final ServletCredentials mockCreds = mock(ServletCredentials.class);
+        final AuthenticatedSessionProviderImpl test =
+            new AuthenticatedSessionProviderImpl(mockRepo, mockCreds, "ws");
+        test.getAuthenticatedSession();
+        verify(mockRepo).login(mockCreds, "ws");
     }
 }
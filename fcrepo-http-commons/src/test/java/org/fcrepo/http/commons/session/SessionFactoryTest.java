@@ -17,6 +17,7 @@
 package org.fcrepo.http.commons.session;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -35,6 +36,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.SecurityContext;
 
 import org.fcrepo.kernel.Transaction;
+import org.fcrepo.kernel.exception.RemoteTransactionException;
 import org.fcrepo.kernel.services.TransactionService;
 import org.junit.Before;
 import org.junit.Test;
@@ -153,4 +155,24 @@ public class SessionFactoryTest {
         when(mockContext.getUserPrincipal()).thenReturn(mockUser);
         testObj.getSessionProvider(mockContext, mockRequest);
     }
+
+    @Test
+    public void testGetSessionInARemoteTransaction()
+        throws RepositoryException {
+        when(mockRequest.getPathInfo()).thenReturn("/tx:123/some/path");
+        when(mockRequest.getRequestURI()).thenReturn(
+                "/fcrepo/rest/tx:123/some/path");
+        when(mockRequest.getContextPath()).thenReturn("/fcrepo");
+        when(mockRequest.getServletPath()).thenReturn("/rest");
+        when(mockRequest.getQueryString()).thenReturn("a=b");
+        when(mockTxService.getTransaction("123")).thenThrow(
+                new RemoteTransactionException("", "http://node2/rest/"));
+        try {
+            testObj.getSession(mockRequest);
+            fail("Expected a RemoteTransactionException!");
+        } catch (final RemoteTransactionException e) {
+            assertEquals("http://node2/rest/tx:123/some/path?a=b", e
+                    .getLocation());
+        }
+    }
 }
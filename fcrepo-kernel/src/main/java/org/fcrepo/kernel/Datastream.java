@@ -16,12 +16,17 @@
 package org.fcrepo.kernel;
 
 import static com.codahale.metrics.MetricRegistry.name;
+import static java.lang.Boolean.getBoolean;
+import static javax.jcr.query.Query.JCR_SQL2;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.fcrepo.kernel.services.LowLevelStorageService.invalidateLocations;
 import static org.fcrepo.kernel.services.ServiceHelpers.getNodePropertySize;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isFedoraDatastream;
 import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.modeshape.jcr.api.JcrConstants.JCR_DATA;
 import static org.modeshape.jcr.api.JcrConstants.JCR_MIME_TYPE;
+import static org.modeshape.jcr.api.JcrConstants.JCR_PATH;
 import static org.modeshape.jcr.api.JcrConstants.NT_RESOURCE;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -30,9 +35,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
 
 import org.fcrepo.jcr.FedoraJcrTypes;
 import org.fcrepo.kernel.exception.InvalidChecksumException;
@@ -41,8 +49,10 @@ import org.fcrepo.kernel.utils.ContentDigest;
 import org.modeshape.jcr.api.Binary;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.api.ValueFactory;
+import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Histogram;
 
 /**
@@ -58,6 +68,21 @@ public class Datastream extends FedoraResource implements FedoraJcrTypes {
     static final Histogram contentSizeHistogram =
             getMetrics().histogram(name(Datastream.class, "content-size"));
 
+    static final Counter dedupCounter =
+            getMetrics().counter(name(Datastream.class, "content-dedup"));
+
+    /**
+     * System property enabling deduplicating ingest: content whose SHA-1
+     * checksum the client supplies, and which is already stored, is linked
+     * rather than uploaded again. This lets anyone who knows a checksum
+     * link to the content, so it is off by default. Content that a storage
+     * policy places in a particular store is always stored, since the
+     * existing copy may be somewhere else.
+     */
+    public static final String DEDUP_PROPERTY = "fcrepo.binary.dedup";
+
+    static boolean dedupIngest = getBoolean(DEDUP_PROPERTY);
+
     /**
      * The JCR node for this datastream
      * @param n an existing {@link Node}
@@ -147,9 +172,28 @@ public class Datastream extends FedoraResource implements FedoraJcrTypes {
         if (storagePolicyDecisionPoint != null) {
             hint = storagePolicyDecisionPoint.evaluatePolicies(node);
         }
-        final ValueFactory modevf =
-            (ValueFactory) node.getSession().getValueFactory();
-        final Binary binary = modevf.createBinary(content, hint);
+        Binary binary = null;
+        if (dedupIngest && checksum != null) {
+            if (hint == null) {
+                binary = findStoredBinary(node.getSession(), checksum);
+            } else {
+                LOGGER.debug("Not reusing stored binaries for content bound"
+                        + " for store {}", hint);
+            }
+        }
+
+        if (binary != null) {
+            // the store already has these bytes; link to them and never
+            // read the request body, so a client that sent
+            // "Expect: 100-continue" never has to upload it
+            LOGGER.debug("Reusing stored binary for {}", checksum);
+            dedupCounter.inc();
+            closeQuietly(content);
+        } else {
+            final ValueFactory modevf =
+                (ValueFactory) node.getSession().getValueFactory();
+            binary = modevf.createBinary(content, hint);
+        }
 
         /*
          * This next line of code deserves explanation. If we chose for the
@@ -168,6 +212,11 @@ public class Datastream extends FedoraResource implements FedoraJcrTypes {
          */
         final Property dataProperty = contentNode.setProperty(JCR_DATA, binary);
 
+        // storing the binary may have put it somewhere new
+        if (binary instanceof BinaryValue) {
+            invalidateLocations(((BinaryValue) binary).getKey());
+        }
+
         final String dsChecksum = binary.getHexHash();
         if (checksum != null &&
                 !checksum.equals(ContentDigest.asURI("SHA-1", dsChecksum))) {
@@ -183,6 +232,47 @@ public class Datastream extends FedoraResource implements FedoraJcrTypes {
 
     }
 
+    /**
+     * Find the binary value of an existing fedora:binary whose content has
+     * the given SHA-1 checksum.
+     *
+     * @param session
+     * @param checksum
+     * @return the binary, or null if the store doesn't have that content
+     * @throws RepositoryException
+     */
+    private static Binary findStoredBinary(final Session session,
+        final URI checksum) throws RepositoryException {
+        if (!"SHA-1".equals(ContentDigest.getAlgorithm(checksum))) {
+            // fedora:digest only records SHA-1 checksums
+            return null;
+        }
+        final QueryManager queryManager =
+            session.getWorkspace().getQueryManager();
+        final Query query =
+            queryManager.createQuery("SELECT [" + JCR_PATH + "] FROM [" +
+                    FEDORA_BINARY + "] WHERE [" + CONTENT_DIGEST + "] = '" +
+                    checksum.toString().replace("'", "''") + "'", JCR_SQL2);
+        query.setLimit(1);
+
+        final NodeIterator nodes = query.execute().getNodes();
+        if (!nodes.hasNext()) {
+            return null;
+        }
+        final Node existing = nodes.nextNode();
+        if (!existing.hasProperty(JCR_DATA)) {
+            return null;
+        }
+        final Binary binary =
+            (Binary) existing.getProperty(JCR_DATA).getBinary();
+        // don't trust the index alone; the binary's key is its SHA-1
+        if (!checksum.equals(ContentDigest.asURI("SHA-1", binary
+                .getHexHash()))) {
+            return null;
+        }
+        return binary;
+    }
+
     /**
      * Set the content of this datastream
      * @param content
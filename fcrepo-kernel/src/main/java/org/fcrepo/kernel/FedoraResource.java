@@ -20,11 +20,20 @@ import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Dataset;
 import com.hp.hpl.jena.query.DatasetFactory;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.sparql.modify.request.UpdateData;
+import com.hp.hpl.jena.sparql.modify.request.UpdateDataInsert;
+import com.hp.hpl.jena.update.Update;
 import com.hp.hpl.jena.update.UpdateRequest;
 import org.fcrepo.jcr.FedoraJcrTypes;
 import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.HierarchyRdfContextOptions;
 import org.fcrepo.kernel.rdf.JcrRdfTools;
+import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.utils.JcrPropertyStatementListener;
+import org.fcrepo.kernel.utils.SparqlUpdateAnalysis;
 import org.fcrepo.kernel.utils.iterators.DifferencingIterator;
 import org.fcrepo.kernel.utils.iterators.RdfAdder;
 import org.fcrepo.kernel.utils.iterators.RdfRemover;
@@ -234,21 +243,75 @@ public class FedoraResource extends JcrTools implements FedoraJcrTypes {
      * of #getDatasetProblems, which may include problems when attempting to
      * serialize the data to JCR.
      *
+     * Only as much of the properties Dataset as the update needs is built
+     * (see {@link SparqlUpdateAnalysis}): an update made only of INSERT DATA
+     * and DELETE DATA is applied straight to the JCR store, and the Dataset
+     * returned holds only its problems.
+     *
      * @param subjects
      * @param sparqlUpdateStatement
      * @throws RepositoryException
      */
     public Dataset updatePropertiesDataset(final GraphSubjects subjects,
             final String sparqlUpdateStatement) throws RepositoryException {
-        final Dataset dataset = getPropertiesDataset(subjects);
+        final Resource subject = subjects.getGraphSubject(getNode());
         final UpdateRequest request =
-            create(sparqlUpdateStatement, dataset.getContext().getAsString(
-                    URI_SYMBOL));
+            create(sparqlUpdateStatement, subject.toString());
+        final SparqlUpdateAnalysis analysis =
+            new SparqlUpdateAnalysis(request, subject.asNode());
+
+        if (analysis.isDataOnly()) {
+            LOGGER.debug("Applying SPARQL Update data directly to {}", subject);
+            return applyUpdateData(subjects, request);
+        }
+
+        final JcrRdfTools jcrRdfTools =
+            JcrRdfTools.withContext(subjects, getNode().getSession());
+        final RdfStream triples = jcrRdfTools.getJcrTriples(getNode());
+        if (!analysis.isAboutSubjectOnly()) {
+            triples.concat(jcrRdfTools.getTreeTriples(getNode()));
+        }
+        final Dataset dataset =
+            propertiesDataset(subjects, triples.asModel());
         dataset.getDefaultModel().setNsPrefixes(request.getPrefixMapping());
         execute(request, dataset);
         return dataset;
     }
 
+    /**
+     * Apply the INSERT DATA and DELETE DATA operations of an update to the JCR
+     * store, in order, without building a graph to run them against
+     *
+     * @param subjects
+     * @param request
+     * @return a Dataset holding any problems found
+     * @throws RepositoryException
+     */
+    private Dataset applyUpdateData(final GraphSubjects subjects,
+        final UpdateRequest request) throws RepositoryException {
+        final Dataset dataset =
+            propertiesDataset(subjects, createDefaultModel());
+        final JcrPropertyStatementListener listener =
+            JcrPropertyStatementListener.getListener(subjects, getNode()
+                    .getSession(), dataset.getNamedModel(PROBLEMS_MODEL_NAME));
+        // statements carry the update's prefixes to the listener
+        final Model statements =
+            createDefaultModel().setNsPrefixes(request.getPrefixMapping());
+
+        for (final Update update : request.getOperations()) {
+            final boolean insert = update instanceof UpdateDataInsert;
+            for (final Quad q : ((UpdateData) update).getQuads()) {
+                final Statement s = statements.asStatement(q.asTriple());
+                if (insert) {
+                    listener.addedStatement(s);
+                } else {
+                    listener.removedStatement(s);
+                }
+            }
+        }
+        return dataset;
+    }
+
     /**
      * Return the JCR properties of this object as a Jena {@link Dataset}
      *
@@ -270,7 +333,23 @@ public class FedoraResource extends JcrTools implements FedoraJcrTypes {
 
         propertiesStream.concat(jcrRdfTools.getTreeTriples(getNode()));
 
-        final Dataset dataset = DatasetFactory.create(propertiesStream.limit(limit).skip(offset).asModel());
+        return propertiesDataset(graphSubjects, propertiesStream.limit(limit)
+                .skip(offset).asModel());
+    }
+
+    /**
+     * Wrap a model of this object's properties in a Dataset whose changes are
+     * serialized to the JCR store
+     *
+     * @param graphSubjects
+     * @param model
+     * @return
+     * @throws RepositoryException
+     */
+    private Dataset propertiesDataset(final GraphSubjects graphSubjects,
+        final Model model) throws RepositoryException {
+
+        final Dataset dataset = DatasetFactory.create(model);
 
         final Model problemsModel = createDefaultModel();
 
@@ -285,8 +364,6 @@ public class FedoraResource extends JcrTools implements FedoraJcrTypes {
         dataset.getContext().set(URI_SYMBOL,
                 graphSubjects.getGraphSubject(getNode()));
 
-
-
         return dataset;
     }
 
@@ -307,9 +384,25 @@ public class FedoraResource extends JcrTools implements FedoraJcrTypes {
      */
     public RdfStream getTriples(final GraphSubjects graphSubjects)
         throws RepositoryException {
+        return getTriples(graphSubjects, null);
+    }
+
+    /**
+     * Return the JCR properties of this object as an {@link RdfStream},
+     * including where its content is stored if a low-level storage service
+     * is given
+     * @param graphSubjects
+     * @param lowLevelStorageService or null to leave out storage locations
+     * @return
+     * @throws RepositoryException
+     */
+    public RdfStream getTriples(final GraphSubjects graphSubjects,
+        final LowLevelStorageService lowLevelStorageService)
+        throws RepositoryException {
 
         final JcrRdfTools jcrRdfTools =
-                JcrRdfTools.withContext(graphSubjects, getNode().getSession());
+                JcrRdfTools.withContext(graphSubjects, getNode().getSession(),
+                        lowLevelStorageService);
 
         return jcrRdfTools.getJcrTriples(getNode());
     }
@@ -328,6 +421,42 @@ public class FedoraResource extends JcrTools implements FedoraJcrTypes {
         return jcrRdfTools.getTreeTriples(getNode());
     }
 
+    /**
+     * Return the JCR hierarchy around this object, describing only the page
+     * of children selected by the given options
+     * @param graphSubjects
+     * @param options
+     * @return
+     * @throws RepositoryException
+     */
+    public RdfStream getHierarchyTriples(final GraphSubjects graphSubjects,
+        final HierarchyRdfContextOptions options)
+        throws RepositoryException {
+        return getHierarchyTriples(graphSubjects, options, null);
+    }
+
+    /**
+     * Return the JCR hierarchy around this object, describing only the page
+     * of children selected by the given options, and including where their
+     * content is stored if a low-level storage service is given
+     * @param graphSubjects
+     * @param options
+     * @param lowLevelStorageService or null to leave out storage locations
+     * @return
+     * @throws RepositoryException
+     */
+    public RdfStream getHierarchyTriples(final GraphSubjects graphSubjects,
+        final HierarchyRdfContextOptions options,
+        final LowLevelStorageService lowLevelStorageService)
+        throws RepositoryException {
+
+        final JcrRdfTools jcrRdfTools =
+                JcrRdfTools.withContext(graphSubjects, getNode().getSession(),
+                        lowLevelStorageService);
+
+        return jcrRdfTools.getTreeTriples(getNode(), options);
+    }
+
     /**
      * Serialize the JCR versions information as an RDF dataset
      * @param subjects
@@ -16,13 +16,13 @@
 
 package org.fcrepo.kernel;
 
+import static java.lang.Long.getLong;
 import static java.lang.System.currentTimeMillis;
 import static java.util.UUID.randomUUID;
 import static org.fcrepo.kernel.Transaction.State.COMMITED;
 import static org.fcrepo.kernel.Transaction.State.DIRTY;
 import static org.fcrepo.kernel.Transaction.State.ROLLED_BACK;
 
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Set;
@@ -54,7 +54,16 @@ public class Transaction {
 
     private final Date created;
 
-    private Calendar expires;
+    /**
+     * How long this transaction lives without activity, read once when it is
+     * created
+     */
+    private final long timeout;
+
+    /**
+     * When this transaction expires, in milliseconds since the epoch
+     */
+    private volatile long expires;
 
     private State state = State.NEW;
 
@@ -69,7 +78,7 @@ public class Transaction {
         this.session = session;
         this.created = new Date();
         this.id = randomUUID().toString();
-        this.expires = Calendar.getInstance();
+        this.timeout = getLong(TIMEOUT_SYSTEM_PROPERTY, DEFAULT_TIMEOUT);
         this.updateExpiryDate();
     }
 
@@ -116,7 +125,7 @@ public class Transaction {
      * @return
      */
     public Date getExpires() {
-        return expires.getTime();
+        return new Date(expires);
     }
 
     /**
@@ -132,25 +141,57 @@ public class Transaction {
     }
 
     /**
-     * "Commit" the transaction by saving the backing-session
+     * "Commit" the transaction by saving the backing-session, then make its
+     * version checkpoints
      * @throws RepositoryException
      */
     public void commit() throws RepositoryException {
+        commit(true);
+    }
+
+    /**
+     * "Commit" the transaction by saving the backing-session
+     * @param makeCheckpoints whether to make its version checkpoints now; if
+     *        not, it's up to the caller to make those in
+     *        {@link #getVersionedPaths()}
+     * @throws RepositoryException
+     */
+    public void commit(final boolean makeCheckpoints)
+        throws RepositoryException {
         this.session.save();
-        for (String path : versionedPaths) {
-            session.getWorkspace().getVersionManager().checkpoint(path);
+        if (makeCheckpoints) {
+            for (String path : versionedPaths) {
+                session.getWorkspace().getVersionManager().checkpoint(path);
+            }
         }
         this.state = COMMITED;
         this.expire();
     }
 
+    /**
+     * Get the paths at which new versions should be made once this
+     * transaction is committed
+     * @return
+     */
+    public Set<String> getVersionedPaths() {
+        return Collections.unmodifiableSet(versionedPaths);
+    }
+
+    /**
+     * Get the name of the workspace this transaction's changes are made in
+     * @return
+     */
+    public String getWorkspaceName() {
+        return session.getWorkspace().getName();
+    }
+
     /**
      * End the session, and mark for reaping
      * @throws RepositoryException
      */
     public void expire() throws RepositoryException {
         this.session.logout();
-        this.expires.setTimeInMillis(currentTimeMillis());
+        this.expires = currentTimeMillis();
     }
 
     /**
@@ -167,13 +208,6 @@ public class Transaction {
      * Roll forward the expiration date for recent activity
      */
     public void updateExpiryDate() {
-        long duration;
-        if (System.getProperty(TIMEOUT_SYSTEM_PROPERTY) != null) {
-            duration =
-                    Long.parseLong(System.getProperty(TIMEOUT_SYSTEM_PROPERTY));
-        } else {
-            duration = DEFAULT_TIMEOUT;
-        }
-        this.expires.setTimeInMillis(currentTimeMillis() + duration);
+        this.expires = currentTimeMillis() + timeout;
     }
 }
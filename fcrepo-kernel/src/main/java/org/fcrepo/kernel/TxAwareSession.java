@@ -16,23 +16,41 @@
 
 package org.fcrepo.kernel;
 
-import static java.lang.reflect.Proxy.newProxyInstance;
-
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.AccessControlException;
 
+import javax.jcr.Credentials;
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+import javax.jcr.Workspace;
+import javax.jcr.retention.RetentionManager;
+import javax.jcr.security.AccessControlManager;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
- * A dynamic proxy that wraps JCR sessions. It is aware of fcrepo transactions,
- * and turns mutating methods (e.g. logout, session) into no-ops. Those no-op'ed
- * methods should be called from the Transaction level instead.
+ * A JCR session that is aware of fcrepo transactions. It delegates to the
+ * transaction's session, but turns mutating methods (e.g. logout, save) into
+ * no-ops. Those no-op'ed methods should be called from the Transaction level
+ * instead.
+ *
+ * This used to be a dynamic proxy, but a transaction's session is used for
+ * every call a request makes inside it, so plain delegation is worth the
+ * boilerplate.
  */
-public class TxAwareSession implements InvocationHandler {
+public class TxAwareSession implements TxSession {
 
     private final String txId;
 
-    private Session session;
+    private final Session session;
 
     /**
      * @param session a JCR session
@@ -44,30 +62,262 @@ public class TxAwareSession implements InvocationHandler {
     }
 
     /**
-     * Wrap a JCR session with this dynamic proxy
+     * Wrap a JCR session to make it transaction-aware
      *
      * @param session a JCR session
      * @param txId the transaction identifier
      * @return a wrapped JCR session
      */
     public static Session newInstance(final Session session, final String txId) {
-        return (Session) newProxyInstance(session.getClass().getClassLoader(),
-                new Class[] {TxSession.class},
-                new TxAwareSession(session, txId));
-    }
-
-    @Override
-    public Object invoke(final Object proxy, final Method method,
-        final Object[] args) throws ReflectiveOperationException {
-        if (method.getName().equals("logout") ||
-                method.getName().equals("save")) {
-            return null;
-        } else if (method.getName().equals("getTxId")) {
-            return txId;
-        } else if (method.getName().equals("impersonate")) {
-            return newInstance((Session) method.invoke(session, args), txId);
-        } else {
-            return method.invoke(session, args);
-        }
+        return new TxAwareSession(session, txId);
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    /**
+     * A no-op: the transaction logs its session out when it ends
+     */
+    @Override
+    public void logout() {
+        // no-op
+    }
+
+    /**
+     * A no-op: the transaction saves its session when it is committed
+     */
+    @Override
+    public void save() {
+        // no-op
+    }
+
+    @Override
+    public Session impersonate(final Credentials credentials)
+        throws RepositoryException {
+        return newInstance(session.impersonate(credentials), txId);
+    }
+
+    @Override
+    public Repository getRepository() {
+        return session.getRepository();
+    }
+
+    @Override
+    public String getUserID() {
+        return session.getUserID();
+    }
+
+    @Override
+    public String[] getAttributeNames() {
+        return session.getAttributeNames();
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+        return session.getAttribute(name);
+    }
+
+    @Override
+    public Workspace getWorkspace() {
+        return session.getWorkspace();
+    }
+
+    @Override
+    public Node getRootNode() throws RepositoryException {
+        return session.getRootNode();
+    }
+
+    @Override
+    @Deprecated
+    public Node getNodeByUUID(final String uuid) throws RepositoryException {
+        return session.getNodeByUUID(uuid);
+    }
+
+    @Override
+    public Node getNodeByIdentifier(final String id)
+        throws RepositoryException {
+        return session.getNodeByIdentifier(id);
+    }
+
+    @Override
+    public Item getItem(final String absPath) throws RepositoryException {
+        return session.getItem(absPath);
+    }
+
+    @Override
+    public Node getNode(final String absPath) throws RepositoryException {
+        return session.getNode(absPath);
+    }
+
+    @Override
+    public Property getProperty(final String absPath)
+        throws RepositoryException {
+        return session.getProperty(absPath);
+    }
+
+    @Override
+    public boolean itemExists(final String absPath) throws RepositoryException {
+        return session.itemExists(absPath);
+    }
+
+    @Override
+    public boolean nodeExists(final String absPath) throws RepositoryException {
+        return session.nodeExists(absPath);
+    }
+
+    @Override
+    public boolean propertyExists(final String absPath)
+        throws RepositoryException {
+        return session.propertyExists(absPath);
+    }
+
+    @Override
+    public void move(final String srcAbsPath, final String destAbsPath)
+        throws RepositoryException {
+        session.move(srcAbsPath, destAbsPath);
+    }
+
+    @Override
+    public void removeItem(final String absPath) throws RepositoryException {
+        session.removeItem(absPath);
+    }
+
+    @Override
+    public void refresh(final boolean keepChanges) throws RepositoryException {
+        session.refresh(keepChanges);
+    }
+
+    @Override
+    public boolean hasPendingChanges() throws RepositoryException {
+        return session.hasPendingChanges();
+    }
+
+    @Override
+    public ValueFactory getValueFactory() throws RepositoryException {
+        return session.getValueFactory();
+    }
+
+    @Override
+    public boolean hasPermission(final String absPath, final String actions)
+        throws RepositoryException {
+        return session.hasPermission(absPath, actions);
+    }
+
+    @Override
+    public void checkPermission(final String absPath, final String actions)
+        throws AccessControlException, RepositoryException {
+        session.checkPermission(absPath, actions);
+    }
+
+    @Override
+    public boolean hasCapability(final String methodName, final Object target,
+            final Object[] arguments) throws RepositoryException {
+        return session.hasCapability(methodName, target, arguments);
+    }
+
+    @Override
+    public ContentHandler getImportContentHandler(final String parentAbsPath,
+            final int uuidBehavior) throws RepositoryException {
+        return session.getImportContentHandler(parentAbsPath, uuidBehavior);
+    }
+
+    @Override
+    public void importXML(final String parentAbsPath, final InputStream in,
+            final int uuidBehavior) throws IOException, RepositoryException {
+        session.importXML(parentAbsPath, in, uuidBehavior);
+    }
+
+    @Override
+    public void exportSystemView(final String absPath,
+            final ContentHandler contentHandler, final boolean skipBinary,
+            final boolean noRecurse) throws SAXException, RepositoryException {
+        session.exportSystemView(absPath, contentHandler, skipBinary,
+                noRecurse);
+    }
+
+    @Override
+    public void exportSystemView(final String absPath, final OutputStream out,
+            final boolean skipBinary, final boolean noRecurse)
+        throws IOException, RepositoryException {
+        session.exportSystemView(absPath, out, skipBinary, noRecurse);
+    }
+
+    @Override
+    public void exportDocumentView(final String absPath,
+            final ContentHandler contentHandler, final boolean skipBinary,
+            final boolean noRecurse) throws SAXException, RepositoryException {
+        session.exportDocumentView(absPath, contentHandler, skipBinary,
+                noRecurse);
+    }
+
+    @Override
+    public void exportDocumentView(final String absPath,
+            final OutputStream out, final boolean skipBinary,
+            final boolean noRecurse) throws IOException, RepositoryException {
+        session.exportDocumentView(absPath, out, skipBinary, noRecurse);
+    }
+
+    @Override
+    public void setNamespacePrefix(final String prefix, final String uri)
+        throws RepositoryException {
+        session.setNamespacePrefix(prefix, uri);
+    }
+
+    @Override
+    public String[] getNamespacePrefixes() throws RepositoryException {
+        return session.getNamespacePrefixes();
+    }
+
+    @Override
+    public String getNamespaceURI(final String prefix)
+        throws RepositoryException {
+        return session.getNamespaceURI(prefix);
+    }
+
+    @Override
+    public String getNamespacePrefix(final String uri)
+        throws RepositoryException {
+        return session.getNamespacePrefix(uri);
+    }
+
+    @Override
+    public boolean isLive() {
+        return session.isLive();
+    }
+
+    @Override
+    @Deprecated
+    public void addLockToken(final String lt) {
+        session.addLockToken(lt);
+    }
+
+    @Override
+    @Deprecated
+    public String[] getLockTokens() {
+        return session.getLockTokens();
+    }
+
+    @Override
+    @Deprecated
+    public void removeLockToken(final String lt) {
+        session.removeLockToken(lt);
+    }
+
+    @Override
+    public AccessControlManager getAccessControlManager()
+        throws RepositoryException {
+        return session.getAccessControlManager();
+    }
+
+    @Override
+    public RetentionManager getRetentionManager() throws RepositoryException {
+        return session.getRetentionManager();
+    }
+
+    @Override
+    public String toString() {
+        return session.toString();
     }
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.exception;
+
+/**
+ * A transaction was not found on this node, but is open on another member of
+ * the cluster
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public class RemoteTransactionException extends TransactionMissingException {
+
+    private static final long serialVersionUID = -3405916734591278143L;
+
+    private final String location;
+
+    /**
+     * @param s the exception message
+     * @param location where the transaction can be found: the base URL of the
+     *        node that owns it, or a URL on that node for the resource
+     *        requested
+     */
+    public RemoteTransactionException(final String s, final String location) {
+        super(s);
+        this.location = location;
+    }
+
+    /**
+     * Where the transaction can be found
+     *
+     * @return
+     */
+    public String getLocation() {
+        return location;
+    }
+}
@@ -16,6 +16,11 @@
 package org.fcrepo.kernel.observer;
 
 import static com.google.common.base.Throwables.propagate;
+import static javax.jcr.Property.JCR_MIXIN_TYPES;
+import static javax.jcr.Property.JCR_PRIMARY_TYPE;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isFedoraDatastream;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isFedoraObject;
 
@@ -31,10 +36,17 @@ import javax.jcr.observation.Event;
 
 import org.modeshape.jcr.api.Repository;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * EventFilter that passes only events emitted from nodes with
  * a Fedora JCR type, or properties attached to them.
  *
+ * Whether a node has a Fedora type is remembered by its identifier (which a
+ * JCR event carries, for property events too), so the repository is only
+ * read the first time a node is seen, or after its types change.
+ *
  * @author eddies
  * @date Feb 7, 2013
  *
@@ -50,6 +62,12 @@ public class DefaultFilter implements EventFilter {
     // the state of the repository
     private Session session;
 
+    /**
+     * Whether each node seen is a Fedora object or datastream, by identifier
+     */
+    private final Cache<String, Boolean> isFedoraNode = CacheBuilder
+            .newBuilder().maximumSize(10000).build();
+
     /**
      * Filter observer events to only include events on a FedoraObject or
      * Datastream, or properties of an FedoraObject or Datastream.
@@ -60,9 +78,24 @@ public class DefaultFilter implements EventFilter {
     @Override
     public boolean apply(final Event event) {
         try {
+            final String id = event.getIdentifier();
+            if (id != null) {
+                if (event.getType() == NODE_REMOVED || changesTypes(event)) {
+                    isFedoraNode.invalidate(id);
+                }
+                final Boolean known = isFedoraNode.getIfPresent(id);
+                if (known != null) {
+                    return known;
+                }
+            }
             final Item item = session.getItem(event.getPath());
             final Node n = item.isNode() ? (Node)item : item.getParent();
-            return isFedoraObject.apply(n) || isFedoraDatastream.apply(n);
+            final boolean result =
+                isFedoraObject.apply(n) || isFedoraDatastream.apply(n);
+            if (id != null) {
+                isFedoraNode.put(id, result);
+            }
+            return result;
         } catch (final PathNotFoundException e) {
             // not a node in the fedora workspace
             return false;
@@ -71,6 +104,17 @@ public class DefaultFilter implements EventFilter {
         }
     }
 
+    private static boolean changesTypes(final Event event)
+        throws RepositoryException {
+        if (event.getType() != PROPERTY_ADDED &&
+                event.getType() != PROPERTY_CHANGED) {
+            return false;
+        }
+        final String path = event.getPath();
+        return path.endsWith("/" + JCR_MIXIN_TYPES) ||
+                path.endsWith("/" + JCR_PRIMARY_TYPE);
+    }
+
     /**
      * Initialize a long-running read-only JCR session
      * to use for filtering events
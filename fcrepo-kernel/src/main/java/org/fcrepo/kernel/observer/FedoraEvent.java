@@ -16,8 +16,11 @@
 package org.fcrepo.kernel.observer;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableSet.copyOf;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
@@ -27,6 +30,10 @@ import javax.jcr.observation.Event;
  * downstream from the repository from relying directly on a JCR
  * interface (Event).
  *
+ * One FedoraEvent stands for all the JCR events about one node that were
+ * observed together: it wraps the first of them, and also carries the types
+ * of all of them and the names of the properties they changed.
+ *
  * @author ajs6f
  * @date Feb 19, 2013
  */
@@ -34,6 +41,10 @@ public class FedoraEvent implements Event {
 
     private Event e;
 
+    private final Set<Integer> types = new HashSet<>();
+
+    private final Set<String> properties = new HashSet<>();
+
     /**
      * Wrap a JCR Event with our FedoraEvent decorators
      * @param e
@@ -41,6 +52,45 @@ public class FedoraEvent implements Event {
     public FedoraEvent(final Event e) {
         checkArgument(e != null, "null cannot support a FedoraEvent!");
         this.e = e;
+        types.add(e.getType());
+    }
+
+    /**
+     * Record another type of event that happened to the same node
+     * @param type
+     * @return this event
+     */
+    public FedoraEvent addType(final int type) {
+        types.add(type);
+        return this;
+    }
+
+    /**
+     * The types of all the events that happened to the node, as an
+     * unmodifiable copy
+     * @return
+     */
+    public Set<Integer> getTypes() {
+        return copyOf(types);
+    }
+
+    /**
+     * Record the name of a property of the node that was changed
+     * @param property
+     * @return this event
+     */
+    public FedoraEvent addProperty(final String property) {
+        properties.add(property);
+        return this;
+    }
+
+    /**
+     * The names of the node's properties that were added, changed or removed,
+     * as an unmodifiable copy
+     * @return
+     */
+    public Set<String> getProperties() {
+        return copyOf(properties);
     }
 
     @Override
@@ -18,6 +18,8 @@ package org.fcrepo.kernel.observer;
 import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.Iterables.filter;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static javax.jcr.observation.Event.NODE_ADDED;
 import static javax.jcr.observation.Event.NODE_MOVED;
 import static javax.jcr.observation.Event.NODE_REMOVED;
@@ -27,14 +29,15 @@ import static javax.jcr.observation.Event.PROPERTY_REMOVED;
 import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import javax.jcr.Item;
-import javax.jcr.Node;
-import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.observation.Event;
@@ -46,6 +49,7 @@ import org.slf4j.Logger;
 
 import com.codahale.metrics.Counter;
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 /**
@@ -70,6 +74,9 @@ public class SimpleObserver implements EventListener {
     static final Integer EVENT_TYPES = NODE_ADDED + NODE_REMOVED + NODE_MOVED +
             PROPERTY_ADDED + PROPERTY_CHANGED + PROPERTY_REMOVED;
 
+    private static final int PROPERTY_EVENTS = PROPERTY_ADDED +
+            PROPERTY_CHANGED + PROPERTY_REMOVED;
+
     @Inject
     private Repository repository;
 
@@ -81,6 +88,13 @@ public class SimpleObserver implements EventListener {
 
     private Session session;
 
+    /**
+     * Posts events to the bus, one batch at a time
+     */
+    private ExecutorService poster = newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+                    "fcrepo-event-poster").build());
+
     /**
      * Register this observer with the JCR event listeners
      * @throws RepositoryException
@@ -94,41 +108,92 @@ public class SimpleObserver implements EventListener {
     }
 
     /**
-     * Filter JCR events and transform them into our own FedoraEvents.
+     * Stop posting events, once the batches already handed to the poster
+     * have reached the bus
+     *
+     * @throws InterruptedException
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        poster.shutdown();
+        if (!poster.awaitTermination(30, SECONDS)) {
+            LOGGER.warn("Still posting events after 30s");
+        }
+    }
+
+    /**
+     * Filter JCR events and transform them into our own FedoraEvents: one
+     * for each node that events happened to, carrying the names of the
+     * properties that changed. Each node is looked up once, and the events
+     * are posted in the background, in order.
      *
      * @param events
      */
     @Override
     public void onEvent(final javax.jcr.observation.EventIterator events) {
-        // keep track of nodes that trigger events to prevent duplicates
-        final Set<Node> posted = new HashSet<Node>();
-
-        // post non-duplicate events approved by the filter
+        // coalesce the events approved by the filter by node
+        final Map<String, FedoraEvent> coalesced =
+            new LinkedHashMap<String, FedoraEvent>();
         for (final Event e : filter(new EventIterator(events), eventFilter)) {
             try {
-                final Item item = session.getItem(e.getPath());
-                Node n = null;
-                if ( item.isNode() ) {
-                    n = (Node)item;
+                final String path = e.getPath();
+                final boolean isProperty = (e.getType() & PROPERTY_EVENTS) != 0;
+                final String nodePath = isProperty ? parentPath(path) : path;
+                FedoraEvent event = coalesced.get(nodePath);
+                if (event == null) {
+                    event = new FedoraEvent(e);
+                    coalesced.put(nodePath, event);
                 } else {
-                    n = item.getParent();
+                    LOGGER.debug("Coalescing: {}", e);
+                    event.addType(e.getType());
                 }
-                if ( n != null && !posted.contains(n) ) {
-                    EVENT_COUNTER.inc();
-                    LOGGER.debug("Putting event: " + e.toString()
-                        + " on the bus.");
-                    eventBus.post(new FedoraEvent(e));
-                    posted.add(n);
+                if (isProperty) {
+                    event.addProperty(propertyName(path));
+                }
+            } catch (final RepositoryException ex) {
+                throw propagate(ex);
+            }
+        }
+
+        // post an event for each node that is still there
+        final List<FedoraEvent> toPost =
+            new ArrayList<FedoraEvent>(coalesced.size());
+        for (final Map.Entry<String, FedoraEvent> e : coalesced.entrySet()) {
+            try {
+                if (session.nodeExists(e.getKey())) {
+                    toPost.add(e.getValue());
                 } else {
-                    LOGGER.debug("Skipping: " + e);
+                    // we can ignore these
+                    LOGGER.trace("Not a node in the Fedora workspace: {}", e
+                            .getKey());
                 }
-            } catch (final PathNotFoundException ex) {
-                // we can ignore these
-                LOGGER.trace("Not a node in the Fedora workspace: " + e);
-            } catch ( RepositoryException ex ) {
+            } catch (final RepositoryException ex) {
                 throw propagate(ex);
             }
         }
+        if (toPost.isEmpty()) {
+            return;
+        }
+        poster.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                for (final FedoraEvent e : toPost) {
+                    EVENT_COUNTER.inc();
+                    LOGGER.debug("Putting event: {} on the bus.", e);
+                    eventBus.post(e);
+                }
+            }
+        });
+    }
+
+    private static String parentPath(final String path) {
+        final int slash = path.lastIndexOf('/');
+        return slash > 0 ? path.substring(0, slash) : "/";
+    }
+
+    private static String propertyName(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
     }
 
 }
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.rdf;
+
+import javax.jcr.Session;
+
+import org.fcrepo.kernel.rdf.impl.HierarchyRdfContext;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Controls which of a node's children a {@link HierarchyRdfContext} describes,
+ * and how much it says about each of them.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public class HierarchyRdfContextOptions {
+
+    /**
+     * Describe every child, with all of its properties
+     */
+    public static final HierarchyRdfContextOptions DEFAULT =
+            new HierarchyRdfContextOptions(0, -1, false, null, null);
+
+    private final int offset;
+
+    private final int limit;
+
+    private final boolean membershipOnly;
+
+    private final String continuation;
+
+    private final Function<String, Node> nextPage;
+
+    private final Supplier<Session> workerSessions;
+
+    private final Function<Session, GraphSubjects> workerSubjects;
+
+    /**
+     * @param offset the number of children to skip, counted as the limit
+     *        is (so not counting e.g. jcr:content); ignored when resuming
+     *        from a continuation token
+     * @param limit the maximum number of children to describe, or -1 for all
+     *        of them
+     * @param membershipOnly if true, only list the children, without their
+     *        properties
+     * @param continuation a token from a previous page to resume after, or
+     *        null
+     * @param nextPage builds the URI of the page that resumes from a given
+     *        continuation token, or null to leave out next-page links
+     */
+    public HierarchyRdfContextOptions(final int offset, final int limit,
+            final boolean membershipOnly, final String continuation,
+            final Function<String, Node> nextPage) {
+        this(offset, limit, membershipOnly, continuation, nextPage, null,
+                null);
+    }
+
+    /**
+     * @param offset the number of children to skip, counted as the limit
+     *        is (so not counting e.g. jcr:content); ignored when resuming
+     *        from a continuation token
+     * @param limit the maximum number of children to describe, or -1 for all
+     *        of them
+     * @param membershipOnly if true, only list the children, without their
+     *        properties
+     * @param continuation a token from a previous page to resume after, or
+     *        null
+     * @param nextPage builds the URI of the page that resumes from a given
+     *        continuation token, or null to leave out next-page links
+     * @param workerSessions if not null, children are described in parallel,
+     *        in sessions from here: one for each worker thread, logged out
+     *        once the page's children have been described or the context is
+     *        closed, whichever comes first. These sessions
+     *        must see the same content as the node's own session, so this is
+     *        no good for nodes with unsaved changes or in a transaction.
+     * @param workerSubjects the subjects a worker translates nodes into,
+     *        given its session; required along with workerSessions
+     */
+    public HierarchyRdfContextOptions(final int offset, final int limit,
+            final boolean membershipOnly, final String continuation,
+            final Function<String, Node> nextPage,
+            final Supplier<Session> workerSessions,
+            final Function<Session, GraphSubjects> workerSubjects) {
+        this.offset = offset;
+        this.limit = limit;
+        this.membershipOnly = membershipOnly;
+        this.continuation = continuation;
+        this.nextPage = nextPage;
+        this.workerSessions = workerSessions;
+        this.workerSubjects = workerSubjects;
+    }
+
+    /**
+     * @return the number of children to skip
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the maximum number of children to describe, or -1 for all
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return whether to leave out the children's properties
+     */
+    public boolean isMembershipOnly() {
+        return membershipOnly;
+    }
+
+    /**
+     * @return the continuation token to resume after, or null
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * @return the next-page URI builder, or null
+     */
+    public Function<String, Node> getNextPage() {
+        return nextPage;
+    }
+
+    /**
+     * @return where to get sessions for describing children in parallel, or
+     *         null to describe them one after another
+     */
+    public Supplier<Session> getWorkerSessions() {
+        return workerSessions;
+    }
+
+    /**
+     * @return the subjects each worker translates nodes into, bound to its
+     *         own session, or null
+     */
+    public Function<Session, GraphSubjects> getWorkerSubjects() {
+        return workerSubjects;
+    }
+
+}
@@ -55,6 +55,7 @@ import org.fcrepo.kernel.rdf.impl.WorkspaceRdfContext;
 import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.services.functions.GetClusterConfiguration;
 import org.fcrepo.kernel.utils.FixityResult;
+import org.fcrepo.kernel.utils.JcrNamespaceSnapshot;
 import org.fcrepo.kernel.utils.iterators.RdfStream;
 import org.modeshape.jcr.api.NamespaceRegistry;
 import org.slf4j.Logger;
@@ -322,6 +323,20 @@ public class JcrRdfTools {
         return new HierarchyRdfContext(node, graphSubjects, llstore);
     }
 
+    /**
+     * As {@link #getTreeTriples(Node)}, but only describing the page of
+     * children selected by the given options
+     *
+     * @param node
+     * @param options
+     * @return
+     * @throws RepositoryException
+     */
+    public RdfStream getTreeTriples(final Node node,
+            final HierarchyRdfContextOptions options) throws RepositoryException {
+        return new HierarchyRdfContext(node, graphSubjects, llstore, options);
+    }
+
     /**
      * Decides whether the RDF representation of this {@link Node} will receive LDP Container status.
      *
@@ -541,6 +556,15 @@ public class JcrRdfTools {
     public String getPropertyNameFromPredicate(final NamespaceRegistry namespaceRegistry, final com.hp.hpl.jena.rdf.model.Property predicate,
         final Map<String, String> namespaceMapping) throws RepositoryException {
 
+        final boolean rememberable = predicate.isURIResource();
+        if (rememberable) {
+            final String remembered =
+                JcrNamespaceSnapshot.getPropertyName(predicate.getURI());
+            if (remembered != null) {
+                return remembered;
+            }
+        }
+
         final String prefix;
 
         final String namespace =
@@ -553,16 +577,16 @@ public class JcrRdfTools {
             prefix = namespaceRegistry.getPrefix(namespace);
         } else {
             LOGGER.debug("Didn't discover namespace: {} in namespace registry.",namespace);
-            final ImmutableBiMap<String, String> nsMap =
-                ImmutableBiMap.copyOf(namespaceMapping);
-            if (nsMap.containsValue(namespace)) {
+            final String mappedPrefix = prefixFor(namespace, namespaceMapping);
+            if (mappedPrefix != null) {
                 LOGGER.debug("Discovered namespace: {} in namespace map: {}.",
-                        nsMap);
-                prefix = nsMap.inverse().get(namespace);
+                        namespace, namespaceMapping);
+                prefix = mappedPrefix;
                 namespaceRegistry.registerNamespace(prefix, namespace);
             } else {
                 prefix = namespaceRegistry.registerNamespace(namespace);
             }
+            JcrNamespaceSnapshot.invalidate();
         }
 
         final String localName = predicate.getLocalName();
@@ -572,10 +596,25 @@ public class JcrRdfTools {
         LOGGER.debug("Took RDF predicate {} and translated it to "
                 + "JCR property {}", predicate, propertyName);
 
+        if (rememberable) {
+            JcrNamespaceSnapshot.putPropertyName(predicate.getURI(),
+                    propertyName);
+        }
         return propertyName;
 
     }
 
+    private static String prefixFor(final String namespace,
+        final Map<String, String> namespaceMapping) {
+        for (final Map.Entry<String, String> mapping : namespaceMapping
+                .entrySet()) {
+            if (namespace.equals(mapping.getValue())) {
+                return mapping.getKey();
+            }
+        }
+        return null;
+    }
+
     /**
      * Set the function used to get the cluster configuration for Infinispan
      */
@@ -611,6 +650,24 @@ public class JcrRdfTools {
      * @throws RepositoryException
      */
     public int getPropertyType(final NodeType nodeType, final String propertyName) throws RepositoryException {
+        final String nodeTypeName = nodeType.getName();
+        if (nodeTypeName != null) {
+            final Integer remembered =
+                JcrNamespaceSnapshot.getPropertyType(nodeTypeName, propertyName);
+            if (remembered != null) {
+                return remembered;
+            }
+        }
+        final int type = findPropertyType(nodeType, propertyName);
+        if (nodeTypeName != null) {
+            JcrNamespaceSnapshot.putPropertyType(nodeTypeName, propertyName,
+                    type);
+        }
+        return type;
+    }
+
+    private static int findPropertyType(final NodeType nodeType,
+        final String propertyName) {
         final PropertyDefinition[] propertyDefinitions = nodeType.getPropertyDefinitions();
         int type = UNDEFINED;
         for (final PropertyDefinition propertyDefinition : propertyDefinitions) {
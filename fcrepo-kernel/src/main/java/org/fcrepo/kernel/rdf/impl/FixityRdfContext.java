@@ -30,6 +30,7 @@ import static org.fcrepo.kernel.RdfLexicon.HAS_FIXITY_STATE;
 import static org.fcrepo.kernel.RdfLexicon.HAS_LOCATION;
 import static org.fcrepo.kernel.RdfLexicon.IS_FIXITY_RESULT_OF;
 
+import java.net.URI;
 import java.util.Calendar;
 import java.util.Iterator;
 import javax.jcr.Node;
@@ -92,10 +93,12 @@ public class FixityRdfContext extends NodeRdfContext {
                                         .asNode(), createLiteral(state
                                         .toString())));
                             }
-                            final String checksum =
-                                blob.computedChecksum.toString();
-                            b.add(create(resultSubject, HAS_COMPUTED_CHECKSUM
-                                    .asNode(), createURI(checksum)));
+                            for (final URI checksum : blob
+                                    .getComputedChecksums()) {
+                                b.add(create(resultSubject,
+                                        HAS_COMPUTED_CHECKSUM.asNode(),
+                                        createURI(checksum.toString())));
+                            }
                             b.add(create(resultSubject, HAS_COMPUTED_SIZE
                                     .asNode(), createTypedLiteral(blob.computedSize)
                                     .asNode()));
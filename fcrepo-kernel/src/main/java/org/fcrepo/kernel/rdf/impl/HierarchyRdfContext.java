@@ -16,12 +16,15 @@
 
 package org.fcrepo.kernel.rdf.impl;
 
+import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.base.Throwables.propagate;
+import static com.google.common.io.BaseEncoding.base64Url;
 import static com.hp.hpl.jena.graph.NodeFactory.createLiteral;
 import static com.hp.hpl.jena.graph.Triple.create;
 import static com.hp.hpl.jena.vocabulary.RDF.type;
-import static java.lang.Boolean.TRUE;
+import static java.lang.Integer.getInteger;
+import static java.util.Collections.newSetFromMap;
 import static org.fcrepo.kernel.RdfLexicon.CONTAINER;
 import static org.fcrepo.kernel.RdfLexicon.HAS_CHILD;
 import static org.fcrepo.kernel.RdfLexicon.HAS_PARENT;
@@ -31,17 +34,30 @@ import static org.fcrepo.kernel.RdfLexicon.MEMBERSHIP_PREDICATE;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERSHIP_SUBJECT;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERS_INLINED;
 import static org.fcrepo.kernel.RdfLexicon.MEMBER_SUBJECT;
+import static org.fcrepo.kernel.RdfLexicon.NEXT_PAGE;
 import static org.fcrepo.kernel.RdfLexicon.PAGE;
 import static org.fcrepo.kernel.RdfLexicon.PAGE_OF;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isInternalNode;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.jcr.RepositoryException;
+import javax.jcr.Session;
 
 import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.HierarchyRdfContextOptions;
 import org.fcrepo.kernel.rdf.JcrRdfTools;
 import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.utils.iterators.NodeIterator;
@@ -49,13 +65,23 @@ import org.slf4j.Logger;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 
 /**
  * An {@link RdfContext} that contains information about the JCR hierarchy
- * around a given node.
+ * around a given node. Children may be paged through, either by offset or by
+ * resuming from the opaque continuation token linked from the previous page;
+ * only the children on the requested page are ever described. Children may
+ * also be described in parallel (see
+ * {@link HierarchyRdfContextOptions#getWorkerSessions()}), each worker thread
+ * reading them in a session of its own; their triples still come out in the
+ * same order as they would otherwise.
  *
  * @author ajs6f
  * @date Oct 10, 2013
@@ -64,6 +90,45 @@ public class HierarchyRdfContext extends NodeRdfContext {
 
     private static final Logger LOGGER = getLogger(HierarchyRdfContext.class);
 
+    private static final char TOKEN_SEPARATOR = '/';
+
+    /**
+     * The number of threads describing children in parallel, shared by all
+     * requests (defaults to the number of processors)
+     */
+    public static final String PARALLELISM_PROPERTY = "fcrepo.hierarchy.threads";
+
+    /**
+     * Only created once somebody asks for children to be described in
+     * parallel
+     */
+    private static class WorkerPool {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool(getInteger(
+                PARALLELISM_PROPERTY, Runtime.getRuntime()
+                        .availableProcessors()));
+
+        /**
+         * How many children one page may have in hand at once, so a big page
+         * can't take over the pool or hold all its triples in memory
+         */
+        private static final int WINDOW = 2 * POOL.getParallelism();
+    }
+
+    private final HierarchyRdfContextOptions options;
+
+    /**
+     * The number of children (including ones we don't describe) read from
+     * the node so far
+     */
+    private long position;
+
+    /**
+     * Where the last child described on this page was, and its name
+     */
+    private long lastPosition;
+
+    private String lastName;
 
     /**
      * Default constructor.
@@ -76,8 +141,28 @@ public class HierarchyRdfContext extends NodeRdfContext {
             final GraphSubjects graphSubjects,
             final LowLevelStorageService lowLevelStorageService)
         throws RepositoryException {
+        this(node, graphSubjects, lowLevelStorageService,
+                HierarchyRdfContextOptions.DEFAULT);
+    }
+
+    /**
+     * Describe one page of the node's children
+     *
+     * @param node
+     * @param graphSubjects
+     * @param lowLevelStorageService
+     * @param options which children to describe, and how
+     * @throws RepositoryException
+     * @throws IllegalArgumentException if the continuation token is invalid
+     */
+    public HierarchyRdfContext(final javax.jcr.Node node,
+            final GraphSubjects graphSubjects,
+            final LowLevelStorageService lowLevelStorageService,
+            final HierarchyRdfContextOptions options)
+        throws RepositoryException {
 
         super(node, graphSubjects, lowLevelStorageService);
+        this.options = options;
         if (node.getDepth() > 0) {
             LOGGER.trace("Determined that this node has a parent.");
             concat(parentContext());
@@ -103,7 +188,8 @@ public class HierarchyRdfContext extends NodeRdfContext {
     private Triple[] containerContext(final Node pageContext) {
         return new Triple[] {
                 create(pageContext, MEMBERS_INLINED.asNode(),
-                        createLiteral(TRUE.toString())),
+                        createLiteral(Boolean.toString(!options
+                                .isMembershipOnly()))),
                 create(subject(), type.asNode(), CONTAINER.asNode()),
                 create(subject(), MEMBERSHIP_SUBJECT.asNode(), subject()),
                 create(subject(), MEMBERSHIP_PREDICATE.asNode(), HAS_CHILD
@@ -132,11 +218,374 @@ public class HierarchyRdfContext extends NodeRdfContext {
 
     private Iterator<Triple> childrenContext(final Node pageContext) throws RepositoryException {
 
-        final Iterator<javax.jcr.Node> niceChildren =
-            Iterators.filter(new NodeIterator(node().getNodes()), not(nastyChildren));
+        final javax.jcr.NodeIterator children;
+        if (options.getContinuation() == null) {
+            children = node().getNodes();
+        } else {
+            children = resume(options.getContinuation());
+        }
+
+        final Iterator<javax.jcr.Node> remaining =
+            Iterables.filter(counting(children), not(nastyChildren))
+                    .iterator();
+        if (options.getContinuation() == null && options.getOffset() > 0) {
+            // the offset counts the children that would have been described,
+            // as the limit does, so that pages line up; the ones skipped are
+            // only looked at long enough to tell which they are
+            Iterators.advance(remaining, options.getOffset());
+        }
+        if (options.getLimit() < 0) {
+            return Iterators.concat(describe(remaining, pageContext));
+        }
+        return Iterators.concat(Iterators.concat(describe(Iterators.limit(
+                remaining, options.getLimit()), pageContext)),
+                nextPageContext(pageContext, remaining));
+    }
+
+    private Iterator<Iterator<Triple>> describe(
+            final Iterator<javax.jcr.Node> children, final Node pageContext) {
+        if (options.getWorkerSessions() == null
+                || options.getWorkerSubjects() == null
+                || options.isMembershipOnly()) {
+            return Iterators.transform(children, child2triples(pageContext));
+        }
+        return inParallel(children, pageContext);
+    }
+
+    /**
+     * Describe the children on the worker pool. The workers' sessions are let
+     * go of once the last child is described, as soon as one of them fails,
+     * or when this stream is closed, whichever comes first.
+     */
+    private Iterator<Iterator<Triple>> inParallel(
+            final Iterator<javax.jcr.Node> children, final Node pageContext) {
+        final ParallelChildren described =
+            new ParallelChildren(children, pageContext, new WorkerSessions(
+                    options.getWorkerSessions(), options.getWorkerSubjects()));
+        onClose(new Runnable() {
+
+            @Override
+            public void run() {
+                described.abandon();
+            }
+        });
+        return described;
+    }
+
+    /**
+     * Keeps up to a window's worth of children in progress on the worker
+     * pool, ahead of the consumer, and hands their triples back in the order
+     * the children were read
+     */
+    private class ParallelChildren extends AbstractIterator<Iterator<Triple>> {
+
+        private final Iterator<javax.jcr.Node> children;
+
+        private final Node pageContext;
+
+        private final WorkerSessions workerSessions;
+
+        private final Deque<Future<Iterator<Triple>>> inProgress =
+            new ArrayDeque<>(WorkerPool.WINDOW);
+
+        ParallelChildren(final Iterator<javax.jcr.Node> children,
+                final Node pageContext, final WorkerSessions workerSessions) {
+            this.children = children;
+            this.pageContext = pageContext;
+            this.workerSessions = workerSessions;
+        }
+
+        @Override
+        protected Iterator<Triple> computeNext() {
+            while (inProgress.size() < WorkerPool.WINDOW && children.hasNext()) {
+                inProgress.add(WorkerPool.POOL.submit(describeChild(children
+                        .next(), pageContext, workerSessions)));
+            }
+            if (inProgress.isEmpty()) {
+                workerSessions.logout();
+                return endOfData();
+            }
+            try {
+                return inProgress.remove().get();
+            } catch (final InterruptedException e) {
+                abandon();
+                Thread.currentThread().interrupt();
+                throw propagate(e);
+            } catch (final ExecutionException e) {
+                abandon();
+                throw propagate(e.getCause());
+            }
+        }
+
+        /**
+         * Stop describing children. Those already being read are left to
+         * finish (interrupting a JCR read can do more harm than waiting for
+         * it), and their sessions are logged out as they do.
+         */
+        void abandon() {
+            for (final Future<Iterator<Triple>> child : inProgress) {
+                child.cancel(false);
+            }
+            inProgress.clear();
+            workerSessions.logout();
+        }
+    }
+
+    /**
+     * Describe a child in its worker's session. Membership triples are worked
+     * out here, on the request's thread, along with where the page has got
+     * to; only the child's properties are read by the worker.
+     */
+    private Callable<Iterator<Triple>> describeChild(
+            final javax.jcr.Node child, final Node pageContext,
+            final WorkerSessions workerSessions) {
+        final Triple[] membership;
+        final String childPath;
+        try {
+            lastPosition = position;
+            lastName = child.getName();
+            childPath = child.getPath();
+            membership =
+                membershipTriples(child, pageContext, graphSubjects());
+        } catch (final RepositoryException e) {
+            throw propagate(e);
+        }
+        return new Callable<Iterator<Triple>>() {
+
+            @Override
+            public Iterator<Triple> call() throws RepositoryException {
+                try {
+                    final Worker worker = workerSessions.get();
+                    LOGGER.trace("Creating triples for child node {} in {}",
+                            childPath, worker.session);
+                    final ImmutableList<Triple> properties =
+                        ImmutableList.copyOf(new PropertiesRdfContext(
+                                worker.session.getNode(childPath),
+                                worker.subjects, lowLevelStorageService()));
+                    return Iterators.concat(Iterators.forArray(membership),
+                            properties.iterator());
+                } finally {
+                    workerSessions.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * A worker thread's session, and the subjects it translates nodes into
+     * in that session
+     */
+    private static class Worker {
+
+        private final Session session;
+
+        private final GraphSubjects subjects;
+
+        Worker(final Session session, final GraphSubjects subjects) {
+            this.session = session;
+            this.subjects = subjects;
+        }
+    }
+
+    /**
+     * The sessions one page's children are read in: one for each worker
+     * thread that picks up a child, kept until the page is done. Logging in
+     * (and building up the session's namespace snapshot and subject
+     * translations) then happens once per worker, not once per child. A
+     * session still in use when the page is done is logged out as soon as
+     * its worker lets go of it.
+     */
+    private static class WorkerSessions {
+
+        private final Supplier<Session> sessions;
+
+        private final Function<Session, GraphSubjects> subjects;
+
+        private final ConcurrentMap<Thread, Worker> workers =
+            new ConcurrentHashMap<>();
+
+        private final Set<Thread> busy = newSetFromMap(
+                new ConcurrentHashMap<Thread, Boolean>());
+
+        private volatile boolean loggedOut = false;
+
+        WorkerSessions(final Supplier<Session> sessions,
+                final Function<Session, GraphSubjects> subjects) {
+            this.sessions = sessions;
+            this.subjects = subjects;
+        }
+
+        /**
+         * @return the calling worker thread's session; the thread must
+         *         {@link #release()} it once it is done, whether or not this
+         *         succeeded
+         */
+        Worker get() {
+            final Thread thread = Thread.currentThread();
+            busy.add(thread);
+            if (loggedOut) {
+                throw new IllegalStateException(
+                        "Children of this page are no longer being described");
+            }
+            final Worker existing = workers.get(thread);
+            if (existing != null) {
+                return existing;
+            }
+            final Session session = sessions.get();
+            final Worker worker;
+            try {
+                worker = new Worker(session, subjects.apply(session));
+            } catch (final RuntimeException e) {
+                session.logout();
+                throw e;
+            }
+            workers.put(thread, worker);
+            return worker;
+        }
+
+        /**
+         * The calling worker thread is done with its session for now
+         */
+        void release() {
+            final Thread thread = Thread.currentThread();
+            busy.remove(thread);
+            if (loggedOut) {
+                logout(thread);
+            }
+        }
+
+        void logout() {
+            loggedOut = true;
+            for (final Thread thread : workers.keySet()) {
+                if (!busy.contains(thread)) {
+                    logout(thread);
+                }
+            }
+        }
 
-        return Iterators.concat(
-                Iterators.transform(niceChildren, child2triples(pageContext)));
+        private void logout(final Thread thread) {
+            final Worker worker = workers.remove(thread);
+            if (worker != null) {
+                worker.session.logout();
+            }
+        }
+    }
+
+    /**
+     * Counts the children read from the node as they go by, so we know where
+     * the page ended
+     */
+    private Iterable<javax.jcr.Node> counting(
+            final javax.jcr.NodeIterator children) {
+        return Iterables.transform(new NodeIterator(children),
+                new Function<javax.jcr.Node, javax.jcr.Node>() {
+
+                    @Override
+                    public javax.jcr.Node apply(final javax.jcr.Node child) {
+                        position++;
+                        return child;
+                    }
+                });
+    }
+
+    /**
+     * Position an iterator over the node's children just after the last child
+     * described by a previous page. If the children have changed since, we
+     * fall back to looking for that child by name, and then to the position
+     * it used to have.
+     *
+     * @param token
+     * @return
+     * @throws RepositoryException
+     */
+    private javax.jcr.NodeIterator resume(final String token)
+        throws RepositoryException {
+        final String decoded;
+        try {
+            decoded = new String(base64Url().decode(token), UTF_8);
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " +
+                    token, e);
+        }
+        final int separator = decoded.indexOf(TOKEN_SEPARATOR);
+        long resumeAt = 0;
+        if (separator > 0) {
+            try {
+                resumeAt = Long.parseLong(decoded.substring(0, separator));
+            } catch (final NumberFormatException e) {
+                LOGGER.trace("Bad position in continuation token", e);
+            }
+        }
+        if (resumeAt < 1) {
+            throw new IllegalArgumentException("Invalid continuation token: " +
+                    token);
+        }
+        final String name = decoded.substring(separator + 1);
+
+        final javax.jcr.NodeIterator children = node().getNodes();
+        try {
+            children.skip(resumeAt - 1);
+            if (children.hasNext() && children.nextNode().getName().equals(name)) {
+                position = resumeAt;
+                return children;
+            }
+        } catch (final NoSuchElementException e) {
+            LOGGER.trace("Fewer than {} children remain", resumeAt);
+        }
+
+        LOGGER.debug("Children of {} changed since continuation token was issued;"
+                + " looking for {}", node(), name);
+        final javax.jcr.NodeIterator rescan = node().getNodes();
+        for (position = 0; rescan.hasNext();) {
+            position++;
+            if (rescan.nextNode().getName().equals(name)) {
+                return rescan;
+            }
+        }
+
+        final javax.jcr.NodeIterator fallback = node().getNodes();
+        for (position = 0; position < resumeAt && fallback.hasNext(); position++) {
+            fallback.nextNode();
+        }
+        return fallback;
+    }
+
+    /**
+     * Link to the next page, if there is one. This is only worked out once the
+     * children on this page have been described.
+     */
+    private Iterator<Triple> nextPageContext(final Node pageContext,
+            final Iterator<javax.jcr.Node> remaining) {
+        if (options.getNextPage() == null) {
+            return Iterators.emptyIterator();
+        }
+        return new AbstractIterator<Triple>() {
+
+            private boolean done = false;
+
+            @Override
+            protected Triple computeNext() {
+                if (done || lastName == null || !remaining.hasNext()) {
+                    return endOfData();
+                }
+                done = true;
+                return create(pageContext, NEXT_PAGE.asNode(), options
+                        .getNextPage().apply(
+                                continuationToken(lastPosition, lastName)));
+            }
+        };
+    }
+
+    /**
+     * @param position the number of children up to and including the last
+     *        one described
+     * @param name the name of the last child described
+     * @return an opaque token for resuming after that child
+     */
+    static String continuationToken(final long position, final String name) {
+        return base64Url().encode(
+                (Long.toString(position) + TOKEN_SEPARATOR + name)
+                        .getBytes(UTF_8));
     }
 
     private Function<javax.jcr.Node, Iterator<Triple>> child2triples(
@@ -146,17 +595,22 @@ public class HierarchyRdfContext extends NodeRdfContext {
             @Override
             public Iterator<Triple> apply(final javax.jcr.Node child) {
                 try {
-                    final Node childSubject =
-                        graphSubjects().getGraphSubject(child).asNode();
+                    lastPosition = position;
+                    lastName = child.getName();
+                    if (options.isMembershipOnly()) {
+                        LOGGER.trace("Listing child node: {}", child);
+                        final Node childSubject =
+                            graphSubjects().getGraphSubject(child).asNode();
+                        return Iterators.forArray(new Triple[] {
+                                create(childSubject, HAS_PARENT.asNode(),
+                                        subject()),
+                                create(subject(), HAS_CHILD.asNode(),
+                                        childSubject)});
+                    }
                     LOGGER.trace("Creating triples for child node: {}", child);
                     return new PropertiesRdfContext(child, graphSubjects(),
-                        lowLevelStorageService()).concat(new Triple[] {
-                            create(pageContext, INLINED_RESOURCE.asNode(),
-                                    childSubject),
-                            create(childSubject, HAS_PARENT.asNode(),
-                                    subject()),
-                            create(subject(), HAS_CHILD.asNode(),
-                                    childSubject)});
+                        lowLevelStorageService()).concat(membershipTriples(
+                            child, pageContext, graphSubjects()));
                 } catch (final RepositoryException e) {
                     throw propagate(e);
                 }
@@ -164,6 +618,16 @@ public class HierarchyRdfContext extends NodeRdfContext {
         };
     }
 
+    private Triple[] membershipTriples(final javax.jcr.Node child,
+            final Node pageContext, final GraphSubjects subjects)
+        throws RepositoryException {
+        final Node childSubject = subjects.getGraphSubject(child).asNode();
+        return new Triple[] {
+                create(pageContext, INLINED_RESOURCE.asNode(), childSubject),
+                create(childSubject, HAS_PARENT.asNode(), subject()),
+                create(subject(), HAS_CHILD.asNode(), childSubject)};
+    }
+
     /**
      * Children for whom we will not generate triples.
      */
@@ -21,7 +21,7 @@ import static com.google.common.collect.Iterators.forArray;
 import static com.hp.hpl.jena.graph.NodeFactory.createURI;
 import static com.hp.hpl.jena.graph.Triple.create;
 import static com.hp.hpl.jena.vocabulary.RDF.type;
-import static org.fcrepo.kernel.rdf.JcrRdfTools.getRDFNamespaceForJcrNamespace;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getRdfUri;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Iterator;
@@ -62,6 +62,8 @@ public class NodeRdfContext extends RdfStream {
      *
      * @param node
      * @param graphSubjects
+     * @param lowLevelStorageService where to find out where binaries are
+     *        stored, or null to leave storage locations out
      * @throws RepositoryException
      */
     public NodeRdfContext(final Node node, final GraphSubjects graphSubjects,
@@ -72,20 +74,7 @@ public class NodeRdfContext extends RdfStream {
         this.graphSubjects = graphSubjects;
         this.subject = graphSubjects.getGraphSubject(node).asNode();
 
-        // TODO fix GraphProperties to allow for LowLevelStorageServices to pass
-        // through it
-        // this is horribly ugly. LowLevelStorageServices are supposed to be
-        // managed beans.
-        // but the contract of GraphProperties isn't wide enough to pass one in,
-        // so rather than
-        // alter GraphProperties right now, I'm just spinning one on the fly.
-        if (lowLevelStorageService == null) {
-            this.lowLevelStorageService = new LowLevelStorageService();
-            this.lowLevelStorageService.setRepository(node.getSession()
-                    .getRepository());
-        } else {
-            this.lowLevelStorageService = lowLevelStorageService;
-        }
+        this.lowLevelStorageService = lowLevelStorageService;
 
         // add JCR mixins as rdf:type triples
         final Iterator<NodeType> nodeTypes = forArray(node.getMixinNodeTypes());
@@ -114,7 +103,8 @@ public class NodeRdfContext extends RdfStream {
     }
 
     /**
-     * @return the {@link LowLevelStorageService} in scope
+     * @return the {@link LowLevelStorageService} in scope, or null if storage
+     *         locations aren't to be described
      */
     public LowLevelStorageService lowLevelStorageService() {
         return lowLevelStorageService;
@@ -128,13 +118,9 @@ public class NodeRdfContext extends RdfStream {
                 try {
                     final String fullTypeName = nodeType.getName();
                     LOGGER.trace("Translating JCR mixin name: {}", fullTypeName);
-                    final String prefix = fullTypeName.split(":")[0];
-                    final String typeName = fullTypeName.split(":")[1];
-                    final String namespace = getJcrUri(prefix);
-                    LOGGER.trace("with JCR namespace: {}", namespace);
                     final com.hp.hpl.jena.graph.Node rdfType =
-                        createURI(getRDFNamespaceForJcrNamespace(namespace)
-                                + typeName);
+                        createURI(getRdfUri(node().getSession(),
+                                fullTypeName));
                     LOGGER.trace("into RDF resource: {}", rdfType);
                     return create(subject(), type.asNode(), rdfType);
                 } catch (final RepositoryException e) {
@@ -145,9 +131,4 @@ public class NodeRdfContext extends RdfStream {
         };
     }
 
-    private String getJcrUri(final String prefix) throws RepositoryException {
-        return node().getSession().getWorkspace().getNamespaceRegistry()
-                .getURI(prefix);
-    }
-
 }
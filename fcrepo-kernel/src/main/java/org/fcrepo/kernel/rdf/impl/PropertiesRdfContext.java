@@ -24,7 +24,6 @@ import static org.fcrepo.kernel.RdfLexicon.HAS_CONTENT;
 import static org.fcrepo.kernel.RdfLexicon.HAS_LOCATION;
 import static org.fcrepo.kernel.RdfLexicon.IS_CONTENT_OF;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isBinaryContentProperty;
-import static org.fcrepo.kernel.utils.FedoraTypesUtils.property2values;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -34,15 +33,12 @@ import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import org.fcrepo.kernel.rdf.GraphSubjects;
 import org.fcrepo.kernel.rdf.impl.mappings.PropertyToTriple;
-import org.fcrepo.kernel.rdf.impl.mappings.ZippingIterator;
 import org.fcrepo.kernel.services.LowLevelStorageService;
-import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.fcrepo.kernel.utils.iterators.PropertyIterator;
 import org.slf4j.Logger;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
-import com.google.common.collect.UnmodifiableIterator;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 
@@ -55,7 +51,7 @@ import com.hp.hpl.jena.graph.Triple;
  */
 public class PropertiesRdfContext extends NodeRdfContext {
 
-    private PropertyToTriple property2triple;
+    private final Function<Property, Iterator<Triple>> property2triples;
 
     private final static Logger LOGGER = getLogger(PropertiesRdfContext.class);
 
@@ -69,7 +65,7 @@ public class PropertiesRdfContext extends NodeRdfContext {
     public PropertiesRdfContext(final javax.jcr.Node node, final GraphSubjects graphSubjects,
         final LowLevelStorageService lowLevelStorageService) throws RepositoryException {
         super(node, graphSubjects, lowLevelStorageService);
-        property2triple = new PropertyToTriple(graphSubjects);
+        property2triples = new PropertyToTriple(graphSubjects).expandValues();
         putPropertiesIntoContext();
     }
 
@@ -107,20 +103,19 @@ public class PropertiesRdfContext extends NodeRdfContext {
             concat(new PropertiesRdfContext(node().getNode(JCR_CONTENT),
                     graphSubjects(), lowLevelStorageService()));
 
-            // add triples describing storage of content child
-            lowLevelStorageService().setRepository(
-                    node().getSession().getRepository());
-            concat(Iterators.transform(lowLevelStorageService().getLowLevelCacheEntries(
-                    contentNode).iterator(),
-                    new Function<LowLevelCacheEntry, Triple>() {
-
-                        @Override
-                        public Triple apply(final LowLevelCacheEntry llce) {
-                            return create(contentSubject,
-                                    HAS_LOCATION.asNode(), createLiteral(llce
-                                            .getExternalIdentifier()));
-                        }
-                    }));
+            // add triples describing storage of content child, if asked to
+            if (lowLevelStorageService() != null) {
+                concat(Iterators.transform(lowLevelStorageService()
+                        .getLocations(contentNode).iterator(),
+                        new Function<String, Triple>() {
+
+                            @Override
+                            public Triple apply(final String location) {
+                                return create(contentSubject, HAS_LOCATION
+                                        .asNode(), createLiteral(location));
+                            }
+                        }));
+            }
 
         }
 
@@ -133,20 +128,9 @@ public class PropertiesRdfContext extends NodeRdfContext {
     private Iterator<Triple> triplesFromProperties(final javax.jcr.Node n)
         throws RepositoryException {
         LOGGER.trace("Creating triples for node: {}", n);
-        final UnmodifiableIterator<Property> nonBinaryProperties =
-            Iterators.filter(new PropertyIterator(n.getProperties()),
-                    not(isBinaryContentProperty));
-
-        final UnmodifiableIterator<Property> nonBinaryPropertiesCopy =
-            Iterators.filter(new PropertyIterator(n.getProperties()),
-                    not(isBinaryContentProperty));
-
-        return Iterators.concat(new ZippingIterator<>(
-                Iterators.transform(
-                    nonBinaryProperties, property2values),
-                Iterators.transform(
-                    nonBinaryPropertiesCopy, property2triple)));
-
+        return Iterators.concat(Iterators.transform(Iterators.filter(
+                new PropertyIterator(n.getProperties()),
+                not(isBinaryContentProperty)), property2triples));
     }
 
 }
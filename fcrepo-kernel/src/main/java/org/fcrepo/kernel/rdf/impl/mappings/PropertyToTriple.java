@@ -17,6 +17,8 @@
 package org.fcrepo.kernel.rdf.impl.mappings;
 
 import static com.google.common.base.Throwables.propagate;
+import static com.google.common.collect.Iterators.forArray;
+import static com.google.common.collect.Iterators.singletonIterator;
 import static com.google.common.collect.Iterators.transform;
 import static com.hp.hpl.jena.graph.Triple.create;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
@@ -30,7 +32,7 @@ import static javax.jcr.PropertyType.PATH;
 import static javax.jcr.PropertyType.REFERENCE;
 import static javax.jcr.PropertyType.URI;
 import static javax.jcr.PropertyType.WEAKREFERENCE;
-import static org.fcrepo.kernel.utils.FedoraTypesUtils.getPredicateForProperty;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getPredicate;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.Iterator;
@@ -83,8 +85,8 @@ public class PropertyToTriple implements
      * as functions instead of ordinary methods, which may have side-effects, we
      * can use efficient machinery to manipulate iterators of the objects in
      * which we are interested, and that's exactly what we want to do in this
-     * class. See {@link PropertiesRdfContext#triplesFromProperties} for an
-     * example of the use of this class with {@link ZippingIterator}.
+     * class. This is meant for use with {@link ZippingIterator}; see
+     * {@link #expandValues()} for a single-pass way to do the same thing.
      *
      * @see <a href="http://en.wikipedia.org/wiki/Currying">Currying</a>
      */
@@ -107,6 +109,43 @@ public class PropertyToTriple implements
 
     }
 
+    /**
+     * A simpler alternative to zipping {@link #apply(Property)} with
+     * {@link org.fcrepo.kernel.utils.FedoraTypesUtils#property2values}: goes
+     * straight from a property to the triples for each of its values, so
+     * properties only need to be read once. The subject and predicate are
+     * worked out once per property, rather than once per value.
+     *
+     * @return
+     */
+    public Function<Property, Iterator<Triple>> expandValues() {
+        return new Function<Property, Iterator<Triple>>() {
+
+            @Override
+            public Iterator<Triple> apply(final Property p) {
+                try {
+                    final Node subject = getGraphSubject(p.getParent());
+                    final Node predicate = getPredicate(p).asNode();
+                    if (!p.isMultiple()) {
+                        return singletonIterator(propertyvalue2triple(subject,
+                                predicate, p, p.getValue()));
+                    }
+                    return transform(forArray(p.getValues()),
+                            new Function<Value, Triple>() {
+
+                                @Override
+                                public Triple apply(final Value v) {
+                                    return propertyvalue2triple(subject,
+                                            predicate, p, v);
+                                }
+                            });
+                } catch (final RepositoryException e) {
+                    throw propagate(e);
+                }
+            }
+        };
+    }
+
     /**
      * @param p A JCR {@link Property}
      * @param v The {@link Value} of that Property to use (in the case of
@@ -114,18 +153,23 @@ public class PropertyToTriple implements
      * @return An RDF {@link Triple} representing that property.
      */
     private Triple propertyvalue2triple(final Property p, final Value v) {
-        LOGGER.trace("Rendering triple for Property: {} with Value: {}", p, v);
         try {
-            final Triple triple =
-                create(getGraphSubject(p.getParent()), getPredicateForProperty
-                        .apply(p).asNode(), propertyvalue2node(p, v));
-            LOGGER.trace("Created triple: {} ", triple);
-            return triple;
+            return propertyvalue2triple(getGraphSubject(p.getParent()),
+                    getPredicate(p).asNode(), p, v);
         } catch (final RepositoryException e) {
             throw propagate(e);
         }
     }
 
+    private Triple propertyvalue2triple(final Node subject,
+            final Node predicate, final Property p, final Value v) {
+        LOGGER.trace("Rendering triple for Property: {} with Value: {}", p, v);
+        final Triple triple =
+            create(subject, predicate, propertyvalue2node(p, v));
+        LOGGER.trace("Created triple: {} ", triple);
+        return triple;
+    }
+
     private Node propertyvalue2node(final Property p, final Value v) {
         try {
             switch (v.getType()) {
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The (possibly partial) results of running a task on every member of a
+ * cluster, along with the members that didn't answer in time or failed.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ * @param <T>
+ */
+public class ClusterResults<T> {
+
+    private final Set<T> results = new HashSet<>();
+
+    private final Set<String> timedOut = new LinkedHashSet<>();
+
+    private final Map<String, Throwable> failed = new HashMap<>();
+
+    /**
+     * Add a member's results
+     * @param memberResults
+     */
+    void addResults(final Collection<T> memberResults) {
+        results.addAll(memberResults);
+    }
+
+    /**
+     * Record that a member didn't answer before the deadline
+     * @param member
+     */
+    void addTimedOut(final String member) {
+        timedOut.add(member);
+    }
+
+    /**
+     * Record that a member's task failed
+     * @param member
+     * @param cause
+     */
+    void addFailed(final String member, final Throwable cause) {
+        failed.put(member, cause);
+    }
+
+    /**
+     * Add everything another set of results found out
+     * @param other
+     */
+    void addAll(final ClusterResults<T> other) {
+        results.addAll(other.results);
+        timedOut.addAll(other.timedOut);
+        failed.putAll(other.failed);
+    }
+
+    /**
+     * Get the results from every member that answered
+     * @return
+     */
+    public Set<T> getResults() {
+        return unmodifiableSet(results);
+    }
+
+    /**
+     * Get the members that didn't answer before the deadline
+     * @return
+     */
+    public Set<String> getTimedOutMembers() {
+        return unmodifiableSet(timedOut);
+    }
+
+    /**
+     * Get the members whose task failed, and why
+     * @return
+     */
+    public Map<String, Throwable> getFailedMembers() {
+        return unmodifiableMap(failed);
+    }
+
+    /**
+     * Did every member answer successfully?
+     * @return
+     */
+    public boolean isComplete() {
+        return timedOut.isEmpty() && failed.isEmpty();
+    }
+
+}
@@ -25,6 +25,7 @@ import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -174,6 +175,35 @@ public class DatastreamService extends RepositoryService {
         return new Datastream(node);
     }
 
+    /**
+     * Get the local file holding the datastream's content, so it can be read
+     * at an offset (or handed to a FileChannel) directly.
+     *
+     * @param datastream
+     * @return the file, or null if the content isn't kept in a local file
+     * @throws RepositoryException
+     */
+    public File getContentFile(final Datastream datastream)
+        throws RepositoryException {
+        return llStoreService.getLocalFile(datastream.getNode().getNode(
+                JCR_CONTENT));
+    }
+
+    /**
+     * Get a stream over the datastream's content that can skip to an offset
+     * without reading the bytes before it.
+     *
+     * @param datastream
+     * @return the stream, or null if the content isn't kept in a local
+     *         Infinispan CacheStore
+     * @throws RepositoryException
+     */
+    public InputStream getSeekableContent(final Datastream datastream)
+        throws RepositoryException {
+        return llStoreService.getLocalChunkStream(datastream.getNode()
+                .getNode(JCR_CONTENT));
+    }
+
     /**
      * Get the fixity results for the datastream as a RDF Dataset
      *
@@ -247,8 +277,7 @@ public class DatastreamService extends RepositoryService {
 
         for (final FixityResult result : badEntries) {
             try {
-                result.getEntry()
-                        .storeValue(anyGoodCacheEntry.getInputStream());
+                result.getEntry().repairFrom(anyGoodCacheEntry);
                 final FixityResult newResult =
                         result.getEntry().checkFixity(digestUri, size);
                 if (newResult.isSuccess()) {
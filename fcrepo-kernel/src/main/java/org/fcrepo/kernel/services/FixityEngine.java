@@ -0,0 +1,341 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.google.common.base.Throwables.propagate;
+import static com.google.common.collect.ImmutableSet.builder;
+import static java.lang.Integer.getInteger;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs per-store work (e.g. fixity checks against each member of a
+ * CompositeBinaryStore) in parallel on a dedicated, size-limited thread pool.
+ * Each named store may only have a limited number of tasks in flight at once,
+ * so a single slow replica can't monopolize the pool; the rest of its tasks
+ * wait in a queue of its own, not in (or on) the pool's threads.
+ *
+ * The engine everybody shares (see {@link #shared()}) is shut down when the
+ * JVM exits.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ */
+public class FixityEngine {
+
+    private static final Logger LOGGER = getLogger(FixityEngine.class);
+
+    /**
+     * System property for the number of threads in the fixity pool
+     */
+    public static final String POOL_SIZE_PROPERTY = "fcrepo.fixity.threads";
+
+    /**
+     * System property for the number of concurrent tasks per named store
+     */
+    public static final String STORE_CONCURRENCY_PROPERTY =
+            "fcrepo.fixity.store.concurrency";
+
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    public static final int DEFAULT_STORE_CONCURRENCY = 2;
+
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int storeConcurrency;
+
+    private final ConcurrentMap<String, StoreQueue> storeQueues =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Marks the pool's worker threads, so nested work (e.g. a composite store
+     * inside a composite store) runs inline instead of starving the pool
+     */
+    private static final ThreadLocal<Boolean> inWorker =
+            new ThreadLocal<Boolean>() {
+
+                @Override
+                protected Boolean initialValue() {
+                    return false;
+                }
+            };
+
+    /**
+     * Only created once somebody asks for it
+     */
+    private static class Shared {
+
+        private static final FixityEngine ENGINE = new FixityEngine();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread("fcrepo-fixity-shutdown") {
+
+                        @Override
+                        public void run() {
+                            ENGINE.shutdown();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return the engine shared by everything that doesn't bring its own,
+     *         sized from the system properties (or defaults)
+     */
+    public static FixityEngine shared() {
+        return Shared.ENGINE;
+    }
+
+    /**
+     * Create an engine sized from the system properties (or defaults)
+     */
+    public FixityEngine() {
+        this(getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE), getInteger(
+                STORE_CONCURRENCY_PROPERTY, DEFAULT_STORE_CONCURRENCY));
+    }
+
+    /**
+     * @param poolSize the maximum number of worker threads
+     * @param storeConcurrency the maximum number of concurrent tasks against
+     *        any one named store
+     */
+    public FixityEngine(final int poolSize, final int storeConcurrency) {
+        this.storeConcurrency = storeConcurrency;
+        this.executor =
+                new ThreadPoolExecutor(poolSize, poolSize, 60, SECONDS,
+                        new LinkedBlockingQueue<Runnable>(poolSize *
+                                QUEUE_SIZE_PER_THREAD),
+                        new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat("fcrepo-fixity-%d").build(),
+                        new CallerRunsUnlessShutdown());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run each store's task in parallel and merge the results. If the
+     * calling thread is interrupted, or any task fails, the tasks not yet
+     * started are cancelled; those already running are left to finish, since
+     * interrupting a read can invalidate the store underneath it (e.g. a BDB
+     * JE environment).
+     *
+     * @param tasks a map of store identifiers to the work to do in them
+     * @return the union of all the tasks' results
+     */
+    public <T> Set<T> invokeAll(final Map<String, Callable<Set<T>>> tasks) {
+
+        if (inWorker.get()) {
+            return invokeInline(tasks);
+        }
+
+        final List<Future<Set<T>>> futures = new ArrayList<>(tasks.size());
+
+        try {
+            for (final Map.Entry<String, Callable<Set<T>>> task : tasks
+                    .entrySet()) {
+                final FutureTask<Set<T>> future =
+                        new FutureTask<>(new InWorker<>(task.getValue()));
+                futures.add(future);
+                queueFor(task.getKey()).submit(future);
+            }
+
+            final ImmutableSet.Builder<T> results = builder();
+            for (final Future<Set<T>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results.build();
+
+        } catch (final InterruptedException e) {
+            LOGGER.info("Interrupted while waiting for store tasks; "
+                    + "cancelling {} tasks", futures.size());
+            Thread.currentThread().interrupt();
+            throw propagate(e);
+        } catch (final ExecutionException e) {
+            throw propagate(e.getCause());
+        } finally {
+            for (final Future<Set<T>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static <T> Set<T> invokeInline(
+            final Map<String, Callable<Set<T>>> tasks) {
+        final ImmutableSet.Builder<T> results = builder();
+        for (final Callable<Set<T>> task : tasks.values()) {
+            try {
+                results.addAll(task.call());
+            } catch (final Exception e) {
+                throw propagate(e);
+            }
+        }
+        return results.build();
+    }
+
+    /**
+     * Stop accepting new work and interrupt running tasks
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private StoreQueue queueFor(final String storeId) {
+        final StoreQueue queue = storeQueues.get(storeId);
+        if (queue != null) {
+            return queue;
+        }
+        final StoreQueue newQueue = new StoreQueue();
+        final StoreQueue existing = storeQueues.putIfAbsent(storeId, newQueue);
+        return existing == null ? newQueue : existing;
+    }
+
+    /**
+     * One store's tasks: no more than the store's concurrency are handed to
+     * the pool at once, and each one that finishes hands over the next
+     */
+    private class StoreQueue {
+
+        private final Queue<FutureTask<?>> waiting = new ArrayDeque<>();
+
+        private int running = 0;
+
+        void submit(final FutureTask<?> task) {
+            synchronized (this) {
+                waiting.add(task);
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            final FutureTask<?> next;
+            synchronized (this) {
+                if (running >= storeConcurrency || waiting.isEmpty()) {
+                    return;
+                }
+                next = waiting.remove();
+                running++;
+            }
+            try {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            next.run();
+                        } finally {
+                            synchronized (StoreQueue.this) {
+                                running--;
+                            }
+                            // the next task may run right here, and must not
+                            // start out interrupted
+                            Thread.interrupted();
+                            dispatch();
+                        }
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                LOGGER.debug("Fixity engine shut down; cancelling queued tasks");
+                next.cancel(false);
+                synchronized (this) {
+                    running--;
+                    for (final FutureTask<?> task : waiting) {
+                        task.cancel(false);
+                    }
+                    waiting.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * When the pool is saturated, runs the task on the caller; once the
+     * engine is shut down, refuses it (rather than silently dropping it, as
+     * {@link ThreadPoolExecutor.CallerRunsPolicy} would)
+     */
+    private static class CallerRunsUnlessShutdown implements
+            RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(final Runnable task,
+                final ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(
+                        "Fixity engine has been shut down");
+            }
+            // an interrupted caller shouldn't pass its interrupt on to the
+            // task, but gets it back afterwards
+            final boolean interrupted = Thread.interrupted();
+            try {
+                task.run();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps a task so that work it starts itself runs inline
+     */
+    private static class InWorker<T> implements Callable<T> {
+
+        private final Callable<T> task;
+
+        InWorker(final Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            final boolean nested = inWorker.get();
+            inWorker.set(true);
+            try {
+                return task.call();
+            } finally {
+                inWorker.set(nested);
+            }
+        }
+    }
+}
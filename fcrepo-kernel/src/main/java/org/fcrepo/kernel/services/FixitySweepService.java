@@ -0,0 +1,359 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static javax.jcr.query.Query.JCR_SQL2;
+import static org.fcrepo.jcr.FedoraJcrTypes.CONTENT_SIZE;
+import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_BINARY;
+import static org.fcrepo.metrics.RegistryService.getMetrics;
+import static org.modeshape.jcr.api.JcrConstants.JCR_PATH;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.fcrepo.kernel.utils.FixityResult;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Walks every fedora:binary in the repository in the background, checking
+ * (and, where another copy allows, repairing) its fixity. Each cycle visits
+ * the binaries in path order, paging through the results of a single query,
+ * and remembers the last one it checked, so it resumes there after a
+ * restart. Every binary is checked once per cycle; one added behind the
+ * sweep's position waits until the next cycle reaches it. The sweep is
+ * throttled both in bytes read (from every copy) and in binaries checked per
+ * second.
+ *
+ * The sweep only runs if the fcrepo.fixity.sweep.enabled system property is
+ * true.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ */
+@Component
+public class FixitySweepService {
+
+    private static final Logger LOGGER = getLogger(FixitySweepService.class);
+
+    public static final String ENABLED_PROPERTY = "fcrepo.fixity.sweep.enabled";
+
+    /**
+     * System property for the file the sweep's progress is kept in
+     */
+    public static final String STATE_FILE_PROPERTY =
+            "fcrepo.fixity.sweep.state";
+
+    public static final String BYTES_PER_SECOND_PROPERTY =
+            "fcrepo.fixity.sweep.bytesPerSecond";
+
+    public static final String CHECKS_PER_SECOND_PROPERTY =
+            "fcrepo.fixity.sweep.checksPerSecond";
+
+    public static final String BATCH_SIZE_PROPERTY =
+            "fcrepo.fixity.sweep.batchSize";
+
+    /**
+     * System property for how long (in ms) to wait between complete sweeps
+     */
+    public static final String CYCLE_PAUSE_PROPERTY =
+            "fcrepo.fixity.sweep.cyclePause";
+
+    public static final String DEFAULT_STATE_FILE =
+            "fcrepo-fixity-sweep.properties";
+
+    public static final long DEFAULT_BYTES_PER_SECOND = 10L * 1024 * 1024;
+
+    public static final int DEFAULT_CHECKS_PER_SECOND = 10;
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final long DEFAULT_CYCLE_PAUSE = 60L * 60 * 1000;
+
+    static final Counter sweepCheckCounter = getMetrics().counter(
+            name(FixitySweepService.class, "fixity-sweep-checked"));
+
+    static final Counter sweepFailureCounter = getMetrics().counter(
+            name(FixitySweepService.class, "fixity-sweep-failed"));
+
+    static final Counter sweepCycleCounter = getMetrics().counter(
+            name(FixitySweepService.class, "fixity-sweep-cycles"));
+
+    @Inject
+    private Repository repo;
+
+    @Autowired
+    private DatastreamService datastreamService;
+
+    private File stateFile = new File(System.getProperty(STATE_FILE_PROPERTY,
+            DEFAULT_STATE_FILE));
+
+    private int batchSize = getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+
+    private long cyclePause = getLong(CYCLE_PAUSE_PROPERTY,
+            DEFAULT_CYCLE_PAUSE);
+
+    private RateLimiter bytesLimiter = RateLimiter.create(getLong(
+            BYTES_PER_SECOND_PROPERTY, DEFAULT_BYTES_PER_SECOND));
+
+    private RateLimiter checksLimiter = RateLimiter.create(getInteger(
+            CHECKS_PER_SECOND_PROPERTY, DEFAULT_CHECKS_PER_SECOND));
+
+    private FixitySweepState state;
+
+    private ExecutorService sweeper;
+
+    /**
+     * The session and results the current cycle is paging through, until
+     * they run out (or something goes wrong and we start again from the
+     * cursor)
+     */
+    private Session pageSession;
+
+    private NodeIterator pageNodes;
+
+    /**
+     * Start sweeping in the background, if the sweep is enabled
+     */
+    @PostConstruct
+    public void start() {
+        if (!getBoolean(ENABLED_PROPERTY)) {
+            LOGGER.debug("Background fixity sweep is disabled");
+            return;
+        }
+        LOGGER.info("Starting background fixity sweep, keeping state in {}",
+                stateFile.getAbsolutePath());
+        sweeper =
+                newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(
+                        true).setNameFormat("fcrepo-fixity-sweep").build());
+        sweeper.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                sweep();
+            }
+        });
+    }
+
+    /**
+     * Stop the background sweep; its progress has already been saved
+     */
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    private void sweep() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (sweepBatch() == 0) {
+                        LOGGER.info("Completed fixity sweep {}", getState()
+                                .getCycles() + 1);
+                        getState().completeCycle();
+                        getState().save();
+                        sweepCycleCounter.inc();
+                        Thread.sleep(cyclePause);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final RepositoryException | IOException e) {
+                    LOGGER.warn("Fixity sweep failed, will retry: {}", e);
+                    try {
+                        Thread.sleep(cyclePause);
+                    } catch (final InterruptedException e1) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        } finally {
+            endPage();
+        }
+        LOGGER.info("Stopped background fixity sweep");
+    }
+
+    /**
+     * Check the next batch of binaries, saving progress as we go. Batches
+     * page through the results of one query, which is only run again (from
+     * the cursor) at the start of a cycle, after a restart, or after an error.
+     *
+     * @return the number of binaries checked; 0 means the cycle is complete
+     * @throws RepositoryException
+     * @throws IOException
+     */
+    public int sweepBatch() throws RepositoryException, IOException {
+        final FixitySweepState sweepState = getState();
+        try {
+            if (pageNodes == null) {
+                pageSession = repo.login();
+                pageNodes =
+                        pageSession.getWorkspace().getQueryManager()
+                                .createQuery(getQuery(sweepState.getCursor()),
+                                        JCR_SQL2).execute().getNodes();
+            }
+
+            int checked = 0;
+            while (checked < batchSize && pageNodes.hasNext() &&
+                    !Thread.currentThread().isInterrupted()) {
+                final Node binary = pageNodes.nextNode();
+                check(binary);
+                sweepState.advance(binary.getPath());
+                sweepState.save();
+                checked++;
+            }
+            if (!pageNodes.hasNext()) {
+                endPage();
+            }
+            return checked;
+        } catch (final RepositoryException | IOException |
+                RuntimeException e) {
+            endPage();
+            throw e;
+        }
+    }
+
+    private void endPage() {
+        pageNodes = null;
+        if (pageSession != null) {
+            pageSession.logout();
+            pageSession = null;
+        }
+    }
+
+    /**
+     * The binaries after the cursor, in path order
+     */
+    static String getQuery(final String cursor) {
+        final StringBuilder query =
+                new StringBuilder("SELECT [" + JCR_PATH + "] FROM [" +
+                        FEDORA_BINARY + "]");
+        if (cursor != null) {
+            query.append(" WHERE [" + JCR_PATH + "] > '").append(
+                    cursor.replace("'", "''")).append("'");
+        }
+        return query.append(" ORDER BY [" + JCR_PATH + "]").toString();
+    }
+
+    private void check(final Node binary) {
+        checksLimiter.acquire();
+        try {
+            final long size =
+                    binary.hasProperty(CONTENT_SIZE) ? binary.getProperty(
+                            CONTENT_SIZE).getLong() : 0;
+
+            final Collection<FixityResult> results =
+                    datastreamService.runFixityAndFixProblems(datastreamService
+                            .asDatastream(binary.getParent()));
+            sweepCheckCounter.inc();
+
+            // every copy was read, so pay for each of them; the limiter makes
+            // the next check wait for it
+            long read = size * results.size();
+            while (read > 0) {
+                final int permits = (int) Math.min(read, Integer.MAX_VALUE);
+                bytesLimiter.acquire(permits);
+                read -= permits;
+            }
+
+            for (final FixityResult result : results) {
+                if (result.isSuccess()) {
+                    return;
+                }
+            }
+            if (!results.isEmpty()) {
+                sweepFailureCounter.inc();
+                LOGGER.warn("No good copy of {} found by fixity sweep",
+                        binary.getPath());
+            }
+        } catch (final RepositoryException e) {
+            // don't let one bad binary wedge the sweep
+            sweepFailureCounter.inc();
+            LOGGER.warn("Couldn't check fixity of binary: {}", e);
+        }
+    }
+
+    private synchronized FixitySweepState getState() {
+        if (state == null) {
+            state = FixitySweepState.load(stateFile);
+        }
+        return state;
+    }
+
+    /**
+     * Set the repository (used for testing)
+     */
+    public void setRepository(final Repository repository) {
+        this.repo = repository;
+    }
+
+    /**
+     * Set the datastream service (if Spring didn't wire it in)
+     */
+    public void setDatastreamService(
+            final DatastreamService datastreamService) {
+        this.datastreamService = datastreamService;
+    }
+
+    /**
+     * Set the file the sweep's progress is kept in
+     */
+    public synchronized void setStateFile(final File stateFile) {
+        this.stateFile = stateFile;
+        this.state = null;
+    }
+
+    /**
+     * Set how many binaries are checked per batch
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the bytes per second and binaries per second the sweep may check
+     */
+    public void setRates(final double bytesPerSecond,
+            final double checksPerSecond) {
+        bytesLimiter.setRate(bytesPerSecond);
+        checksLimiter.setRate(checksPerSecond);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static java.lang.System.currentTimeMillis;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+
+/**
+ * Where a repository-wide fixity sweep has got to, kept in a small
+ * properties file so the sweep can pick up where it left off after a
+ * restart.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ */
+class FixitySweepState {
+
+    private static final Logger LOGGER = getLogger(FixitySweepState.class);
+
+    private static final String CURSOR = "cursor";
+
+    private static final String CYCLE_START = "cycleStart";
+
+    private static final String CYCLES = "cycles";
+
+    private final File file;
+
+    private String cursor;
+
+    private long cycleStart;
+
+    private long cycles;
+
+    private FixitySweepState(final File file) {
+        this.file = file;
+        this.cycleStart = currentTimeMillis();
+    }
+
+    /**
+     * Load the state from its file, or start a fresh sweep if there isn't one
+     * (or it can't be read)
+     * @param file
+     * @return
+     */
+    static FixitySweepState load(final File file) {
+        final FixitySweepState state = new FixitySweepState(file);
+        if (!file.isFile()) {
+            return state;
+        }
+        final Properties properties = new Properties();
+        try (final InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            state.cursor = properties.getProperty(CURSOR);
+            state.cycleStart =
+                    Long.parseLong(properties.getProperty(CYCLE_START, String
+                            .valueOf(state.cycleStart)));
+            state.cycles =
+                    Long.parseLong(properties.getProperty(CYCLES, "0"));
+        } catch (final IOException | NumberFormatException e) {
+            LOGGER.warn("Couldn't read fixity sweep state from {}, "
+                    + "starting a new sweep: {}", file, e);
+        }
+        return state;
+    }
+
+    /**
+     * Write the state out, replacing the old file only once the new one is
+     * complete
+     * @throws IOException
+     */
+    synchronized void save() throws IOException {
+        final Properties properties = new Properties();
+        if (cursor != null) {
+            properties.setProperty(CURSOR, cursor);
+        }
+        properties.setProperty(CYCLE_START, String.valueOf(cycleStart));
+        properties.setProperty(CYCLES, String.valueOf(cycles));
+
+        final File temp = new File(file.getPath() + ".tmp");
+        try (final OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, "fcrepo fixity sweep");
+        }
+        if (!temp.renameTo(file)) {
+            // some platforms won't rename over an existing file
+            if (!file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Couldn't replace " + file);
+            }
+        }
+    }
+
+    /**
+     * @return the path of the last binary checked in this cycle, or null at
+     *         the start of a cycle
+     */
+    synchronized String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Record that a binary has been checked
+     * @param path
+     */
+    synchronized void advance(final String path) {
+        cursor = path;
+    }
+
+    /**
+     * Start the sweep over from the beginning
+     */
+    synchronized void completeCycle() {
+        cursor = null;
+        cycles++;
+        cycleStart = currentTimeMillis();
+    }
+
+    /**
+     * @return when the current cycle began
+     */
+    synchronized long getCycleStart() {
+        return cycleStart;
+    }
+
+    /**
+     * @return the number of completed cycles
+     */
+    synchronized long getCycles() {
+        return cycles;
+    }
+}
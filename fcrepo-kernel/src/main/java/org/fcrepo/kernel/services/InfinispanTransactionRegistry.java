@@ -0,0 +1,153 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static java.lang.System.getProperty;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.infinispan.configuration.cache.CacheMode.REPL_SYNC;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.jcr.Repository;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.modeshape.jcr.GetBinaryStore;
+import org.modeshape.jcr.value.binary.BinaryStore;
+import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
+import org.slf4j.Logger;
+
+/**
+ * A {@link TransactionRegistry} kept in a cache of the Infinispan cache
+ * manager behind the repository's binary store, mapping each open transaction
+ * to the base URL of the node that owns it. Each node's own base URL (the URL
+ * of its REST API, e.g. http://node1:8080/rest) is set with the
+ * {@value #NODE_URL_PROPERTY} system property. Without it, or without a
+ * clustered Infinispan binary store, transactions are just not shared.
+ *
+ * The {@value #CACHE_NAME} cache may be configured in the Infinispan
+ * configuration, but must then be clustered; if it isn't configured, it is
+ * defined as a synchronously replicated cache. Entries are stored with a
+ * lifespan a little longer than their transactions have left, and renewed
+ * as the transactions are used, so that the transactions of a node that
+ * dies are soon forgotten by the rest of the cluster.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public class InfinispanTransactionRegistry implements TransactionRegistry {
+
+    private static final Logger LOGGER =
+        getLogger(InfinispanTransactionRegistry.class);
+
+    /**
+     * The system property holding this node's base URL
+     */
+    public static final String NODE_URL_PROPERTY = "fcrepo.node.url";
+
+    /**
+     * The name of the cache in which transaction owners are kept
+     */
+    public static final String CACHE_NAME = "fcrepo-transactions";
+
+    @Inject
+    private Repository repo;
+
+    private String nodeUrl = getProperty(NODE_URL_PROPERTY);
+
+    private Cache<String, String> owners;
+
+    private GetBinaryStore getBinaryStore = new GetBinaryStore();
+
+    /**
+     * Find the cache of transaction owners
+     */
+    @PostConstruct
+    public void setUp() {
+        final BinaryStore store = getBinaryStore.apply(repo);
+        if (!(store instanceof InfinispanBinaryStore)) {
+            LOGGER.warn("Not sharing transactions: the binary store {} "
+                    + "isn't backed by Infinispan", store);
+            return;
+        }
+        if (nodeUrl == null) {
+            LOGGER.warn("Not sharing transactions: {} isn't set",
+                    NODE_URL_PROPERTY);
+        }
+        final EmbeddedCacheManager cacheManager =
+            ((InfinispanBinaryStore) store).getCaches().get(0)
+                    .getCacheManager();
+        if (cacheManager.getTransport() == null) {
+            LOGGER.warn("Not sharing transactions: Infinispan isn't clustered");
+            return;
+        }
+        if (!cacheManager.getCacheNames().contains(CACHE_NAME)) {
+            LOGGER.info("Defining a replicated cache {} for transactions",
+                    CACHE_NAME);
+            cacheManager.defineConfiguration(CACHE_NAME,
+                    new ConfigurationBuilder().clustering().cacheMode(
+                            REPL_SYNC).build());
+        }
+        final Cache<String, String> cache = cacheManager.getCache(CACHE_NAME);
+        if (!cache.getCacheConfiguration().clustering().cacheMode()
+                .isClustered()) {
+            LOGGER.error("Not sharing transactions: the cache {} is "
+                    + "configured, but isn't clustered", CACHE_NAME);
+            return;
+        }
+        owners = cache;
+    }
+
+    @Override
+    public void register(final String txId, final long lifespan) {
+        if (owners != null && nodeUrl != null) {
+            owners.put(txId, nodeUrl, lifespan, MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void unregister(final String txId) {
+        if (owners != null && nodeUrl != null) {
+            owners.remove(txId, nodeUrl);
+        }
+    }
+
+    @Override
+    public String locate(final String txId) {
+        if (owners == null) {
+            return null;
+        }
+        final String owner = owners.get(txId);
+        return owner == null || owner.equals(nodeUrl) ? null : owner;
+    }
+
+    /**
+     * @param nodeUrl this node's base URL
+     */
+    public void setNodeUrl(final String nodeUrl) {
+        this.nodeUrl = nodeUrl;
+    }
+
+    /**
+     * @param repo
+     */
+    public void setRepository(final Repository repo) {
+        this.repo = repo;
+    }
+}
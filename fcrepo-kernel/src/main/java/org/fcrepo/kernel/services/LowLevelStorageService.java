@@ -16,25 +16,47 @@
 
 package org.fcrepo.kernel.services;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.Collections2.transform;
 import static com.google.common.collect.ImmutableSet.builder;
 import static com.google.common.collect.ImmutableSet.of;
 import static java.util.Collections.emptySet;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.lang.System.nanoTime;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fcrepo.kernel.services.ServiceHelpers.getClusterExecutor;
+import static org.fcrepo.kernel.services.ServiceHelpers.getClusterMembers;
+import static org.fcrepo.kernel.utils.infinispan.ChunkManifest.chunkSizeOf;
+import static org.fcrepo.kernel.utils.infinispan.StoreChunkInputStream.READ_AHEAD;
+import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.modeshape.jcr.api.JcrConstants.JCR_DATA;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.File;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.jcr.Node;
 import javax.jcr.Property;
@@ -43,20 +65,31 @@ import javax.jcr.RepositoryException;
 
 import org.fcrepo.kernel.services.functions.CacheLocalTransform;
 import org.fcrepo.kernel.services.functions.GetBinaryKey;
+import org.fcrepo.kernel.services.functions.GetCacheStore;
 import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.fcrepo.kernel.utils.impl.ChainingCacheStoreEntry;
 import org.fcrepo.kernel.utils.impl.LocalBinaryStoreEntry;
+import org.fcrepo.kernel.utils.infinispan.ChunkManifest;
+import org.fcrepo.kernel.utils.infinispan.StoreChunkInputStream;
+import org.infinispan.Cache;
 import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.remoting.transport.Address;
 import org.modeshape.jcr.GetBinaryStore;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
+import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
 import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 
+import com.codahale.metrics.Counter;
 import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Service for managing access to low-level binary blobs (which may include
@@ -80,6 +113,71 @@ public class LowLevelStorageService {
 
     private GetBinaryKey getBinaryKey = new GetBinaryKey();
 
+    private GetCacheStore getCacheStore = new GetCacheStore();
+
+    /**
+     * The listeners removing chunk manifests, by the cache they listen to
+     */
+    private final Map<Cache<?, ?>, Object> manifestRemovers =
+            new LinkedHashMap<>();
+
+    /**
+     * Everybody shares one engine (and its threads) unless one is set
+     */
+    private FixityEngine fixityEngine = FixityEngine.shared();
+
+    /**
+     * System property for how long (in ms) to wait for cluster members
+     */
+    public static final String CLUSTER_TIMEOUT_PROPERTY =
+            "fcrepo.cluster.timeout";
+
+    public static final long DEFAULT_CLUSTER_TIMEOUT = 30000L;
+
+    /**
+     * System property for the most threads waiting on cluster members at
+     * once, across all requests
+     */
+    public static final String CLUSTER_WAITERS_PROPERTY =
+            "fcrepo.cluster.waiters";
+
+    public static final int DEFAULT_CLUSTER_WAITERS = 16;
+
+    /**
+     * The suffix ModeShape appends to a BinaryKey to name its content chunks
+     */
+    private static final String DATA_SUFFIX = "-data";
+
+    private long clusterTimeout = getLong(CLUSTER_TIMEOUT_PROPERTY,
+            DEFAULT_CLUSTER_TIMEOUT);
+
+    static final Counter clusterTimeoutCounter = getMetrics().counter(
+            name(LowLevelStorageService.class, "cluster-node-timeouts"));
+
+    /**
+     * System property for how long (in seconds) to remember where a binary
+     * is stored
+     */
+    public static final String LOCATION_CACHE_TTL_PROPERTY =
+            "fcrepo.binary.locations.ttl";
+
+    public static final long DEFAULT_LOCATION_CACHE_TTL = 300L;
+
+    private static final int LOCATION_CACHE_SIZE = 10000;
+
+    /**
+     * Where each binary is stored, by key. Shared by every instance of this
+     * service, since rendering contexts may have their own.
+     */
+    private static final com.google.common.cache.Cache<BinaryKey, Set<String>> locations =
+        CacheBuilder.newBuilder().maximumSize(LOCATION_CACHE_SIZE)
+                .expireAfterWrite(
+                        getLong(LOCATION_CACHE_TTL_PROPERTY,
+                                DEFAULT_LOCATION_CACHE_TTL), SECONDS).build();
+
+    static final Counter locationCacheMissCounter = getMetrics().counter(
+            name(LowLevelStorageService.class, "location-cache-misses"));
+
     /**
      * Apply some Function to the low-level cache entries for the Node
      *
@@ -131,7 +229,9 @@ public class LowLevelStorageService {
     }
 
     /**
-     * Transform low-level cache entries from a particular CompositeBinaryStore
+     * Transform low-level cache entries from a particular CompositeBinaryStore.
+     * Each named store containing the binary is transformed in parallel on the
+     * FixityEngine.
      *
      * @param key a Modeshape BinaryValue's key.
      * @return a set of transformed objects
@@ -140,7 +240,7 @@ public class LowLevelStorageService {
             final CompositeBinaryStore compositeStore, final BinaryKey key,
             final Function<LowLevelCacheEntry, T> transform) {
 
-        final ImmutableSet.Builder<T> results = builder();
+        final Map<String, Callable<Set<T>>> tasks = new LinkedHashMap<>();
 
         final Iterator<Map.Entry<String, BinaryStore>> it =
                 compositeStore.getNamedStoreIterator();
@@ -151,13 +251,18 @@ public class LowLevelStorageService {
             if (bs.hasBinary(key)) {
                 final Function<LowLevelCacheEntry, T> decorator =
                         new ExternalIdDecorator<>(entry.getKey(), transform);
-                final Set<T> transformeds =
-                        transformLowLevelCacheEntries(bs, key, decorator);
-                results.addAll(transformeds);
+                tasks.put(entry.getKey(), new Callable<Set<T>>() {
+
+                    @Override
+                    public Set<T> call() {
+                        return transformLowLevelCacheEntries(bs, key,
+                                decorator);
+                    }
+                });
             }
         }
 
-        return results.build();
+        return fixityEngine.invokeAll(tasks);
     }
 
     /**
@@ -195,6 +300,207 @@ public class LowLevelStorageService {
         }
     }
 
+    /**
+     * As {@link #transformLowLevelCacheEntries(BinaryStore, BinaryKey, Function)},
+     * but also telling which cluster members didn't answer in time or failed
+     * (named after the store they are members of, in a CompositeBinaryStore)
+     *
+     * @param key a Modeshape BinaryValue's key.
+     * @return the transformed entries found, and who didn't answer
+     */
+    <T> ClusterResults<T> collectLowLevelCacheEntries(final BinaryStore store,
+            final BinaryKey key, final Function<LowLevelCacheEntry, T> transform) {
+
+        if (store instanceof CompositeBinaryStore) {
+            final Map<String, Callable<Set<ClusterResults<T>>>> tasks =
+                    new LinkedHashMap<>();
+            final Iterator<Map.Entry<String, BinaryStore>> it =
+                    ((CompositeBinaryStore) store).getNamedStoreIterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, BinaryStore> entry = it.next();
+                final BinaryStore bs = entry.getValue();
+                if (bs.hasBinary(key)) {
+                    final Function<LowLevelCacheEntry, T> decorator =
+                            new ExternalIdDecorator<>(entry.getKey(),
+                                    transform);
+                    tasks.put(entry.getKey(),
+                            new Callable<Set<ClusterResults<T>>>() {
+
+                                @Override
+                                public Set<ClusterResults<T>> call() {
+                                    return of(collectLowLevelCacheEntries(bs,
+                                            key, decorator));
+                                }
+                            });
+                }
+            }
+            final ClusterResults<T> results = new ClusterResults<>();
+            for (final ClusterResults<T> named : fixityEngine.invokeAll(tasks)) {
+                results.addAll(named);
+            }
+            return results;
+        }
+
+        if (store instanceof InfinispanBinaryStore) {
+            try {
+                return collectClusterResults((InfinispanBinaryStore) store,
+                        key, transform);
+            } catch (final InterruptedException e) {
+                LOGGER.error(e.getMessage(), e);
+                Thread.currentThread().interrupt();
+                final ClusterResults<T> results = new ClusterResults<>();
+                results.addFailed(store.toString(), e);
+                return results;
+            }
+        }
+
+        final ClusterResults<T> results = new ClusterResults<>();
+        if (store != null) {
+            results.addResults(of(transform.apply(new LocalBinaryStoreEntry(
+                    store, key))));
+        }
+        return results;
+    }
+
+    /**
+     * Get the local file holding the content of a Node containing a jcr:data
+     * binary property, if it is kept in a FileSystemBinaryStore (or a
+     * FileSystemBinaryStore member of a CompositeBinaryStore)
+     *
+     * @param resource a JCR node that has a jcr:data property.
+     * @return the file, or null if the binary isn't in a local file
+     * @throws RepositoryException
+     */
+    public File getLocalFile(final Node resource) throws RepositoryException {
+        final BinaryKey key =
+                getBinaryKey.apply(resource.getProperty(JCR_DATA));
+        final BinaryStore store = getBinaryStore.apply(repo);
+
+        if (store instanceof FileSystemBinaryStore) {
+            return getLocalFile((FileSystemBinaryStore) store, key);
+        } else if (store instanceof CompositeBinaryStore) {
+            final Iterator<Map.Entry<String, BinaryStore>> it =
+                    ((CompositeBinaryStore) store).getNamedStoreIterator();
+            while (it.hasNext()) {
+                final BinaryStore bs = it.next().getValue();
+                if (bs instanceof FileSystemBinaryStore && bs.hasBinary(key)) {
+                    return getLocalFile((FileSystemBinaryStore) bs, key);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a stream over the chunks of a Node's jcr:data binary, read straight
+     * from the CacheStore of a LOCAL-mode InfinispanBinaryStore. Unlike the
+     * stream ModeShape hands out, this one can skip to an offset by loading
+     * only the chunk that holds it.
+     *
+     * @param resource a JCR node that has a jcr:data property.
+     * @return the stream, or null if the binary isn't in a local CacheStore
+     * @throws RepositoryException
+     */
+    public InputStream getLocalChunkStream(final Node resource)
+        throws RepositoryException {
+        final BinaryStore store = getBinaryStore.apply(repo);
+
+        if (!(store instanceof InfinispanBinaryStore)) {
+            return null;
+        }
+        final Cache<?, ?> blobCache =
+                ((InfinispanBinaryStore) store).getCaches().get(1);
+        if (blobCache.getCacheConfiguration().clustering().cacheMode()
+                .isClustered()) {
+            // other members may hold chunks this node's store doesn't
+            return null;
+        }
+        final CacheStore cacheStore = getCacheStore.apply(blobCache);
+        if (cacheStore == null) {
+            return null;
+        }
+
+        final BinaryKey key =
+                getBinaryKey.apply(resource.getProperty(JCR_DATA));
+        final String dataKey = key.toString() + DATA_SUFFIX;
+        final int chunkSize;
+        try {
+            if (!cacheStore.containsKey(dataKey + "-0")) {
+                return null;
+            }
+            chunkSize = chunkSizeOf(cacheStore, dataKey);
+        } catch (final CacheLoaderException e) {
+            LOGGER.debug("Couldn't inspect the chunks of {}: {}", key, e);
+            return null;
+        }
+        return new StoreChunkInputStream(cacheStore, dataKey, chunkSize,
+                READ_AHEAD);
+    }
+
+    /**
+     * Have the chunk manifests in the local CacheStores of the repository's
+     * Infinispan binary stores (including those in a CompositeBinaryStore)
+     * removed along with their binaries, since ModeShape doesn't know about
+     * them
+     */
+    @PostConstruct
+    public void removeManifestsWithBinaries() {
+        if (repo != null) {
+            removeManifestsWithBinaries(getBinaryStore.apply(repo));
+        }
+    }
+
+    private void removeManifestsWithBinaries(final BinaryStore store) {
+        if (store instanceof CompositeBinaryStore) {
+            final Iterator<Map.Entry<String, BinaryStore>> it =
+                    ((CompositeBinaryStore) store).getNamedStoreIterator();
+            while (it.hasNext()) {
+                removeManifestsWithBinaries(it.next().getValue());
+            }
+            return;
+        }
+        if (!(store instanceof InfinispanBinaryStore)) {
+            return;
+        }
+        final Cache<?, ?> blobCache =
+                ((InfinispanBinaryStore) store).getCaches().get(1);
+        final CacheStore cacheStore = getCacheStore.apply(blobCache);
+        if (cacheStore != null) {
+            final ChunkManifest.RemoveWithBinary listener =
+                    new ChunkManifest.RemoveWithBinary(cacheStore);
+            blobCache.addListener(listener);
+            manifestRemovers.put(blobCache, listener);
+        }
+    }
+
+    /**
+     * Stop listening for binaries being removed
+     */
+    @PreDestroy
+    public void stopRemovingManifests() {
+        for (final Map.Entry<Cache<?, ?>, Object> remover : manifestRemovers
+                .entrySet()) {
+            remover.getKey().removeListener(remover.getValue());
+        }
+        manifestRemovers.clear();
+    }
+
+    /**
+     * Find a binary's file in a FileSystemBinaryStore, which are kept under
+     * three tiers of directories named for the leading pairs of characters of
+     * the key
+     */
+    private static File getLocalFile(final FileSystemBinaryStore store,
+            final BinaryKey key) {
+        final String id = key.toString();
+        File file = store.getDirectory();
+        for (int tier = 0; tier < 3; tier++) {
+            file = new File(file, id.substring(tier * 2, tier * 2 + 2));
+        }
+        file = new File(file, id);
+        return file.isFile() ? file : null;
+    }
+
     /**
      * Get the low-level cache entries for a Node containing a jcr:data binary
      * property
@@ -211,6 +517,54 @@ public class LowLevelStorageService {
 
     }
 
+    /**
+     * Get the external identifiers of everywhere the binary in a Node's
+     * jcr:data property is stored. These are remembered for a while (see
+     * {@link #LOCATION_CACHE_TTL_PROPERTY}), so that describing a binary
+     * doesn't have to ask every store, or every cluster member, each time.
+     *
+     * @param resource a JCR node that has a jcr:data property.
+     * @return the external identifiers of the binary's low-level cache entries
+     * @throws RepositoryException if the jcr:data property isn't found
+     */
+    public Set<String> getLocations(final Node resource)
+        throws RepositoryException {
+        final BinaryKey key =
+            getBinaryKey.apply(resource.getProperty(JCR_DATA));
+        final Set<String> cached = locations.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        locationCacheMissCounter.inc();
+        final ClusterResults<LowLevelCacheEntry> entries =
+            collectLowLevelCacheEntries(getBinaryStore.apply(repo), key,
+                    this.echo);
+        final ImmutableSet.Builder<String> found = builder();
+        for (final LowLevelCacheEntry entry : entries.getResults()) {
+            found.add(entry.getExternalIdentifier());
+        }
+        final Set<String> result = found.build();
+        // a partial answer is only good for this request: ask again next time
+        if (entries.isComplete()) {
+            locations.put(key, result);
+        } else {
+            LOGGER.debug("Not remembering locations of {}: members {} timed "
+                    + "out and {} failed", key, entries.getTimedOutMembers(),
+                    entries.getFailedMembers().keySet());
+        }
+        return result;
+    }
+
+    /**
+     * Forget where a binary is stored, e.g. because it's just been stored
+     * again
+     *
+     * @param key
+     */
+    public static void invalidateLocations(final BinaryKey key) {
+        locations.invalidate(key);
+    }
+
     /**
      * Get the low-level cache entries for a JCR Binary property
      *
@@ -285,7 +639,9 @@ public class LowLevelStorageService {
     }
 
     /**
-     * Get the transform results in a clustered Infinispan binary store
+     * Get the transform results in a clustered Infinispan binary store. Any
+     * cluster members that haven't answered by the deadline are left out of
+     * the results (and logged).
      *
      * @param cacheStore the Modeshape BinaryStore to use
      * @param key the BinaryKey we want to transform
@@ -298,25 +654,123 @@ public class LowLevelStorageService {
         final BinaryKey key,
         final Function<LowLevelCacheEntry, T> transform)
         throws InterruptedException, ExecutionException {
-        final DistributedExecutorService exec = ServiceHelpers.getClusterExecutor(
-                cacheStore);
-        @SuppressWarnings({"synthetic-access", "unchecked", "rawtypes"})
-        final List<Future<Collection<T>>> futures =
-                exec.submitEverywhere(new CacheLocalTransform(key,
-                        new Unroll<T>(transform)));
-        final Set<T> results = new HashSet<T>(futures.size());
-
-        while (futures.size() > 0) {
-            final Iterator<Future<Collection<T>>> futureIter =
-                    futures.iterator();
-            while (futureIter.hasNext()) {
-                final Future<Collection<T>> future = futureIter.next();
+        final ClusterResults<T> results =
+                collectClusterResults(cacheStore, key, transform);
+
+        if (!results.getTimedOutMembers().isEmpty()) {
+            LOGGER.warn("Cluster members {} did not answer for key {} within"
+                    + " {}ms; returning partial results",
+                    results.getTimedOutMembers(), key, clusterTimeout);
+        }
+        for (final Map.Entry<String, Throwable> failure : results
+                .getFailedMembers().entrySet()) {
+            LOGGER.error("Cluster member {} failed for key {}: {}", failure
+                    .getKey(), key, failure.getValue());
+        }
+
+        return results.getResults();
+    }
+
+    /**
+     * Run the transform on every member of a clustered Infinispan binary
+     * store, and gather the results as the members complete, until they have
+     * all answered or the cluster timeout has elapsed.
+     *
+     * @param cacheStore the Modeshape BinaryStore to use
+     * @param key the BinaryKey we want to transform
+     * @param transform the Function to apply
+     * @return the results, and the members that timed out or failed
+     * @throws InterruptedException
+     */
+    public <T> ClusterResults<T> collectClusterResults(
+        final InfinispanBinaryStore cacheStore, final BinaryKey key,
+        final Function<LowLevelCacheEntry, T> transform)
+        throws InterruptedException {
+        final DistributedExecutorService exec = getClusterExecutor(cacheStore);
+        final CacheLocalTransform<Object, Object, Collection<T>> task =
+                new CacheLocalTransform<Object, Object, Collection<T>>(key,
+                        new Unroll<T>(transform));
+
+        final Map<String, Future<Collection<T>>> pending =
+                new LinkedHashMap<>();
+        final List<Address> members = getClusterMembers(cacheStore);
+        if (members.isEmpty()) {
+            final List<Future<Collection<T>>> futures =
+                    exec.submitEverywhere(task);
+            for (int i = 0; i < futures.size(); i++) {
+                pending.put("member-" + i, futures.get(i));
+            }
+        } else {
+            for (final Address member : members) {
+                pending.put(member.toString(), exec.submit(member, task));
+            }
+        }
+
+        final ClusterResults<T> results = new ClusterResults<>();
+        final long start = nanoTime();
+        final long deadline = start + MILLISECONDS.toNanos(clusterTimeout);
+
+        // wait for each member on its own, so that each is timed when it
+        // actually answers, and take them in the order they answer
+        final CompletionService<Answer<T>> answers =
+                new ExecutorCompletionService<>(ClusterWaiters.executor);
+        final List<Future<Answer<T>>> waiters =
+                new ArrayList<>(pending.size());
+        for (final Map.Entry<String, Future<Collection<T>>> member : pending
+                .entrySet()) {
+            waiters.add(answers.submit(new Waiter<>(member.getKey(), member
+                    .getValue(), deadline)));
+        }
+
+        boolean pastDeadline = false;
+        try {
+            while (!pending.isEmpty()) {
+                final long remaining = deadline - nanoTime();
+                if (remaining <= 0) {
+                    pastDeadline = true;
+                    break;
+                }
+                final Future<Answer<T>> next =
+                        answers.poll(remaining, NANOSECONDS);
+                if (next == null) {
+                    pastDeadline = true;
+                    break;
+                }
+                final Answer<T> answer;
                 try {
-                    final Collection<T> result = future.get(100, MILLISECONDS);
-                    futureIter.remove();
-                    results.addAll(result);
-                } catch (final TimeoutException e) {
-                    // we're just going to ignore this and try again!
+                    answer = next.get();
+                } catch (final ExecutionException e) {
+                    throw propagate(e.getCause());
+                }
+                if (answer == null) {
+                    // its waiter gave up at the deadline
+                    continue;
+                }
+                pending.remove(answer.member);
+                getMetrics().timer(
+                        name(LowLevelStorageService.class,
+                                "cluster-node-latency", answer.member))
+                        .update(answer.answered - start, NANOSECONDS);
+                if (answer.failure == null) {
+                    results.addResults(answer.results);
+                } else {
+                    results.addFailed(answer.member, answer.failure);
+                }
+            }
+        } finally {
+            // the waiters only ever block on a member's future, so
+            // interrupting them is safe, and frees their threads for others
+            for (final Future<Answer<T>> waiter : waiters) {
+                waiter.cancel(true);
+            }
+            for (final Map.Entry<String, Future<Collection<T>>> member : pending
+                    .entrySet()) {
+                member.getValue().cancel(true);
+                // members we stopped waiting for because we were interrupted
+                // (or something failed) didn't time out
+                if (pastDeadline) {
+                    results.addTimedOut(member.getKey());
+                    clusterTimeoutCounter.inc();
                 }
             }
         }
@@ -324,6 +778,85 @@ public class LowLevelStorageService {
         return results;
     }
 
+    /**
+     * Daemon threads that wait for cluster members to answer, no more than
+     * {@link #CLUSTER_WAITERS_PROPERTY} of them however many members or
+     * requests there are. When they are all busy, a member's answer may be
+     * noticed (and timed) a little late, but never after the deadline.
+     */
+    private static class ClusterWaiters {
+
+        private static final int SIZE = getInteger(CLUSTER_WAITERS_PROPERTY,
+                DEFAULT_CLUSTER_WAITERS);
+
+        static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                SIZE, SIZE, 60, SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+                        "fcrepo-cluster-waiter-%d").build());
+
+        static {
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Waits (until the deadline at most) for one cluster member to answer,
+     * and notes when it did
+     */
+    private static class Waiter<T> implements Callable<Answer<T>> {
+
+        private final String member;
+
+        private final Future<Collection<T>> future;
+
+        private final long deadline;
+
+        Waiter(final String member, final Future<Collection<T>> future,
+                final long deadline) {
+            this.member = member;
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return the member's answer, or null if it didn't answer in time
+         */
+        @Override
+        public Answer<T> call() throws InterruptedException {
+            try {
+                final Collection<T> results =
+                        future.get(deadline - nanoTime(), NANOSECONDS);
+                return new Answer<>(member, nanoTime(), results, null);
+            } catch (final ExecutionException e) {
+                return new Answer<>(member, nanoTime(), null, e.getCause());
+            } catch (final TimeoutException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * One cluster member's answer
+     */
+    private static class Answer<T> {
+
+        private final String member;
+
+        private final long answered;
+
+        private final Collection<T> results;
+
+        private final Throwable failure;
+
+        Answer(final String member, final long answered,
+                final Collection<T> results, final Throwable failure) {
+            this.member = member;
+            this.answered = answered;
+            this.results = results;
+            this.failure = failure;
+        }
+    }
+
     /**
      * Set the repository (used for testing)
      */
@@ -345,6 +878,27 @@ public class LowLevelStorageService {
         this.getBinaryKey = getBinaryKey;
     }
 
+    /**
+     * Set the function that retrieves the CacheStore for a Cache
+     */
+    public void setGetCacheStore(final GetCacheStore getCacheStore) {
+        this.getCacheStore = getCacheStore;
+    }
+
+    /**
+     * Set how long (in ms) to wait for cluster members to answer
+     */
+    public void setClusterTimeout(final long clusterTimeout) {
+        this.clusterTimeout = clusterTimeout;
+    }
+
+    /**
+     * Set the engine used to transform the members of a CompositeBinaryStore
+     */
+    public void setFixityEngine(final FixityEngine fixityEngine) {
+        this.fixityEngine = fixityEngine;
+    }
+
     /**
      * @author cbeer
      * @date 2013
@@ -55,6 +55,7 @@ import org.fcrepo.kernel.rdf.GraphSubjects;
 import org.fcrepo.kernel.rdf.JcrRdfTools;
 import org.fcrepo.kernel.rdf.impl.NodeTypeRdfContext;
 import org.fcrepo.kernel.utils.FedoraTypesUtils;
+import org.fcrepo.kernel.utils.JcrNamespaceSnapshot;
 import org.fcrepo.kernel.utils.NamespaceChangedStatementListener;
 import org.fcrepo.kernel.utils.iterators.RdfStream;
 import org.modeshape.jcr.api.JcrTools;
@@ -362,5 +363,7 @@ public class RepositoryService extends JcrTools implements FedoraJcrTypes {
                                   final InputStream cndStream) throws RepositoryException, IOException {
         final NodeTypeManager nodeTypeManager = (NodeTypeManager) session.getWorkspace().getNodeTypeManager();
         nodeTypeManager.registerNodeTypes(cndStream, true);
+        // the CND may have brought new or remapped namespaces with it
+        JcrNamespaceSnapshot.invalidate();
     }
 }
@@ -21,6 +21,8 @@ import static org.modeshape.jcr.api.JcrConstants.JCR_DATA;
 import static org.modeshape.jcr.api.JcrConstants.NT_FILE;
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -34,6 +36,7 @@ import org.fcrepo.kernel.utils.FixityResult;
 import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.infinispan.distexec.DefaultExecutorService;
 import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.remoting.transport.Address;
 import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
 import org.springframework.stereotype.Component;
 
@@ -144,6 +147,20 @@ public abstract class ServiceHelpers {
         return new DefaultExecutorService(cacheStore.getCaches().get(1));
     }
 
+    /**
+     * Get the addresses of the members of the cluster backing an Infinispan
+     * binary store, or an empty list if it isn't clustered
+     *
+     * @param cacheStore
+     * @return
+     */
+    public static List<Address> getClusterMembers(
+            final InfinispanBinaryStore cacheStore) {
+        final List<Address> members =
+                cacheStore.getCaches().get(1).getCacheManager().getMembers();
+        return members == null ? Collections.<Address>emptyList() : members;
+    }
+
     /**
      * Get the fixity function to map a low-level cache entry to its fixity
      * result
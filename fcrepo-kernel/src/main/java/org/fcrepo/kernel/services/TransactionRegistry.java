@@ -0,0 +1,55 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+/**
+ * Keeps track of which member of a cluster owns each open transaction, so that
+ * a request for a transaction that lives on another node can be sent there.
+ * A transaction's JCR session (and its uncommitted changes) only exists on the
+ * node that began it.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public interface TransactionRegistry {
+
+    /**
+     * Record that this node owns a transaction, or renew the record. The
+     * record is forgotten after its lifespan, so that the transactions of a
+     * node that dies aren't looked for there forever.
+     *
+     * @param txId
+     * @param lifespan how long (in ms) to keep the record
+     */
+    void register(String txId, long lifespan);
+
+    /**
+     * Forget a transaction owned by this node
+     *
+     * @param txId
+     */
+    void unregister(String txId);
+
+    /**
+     * Find the node that owns a transaction
+     *
+     * @param txId
+     * @return the base URL of the other node that owns the transaction, or
+     *         null if no other node does
+     */
+    String locate(String txId);
+}
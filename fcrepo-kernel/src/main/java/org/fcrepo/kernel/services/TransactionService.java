@@ -19,29 +19,49 @@
 
 package org.fcrepo.kernel.services;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.fcrepo.kernel.Transaction;
 import org.fcrepo.kernel.TxSession;
+import org.fcrepo.kernel.exception.RemoteTransactionException;
 import org.fcrepo.kernel.exception.TransactionMissingException;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.codahale.metrics.Gauge;
+
 /**
  * This is part of the strawman implementation for Fedora transactions This
  * service implements a simple {@link Transaction} service which is able to
  * create/commit/rollback {@link Transaction} objects A {@link Scheduled}
  * annotation is used for removing timed out Transactions
+ *
+ * Open transactions are kept in a concurrent map, and their expiry dates in a
+ * {@link DelayQueue}, so the reaper only ever looks at transactions that are
+ * due and never holds up beginning or looking up others. Using a transaction
+ * doesn't touch the queue: a transaction found there that has been used since
+ * it was queued is just queued again for its new expiry date.
+ *
+ * In a cluster, a {@link TransactionRegistry} (if one is configured) records
+ * which node owns each transaction, so that asking for a transaction open on
+ * another node fails with a {@link RemoteTransactionException} saying where
+ * it is, rather than as though it never existed.
  * 
  * @author frank asseg
  */
@@ -56,36 +76,79 @@ public class TransactionService {
     static final String FCREPO4_TX_ID = "fcrepo4.tx.id";
 
     /**
-     * TODO since transactions have to be available on all nodes, they have to
-     * be either persisted or written to a distributed map or sth, not just this
-     * plain hashmap that follows
+     * The transactions open on this node
      */
-    private static Map<String, Transaction> transactions =
+    private static ConcurrentMap<String, Transaction> transactions =
             new ConcurrentHashMap<String, Transaction>();
 
+    /**
+     * When each open transaction was last known to expire
+     */
+    private static DelayQueue<Expiry> expiries = new DelayQueue<>();
+
+    /**
+     * How long the most recently reaped transaction outlived its expiry date
+     */
+    private static final AtomicLong expiryLag = new AtomicLong();
+
+    static {
+        registerGauge(name(TransactionService.class, "open-transactions"),
+                new Gauge<Integer>() {
+
+                    @Override
+                    public Integer getValue() {
+                        return transactions.size();
+                    }
+                });
+        registerGauge(name(TransactionService.class, "expiry-lag"),
+                new Gauge<Long>() {
+
+                    @Override
+                    public Long getValue() {
+                        return expiryLag.get();
+                    }
+                });
+    }
+
     public static final long REAP_INTERVAL = 1000;
 
+    @Autowired(required = false)
+    private TransactionRegistry transactionRegistry;
+
+    @Autowired(required = false)
+    private VersionCheckpointQueue checkpointQueue;
+
     /**
-     * Every REAP_INTERVAL milliseconds, check for expired transactions. If the
-     * tx is expired, roll it back and remove it from the registry.
+     * Every REAP_INTERVAL milliseconds, roll back the transactions that have
+     * expired and remove them from the registry.
      */
     @Scheduled(fixedRate = REAP_INTERVAL)
     public void removeAndRollbackExpired() {
-        synchronized (transactions) {
-            final Iterator<Entry<String, Transaction>> txs =
-                    transactions.entrySet().iterator();
-            while (txs.hasNext()) {
-                final Transaction tx = txs.next().getValue();
-                if (tx.getExpires().getTime() <= currentTimeMillis()) {
-                    try {
-                        tx.rollback();
-                    } catch (final RepositoryException e) {
-                        LOGGER.error(
-                                "Got exception rolling back expired" +
-                                        " transaction {}: {}",
-                                        tx, e);
-                    }
-                    txs.remove();
+        Expiry due;
+        while ((due = expiries.poll()) != null) {
+            final Transaction tx = transactions.get(due.txId);
+            if (tx == null) {
+                // already committed or rolled back
+                continue;
+            }
+            final long expires = tx.getExpires().getTime();
+            final long now = currentTimeMillis();
+            if (expires > now) {
+                // used since it was queued
+                expiries.offer(new Expiry(due.txId, expires));
+                share(due.txId, expires);
+                continue;
+            }
+            if (transactions.remove(due.txId, tx)) {
+                unregister(due.txId);
+                expiryLag.set(now - expires);
+                try {
+                    tx.rollback();
+                } catch (final RepositoryException e) {
+                    LOGGER.error(
+                            "Got exception rolling back expired" +
+                                    " transaction {}: {}",
+                                    tx, e);
                 }
             }
         }
@@ -100,10 +163,40 @@ public class TransactionService {
     public Transaction beginTransaction(final Session sess)
         throws RepositoryException {
         final Transaction tx = new Transaction(sess);
+        register(tx);
+        sess.setNamespacePrefix(FCREPO4_TX_ID, tx.getId());
+        return tx;
+    }
+
+    /**
+     * Add a transaction to the currently open ones, and watch for its expiry
+     *
+     * @param tx
+     */
+    void register(final Transaction tx) {
         final String txId = tx.getId();
         transactions.put(txId, tx);
-        sess.setNamespacePrefix(FCREPO4_TX_ID, txId);
-        return tx;
+        final long expires = tx.getExpires().getTime();
+        expiries.offer(new Expiry(txId, expires));
+        share(txId, expires);
+    }
+
+    /**
+     * Tell the rest of the cluster that this node owns a transaction until a
+     * little after it expires. The record is renewed whenever the reaper
+     * finds the transaction has been used, before the record runs out.
+     */
+    private void share(final String txId, final long expires) {
+        if (transactionRegistry != null) {
+            transactionRegistry.register(txId, expires - currentTimeMillis() +
+                    2 * REAP_INTERVAL);
+        }
+    }
+
+    private void unregister(final String txId) {
+        if (transactionRegistry != null) {
+            transactionRegistry.unregister(txId);
+        }
     }
 
     /**
@@ -118,6 +211,13 @@ public class TransactionService {
         final Transaction tx = transactions.get(txid);
 
         if (tx == null) {
+            final String owner =
+                transactionRegistry == null ? null : transactionRegistry
+                        .locate(txid);
+            if (owner != null) {
+                throw new RemoteTransactionException("Transaction " + txid +
+                        " is open on " + owner, owner);
+            }
             throw new TransactionMissingException(
                     "Transaction is not available");
         }
@@ -174,18 +274,41 @@ public class TransactionService {
     }
 
     /**
-     * Commit a {@link Transaction} with the given id
+     * Commit a {@link Transaction} with the given id, leaving its version
+     * checkpoints to be made in the background
      * 
      * @param txid the id of the {@link Transaction}
      * @throws RepositoryException
      */
     public Transaction commit(final String txid) throws RepositoryException {
+        return commit(txid, false);
+    }
+
+    /**
+     * Commit a {@link Transaction} with the given id
+     * 
+     * @param txid the id of the {@link Transaction}
+     * @param synchronousVersioning whether to make the transaction's version
+     *        checkpoints before returning, rather than in the background
+     * @throws RepositoryException
+     */
+    public Transaction commit(final String txid,
+            final boolean synchronousVersioning) throws RepositoryException {
         final Transaction tx = transactions.remove(txid);
         if (tx == null) {
             throw new RepositoryException("Transaction with id " + txid +
                     " is not available");
         }
-        tx.commit();
+        unregister(txid);
+        if (synchronousVersioning || checkpointQueue == null) {
+            tx.commit();
+        } else {
+            final String workspace = tx.getWorkspaceName();
+            tx.commit(false);
+            if (!tx.getVersionedPaths().isEmpty()) {
+                checkpointQueue.enqueue(workspace, tx.getVersionedPaths());
+            }
+        }
         return tx;
     }
 
@@ -202,8 +325,42 @@ public class TransactionService {
             throw new RepositoryException("Transaction with id " + txid +
                     " is not available");
         }
+        unregister(txid);
         tx.rollback();
         return tx;
     }
 
+    private static void registerGauge(final String name, final Gauge<?> gauge) {
+        try {
+            getMetrics().register(name, gauge);
+        } catch (final IllegalArgumentException e) {
+            LOGGER.debug("Gauge {} was already registered", name);
+        }
+    }
+
+    /**
+     * An open transaction's place in the expiry queue
+     */
+    private static final class Expiry implements Delayed {
+
+        private final String txId;
+
+        private final long expires;
+
+        Expiry(final String txId, final long expires) {
+            this.txId = txId;
+            this.expires = expires;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(expires - currentTimeMillis(), MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed o) {
+            final long other = ((Expiry) o).expires;
+            return expires < other ? -1 : expires == other ? 0 : 1;
+        }
+    }
 }
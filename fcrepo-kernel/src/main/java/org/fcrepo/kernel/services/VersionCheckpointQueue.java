@@ -0,0 +1,649 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Charsets.UTF_8;
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.lang.Math.min;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fcrepo.metrics.RegistryService.getMetrics;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.version.VersionManager;
+
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Makes the version checkpoints asked for by committed transactions in the
+ * background, so that committing a transaction that touched thousands of
+ * versionable objects returns as soon as its changes are saved.
+ *
+ * Checkpoints are taken off the queue in batches, grouped by workspace, and
+ * made with one session per workspace. A checkpoint that fails is put back on
+ * the queue and tried again, backing off while failures continue, up to
+ * {@value #MAX_ATTEMPTS_PROPERTY} attempts; one that still fails is logged to
+ * the {@value #DEAD_LETTER_LOGGER} logger, with its workspace and path, so it
+ * can be made by hand. One whose node has since been removed, or made
+ * unversionable, is dropped.
+ *
+ * Queued checkpoints are also written to a journal file (see
+ * {@value #JOURNAL_FILE_PROPERTY}) until they have been made or given up on,
+ * and those still outstanding when the server starts are queued again. When
+ * the repository is shut down cleanly, the checkpoints still queued are made
+ * before it goes (this bean depends on the repository, so it is destroyed
+ * first).
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+@Component
+public class VersionCheckpointQueue {
+
+    private static final Logger LOGGER =
+        getLogger(VersionCheckpointQueue.class);
+
+    /**
+     * The logger to which checkpoints that are given up on are written
+     */
+    public static final String DEAD_LETTER_LOGGER =
+        "org.fcrepo.kernel.services.VersionCheckpointQueue.deadLetter";
+
+    private static final Logger DEAD_LETTERS = getLogger(DEAD_LETTER_LOGGER);
+
+    public static final String BATCH_SIZE_PROPERTY =
+        "fcrepo.versioning.batchSize";
+
+    /**
+     * System property for how long (in ms) to wait before retrying failed
+     * checkpoints; the wait doubles while failures continue
+     */
+    public static final String RETRY_PAUSE_PROPERTY =
+        "fcrepo.versioning.retryPause";
+
+    /**
+     * System property for how many times to try a checkpoint before giving up
+     */
+    public static final String MAX_ATTEMPTS_PROPERTY =
+        "fcrepo.versioning.maxAttempts";
+
+    /**
+     * System property for the file queued checkpoints are journaled in
+     */
+    public static final String JOURNAL_FILE_PROPERTY =
+        "fcrepo.versioning.journal";
+
+    public static final String DEFAULT_JOURNAL_FILE =
+        "fcrepo-version-checkpoints.journal";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final long DEFAULT_RETRY_PAUSE = 1000;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    /**
+     * The longest the worker waits between retries
+     */
+    static final long MAX_RETRY_PAUSE = 60L * 1000;
+
+    static final Counter checkpointCounter = getMetrics().counter(
+            name(VersionCheckpointQueue.class, "checkpoints"));
+
+    static final Counter retryCounter = getMetrics().counter(
+            name(VersionCheckpointQueue.class, "checkpoint-retries"));
+
+    static final Counter deadLetterCounter = getMetrics().counter(
+            name(VersionCheckpointQueue.class, "checkpoint-dead-letters"));
+
+    @Inject
+    private Repository repository;
+
+    /**
+     * Checkpoints waiting to be made
+     */
+    private final BlockingQueue<Checkpoint> pending =
+        new LinkedBlockingQueue<>();
+
+    private int batchSize = getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+
+    private long retryPause = getLong(RETRY_PAUSE_PROPERTY,
+            DEFAULT_RETRY_PAUSE);
+
+    private int maxAttempts = getInteger(MAX_ATTEMPTS_PROPERTY,
+            DEFAULT_MAX_ATTEMPTS);
+
+    private File journalFile = new File(System.getProperty(
+            JOURNAL_FILE_PROPERTY, DEFAULT_JOURNAL_FILE));
+
+    private volatile Journal journal;
+
+    private ExecutorService worker;
+
+    private volatile boolean stopping = false;
+
+    /**
+     * Wakes the worker from a pause between retries when it is stopped
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Start making queued checkpoints in the background
+     */
+    @PostConstruct
+    public void start() {
+        recover();
+        final String depth = name(VersionCheckpointQueue.class, "queue-depth");
+        getMetrics().remove(depth);
+        getMetrics().register(depth, new Gauge<Integer>() {
+
+            @Override
+            public Integer getValue() {
+                return pending.size();
+            }
+        });
+        worker =
+            newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                    .setNameFormat("fcrepo-version-checkpoints").build());
+        worker.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                work();
+            }
+        });
+    }
+
+    /**
+     * Open the journal, and queue again the checkpoints left in it
+     */
+    void recover() {
+        final List<Checkpoint> recovered = new ArrayList<>();
+        try {
+            journal = Journal.open(journalFile, recovered);
+        } catch (final IOException e) {
+            LOGGER.warn("Couldn't open checkpoint journal {}; checkpoints "
+                    + "queued from now on will be lost if the server dies: {}",
+                    journalFile.getAbsolutePath(), e);
+        }
+        if (!recovered.isEmpty()) {
+            LOGGER.info("Queueing {} checkpoints left over from before the "
+                    + "last shutdown", recovered.size());
+            pending.addAll(recovered);
+        }
+    }
+
+    /**
+     * Stop the background worker once it has finished the batch in hand
+     * (interrupting it could leave a checkpoint half made), then make the
+     * checkpoints still queued
+     *
+     * @throws InterruptedException
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        stopped.countDown();
+        if (worker != null) {
+            worker.shutdown();
+            if (!worker.awaitTermination(30, SECONDS)) {
+                LOGGER.warn("Still making a batch of checkpoints after 30s");
+            }
+            worker = null;
+        }
+        LOGGER.info("Making {} queued checkpoints before shutting down",
+                pending.size());
+        drain();
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Queue checkpoints of some nodes
+     *
+     * @param workspace the name of the workspace the nodes are in
+     * @param paths the nodes' paths
+     */
+    public void enqueue(final String workspace, final Collection<String> paths) {
+        final List<Checkpoint> checkpoints = new ArrayList<>(paths.size());
+        for (final String path : paths) {
+            checkpoints.add(new Checkpoint(workspace, path, 0));
+        }
+        if (journal != null) {
+            journal.added(checkpoints);
+        }
+        pending.addAll(checkpoints);
+        LOGGER.debug("Queued {} checkpoints, {} now waiting", paths.size(),
+                pending.size());
+    }
+
+    /**
+     * How many checkpoints are waiting to be made
+     *
+     * @return
+     */
+    public int getDepth() {
+        return pending.size();
+    }
+
+    private void work() {
+        long pause = retryPause;
+        try {
+            while (!stopping) {
+                if (checkpointBatch() > 0) {
+                    stopped.await(pause, MILLISECONDS);
+                    pause = min(pause * 2, MAX_RETRY_PAUSE);
+                } else {
+                    pause = retryPause;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info("Stopped making version checkpoints in the background, "
+                + "{} still queued", pending.size());
+    }
+
+    /**
+     * Wait (for a second at most) for checkpoints to be queued, then make the
+     * next batch of them
+     *
+     * @return the number of checkpoints that failed and were queued again
+     * @throws InterruptedException
+     */
+    int checkpointBatch() throws InterruptedException {
+        final Checkpoint first = pending.poll(1, SECONDS);
+        if (first == null) {
+            return 0;
+        }
+        final List<Checkpoint> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        pending.drainTo(batch, batchSize - 1);
+        return checkpoint(batch);
+    }
+
+    /**
+     * Make every queued checkpoint now, retrying failures without waiting,
+     * until each has been made or given up on
+     */
+    void drain() {
+        final List<Checkpoint> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            checkpoint(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Make a batch of checkpoints, one session per workspace
+     *
+     * @return the number that failed and were queued again
+     */
+    private int checkpoint(final List<Checkpoint> batch) {
+        final Map<String, List<Checkpoint>> byWorkspace =
+            new LinkedHashMap<>();
+        for (final Checkpoint checkpoint : batch) {
+            List<Checkpoint> checkpoints = byWorkspace.get(checkpoint.workspace);
+            if (checkpoints == null) {
+                checkpoints = new ArrayList<>();
+                byWorkspace.put(checkpoint.workspace, checkpoints);
+            }
+            checkpoints.add(checkpoint);
+        }
+
+        int failed = 0;
+        for (final Map.Entry<String, List<Checkpoint>> workspace : byWorkspace
+                .entrySet()) {
+            failed += checkpoint(workspace.getKey(), workspace.getValue());
+        }
+        return failed;
+    }
+
+    /**
+     * Make checkpoints of some nodes in one workspace, queueing again those
+     * that fail
+     *
+     * @return the number queued again
+     */
+    private int checkpoint(final String workspace,
+            final List<Checkpoint> checkpoints) {
+        final List<Checkpoint> failed = new ArrayList<>();
+        try {
+            final Session session = repository.login(workspace);
+            try {
+                final VersionManager versionManager =
+                    session.getWorkspace().getVersionManager();
+                for (final Checkpoint checkpoint : checkpoints) {
+                    try {
+                        versionManager.checkpoint(checkpoint.path);
+                        checkpointCounter.inc();
+                    } catch (final PathNotFoundException
+                            | UnsupportedRepositoryOperationException e) {
+                        LOGGER.debug("Dropping checkpoint of {}: {}",
+                                checkpoint.path, e);
+                    } catch (final RepositoryException e) {
+                        LOGGER.warn("Couldn't make checkpoint of {}: {}",
+                                checkpoint.path, e);
+                        failed.add(checkpoint);
+                    }
+                }
+            } finally {
+                session.logout();
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.warn("Couldn't log into workspace {} to make checkpoints: {}",
+                    workspace, e);
+            failed.clear();
+            failed.addAll(checkpoints);
+        }
+
+        final List<Checkpoint> finished = new ArrayList<>(checkpoints);
+        int requeued = 0;
+        for (final Checkpoint checkpoint : failed) {
+            final int attempts = checkpoint.attempts + 1;
+            if (attempts >= maxAttempts) {
+                deadLetterCounter.inc();
+                DEAD_LETTERS.error(
+                        "Gave up on checkpoint of {} in workspace {} "
+                                + "after {} attempts", checkpoint.path,
+                        workspace, attempts);
+            } else {
+                finished.remove(checkpoint);
+                pending.add(new Checkpoint(workspace, checkpoint.path,
+                        attempts));
+                requeued++;
+            }
+        }
+        if (journal != null) {
+            journal.done(finished);
+        }
+        retryCounter.inc(requeued);
+        return requeued;
+    }
+
+    /**
+     * Set the repository (used for testing)
+     */
+    public void setRepository(final Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Set the file queued checkpoints are journaled in (takes effect when
+     * started)
+     */
+    public void setJournalFile(final File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Set how many checkpoints are taken off the queue at a time
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set how long (in ms) to wait before retrying failed checkpoints
+     */
+    public void setRetryPause(final long retryPause) {
+        this.retryPause = retryPause;
+    }
+
+    /**
+     * Set how many times to try a checkpoint before giving up
+     */
+    public void setMaxAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * A node to make a checkpoint of
+     */
+    private static final class Checkpoint {
+
+        private final String workspace;
+
+        private final String path;
+
+        private final int attempts;
+
+        Checkpoint(final String workspace, final String path,
+                final int attempts) {
+            this.workspace = workspace;
+            this.path = path;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * The checkpoints queued but not yet made (or given up on), kept in an
+     * append-only file: a line for each one queued, and one for each one
+     * done. It is rewritten with only the outstanding checkpoints when
+     * opened, and emptied whenever none are left.
+     */
+    private static final class Journal {
+
+        private static final char ADDED = '+';
+
+        private static final char DONE = '-';
+
+        private final File file;
+
+        private FileOutputStream stream;
+
+        private Writer out;
+
+        private int outstanding;
+
+        private Journal(final File file) {
+            this.file = file;
+        }
+
+        /**
+         * Open a journal, reading back the checkpoints still outstanding in
+         * it
+         *
+         * @param file
+         * @param recovered to add the outstanding checkpoints to
+         * @return
+         * @throws IOException
+         */
+        static Journal open(final File file,
+                final Collection<Checkpoint> recovered) throws IOException {
+            final Map<String, Integer> counts = new LinkedHashMap<>();
+            if (file.isFile()) {
+                try (final BufferedReader in =
+                        new BufferedReader(new InputStreamReader(
+                                new FileInputStream(file), UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.length() < 2) {
+                            continue;
+                        }
+                        final String entry = line.substring(2);
+                        final Integer count = counts.get(entry);
+                        if (line.charAt(0) == ADDED) {
+                            counts.put(entry, count == null ? 1 : count + 1);
+                        } else if (count != null && count > 1) {
+                            counts.put(entry, count - 1);
+                        } else {
+                            counts.remove(entry);
+                        }
+                    }
+                }
+            }
+            final List<Checkpoint> outstanding = new ArrayList<>();
+            for (final Map.Entry<String, Integer> entry : counts.entrySet()) {
+                final Checkpoint checkpoint = decode(entry.getKey());
+                if (checkpoint == null) {
+                    LOGGER.warn("Skipping unreadable checkpoint journal "
+                            + "entry: {}", entry.getKey());
+                    continue;
+                }
+                for (int i = 0; i < entry.getValue(); i++) {
+                    outstanding.add(checkpoint);
+                }
+            }
+            final Journal journal = new Journal(file);
+            journal.rewrite(outstanding);
+            recovered.addAll(outstanding);
+            return journal;
+        }
+
+        /**
+         * Record some checkpoints as queued, making sure they are on disk
+         * before returning
+         */
+        synchronized void added(final Collection<Checkpoint> checkpoints) {
+            try {
+                for (final Checkpoint checkpoint : checkpoints) {
+                    write(ADDED, checkpoint);
+                }
+                out.flush();
+                stream.getFD().sync();
+                outstanding += checkpoints.size();
+            } catch (final IOException e) {
+                LOGGER.warn("Couldn't journal {} checkpoints: {}",
+                        checkpoints.size(), e);
+            }
+        }
+
+        /**
+         * Record some checkpoints as made or given up on
+         */
+        synchronized void done(final Collection<Checkpoint> checkpoints) {
+            try {
+                outstanding -= checkpoints.size();
+                if (outstanding <= 0) {
+                    rewrite(Collections.<Checkpoint> emptyList());
+                    return;
+                }
+                for (final Checkpoint checkpoint : checkpoints) {
+                    write(DONE, checkpoint);
+                }
+                out.flush();
+            } catch (final IOException e) {
+                LOGGER.warn("Couldn't journal {} checkpoints as done: {}",
+                        checkpoints.size(), e);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                LOGGER.warn("Couldn't close checkpoint journal {}: {}", file,
+                        e);
+            }
+        }
+
+        /**
+         * Replace the file with one listing only these checkpoints, and
+         * append to that from now on
+         */
+        private void rewrite(final Collection<Checkpoint> checkpoints)
+            throws IOException {
+            if (out != null) {
+                out.close();
+            }
+            final File temp = new File(file.getPath() + ".tmp");
+            try (final Writer rewritten =
+                    new OutputStreamWriter(new FileOutputStream(temp), UTF_8)) {
+                for (final Checkpoint checkpoint : checkpoints) {
+                    rewritten.write(ADDED + " " + encode(checkpoint) + "\n");
+                }
+            }
+            if (!temp.renameTo(file)) {
+                // some platforms won't rename over an existing file
+                if (!file.delete() || !temp.renameTo(file)) {
+                    throw new IOException("Couldn't replace " + file);
+                }
+            }
+            stream = new FileOutputStream(file, true);
+            out = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+            outstanding = checkpoints.size();
+        }
+
+        private void write(final char what, final Checkpoint checkpoint)
+            throws IOException {
+            out.write(what + " " + encode(checkpoint) + "\n");
+        }
+
+        private static String encode(final Checkpoint checkpoint)
+            throws UnsupportedEncodingException {
+            return URLEncoder.encode(checkpoint.workspace, UTF_8.name()) +
+                    " " + URLEncoder.encode(checkpoint.path, UTF_8.name());
+        }
+
+        private static Checkpoint decode(final String entry) {
+            final int space = entry.indexOf(' ');
+            if (space < 0) {
+                return null;
+            }
+            try {
+                return new Checkpoint(URLDecoder.decode(entry.substring(0,
+                        space), UTF_8.name()), URLDecoder.decode(entry
+                        .substring(space + 1), UTF_8.name()), 0);
+            } catch (final UnsupportedEncodingException
+                    | IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package org.fcrepo.kernel.utils;
 
 import static com.google.common.base.Throwables.propagate;
-import static java.util.Collections.singletonMap;
 import static org.apache.commons.codec.binary.Hex.encodeHexString;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -39,10 +38,11 @@ public abstract class ContentDigest {
     private static final Logger LOGGER = getLogger(ContentDigest.class);
 
     public static final Map<String, String> algorithmToScheme = ImmutableMap
-            .of("SHA-1", "urn:sha1", "SHA1", "urn:sha1");
+            .of("SHA-1", "urn:sha1", "SHA1", "urn:sha1", "SHA-256",
+                    "urn:sha256", "MD5", "urn:md5");
 
-    public static final Map<String, String> schemeToAlgorithm =
-        singletonMap("urn:sha1", "SHA-1");
+    public static final Map<String, String> schemeToAlgorithm = ImmutableMap
+            .of("urn:sha1", "SHA-1", "urn:sha256", "SHA-256", "urn:md5", "MD5");
 
     /**
      * Convert a MessageDigest algorithm and checksum value to a URN
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.utils;
+
+import static java.lang.Thread.currentThread;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads a stream in large blocks, computing its size and a digest for each
+ * of several algorithms in a single pass over the bytes.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ */
+public class FixityReader {
+
+    /**
+     * The digest algorithms computed in addition to whichever one a fixity
+     * check asks for
+     */
+    public static final String[] DEFAULT_ALGORITHMS = {"SHA-1", "SHA-256",
+            "MD5"};
+
+    /**
+     * Small enough that each block stays cache-hot while every digest is
+     * updated from it
+     */
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+
+    private long byteCount;
+
+    private Map<String, URI> checksums;
+
+    /**
+     * @param algorithms the MessageDigest algorithms to compute
+     * @throws NoSuchAlgorithmException
+     */
+    public FixityReader(final Collection<String> algorithms)
+        throws NoSuchAlgorithmException {
+        for (final String algorithm : algorithms) {
+            if (!digests.containsKey(algorithm)) {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            }
+        }
+    }
+
+    /**
+     * Read the stream to its end, updating the size and digests. This does not
+     * close the stream.
+     *
+     * @param in
+     * @throws IOException
+     */
+    public void readFully(final InputStream in) throws IOException {
+        final byte[] block = new byte[BLOCK_SIZE];
+        int read;
+        while ((read = in.read(block)) != -1) {
+            // give up if the fixity engine has cancelled us
+            if (currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Fixity check cancelled");
+            }
+            for (final MessageDigest digest : digests.values()) {
+                digest.update(block, 0, read);
+            }
+            byteCount += read;
+        }
+    }
+
+    /**
+     * Get the number of bytes read
+     * @return
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Get the checksum URI for one of the algorithms. This completes that
+     * algorithm's digest, so it should only be called once the stream has
+     * been read.
+     *
+     * @param algorithm
+     * @return
+     */
+    public URI getChecksum(final String algorithm) {
+        return getChecksums().get(algorithm);
+    }
+
+    /**
+     * Get the checksum URIs for every algorithm, keyed by algorithm
+     * @return
+     */
+    public Map<String, URI> getChecksums() {
+        if (checksums == null) {
+            checksums = new LinkedHashMap<>();
+            for (final Map.Entry<String, MessageDigest> digest : digests
+                    .entrySet()) {
+                checksums.put(digest.getKey(), ContentDigest.asURI(digest
+                        .getKey(), digest.getValue().digest()));
+            }
+        }
+        return checksums;
+    }
+
+}
@@ -15,10 +15,14 @@
  */
 package org.fcrepo.kernel.utils;
 
+import static java.util.Collections.unmodifiableSet;
 import static java.util.Objects.hash;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Structure for presenting the results of a fixity check
@@ -59,6 +63,12 @@ public class FixityResult {
      */
     public URI computedChecksum;
 
+    /**
+     * every checksum computed by the fixity check (including the one above),
+     * when several digest algorithms were run over the bitstream at once
+     */
+    private final Set<URI> computedChecksums = new LinkedHashSet<>();
+
     private final LowLevelCacheEntry entry;
 
     /**
@@ -96,6 +106,24 @@ public class FixityResult {
         this.entry = entry;
         computedSize = size;
         computedChecksum = checksum;
+        if (checksum != null) {
+            computedChecksums.add(checksum);
+        }
+    }
+
+    /**
+     * Prepare a fixity result with the expected size, the checksum for the
+     * expected algorithm, and the checksums for any other algorithms computed
+     * at the same time
+     * @param entry
+     * @param size
+     * @param checksum
+     * @param checksums
+     */
+    public FixityResult(final LowLevelCacheEntry entry, final long size,
+                        final URI checksum, final Collection<URI> checksums) {
+        this(entry, size, checksum);
+        computedChecksums.addAll(checksums);
     }
 
     /**
@@ -114,7 +142,8 @@ public class FixityResult {
             final FixityResult that = (FixityResult) obj;
             result =
                 computedSize == that.computedSize &&
-                computedChecksum.equals(that.computedChecksum);
+                computedChecksum.equals(that.computedChecksum) &&
+                computedChecksums.equals(that.computedChecksums);
         }
 
         return result;
@@ -122,7 +151,7 @@ public class FixityResult {
 
     @Override
     public int hashCode() {
-        return hash(computedSize, computedChecksum);
+        return hash(computedSize, computedChecksum, computedChecksums);
     }
 
     @Override
@@ -140,12 +169,22 @@ public class FixityResult {
     }
 
     /**
-     * Check if the fixity result matches the given checksum URI
+     * Get all of the checksums computed by the fixity check (read-only)
+     * @return
+     */
+    public Set<URI> getComputedChecksums() {
+        return unmodifiableSet(computedChecksums);
+    }
+
+    /**
+     * Check if the fixity result matches the given checksum URI, using
+     * whichever of the computed checksums has the same algorithm
      * @param checksum
      * @return
      */
     public boolean matches(final URI checksum) {
-        return computedChecksum.equals(checksum);
+        return computedChecksum.equals(checksum) ||
+            computedChecksums.contains(checksum);
     }
 
     /**
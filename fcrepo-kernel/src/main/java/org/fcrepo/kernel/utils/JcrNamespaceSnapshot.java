@@ -0,0 +1,221 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils;
+
+import static org.fcrepo.kernel.rdf.JcrRdfTools.getRDFNamespaceForJcrNamespace;
+import static org.fcrepo.kernel.utils.FedoraTypesUtils.getPredicateForProperty;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.slf4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers, for each session, how JCR names (of node types and properties)
+ * translate into RDF URIs, so rendering a node's mixins and properties
+ * doesn't go back to the namespace registry for each one. A session's
+ * translations are only built up from the registry once; they are thrown
+ * away whenever namespaces or node types are registered through Fedora (see
+ * {@link #invalidate()}).
+ *
+ * The other way round, for the whole repository, it remembers which JCR
+ * property each RDF predicate is stored in, and the required types of node
+ * types' properties, so persisting RDF doesn't go back to the namespace
+ * registry and property definitions for each statement. These are thrown
+ * away at the same time.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public final class JcrNamespaceSnapshot {
+
+    private static final Logger LOGGER = getLogger(JcrNamespaceSnapshot.class);
+
+    /**
+     * Bumped on every namespace or node type change, so older snapshots can
+     * tell they're stale
+     */
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final int MAX_REMEMBERED = 10000;
+
+    /**
+     * Snapshots don't hold on to their sessions, so a closed session's
+     * snapshot goes away with it
+     */
+    private static final Cache<Session, JcrNamespaceSnapshot> snapshots =
+        CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * RDF predicate URI to JCR property name
+     */
+    private static final Cache<String, String> propertyNames = CacheBuilder
+            .newBuilder().maximumSize(MAX_REMEMBERED).build();
+
+    /**
+     * Node type name and property name (separated by a character that can't
+     * appear in JCR names) to the property's required type
+     */
+    private static final Cache<String, Integer> propertyTypes = CacheBuilder
+            .newBuilder().maximumSize(MAX_REMEMBERED).build();
+
+    private final long snapshotGeneration;
+
+    /**
+     * Qualified JCR type name to RDF URI
+     */
+    private final ConcurrentMap<String, String> types =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Qualified JCR property name to RDF predicate
+     */
+    private final ConcurrentMap<String, com.hp.hpl.jena.rdf.model.Property> predicates =
+        new ConcurrentHashMap<>();
+
+    private JcrNamespaceSnapshot(final long snapshotGeneration) {
+        this.snapshotGeneration = snapshotGeneration;
+    }
+
+    /**
+     * Forget every session's translations, e.g. because a namespace has been
+     * (un)registered or node types have been loaded
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        propertyNames.invalidateAll();
+        propertyTypes.invalidateAll();
+        LOGGER.debug("Invalidated JCR namespace snapshots");
+    }
+
+    /**
+     * Translate a qualified JCR name (e.g. a mixin type name) into an RDF URI
+     *
+     * @param session
+     * @param jcrName a name of the form prefix:localName
+     * @return
+     * @throws RepositoryException
+     */
+    public static String getRdfUri(final Session session, final String jcrName)
+        throws RepositoryException {
+        final JcrNamespaceSnapshot snapshot = forSession(session);
+        final String cached = snapshot.types.get(jcrName);
+        if (cached != null) {
+            return cached;
+        }
+        final int colon = jcrName.indexOf(':');
+        final String prefix = colon < 0 ? "" : jcrName.substring(0, colon);
+        final String namespace =
+            session.getWorkspace().getNamespaceRegistry().getURI(prefix);
+        final String uri =
+            getRDFNamespaceForJcrNamespace(namespace) +
+                    jcrName.substring(colon + 1);
+        snapshot.types.putIfAbsent(jcrName, uri);
+        return uri;
+    }
+
+    /**
+     * Get the RDF predicate for a JCR property
+     *
+     * @param property
+     * @return
+     * @throws RepositoryException
+     */
+    public static com.hp.hpl.jena.rdf.model.Property getPredicate(
+        final Property property) throws RepositoryException {
+        final Session session = property.getSession();
+        if (session == null) {
+            return getPredicateForProperty.apply(property);
+        }
+        final JcrNamespaceSnapshot snapshot = forSession(session);
+        final String name = property.getName();
+        final com.hp.hpl.jena.rdf.model.Property cached =
+            snapshot.predicates.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        final com.hp.hpl.jena.rdf.model.Property predicate =
+            getPredicateForProperty.apply(property);
+        snapshot.predicates.putIfAbsent(name, predicate);
+        return predicate;
+    }
+
+    /**
+     * The JCR property name an RDF predicate was last translated into
+     *
+     * @param predicateUri
+     * @return the property name, or null if it isn't known
+     */
+    public static String getPropertyName(final String predicateUri) {
+        return propertyNames.getIfPresent(predicateUri);
+    }
+
+    /**
+     * Remember the JCR property name an RDF predicate translates into
+     *
+     * @param predicateUri
+     * @param propertyName
+     */
+    public static void putPropertyName(final String predicateUri,
+        final String propertyName) {
+        propertyNames.put(predicateUri, propertyName);
+    }
+
+    /**
+     * The required type of a node type's property, as last looked up
+     *
+     * @param nodeTypeName
+     * @param propertyName
+     * @return the type, or null if it isn't known
+     */
+    public static Integer getPropertyType(final String nodeTypeName,
+        final String propertyName) {
+        return propertyTypes.getIfPresent(nodeTypeName + '|' + propertyName);
+    }
+
+    /**
+     * Remember the required type of a node type's property
+     *
+     * @param nodeTypeName
+     * @param propertyName
+     * @param type
+     */
+    public static void putPropertyType(final String nodeTypeName,
+        final String propertyName, final int type) {
+        propertyTypes.put(nodeTypeName + '|' + propertyName, type);
+    }
+
+    private static JcrNamespaceSnapshot forSession(final Session session) {
+        final long current = generation.get();
+        final JcrNamespaceSnapshot snapshot = snapshots.getIfPresent(session);
+        if (snapshot != null && snapshot.snapshotGeneration == current) {
+            return snapshot;
+        }
+        final JcrNamespaceSnapshot fresh = new JcrNamespaceSnapshot(current);
+        snapshots.put(session, fresh);
+        return fresh;
+    }
+}
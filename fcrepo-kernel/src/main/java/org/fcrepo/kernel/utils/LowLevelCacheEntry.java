@@ -16,6 +16,7 @@
 package org.fcrepo.kernel.utils;
 
 import static com.google.common.base.Throwables.propagate;
+import static java.util.Arrays.asList;
 import static org.fcrepo.kernel.utils.FixityResult.FixityState.BAD_CHECKSUM;
 import static org.fcrepo.kernel.utils.FixityResult.FixityState.BAD_SIZE;
 import static org.fcrepo.kernel.utils.FixityResult.FixityState.SUCCESS;
@@ -24,8 +25,9 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.binary.BinaryStoreException;
@@ -73,6 +75,24 @@ public abstract class LowLevelCacheEntry {
     public abstract void storeValue(final InputStream stream)
         throws BinaryStoreException, IOException;
 
+    /**
+     * Replace this entry's content with that of a known-good copy. Stores
+     * that keep content in pieces may rewrite only the damaged pieces.
+     *
+     * @param source a copy of this entry that passed its fixity check
+     * @throws BinaryStoreException
+     * @throws IOException
+     */
+    public void repairFrom(final LowLevelCacheEntry source)
+        throws BinaryStoreException, IOException {
+        final InputStream stream = source.getInputStream();
+        try {
+            storeValue(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
     /**
      * Generate a human-readable identifier for the location of this entry
      *
@@ -81,37 +101,38 @@ public abstract class LowLevelCacheEntry {
     public abstract String getExternalIdentifier();
 
     /**
-     * Check the entry's InputStream against the checksum and size.
+     * Check the entry's InputStream against the checksum and size. The digests
+     * for the {@link FixityReader#DEFAULT_ALGORITHMS} are computed in the same
+     * pass, and reported with the result.
      *
      * @param checksum
      * @param size
-     * @param digest
      * @return
      * @throws BinaryStoreException
      */
     public FixityResult checkFixity(final URI checksum, final long size)
         throws BinaryStoreException {
-        final FixityInputStream ds;
         final String digest = ContentDigest.getAlgorithm(checksum);
+        final List<String> algorithms = new ArrayList<>();
+        algorithms.add(digest);
+        algorithms.addAll(asList(FixityReader.DEFAULT_ALGORITHMS));
+
+        final FixityReader reader;
         try {
-            ds = new FixityInputStream(getInputStream(),
-                                       MessageDigest.getInstance(digest));
-        } catch (NoSuchAlgorithmException e) {
+            reader = new FixityReader(algorithms);
+        } catch (final NoSuchAlgorithmException e) {
             LOGGER.warn("Could not create MessageDigest: {}", e);
             throw propagate(e);
         }
 
-        try {
+        final InputStream ds = getInputStream();
 
-            while (ds.read() != -1) {
-                // noop; we're just reading the stream for the checksum and size
-            }
+        try {
+            reader.readFully(ds);
 
             final FixityResult result =
-                new FixityResult(this, ds.getByteCount(),
-                                 ContentDigest
-                                 .asURI(digest,
-                                        ds.getMessageDigest().digest()));
+                new FixityResult(this, reader.getByteCount(), reader
+                        .getChecksum(digest), reader.getChecksums().values());
 
             if (!result.matches(checksum)) {
                 result.status.add(BAD_CHECKSUM);
@@ -65,6 +65,7 @@ public class NamespaceChangedStatementListener extends StatementListener {
             LOGGER.debug("Registering namespace prefix {} for uri {}", prefix,
                     uri);
             namespaceRegistry.registerNamespace(prefix, uri);
+            JcrNamespaceSnapshot.invalidate();
         } catch (final RepositoryException e) {
             throw propagate(e);
         }
@@ -87,6 +88,7 @@ public class NamespaceChangedStatementListener extends StatementListener {
                 LOGGER.debug("De-registering namespace prefix {} for uri {}",
                         prefix, uri);
                 namespaceRegistry.unregisterNamespace(prefix);
+                JcrNamespaceSnapshot.invalidate();
             }
         } catch (final RepositoryException e) {
             throw propagate(e);
@@ -15,11 +15,13 @@
  */
 package org.fcrepo.kernel.utils;
 
+import static java.util.Arrays.asList;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.getDefinitionForPropertyName;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import javax.jcr.Node;
 import javax.jcr.Property;
@@ -121,6 +123,99 @@ public class NodePropertiesTools {
 
     }
 
+    /**
+     * As {@link #appendOrReplaceNodeProperty(GraphSubjects, Node, String, Value)}
+     * for several values at once, but writing the property only once: a
+     * multivalued property gets all the new values appended in one go, and a
+     * single-valued property is set to the last of them.
+     *
+     * @param subjects
+     * @param node the JCR node
+     * @param propertyName a name of a JCR property (either pre-existing or
+     *   otherwise)
+     * @param newValues the JCR values to insert
+     * @throws RepositoryException
+     */
+    public void appendOrReplaceNodeProperty(final GraphSubjects subjects,
+                                                   final Node node,
+                                                   final String propertyName,
+                                                   final List<Value> newValues)
+        throws RepositoryException {
+
+        if (newValues.isEmpty()) {
+            return;
+        }
+        final Value lastValue = newValues.get(newValues.size() - 1);
+
+        if (node.hasProperty(propertyName)) {
+
+            final Property property = node.getProperty(propertyName);
+
+            if (property.isMultiple()) {
+                LOGGER.debug("Appending values {} to {} property {}",
+                             newValues,
+                             PropertyType.nameFromValue(property.getType()),
+                             propertyName);
+
+                final List<Value> values =
+                    new ArrayList<>(asList(property.getValues()));
+                boolean changed = false;
+                for (final Value v : newValues) {
+                    if (!values.contains(v)) {
+                        values.add(v);
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    property.setValue(values.toArray(new Value[values.size()]));
+                }
+                for (final Value v : newValues) {
+                    addReferencePlaceholders(subjects, node, property, v);
+                }
+            } else {
+                LOGGER.debug("Overwriting {} property {} with new value {}",
+                             PropertyType.nameFromValue(property.getType()),
+                             propertyName, lastValue);
+                property.setValue(lastValue);
+                addReferencePlaceholders(subjects, node, property, lastValue);
+            }
+        } else {
+            boolean isMultiple = true;
+            try {
+                isMultiple = isMultivaluedProperty(node, propertyName);
+
+            } catch (final NoSuchPropertyDefinitionException e) {
+                // simply represents a new kind of property on this node
+            }
+            if (isMultiple) {
+                final List<Value> values = new ArrayList<>(newValues.size());
+                for (final Value v : newValues) {
+                    if (!values.contains(v)) {
+                        values.add(v);
+                    }
+                }
+                LOGGER.debug("Creating new multivalued {} property {} with " +
+                             "initial values {}",
+                             PropertyType.nameFromValue(values.get(0).getType()),
+                             propertyName, values);
+                final Property property =
+                    node.setProperty(propertyName, values
+                            .toArray(new Value[values.size()]), values.get(0)
+                            .getType());
+                for (final Value v : values) {
+                    addReferencePlaceholders(subjects, node, property, v);
+                }
+            } else {
+                LOGGER.debug("Creating new single-valued {} property {} with " +
+                             "initial value {}",
+                             PropertyType.nameFromValue(lastValue.getType()),
+                             propertyName, lastValue);
+                final Property property = node.setProperty(propertyName, lastValue, lastValue.getType());
+                addReferencePlaceholders(subjects, node, property, lastValue);
+            }
+        }
+    }
+
     private void addReferencePlaceholders(final GraphSubjects subjects, final Node node, final Property property, final Value newValue) throws RepositoryException {
         if (property.getType() == URI) {
             final Resource resource = ResourceFactory.createResource(newValue.getString());
@@ -219,6 +314,72 @@ public class NodePropertiesTools {
         }
     }
 
+    /**
+     * As {@link #removeNodeProperty(GraphSubjects, Node, String, Value)} for
+     * several values at once, but writing the property only once.
+     *
+     * @param subjects
+     * @param node the JCR node
+     * @param propertyName a name of a JCR property (either pre-existing or
+     *   otherwise)
+     * @param valuesToRemove the JCR values to remove
+     * @throws RepositoryException
+     */
+    public void removeNodeProperty(final GraphSubjects subjects,
+                                          final Node node,
+                                          final String propertyName,
+                                          final List<Value> valuesToRemove)
+        throws RepositoryException {
+        // if the property doesn't exist, we don't need to worry about it.
+        if (node.hasProperty(propertyName)) {
+
+            final Property property = node.getProperty(propertyName);
+
+            if (FedoraTypesUtils.isMultipleValuedProperty.apply(property)) {
+
+                final List<Value> newValues = new ArrayList<>();
+                final List<Value> removed = new ArrayList<>();
+
+                for (final Value v : property.getValues()) {
+                    if (valuesToRemove.contains(v)) {
+                        removed.add(v);
+                    } else {
+                        newValues.add(v);
+                    }
+                }
+
+                // we only need to update the property if we did anything.
+                if (!removed.isEmpty()) {
+                    if (newValues.size() == 0) {
+                        LOGGER.debug("Removing property {}", propertyName);
+                        property.setValue((Value[])null);
+                    } else {
+                        LOGGER.debug("Removing values {} from property {}",
+                                     removed, propertyName);
+                        property
+                            .setValue(newValues
+                                      .toArray(new Value[newValues.size()]));
+                    }
+                    for (final Value v : removed) {
+                        removeReferencePlaceholders(subjects, node, property, v);
+                    }
+                }
+
+            } else {
+                final Value value = property.getValue();
+                if (valuesToRemove.contains(value)) {
+                    LOGGER.debug("Removing value {} property {}", value,
+                            propertyName);
+                    property.setValue((Value)null);
+
+                    if (property.getType() == URI && node.hasProperty(getReferencePropertyName(propertyName))) {
+                        removeReferencePlaceholders(subjects, node, property, value);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * When we add certain URI properties, we also want to leave a reference node
      * @param propertyName
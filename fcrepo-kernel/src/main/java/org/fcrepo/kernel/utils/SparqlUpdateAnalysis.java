@@ -0,0 +1,228 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils;
+
+import static com.hp.hpl.jena.rdf.model.ResourceFactory.createProperty;
+import static com.hp.hpl.jena.vocabulary.RDF.type;
+import static org.fcrepo.kernel.RdfLexicon.LDP_NAMESPACE;
+import static org.fcrepo.kernel.RdfLexicon.isManagedPredicate;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
+import com.hp.hpl.jena.sparql.expr.ExprVisitorBase;
+import com.hp.hpl.jena.sparql.expr.ExprWalker;
+import com.hp.hpl.jena.sparql.modify.request.UpdateData;
+import com.hp.hpl.jena.sparql.modify.request.UpdateDataDelete;
+import com.hp.hpl.jena.sparql.modify.request.UpdateDataInsert;
+import com.hp.hpl.jena.sparql.modify.request.UpdateDeleteWhere;
+import com.hp.hpl.jena.sparql.modify.request.UpdateModify;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementExists;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementNamedGraph;
+import com.hp.hpl.jena.sparql.syntax.ElementNotExists;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementService;
+import com.hp.hpl.jena.sparql.syntax.ElementSubQuery;
+import com.hp.hpl.jena.sparql.syntax.ElementTriplesBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementVisitorBase;
+import com.hp.hpl.jena.sparql.syntax.ElementWalker;
+import com.hp.hpl.jena.update.Update;
+import com.hp.hpl.jena.update.UpdateRequest;
+
+/**
+ * Works out how much of a resource's RDF a SPARQL Update needs to see, so
+ * that PATCHing a resource doesn't have to build a graph of everything about
+ * it (including its children) first:
+ * <ul>
+ * <li>an update made only of INSERT DATA and DELETE DATA on the default graph
+ * needs no graph at all; its triples can be applied straight to the
+ * repository</li>
+ * <li>an update whose patterns and templates only mention the resource itself,
+ * with concrete, user-managed predicates, only needs the resource's own
+ * properties, not its hierarchy</li>
+ * </ul>
+ * Anything else (variable subjects or predicates, property paths, named
+ * graphs, subqueries, EXISTS filters, managed predicates...) needs the whole
+ * graph, as before.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+public class SparqlUpdateAnalysis {
+
+    private final Node subject;
+
+    private boolean dataOnly = true;
+
+    private boolean aboutSubjectOnly = true;
+
+    /**
+     * Analyze an update request to be run against the graph of a resource
+     *
+     * @param request
+     * @param subject the resource's graph subject
+     */
+    public SparqlUpdateAnalysis(final UpdateRequest request, final Node subject) {
+        this.subject = subject;
+        for (final Update update : request.getOperations()) {
+            analyze(update);
+        }
+    }
+
+    /**
+     * Whether the update is made up only of INSERT DATA and DELETE DATA
+     * operations on the default graph
+     *
+     * @return
+     */
+    public boolean isDataOnly() {
+        return dataOnly;
+    }
+
+    /**
+     * Whether the update can be run against the resource's own properties
+     * without its hierarchy
+     *
+     * @return
+     */
+    public boolean isAboutSubjectOnly() {
+        return aboutSubjectOnly;
+    }
+
+    private void analyze(final Update update) {
+        if (update instanceof UpdateDataInsert
+                || update instanceof UpdateDataDelete) {
+            analyzeQuads(((UpdateData) update).getQuads());
+        } else if (update instanceof UpdateDeleteWhere) {
+            dataOnly = false;
+            analyzeQuads(((UpdateDeleteWhere) update).getQuads());
+        } else if (update instanceof UpdateModify) {
+            dataOnly = false;
+            final UpdateModify modify = (UpdateModify) update;
+            if (modify.getWithIRI() != null || !modify.getUsing().isEmpty()
+                    || !modify.getUsingNamed().isEmpty()) {
+                aboutSubjectOnly = false;
+                return;
+            }
+            analyzeQuads(modify.getDeleteQuads());
+            analyzeQuads(modify.getInsertQuads());
+            analyzePattern(modify.getWherePattern());
+        } else {
+            // LOAD, CLEAR, DROP, COPY and friends
+            dataOnly = false;
+            aboutSubjectOnly = false;
+        }
+    }
+
+    private void analyzeQuads(final List<Quad> quads) {
+        for (final Quad q : quads) {
+            if (!q.isDefaultGraph()) {
+                dataOnly = false;
+                aboutSubjectOnly = false;
+                return;
+            }
+            analyzeTriple(q.asTriple());
+        }
+    }
+
+    private void analyzePattern(final Element pattern) {
+        if (pattern == null) {
+            return;
+        }
+        ElementWalker.walk(pattern, new ElementVisitorBase() {
+
+            @Override
+            public void visit(final ElementTriplesBlock el) {
+                for (final Triple t : el.getPattern()) {
+                    analyzeTriple(t);
+                }
+            }
+
+            @Override
+            public void visit(final ElementPathBlock el) {
+                for (final TriplePath t : el.getPattern()) {
+                    if (t.isTriple()) {
+                        analyzeTriple(t.asTriple());
+                    } else {
+                        aboutSubjectOnly = false;
+                    }
+                }
+            }
+
+            @Override
+            public void visit(final ElementFilter el) {
+                ExprWalker.walk(new ExprVisitorBase() {
+
+                    @Override
+                    public void visit(final ExprFunctionOp funcOp) {
+                        // EXISTS and NOT EXISTS carry their own patterns
+                        aboutSubjectOnly = false;
+                    }
+                }, el.getExpr());
+            }
+
+            @Override
+            public void visit(final ElementExists el) {
+                aboutSubjectOnly = false;
+            }
+
+            @Override
+            public void visit(final ElementNotExists el) {
+                aboutSubjectOnly = false;
+            }
+
+            @Override
+            public void visit(final ElementNamedGraph el) {
+                aboutSubjectOnly = false;
+            }
+
+            @Override
+            public void visit(final ElementService el) {
+                aboutSubjectOnly = false;
+            }
+
+            @Override
+            public void visit(final ElementSubQuery el) {
+                aboutSubjectOnly = false;
+            }
+        });
+    }
+
+    private void analyzeTriple(final Triple t) {
+        if (!aboutSubjectOnly) {
+            return;
+        }
+        final Node p = t.getPredicate();
+        if (!t.getSubject().equals(subject) || !p.isURI()
+                || isManagedPredicate.apply(createProperty(p.getURI()))) {
+            aboutSubjectOnly = false;
+            return;
+        }
+        // the hierarchy says what kind of LDP resource this is
+        if (p.equals(type.asNode())) {
+            final Node o = t.getObject();
+            aboutSubjectOnly =
+                o.isURI() && !o.getURI().startsWith(LDP_NAMESPACE);
+        }
+    }
+}
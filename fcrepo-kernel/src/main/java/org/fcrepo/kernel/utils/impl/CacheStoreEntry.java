@@ -16,18 +16,27 @@
 package org.fcrepo.kernel.utils.impl;
 
 import static java.util.Objects.hash;
+import static org.fcrepo.kernel.services.LowLevelStorageService.invalidateLocations;
+import static org.fcrepo.kernel.utils.infinispan.ChunkManifest.chunkSizeOf;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.poi.util.IOUtils;
 import org.fcrepo.kernel.utils.LowLevelCacheEntry;
+import org.fcrepo.kernel.utils.infinispan.ChunkManifest;
 import org.fcrepo.kernel.utils.infinispan.StoreChunkInputStream;
 import org.fcrepo.kernel.utils.infinispan.StoreChunkOutputStream;
+import org.infinispan.container.InternalEntryFactory;
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.AbstractCacheStoreConfig;
+import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.loaders.CacheStoreConfig;
 import org.infinispan.loaders.file.FileCacheStoreConfig;
@@ -45,6 +54,9 @@ public class CacheStoreEntry extends LowLevelCacheEntry {
     private final CacheStore store;
     private final String cacheName;
 
+    private final InternalEntryFactory entryFactory =
+            new InternalEntryFactoryImpl();
+
     /**
      * An entry in an infinispan CacheStore
      */
@@ -71,13 +83,20 @@ public class CacheStoreEntry extends LowLevelCacheEntry {
      */
     @Override
     public InputStream getInputStream() throws BinaryStoreException {
-        return new StoreChunkInputStream(store, key.toString() +
-                                             DATA_SUFFIX);
+        final String dataKey = key.toString() + DATA_SUFFIX;
+        try {
+            return new StoreChunkInputStream(store, dataKey, chunkSizeOf(store,
+                    dataKey), StoreChunkInputStream.READ_AHEAD);
+        } catch (final CacheLoaderException e) {
+            throw new BinaryStoreException(e);
+        }
     }
 
     /**
      * Send a raw input stream to the underlying store for this entry; used for
-     * fixing e.g. fixity failures.
+     * fixing e.g. fixity failures. The content is chunked the way the entry's
+     * current chunks are (or in ModeShape's default chunk size, if it has
+     * none), and a {@link ChunkManifest} is written for it.
      *
      * @param stream binary content to REPLACE the content in the store
      * @throws BinaryStoreException
@@ -90,11 +109,116 @@ public class CacheStoreEntry extends LowLevelCacheEntry {
         LOGGER.info("Doing a low-level write to store {} for key {}",
                     getExternalIdentifier(), key);
 
-        final OutputStream outputStream =
-                new StoreChunkOutputStream(store, key.toString() +
-                                           DATA_SUFFIX);
-        IOUtils.copy(stream, outputStream);
-        outputStream.close();
+        final String dataKey = key.toString() + DATA_SUFFIX;
+        final boolean newKey;
+        final int chunkSize;
+        try {
+            // a replica missing the binary altogether needn't look up each
+            // chunk's existing entry before writing it
+            newKey = !store.containsKey(dataKey + "-0");
+            chunkSize = chunkSizeOf(store, dataKey);
+        } catch (final CacheLoaderException e) {
+            throw new BinaryStoreException(e);
+        }
+        final StoreChunkOutputStream outputStream =
+                new StoreChunkOutputStream(store, dataKey, chunkSize, newKey);
+        try {
+            IOUtils.copy(stream, outputStream);
+            outputStream.close();
+            outputStream.getManifest().store(store, dataKey);
+        } catch (final CacheLoaderException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            // this store may hold the binary now where it didn't before
+            invalidateLocations(key);
+        }
+    }
+
+    /**
+     * Repair this entry from another Infinispan copy one chunk at a time,
+     * rewriting only the chunks that differ. If the good copy has a
+     * ChunkManifest, our chunks are checked against its digests and only the
+     * damaged ones are read from the good copy. If it doesn't (ModeShape
+     * doesn't write them), every chunk is read from the good copy and
+     * compared with ours, and both copies are given a manifest, so the next
+     * repair can use it.
+     *
+     * @param source a copy of this entry that passed its fixity check
+     * @throws BinaryStoreException
+     * @throws IOException
+     */
+    @Override
+    public void repairFrom(final LowLevelCacheEntry source)
+        throws BinaryStoreException, IOException {
+        if (!(source instanceof CacheStoreEntry)) {
+            super.repairFrom(source);
+            return;
+        }
+        LOGGER.info("Doing a low-level chunk repair of store {} for key {}",
+                getExternalIdentifier(), key);
+
+        final CacheStore sourceStore = ((CacheStoreEntry) source).store;
+        final String dataKey = key.toString() + DATA_SUFFIX;
+        try {
+            final ChunkManifest manifest =
+                    ChunkManifest.load(sourceStore, dataKey);
+            final List<byte[]> digests = new ArrayList<>();
+            int repaired = 0;
+            int chunk = 0;
+            for (;; chunk++) {
+                final String chunkKey = dataKey + "-" + chunk;
+                if (manifest != null) {
+                    if (chunk >= manifest.getChunkCount()) {
+                        break;
+                    }
+                    if (manifest.matches(chunk, chunkValue(store
+                            .load(chunkKey)))) {
+                        digests.add(manifest.getDigest(chunk));
+                        continue;
+                    }
+                }
+                final InternalCacheEntry good = sourceStore.load(chunkKey);
+                if (good == null) {
+                    if (manifest != null) {
+                        throw new BinaryStoreException("Good copy is missing " +
+                                chunkKey);
+                    }
+                    break;
+                }
+                final byte[] goodChunk = chunkValue(good);
+                if (manifest != null ||
+                        !Arrays.equals(goodChunk, chunkValue(store
+                                .load(chunkKey)))) {
+                    store.store(entryFactory.create(chunkKey, goodChunk, good));
+                    repaired++;
+                }
+                digests.add(ChunkManifest.digest(goodChunk));
+            }
+            // drop any chunks past the end of the good copy
+            int extra = chunk;
+            while (store.remove(dataKey + "-" + extra++)) {
+                repaired++;
+            }
+            if (manifest == null) {
+                final ChunkManifest derived =
+                        new ChunkManifest(chunkSizeOf(sourceStore, dataKey),
+                                digests);
+                derived.store(sourceStore, dataKey);
+                derived.store(store, dataKey);
+            } else {
+                manifest.store(store, dataKey);
+            }
+            LOGGER.info("Repaired {} of {} chunks for key {}", repaired,
+                    chunk, key);
+        } catch (final CacheLoaderException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            invalidateLocations(key);
+        }
+    }
+
+    private static byte[] chunkValue(final InternalCacheEntry entry) {
+        return entry == null ? null : (byte[]) entry.getValue();
     }
 
     /**
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils.infinispan;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagate;
+import static java.lang.Math.max;
+import static java.util.Collections.unmodifiableList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.infinispan.container.InternalEntryFactoryImpl;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.slf4j.Logger;
+
+/**
+ * A record of the chunk size and per-chunk digests of a binary kept in
+ * chunks in an Infinispan CacheStore. It is stored alongside the chunks, so
+ * a replica's chunks can be checked (and repaired) one at a time.
+ *
+ * ModeShape writes binaries itself, so a binary only gets a manifest once
+ * Fedora writes its chunks: when they are stored through a low-level entry,
+ * or when a replica is repaired (at which point both the good copy and the
+ * repaired one get a manifest). Until then, repairs fall back to comparing
+ * every chunk with the good copy's.
+ *
+ * ModeShape doesn't know about manifests either, so it doesn't remove them
+ * when it throws a binary away. A {@link RemoveWithBinary} listener on the
+ * binary's cache does that instead, when ModeShape removes the first chunk.
+ *
+ * @author barmintor
+ * @date Oct 16, 2013
+ */
+public class ChunkManifest {
+
+    private static final Logger LOGGER = getLogger(ChunkManifest.class);
+
+    /**
+     * Suffix appended to a binary's data key to name its manifest
+     */
+    public static final String MANIFEST_SUFFIX = "-manifest";
+
+    public static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private static final int DIGEST_LENGTH = 20;
+
+    private final int chunkSize;
+
+    private final List<byte[]> digests;
+
+    /**
+     * @param chunkSize the size of every chunk but the last
+     * @param digests the SHA-1 digest of each chunk, in order
+     */
+    public ChunkManifest(final int chunkSize, final List<byte[]> digests) {
+        checkArgument(chunkSize > 0, "Chunks must have a positive size");
+        this.chunkSize = chunkSize;
+        this.digests = unmodifiableList(new ArrayList<>(digests));
+    }
+
+    /**
+     * Get the size of every chunk but the last
+     * @return
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the number of chunks in the binary
+     * @return
+     */
+    public int getChunkCount() {
+        return digests.size();
+    }
+
+    /**
+     * Get the digest of a chunk
+     * @param chunk
+     * @return
+     */
+    public byte[] getDigest(final int chunk) {
+        return digests.get(chunk).clone();
+    }
+
+    /**
+     * Does this data match the digest recorded for the chunk?
+     * @param chunk
+     * @param data
+     * @return
+     */
+    public boolean matches(final int chunk, final byte[] data) {
+        return data != null && chunk < digests.size() &&
+                MessageDigest.isEqual(digests.get(chunk), digest(data));
+    }
+
+    /**
+     * Compute the digest of a chunk's data
+     * @param data
+     * @return
+     */
+    public static byte[] digest(final byte[] data) {
+        return newDigest().digest(data);
+    }
+
+    /**
+     * Get a MessageDigest for the algorithm chunks are digested with
+     * @return
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Serialize the manifest as the chunk size, the chunk count, and the
+     * digests
+     * @return
+     */
+    public byte[] toBytes() {
+        final ByteBuffer bytes =
+                ByteBuffer.allocate(8 + DIGEST_LENGTH * digests.size());
+        bytes.putInt(chunkSize);
+        bytes.putInt(digests.size());
+        for (final byte[] digest : digests) {
+            bytes.put(digest);
+        }
+        return bytes.array();
+    }
+
+    /**
+     * Read a manifest serialized by {@link #toBytes()}
+     * @param data
+     * @return
+     */
+    public static ChunkManifest fromBytes(final byte[] data) {
+        final ByteBuffer bytes = ByteBuffer.wrap(data);
+        final int chunkSize = bytes.getInt();
+        final int count = bytes.getInt();
+        checkArgument(data.length == 8 + DIGEST_LENGTH * count,
+                "Truncated chunk manifest");
+        final List<byte[]> digests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] digest = new byte[DIGEST_LENGTH];
+            bytes.get(digest);
+            digests.add(digest);
+        }
+        return new ChunkManifest(chunkSize, digests);
+    }
+
+    /**
+     * Load the manifest for a binary's data key. This says nothing about
+     * whether the chunks themselves are still there: a manifest whose chunks
+     * are missing is just what a repair needs.
+     * @param store
+     * @param dataKey
+     * @return the manifest, or null if the binary doesn't have one
+     * @throws CacheLoaderException
+     */
+    public static ChunkManifest load(final CacheStore store,
+            final String dataKey) throws CacheLoaderException {
+        final InternalCacheEntry entry = store.load(dataKey + MANIFEST_SUFFIX);
+        if (entry == null || !(entry.getValue() instanceof byte[])) {
+            return null;
+        }
+        return fromBytes((byte[]) entry.getValue());
+    }
+
+    /**
+     * Store this manifest for a binary's data key
+     * @param store
+     * @param dataKey
+     * @throws CacheLoaderException
+     */
+    public void store(final CacheStore store, final String dataKey)
+        throws CacheLoaderException {
+        store.store(new InternalEntryFactoryImpl().create(
+                dataKey + MANIFEST_SUFFIX, toBytes(),
+                new EmbeddedMetadata.Builder().build()));
+    }
+
+    /**
+     * Work out the chunk size a binary was stored with: the one in its
+     * manifest if it has one, or else the size of its first chunk (every
+     * chunk but the last is the same size). ModeShape doesn't let on what
+     * chunk size its store is configured with, but the chunks it wrote do.
+     * A binary held in one chunk (or not in the store at all) could have
+     * been written with any chunk size at least that big, so we use the
+     * bigger of that and ModeShape's default.
+     * @param store
+     * @param dataKey
+     * @return
+     * @throws CacheLoaderException
+     */
+    public static int chunkSizeOf(final CacheStore store,
+            final String dataKey) throws CacheLoaderException {
+        final ChunkManifest manifest = load(store, dataKey);
+        if (manifest != null) {
+            return manifest.getChunkSize();
+        }
+        final InternalCacheEntry first = store.load(dataKey + "-0");
+        if (first == null || !(first.getValue() instanceof byte[])) {
+            return StoreChunkOutputStream.CHUNKSIZE;
+        }
+        final int length = ((byte[]) first.getValue()).length;
+        if (store.containsKey(dataKey + "-1") && length > 0) {
+            return length;
+        }
+        return max(length, StoreChunkOutputStream.CHUNKSIZE);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof ChunkManifest) {
+            final ChunkManifest that = (ChunkManifest) other;
+            return chunkSize == that.chunkSize &&
+                    Arrays.deepEquals(digests.toArray(), that.digests
+                            .toArray());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * chunkSize + digests.size();
+    }
+
+    /**
+     * Listens to a binary cache and, when ModeShape removes a binary's first
+     * chunk (which it only does when it throws the binary away), removes the
+     * binary's manifest from the CacheStore behind the cache
+     */
+    @Listener(sync = false)
+    public static class RemoveWithBinary {
+
+        private static final String FIRST_CHUNK_SUFFIX = "-0";
+
+        private final CacheStore store;
+
+        /**
+         * @param store the CacheStore the manifests are kept in
+         */
+        public RemoveWithBinary(final CacheStore store) {
+            this.store = store;
+        }
+
+        /**
+         * Remove the manifest of the binary whose first chunk was removed
+         * @param event
+         */
+        @CacheEntryRemoved
+        public void chunkRemoved(final CacheEntryRemovedEvent<?, ?> event) {
+            if (event.isPre() || !(event.getKey() instanceof String)) {
+                return;
+            }
+            final String chunkKey = (String) event.getKey();
+            if (!chunkKey.endsWith(FIRST_CHUNK_SUFFIX)) {
+                return;
+            }
+            final String dataKey =
+                    chunkKey.substring(0, chunkKey.length() -
+                            FIRST_CHUNK_SUFFIX.length());
+            try {
+                store.remove(dataKey + MANIFEST_SUFFIX);
+            } catch (final CacheLoaderException e) {
+                LOGGER.warn("Couldn't remove the chunk manifest of {}: {}",
+                        dataKey, e);
+            }
+        }
+    }
+}
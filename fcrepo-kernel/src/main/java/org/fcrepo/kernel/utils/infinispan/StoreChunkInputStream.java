@@ -39,14 +39,29 @@
 
 package org.fcrepo.kernel.utils.infinispan;
 
+import static java.lang.Integer.getInteger;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.modeshape.common.logging.Logger;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Merges chunks from cache and provides InputStream-feeling.
@@ -56,6 +71,27 @@ import org.modeshape.common.logging.Logger;
  */
 public class StoreChunkInputStream extends InputStream {
 
+    /**
+     * System property for the number of chunks to load ahead of the reader
+     */
+    public static final String READ_AHEAD_PROPERTY = "fcrepo.chunk.readahead";
+
+    /**
+     * System property for the number of threads loading chunks ahead
+     */
+    public static final String READ_AHEAD_THREADS_PROPERTY =
+            "fcrepo.chunk.readahead.threads";
+
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    public static final int DEFAULT_READ_AHEAD_THREADS = 4;
+
+    /**
+     * The configured read-ahead window, for callers streaming whole binaries
+     */
+    public static final int READ_AHEAD =
+            getInteger(READ_AHEAD_PROPERTY, DEFAULT_READ_AHEAD);
+
     private final Logger logger;
 
     private final CacheStore blobCache;
@@ -66,7 +102,22 @@ public class StoreChunkInputStream extends InputStream {
 
     protected byte[] buffer;
 
-    private int chunkNumber;
+    private final int chunkSize;
+
+    private long chunkNumber;
+
+    private final int readAhead;
+
+    /**
+     * Chunks being loaded ahead of the reader, by chunk number. This never
+     * holds more than readAhead chunks, which bounds the memory we use.
+     */
+    private final TreeMap<Long, Future<byte[]>> prefetched = new TreeMap<>();
+
+    /**
+     * The first chunk number known not to exist, so we don't prefetch past it
+     */
+    private long endChunk = Long.MAX_VALUE;
 
     /**
      * Get the chunk input stream for the given key in the given Infinispan CacheStore
@@ -74,9 +125,37 @@ public class StoreChunkInputStream extends InputStream {
      * @param key
      */
     public StoreChunkInputStream(final CacheStore blobCache, final String key) {
+        this(blobCache, key, StoreChunkOutputStream.CHUNKSIZE);
+    }
+
+    /**
+     * Get the chunk input stream for the given key in the given Infinispan
+     * CacheStore, where every chunk but the last holds chunkSize bytes
+     * @param blobCache
+     * @param key
+     * @param chunkSize
+     */
+    public StoreChunkInputStream(final CacheStore blobCache, final String key,
+            final int chunkSize) {
+        this(blobCache, key, chunkSize, 0);
+    }
+
+    /**
+     * Get the chunk input stream for the given key in the given Infinispan
+     * CacheStore, loading up to readAhead chunks in the background while the
+     * current one is read
+     * @param blobCache
+     * @param key
+     * @param chunkSize
+     * @param readAhead
+     */
+    public StoreChunkInputStream(final CacheStore blobCache, final String key,
+            final int chunkSize, final int readAhead) {
         logger = Logger.getLogger(getClass());
         this.blobCache = blobCache;
         this.key = key;
+        this.chunkSize = chunkSize;
+        this.readAhead = readAhead;
     }
 
     @Override
@@ -129,26 +208,85 @@ public class StoreChunkInputStream extends InputStream {
         }
     }
 
+    /**
+     * Skip forward by working out which chunk holds the target offset and
+     * loading only that chunk; the chunks in between are never read.
+     */
     @Override
-    public final long skip(long n) throws IOException {
+    public final long skip(final long n) throws IOException {
         if (n <= 0 || indexInBuffer == -1) {
             return 0;
         }
-        if (buffer == null) {
-            fillBuffer();
-            return skip(n);
-        }
+        final int buffered = buffer == null ? 0 : buffer.length - indexInBuffer;
         // do not load a new buffer if skippable bytes remain in current buffer
-        if (indexInBuffer + n >= buffer.length) {
-            long skipped = buffer.length - indexInBuffer;
-            // but make sure a new buffer is loaded on next skip/read
-            buffer = null;
-            indexInBuffer = 0;
-            return skipped;
-        } else {
+        if (n < buffered) {
             indexInBuffer += n;
             return n;
         }
+
+        // the rest of the current buffer, then whole chunks, then an offset
+        // into the chunk we land in
+        final long beyond = n - buffered;
+        final long first = chunkNumber;
+        final long target = first + beyond / chunkSize;
+        final int offset = (int) (beyond % chunkSize);
+        buffer = null;
+        indexInBuffer = 0;
+        chunkNumber = target;
+        if (offset == 0) {
+            if (beyond == 0 || chunkExists(target)) {
+                // landed on a chunk boundary; it is loaded on the next read
+                return n;
+            }
+        } else {
+            fillBuffer();
+            if (indexInBuffer != -1 && offset < buffer.length) {
+                indexInBuffer = offset;
+                return n;
+            }
+        }
+        logger.trace("Skipped past the last chunk of {0}", key);
+        return buffered + skipToEnd(first, target);
+    }
+
+    /**
+     * Having skipped past the end of the data, find where it really ended
+     * and leave the stream there. Either the target chunk is loaded and is
+     * short, or the last chunk lies between the first and the target; only
+     * the last chunk can be short, so we bisect for it with containsKey and
+     * load just that one.
+     * @return the number of bytes from the start of chunk first to the end
+     */
+    private long skipToEnd(final long first, final long target)
+        throws IOException {
+        final long last;
+        if (indexInBuffer != -1 && buffer != null) {
+            last = target;
+        } else {
+            long low = first;
+            long high = target;
+            while (low < high) {
+                final long mid = low + (high - low) / 2;
+                if (chunkExists(mid)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            last = low - 1;
+            endChunk = Math.min(endChunk, last + 1);
+            if (last < first) {
+                buffer = new byte[0];
+                indexInBuffer = -1;
+                return 0;
+            }
+            chunkNumber = last;
+            fillBuffer();
+        }
+        final long skipped = (last - first) * chunkSize + buffer.length;
+        buffer = new byte[0];
+        indexInBuffer = -1;
+        return skipped;
     }
 
     private void fillBuffer() throws IOException {
@@ -163,7 +301,100 @@ public class StoreChunkInputStream extends InputStream {
     }
 
     protected byte[] nextChunk() throws IOException {
-        final String chunkKey = key + "-" + chunkNumber++;
+        final long number = chunkNumber++;
+        discardPrefetchedBefore(number);
+
+        final Future<byte[]> future = prefetched.remove(number);
+        final byte[] chunk =
+                future == null ? loadChunk(number) : awaitChunk(future);
+        if (chunk == null) {
+            endChunk = Math.min(endChunk, number);
+        } else {
+            // the following chunks load while the caller reads this one
+            prefetchAfter(number);
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        discardPrefetchedBefore(Long.MAX_VALUE);
+        super.close();
+    }
+
+    /**
+     * Start loading the chunks that follow this one, up to the read-ahead
+     * window, unless they're already on their way
+     */
+    private void prefetchAfter(final long number) {
+        final long last = Math.min(number + readAhead, endChunk - 1);
+        for (long next = number + 1; next <= last; next++) {
+            if (prefetched.containsKey(next)) {
+                continue;
+            }
+            final long chunk = next;
+            try {
+                prefetched.put(chunk, Prefetcher.EXECUTOR
+                        .submit(new Callable<byte[]>() {
+
+                            @Override
+                            public byte[] call() throws IOException {
+                                return loadChunk(chunk);
+                            }
+                        }));
+            } catch (final RejectedExecutionException e) {
+                // every loader is busy; we'll load it when we get there
+                logger.trace("Couldn't prefetch chunk {0} of {1}", chunk, key);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cancel any prefetched chunks we've skipped past. A load that has
+     * already started is left to finish and its chunk is dropped: a store
+     * such as BDB JE invalidates its whole environment if a thread is
+     * interrupted in the middle of I/O.
+     */
+    private void discardPrefetchedBefore(final long number) {
+        final Iterator<Map.Entry<Long, Future<byte[]>>> it =
+                prefetched.headMap(number).entrySet().iterator();
+        while (it.hasNext()) {
+            it.next().getValue().cancel(false);
+            it.remove();
+        }
+    }
+
+    private static byte[] awaitChunk(final Future<byte[]> future)
+        throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    "Interrupted waiting for a chunk");
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private boolean chunkExists(final long number) throws IOException {
+        if (number >= endChunk) {
+            return false;
+        }
+        try {
+            return blobCache.containsKey(key + "-" + number);
+        } catch (final CacheLoaderException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private byte[] loadChunk(final long number) throws IOException {
+        final String chunkKey = key + "-" + number;
         logger.debug("Read chunk {0} from cache {1}", chunkKey, blobCache);
 
         try {
@@ -179,4 +410,25 @@ public class StoreChunkInputStream extends InputStream {
             throw new IOException(e);
         }
     }
+
+    /**
+     * Holds the pool that loads chunks ahead of their readers; its queue is
+     * bounded, and work it can't accept is simply loaded on demand instead
+     */
+    private static class Prefetcher {
+
+        private static final int THREADS = getInteger(
+                READ_AHEAD_THREADS_PROPERTY, DEFAULT_READ_AHEAD_THREADS);
+
+        private static final ExecutorService EXECUTOR =
+                new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(THREADS * 16),
+                        new ThreadFactoryBuilder().setDaemon(true)
+                                .setNameFormat("fcrepo-chunk-prefetch-%d")
+                                .build());
+
+        static {
+            ((ThreadPoolExecutor) EXECUTOR).allowCoreThreadTimeOut(true);
+        }
+    }
 }
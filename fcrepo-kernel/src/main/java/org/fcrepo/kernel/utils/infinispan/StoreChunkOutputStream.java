@@ -15,9 +15,15 @@
  */
 package org.fcrepo.kernel.utils.infinispan;
 
-import java.io.ByteArrayOutputStream;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Arrays.copyOf;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.infinispan.container.InternalEntryFactory;
 import org.infinispan.container.InternalEntryFactoryImpl;
@@ -30,7 +36,8 @@ import org.modeshape.common.logging.Logger;
 /**
  * A near-copy of a Modeshape class (of the same name, but is
  * unfortunately hidden from us) that takes a single OutputStream
- * and chunks it into 1MB chunks for Infinispan
+ * and chunks it into (by default) 1MB chunks for Infinispan. The digest of
+ * each chunk is recorded as it is stored, for a {@link ChunkManifest}.
  *
  * @author Chris Beer
  * @date Mar 14, 2013
@@ -48,7 +55,22 @@ public class StoreChunkOutputStream extends OutputStream {
 
     protected final String keyPrefix;
 
-    private final ByteArrayOutputStream chunkBuffer;
+    /**
+     * The chunk being filled. Once a whole chunk has been written, chunks are
+     * allocated at full size and handed to the store as they are, so large
+     * binaries are written without growing or copying any buffers.
+     */
+    private byte[] chunkBuffer = new byte[CHUNK_BUFFER_SIZE];
+
+    private int chunkLength;
+
+    private final int chunkSize;
+
+    private final boolean newKey;
+
+    private final MessageDigest digest = ChunkManifest.newDigest();
+
+    private final List<byte[]> chunkDigests = new ArrayList<>();
 
     private boolean closed;
 
@@ -65,10 +87,40 @@ public class StoreChunkOutputStream extends OutputStream {
      */
     public StoreChunkOutputStream(final CacheStore blobCache,
                                   final String keyPrefix) {
+        this(blobCache, keyPrefix, CHUNKSIZE, false);
+    }
+
+    /**
+     * Prepare to store the OutputStream in the given CacheStore with the
+     * given prefix. If the caller knows no chunks exist under the prefix yet,
+     * we skip loading each chunk's existing entry before storing it.
+     * @param blobCache
+     * @param keyPrefix
+     * @param newKey
+     */
+    public StoreChunkOutputStream(final CacheStore blobCache,
+                                  final String keyPrefix,
+                                  final boolean newKey) {
+        this(blobCache, keyPrefix, CHUNKSIZE, newKey);
+    }
+
+    /**
+     * Prepare to store the OutputStream in the given CacheStore with the
+     * given prefix, in chunks of the given size
+     * @param blobCache
+     * @param keyPrefix
+     * @param chunkSize
+     * @param newKey
+     */
+    public StoreChunkOutputStream(final CacheStore blobCache,
+                                  final String keyPrefix,
+                                  final int chunkSize,
+                                  final boolean newKey) {
         logger = Logger.getLogger(getClass());
+        this.chunkSize = chunkSize;
         this.blobCache = blobCache;
         this.keyPrefix = keyPrefix;
-        chunkBuffer = new ByteArrayOutputStream(CHUNK_BUFFER_SIZE);
+        this.newKey = newKey;
     }
 
     /**
@@ -78,46 +130,75 @@ public class StoreChunkOutputStream extends OutputStream {
         return chunkIndex;
     }
 
+    /**
+     * @return the chunk size and digests of the chunks stored so far
+     */
+    public ChunkManifest getManifest() {
+        return new ChunkManifest(chunkSize, chunkDigests);
+    }
+
     @Override
     public void write(final int b) throws IOException {
-        if (chunkBuffer.size() == CHUNKSIZE) {
+        if (chunkLength == chunkSize) {
             storeBufferInBLOBCache();
         }
-        chunkBuffer.write(b);
+        ensureCapacity(chunkLength + 1);
+        chunkBuffer[chunkLength++] = (byte) b;
     }
 
     @Override
     public void write(final byte[] b, final int off, final int len)
         throws IOException {
-        if (len + chunkBuffer.size() <= CHUNKSIZE) {
-            chunkBuffer.write(b, off, len);
-        } else {
-            final int storeLength = CHUNKSIZE - chunkBuffer.size();
-            write(b, off, storeLength);
-            storeBufferInBLOBCache();
-            write(b, off + storeLength, len - storeLength);
+        int written = 0;
+        while (written < len) {
+            if (chunkLength == chunkSize) {
+                storeBufferInBLOBCache();
+            }
+            final int length = min(len - written, chunkSize - chunkLength);
+            ensureCapacity(chunkLength + length);
+            System.arraycopy(b, off + written, chunkBuffer, chunkLength,
+                    length);
+            chunkLength += length;
+            written += length;
         }
     }
 
     @Override
     public void close() throws IOException {
-        logger.debug("Close. Buffer size at close: {0}", chunkBuffer.size());
+        logger.debug("Close. Buffer size at close: {0}", chunkLength);
         if (closed) {
             logger.debug("Stream already closed.");
             return;
         }
         closed = true;
         // store last chunk
-        if (chunkBuffer.size() > 0) {
+        if (chunkLength > 0) {
             storeBufferInBLOBCache();
         }
     }
 
+    /**
+     * Grow the first chunk's buffer by doubling, as ByteArrayOutputStream
+     * would; small binaries shouldn't cost a whole chunk
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity > chunkBuffer.length) {
+            chunkBuffer =
+                    copyOf(chunkBuffer, min(chunkSize, max(capacity,
+                            chunkBuffer.length * 2)));
+        }
+    }
+
     private void storeBufferInBLOBCache() throws IOException {
-        final byte[] chunk = chunkBuffer.toByteArray();
+        // the store may keep a reference to the value, so a full buffer is
+        // handed over as-is and never reused
+        final byte[] chunk =
+                chunkLength == chunkBuffer.length ? chunkBuffer : copyOf(
+                        chunkBuffer, chunkLength);
         try {
             final String chunkKey = keyPrefix + "-" + chunkIndex;
-            final InternalCacheEntry c = blobCache.load(chunkKey);
+            final InternalCacheEntry c =
+                    newKey ? null : blobCache.load(chunkKey);
             final InternalCacheEntry cacheEntry;
             if (c == null) {
                 cacheEntry =
@@ -131,8 +212,11 @@ public class StoreChunkOutputStream extends OutputStream {
 
             logger.debug("Store chunk {0}", chunkKey);
             blobCache.store(cacheEntry);
+            chunkDigests.add(digest.digest(chunk));
             chunkIndex++;
-            chunkBuffer.reset();
+            // having filled one chunk, expect to fill the next
+            chunkBuffer = closed ? new byte[0] : new byte[chunkSize];
+            chunkLength = 0;
         } catch (final CacheLoaderException e) {
             throw new IOException(e);
         }
@@ -19,14 +19,23 @@ package org.fcrepo.kernel.utils.iterators;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Predicates.and;
 import static com.google.common.base.Predicates.not;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static com.hp.hpl.jena.vocabulary.RDF.type;
+import static java.lang.Integer.getInteger;
+import static java.lang.Runtime.getRuntime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.fcrepo.kernel.rdf.JcrRdfTools.getJcrNamespaceForRDFNamespace;
 import static org.fcrepo.kernel.rdf.ManagedRdf.isManagedMixin;
 import static org.fcrepo.kernel.rdf.ManagedRdf.isManagedTriple;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.Node;
@@ -41,7 +50,8 @@ import org.slf4j.Logger;
 
 import com.google.common.base.Predicate;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -70,6 +80,11 @@ public abstract class PersistingRdfStreamConsumer implements RdfStreamConsumer {
 
     private static final Logger LOGGER = getLogger(PersistingRdfStreamConsumer.class);
 
+    /**
+     * How many streams may be consumed asynchronously at once
+     */
+    public static final String THREADS_PROPERTY = "fcrepo.rdf.consumer.threads";
+
     /**
      * Ordinary constructor.
      *
@@ -108,24 +123,70 @@ public abstract class PersistingRdfStreamConsumer implements RdfStreamConsumer {
         this.session = session;
     }
 
+    /**
+     * Type assertions are applied as they come. Other triples are grouped by
+     * subject and predicate, so that each subject's node is looked up once and
+     * each group is handed to {@link #operateOnProperties} together, after
+     * the stream is exhausted.
+     */
     @Override
     public void consume() throws Exception {
+        final Map<Resource, Node> nodes = new HashMap<>();
+        final Map<Resource, Map<Property, List<Statement>>> groups =
+            new LinkedHashMap<>();
+
         while (stream.hasNext()) {
             final Statement t = m.asStatement(stream.next());
             LOGGER.debug("Operating on triple {}.", t);
-            operateOnTriple(t);
+            final Resource subject = t.getSubject();
+            Node subjectNode = nodes.get(subject);
+            if (subjectNode == null) {
+                subjectNode = idTranslator().getNodeFromGraphSubject(subject);
+                nodes.put(subject, subjectNode);
+            }
+
+            if (isTypeAssertion(t)) {
+                operateOnTriple(t, subjectNode);
+                continue;
+            }
+            Map<Property, List<Statement>> predicates = groups.get(subject);
+            if (predicates == null) {
+                predicates = new LinkedHashMap<>();
+                groups.put(subject, predicates);
+            }
+            List<Statement> statements = predicates.get(t.getPredicate());
+            if (statements == null) {
+                statements = new ArrayList<>();
+                predicates.put(t.getPredicate(), statements);
+            }
+            statements.add(t);
         }
 
+        for (final Map.Entry<Resource, Map<Property, List<Statement>>> group : groups
+                .entrySet()) {
+            final Node subjectNode = nodes.get(group.getKey());
+            for (final Map.Entry<Property, List<Statement>> statements : group
+                    .getValue().entrySet()) {
+                LOGGER.debug("Operating on node: {} with {} triples of {}.",
+                        subjectNode, statements.getValue().size(), statements
+                                .getKey());
+                operateOnProperties(subjectNode, statements.getKey(),
+                        statements.getValue());
+            }
+        }
     }
 
     protected void operateOnTriple(final Statement t)
         throws RepositoryException {
-        final Resource subject = t.getSubject();
-        final Node subjectNode = idTranslator().getNodeFromGraphSubject(subject);
+        operateOnTriple(t, idTranslator().getNodeFromGraphSubject(
+                t.getSubject()));
+    }
 
+    private void operateOnTriple(final Statement t, final Node subjectNode)
+        throws RepositoryException {
         // if this is a user-managed RDF type assertion, update the node's
         // mixins. If it isn't, treat it as a "data" property.
-        if (t.getPredicate().equals(type) && t.getObject().isResource()) {
+        if (isTypeAssertion(t)) {
             final Resource mixinResource = t.getObject().asResource();
             if (!isManagedMixin.apply(mixinResource)) {
                 LOGGER.debug("Operating on node: {} with mixin: {}.",
@@ -141,6 +202,29 @@ public abstract class PersistingRdfStreamConsumer implements RdfStreamConsumer {
         }
     }
 
+    private static boolean isTypeAssertion(final Statement t) {
+        return t.getPredicate().equals(type) && t.getObject().isResource();
+    }
+
+    /**
+     * Operate on all the triples in a stream with the same subject and
+     * predicate. By default, each is handed to
+     * {@link #operateOnProperty(Statement, Node)} in turn; implementations
+     * should override this to write the property once.
+     *
+     * @param subjectNode
+     * @param predicate
+     * @param statements
+     * @throws RepositoryException
+     */
+    protected void operateOnProperties(final Node subjectNode,
+        final Property predicate, final List<Statement> statements)
+        throws RepositoryException {
+        for (final Statement t : statements) {
+            operateOnProperty(t, subjectNode);
+        }
+    }
+
     protected String getPropertyNameFromPredicate(final Node subjectNode,
         final Property predicate) throws RepositoryException {
         return jcrRdfTools().getPropertyNameFromPredicate(subjectNode, predicate,
@@ -196,20 +280,34 @@ public abstract class PersistingRdfStreamConsumer implements RdfStreamConsumer {
     protected abstract void operateOnMixin(final Resource mixinResource,
         final Node subjectNode) throws RepositoryException;
 
+    /**
+     * Consume this stream on another thread. The session must be left alone
+     * until the returned future is done.
+     */
     @Override
     public ListenableFuture<Boolean> consumeAsync() {
-        // TODO make this actually asynch
-        final SettableFuture<Boolean> result = SettableFuture.create();
-        try {
-            consume();
-            result.set(true);
-        } catch (final Exception e) {
-            result.setException(e);
-            result.set(false);
-        }
-        return result;
+        return ConsumerPool.executor.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                consume();
+                return true;
+            }
+        });
     }
 
+    /**
+     * Holds the threads on which streams are consumed asynchronously, so they
+     * are only started when first needed
+     */
+    private static final class ConsumerPool {
+
+        static final ListeningExecutorService executor =
+            listeningDecorator(newFixedThreadPool(getInteger(
+                    THREADS_PROPERTY, getRuntime().availableProcessors()),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+                            "rdf-consumer-%d").build()));
+    }
 
     /**
      * @return the stream
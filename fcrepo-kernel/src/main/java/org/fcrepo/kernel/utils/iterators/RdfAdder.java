@@ -18,6 +18,9 @@ package org.fcrepo.kernel.utils.iterators;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -28,6 +31,7 @@ import org.fcrepo.kernel.rdf.GraphSubjects;
 import org.fcrepo.kernel.utils.NodePropertiesTools;
 import org.slf4j.Logger;
 
+import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.Statement;
 
@@ -95,4 +99,20 @@ public class RdfAdder extends PersistingRdfStreamConsumer {
                     propertyName));
         propertiesTools.appendOrReplaceNodeProperty(idTranslator(), n, propertyName, v);
     }
+
+    @Override
+    protected void operateOnProperties(final Node n, final Property predicate,
+        final List<Statement> statements) throws RepositoryException {
+        LOGGER.debug("Adding {} values of property: {} to node: {}.",
+                statements.size(), predicate, n.getPath());
+        final String propertyName = getPropertyNameFromPredicate(n, predicate);
+        final int propertyType =
+            propertiesTools.getPropertyType(n, propertyName);
+        final List<Value> values = new ArrayList<>(statements.size());
+        for (final Statement t : statements) {
+            values.add(createValue(n, t.getObject(), propertyType));
+        }
+        propertiesTools.appendOrReplaceNodeProperty(idTranslator(), n,
+                propertyName, values);
+    }
 }
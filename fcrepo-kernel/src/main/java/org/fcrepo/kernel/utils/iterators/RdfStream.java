@@ -22,7 +22,9 @@ import static com.google.common.collect.Iterators.singletonIterator;
 import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static java.util.Objects.hash;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -55,6 +57,12 @@ public class RdfStream extends ForwardingIterator<Triple> implements
 
     protected Node topic;
 
+    /**
+     * What to do once this stream is done with, e.g. log out sessions its
+     * triples were being read in
+     */
+    private final Deque<Runnable> closers = new ArrayDeque<>();
+
     private final static Triple[] NONE = new Triple[] {};
 
     /**
@@ -130,7 +138,8 @@ public class RdfStream extends ForwardingIterator<Triple> implements
      * @return
      */
     public <Tr extends Triple, T extends Iterator<Tr>> RdfStream withThisContext(final T stream) {
-        return new RdfStream(stream).namespaces(namespaces()).topic(topic());
+        return new RdfStream(stream).namespaces(namespaces()).topic(topic())
+                .onClose(closing(this));
     }
 
     /**
@@ -140,7 +149,8 @@ public class RdfStream extends ForwardingIterator<Triple> implements
      * @return
      */
     public <Tr extends Triple, T extends Iterable<Tr>> RdfStream withThisContext(final T stream) {
-        return new RdfStream(stream).namespaces(namespaces()).topic(topic());
+        return new RdfStream(stream).namespaces(namespaces()).topic(topic())
+                .onClose(closing(this));
     }
 
     /**
@@ -149,6 +159,9 @@ public class RdfStream extends ForwardingIterator<Triple> implements
      */
     public RdfStream concat(final Iterator<? extends Triple> newTriples) {
         triples = Iterators.concat(newTriples, triples);
+        if (newTriples instanceof RdfStream) {
+            onClose(closing((RdfStream) newTriples));
+        }
         return this;
     }
 
@@ -262,6 +275,46 @@ public class RdfStream extends ForwardingIterator<Triple> implements
         return this;
     }
 
+    /**
+     * @param closer something to do once this stream is done with, whether
+     *        or not it was read to the end
+     * @return This object for continued use.
+     */
+    public RdfStream onClose(final Runnable closer) {
+        synchronized (closers) {
+            closers.add(closer);
+        }
+        return this;
+    }
+
+    /**
+     * Let go of whatever is held for reading this stream (and any streams
+     * concatenated onto it). Whoever consumes a stream should close it once
+     * they're done, in particular if they stop before the end.
+     */
+    public void close() {
+        Runnable closer;
+        while ((closer = nextCloser()) != null) {
+            closer.run();
+        }
+    }
+
+    private Runnable nextCloser() {
+        synchronized (closers) {
+            return closers.poll();
+        }
+    }
+
+    private static Runnable closing(final RdfStream stream) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                stream.close();
+            }
+        };
+    }
+
     /**
      * @return The {@link Node} topic in context
      */
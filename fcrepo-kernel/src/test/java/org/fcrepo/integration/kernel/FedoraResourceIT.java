@@ -53,6 +53,7 @@ import org.fcrepo.kernel.FedoraResource;
 import org.fcrepo.kernel.exception.InvalidChecksumException;
 import org.fcrepo.kernel.rdf.impl.DefaultGraphSubjects;
 import org.fcrepo.kernel.services.DatastreamService;
+import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.services.NodeService;
 import org.fcrepo.kernel.services.ObjectService;
 import org.junit.After;
@@ -89,6 +90,9 @@ public class FedoraResourceIT extends AbstractIT {
     @Inject
     DatastreamService datastreamService;
 
+    @Inject
+    LowLevelStorageService lowLevelService;
+
     private Session session;
 
     private DefaultGraphSubjects subjects;
@@ -288,12 +292,15 @@ public class FedoraResourceIT extends AbstractIT {
         o = createLiteral("22", createTypedLiteral(22L).getDatatype());
         assertTrue(datasetGraph.contains(ANY, s, p, o));
 
-        // location
+        // location, only when asked for
 
         p = createURI(REPOSITORY_NAMESPACE + "hasLocation");
         o = ANY;
 
-        assertTrue(datasetGraph.contains(ANY, s, p, o));
+        assertFalse(datasetGraph.contains(ANY, s, p, o));
+
+        assertTrue(object.getTriples(subjects, lowLevelService).asModel()
+                .getGraph().contains(s, p, o));
 
     }
 
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.integration.kernel;
+
+import static java.lang.Boolean.getBoolean;
+import static java.lang.Integer.getInteger;
+import static java.lang.System.nanoTime;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+import javax.inject.Inject;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.fcrepo.kernel.TxAwareSession;
+import org.fcrepo.kernel.TxSession;
+import org.fcrepo.kernel.services.ObjectService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Times the lookups a transactional request makes (getNode, nodeExists,
+ * getItem) through {@link TxAwareSession} and through the dynamic proxy it
+ * replaced. Skipped unless the {@value #BENCHMARK_PROPERTY} system property is
+ * true, e.g. <code>mvn verify -Dit.test=TxSessionBenchmarkIT
+ * -Dfcrepo.benchmark=true</code>; the number of rounds can be set with
+ * {@value #ROUNDS_PROPERTY}.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+@ContextConfiguration({"/spring-test/repo.xml"})
+public class TxSessionBenchmarkIT extends AbstractIT {
+
+    static final String BENCHMARK_PROPERTY = "fcrepo.benchmark";
+
+    static final String ROUNDS_PROPERTY = "fcrepo.benchmark.rounds";
+
+    private static final int ROUNDS = getInteger(ROUNDS_PROPERTY, 10000);
+
+    private static final int WARMUP_ROUNDS = ROUNDS / 10;
+
+    private static final String PATH = "/txSessionBenchmark";
+
+    @Inject
+    Repository repo;
+
+    @Inject
+    ObjectService objectService;
+
+    private Session session;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        assumeTrue(getBoolean(BENCHMARK_PROPERTY));
+        session = repo.login();
+        objectService.createObject(session, PATH);
+        session.save();
+    }
+
+    @After
+    public void tearDown() {
+        if (session != null) {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void benchmarkLookups() throws RepositoryException {
+        final Session proxied = ProxiedSession.newInstance(session, "tx");
+        final Session delegating = TxAwareSession.newInstance(session, "tx");
+        assertEquals(((TxSession) proxied).getTxId(), ((TxSession) delegating)
+                .getTxId());
+        assertEquals(proxied.getNode(PATH).getIdentifier(), delegating
+                .getNode(PATH).getIdentifier());
+
+        final long proxiedTime = time(proxied);
+        final long delegatingTime = time(delegating);
+        logger.info(
+                "{} rounds of lookups: dynamic proxy {} ns/round, delegation {} ns/round",
+                ROUNDS, proxiedTime / ROUNDS, delegatingTime / ROUNDS);
+    }
+
+    private static long time(final Session s) throws RepositoryException {
+        long elapsed = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            final long start = nanoTime();
+            if (!s.nodeExists(PATH) || s.getNode(PATH) == null
+                    || s.getItem(PATH) == null) {
+                throw new AssertionError("Lost the benchmark node!");
+            }
+            if (round >= WARMUP_ROUNDS) {
+                elapsed += nanoTime() - start;
+            }
+        }
+        return elapsed;
+    }
+
+    /**
+     * How TxAwareSession used to do it
+     */
+    private static class ProxiedSession implements InvocationHandler {
+
+        private final Session session;
+
+        private final String txId;
+
+        private ProxiedSession(final Session session, final String txId) {
+            this.session = session;
+            this.txId = txId;
+        }
+
+        static Session newInstance(final Session session, final String txId) {
+            return (Session) newProxyInstance(session.getClass()
+                    .getClassLoader(), new Class[] {TxSession.class},
+                    new ProxiedSession(session, txId));
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method,
+            final Object[] args) throws ReflectiveOperationException {
+            if (method.getName().equals("logout") ||
+                    method.getName().equals("save")) {
+                return null;
+            } else if (method.getName().equals("getTxId")) {
+                return txId;
+            } else if (method.getName().equals("impersonate")) {
+                return newInstance((Session) method.invoke(session, args),
+                        txId);
+            } else {
+                return method.invoke(session, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.integration.kernel.rdf;
+
+import static com.google.common.base.Predicates.not;
+import static java.lang.Boolean.getBoolean;
+import static java.lang.System.nanoTime;
+import static org.fcrepo.kernel.utils.FedoraTypesUtils.isBinaryContentProperty;
+import static org.fcrepo.kernel.utils.FedoraTypesUtils.property2values;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Iterator;
+
+import javax.inject.Inject;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.fcrepo.integration.kernel.AbstractIT;
+import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.impl.DefaultGraphSubjects;
+import org.fcrepo.kernel.rdf.impl.mappings.PropertyToTriple;
+import org.fcrepo.kernel.rdf.impl.mappings.ZippingIterator;
+import org.fcrepo.kernel.services.ObjectService;
+import org.fcrepo.kernel.utils.iterators.PropertyIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.context.ContextConfiguration;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Compares reading a node's properties twice and zipping values with
+ * {@link PropertyToTriple}'s curried functions against reading them once with
+ * {@link PropertyToTriple#expandValues()}, on nodes with hundreds of
+ * multi-valued properties. Timings are logged, not asserted; the test only
+ * fails if the two don't produce the same triples. Skipped unless the
+ * {@value #BENCHMARK_PROPERTY} system property is true, e.g.
+ * <code>mvn verify -Dit.test=PropertiesToTriplesBenchmarkIT
+ * -Dfcrepo.benchmark=true</code>.
+ *
+ * @author ajs6f
+ * @date Oct 16, 2013
+ */
+@ContextConfiguration({"/spring-test/repo.xml"})
+public class PropertiesToTriplesBenchmarkIT extends AbstractIT {
+
+    private static final String BENCHMARK_PROPERTY = "fcrepo.benchmark";
+
+    private static final int WARMUP_ROUNDS = 50;
+
+    private static final int ROUNDS = 200;
+
+    private static final int VALUES = 5;
+
+    @Inject
+    Repository repo;
+
+    @Inject
+    ObjectService objectService;
+
+    private Session session;
+
+    private GraphSubjects subjects;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        assumeTrue(getBoolean(BENCHMARK_PROPERTY));
+        session = repo.login();
+        subjects = new DefaultGraphSubjects(session);
+    }
+
+    @After
+    public void tearDown() {
+        if (session != null) {
+            session.logout();
+        }
+    }
+
+    @Test
+    public void benchmarkOneHundredProperties() throws RepositoryException {
+        benchmark(100);
+    }
+
+    @Test
+    public void benchmarkFiveHundredProperties() throws RepositoryException {
+        benchmark(500);
+    }
+
+    private void benchmark(final int properties) throws RepositoryException {
+        final Node node =
+            objectService.createObject(session,
+                    "/propertiesToTriplesBenchmark" + properties).getNode();
+        for (int i = 0; i < properties; i++) {
+            final String[] values = new String[VALUES];
+            for (int j = 0; j < VALUES; j++) {
+                values[j] = "value " + j + " of property " + i;
+            }
+            node.setProperty("benchmark" + i, values);
+        }
+        session.save();
+
+        assertEquals("Single pass produced different triples!", ImmutableSet
+                .copyOf(zipped(node)), ImmutableSet.copyOf(singlePass(node)));
+
+        final long zippedTime = time(node, false);
+        final long singlePassTime = time(node, true);
+        logger.info(
+                "{} properties of {} values: zipped {} us/node, single pass {} us/node",
+                properties, VALUES, zippedTime / ROUNDS / 1000,
+                singlePassTime / ROUNDS / 1000);
+    }
+
+    private long time(final Node node, final boolean singlePass)
+        throws RepositoryException {
+        long elapsed = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            final long start = nanoTime();
+            final int count =
+                Iterators.size(singlePass ? singlePass(node) : zipped(node));
+            if (round >= WARMUP_ROUNDS) {
+                elapsed += nanoTime() - start;
+            }
+            if (count == 0) {
+                throw new AssertionError("No triples were produced!");
+            }
+        }
+        return elapsed;
+    }
+
+    /**
+     * How PropertiesRdfContext used to do it
+     */
+    private Iterator<Triple> zipped(final Node node)
+        throws RepositoryException {
+        final PropertyToTriple property2triple = new PropertyToTriple(subjects);
+        return Iterators.concat(new ZippingIterator<>(Iterators.transform(
+                nonBinaryProperties(node), property2values), Iterators
+                .transform(nonBinaryProperties(node), property2triple)));
+    }
+
+    private Iterator<Triple> singlePass(final Node node)
+        throws RepositoryException {
+        return Iterators.concat(Iterators.transform(nonBinaryProperties(node),
+                new PropertyToTriple(subjects).expandValues()));
+    }
+
+    private static Iterator<Property> nonBinaryProperties(final Node node)
+        throws RepositoryException {
+        return Iterators.filter(new PropertyIterator(node.getProperties()),
+                not(isBinaryContentProperty));
+    }
+}
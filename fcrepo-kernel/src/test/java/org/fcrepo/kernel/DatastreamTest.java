@@ -16,6 +16,7 @@
 
 package org.fcrepo.kernel;
 
+import static javax.jcr.query.Query.JCR_SQL2;
 import static org.fcrepo.kernel.Datastream.hasMixin;
 import static org.fcrepo.kernel.utils.TestHelpers.checksumString;
 import static org.fcrepo.kernel.utils.TestHelpers.getContentNodeMock;
@@ -24,7 +25,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -40,15 +44,21 @@ import java.util.Calendar;
 import java.util.Date;
 
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.Property;
 import javax.jcr.PropertyIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.Workspace;
 import javax.jcr.nodetype.NodeType;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
 
 import org.apache.tika.io.IOUtils;
 import org.fcrepo.jcr.FedoraJcrTypes;
 import org.fcrepo.kernel.exception.InvalidChecksumException;
+import org.fcrepo.kernel.services.policy.StoragePolicyDecisionPoint;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -156,6 +166,89 @@ public class DatastreamTest implements FedoraJcrTypes {
         testObj.setContent(mockStream, null, new URI("urn:sha1:xyz"), null);
     }
 
+    @Test
+    public void testSetContentReusesStoredBinary() throws Exception {
+        final String hex = "0123456789abcdef0123456789abcdef01234567";
+        final URI checksum = new URI("urn:sha1:" + hex);
+        final org.modeshape.jcr.api.Binary mockBin =
+                mock(org.modeshape.jcr.api.Binary.class);
+        when(mockBin.getHexHash()).thenReturn(hex);
+        final Node mockExisting = mock(Node.class);
+        final Property mockExistingData = mock(Property.class);
+        when(mockExisting.hasProperty(JCR_DATA)).thenReturn(true);
+        when(mockExisting.getProperty(JCR_DATA)).thenReturn(mockExistingData);
+        when(mockExistingData.getBinary()).thenReturn(mockBin);
+
+        final Workspace mockWorkspace = mock(Workspace.class);
+        final QueryManager mockQueryManager = mock(QueryManager.class);
+        final Query mockQuery = mock(Query.class);
+        final QueryResult mockResult = mock(QueryResult.class);
+        final NodeIterator mockNodes = mock(NodeIterator.class);
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        when(mockWorkspace.getQueryManager()).thenReturn(mockQueryManager);
+        when(mockQueryManager.createQuery(any(String.class), eq(JCR_SQL2)))
+                .thenReturn(mockQuery);
+        when(mockQuery.execute()).thenReturn(mockResult);
+        when(mockResult.getNodes()).thenReturn(mockNodes);
+        when(mockNodes.hasNext()).thenReturn(true);
+        when(mockNodes.nextNode()).thenReturn(mockExisting);
+
+        final InputStream mockStream = mock(InputStream.class);
+        final Node mockContent = getContentNodeMock(8);
+        when(mockDsNode.getNode(JCR_CONTENT)).thenReturn(mockContent);
+        when(mockSession.getValueFactory()).thenReturn(mockVF);
+        final Property mockData = mock(Property.class);
+        when(mockContent.setProperty(JCR_DATA, mockBin)).thenReturn(mockData);
+        when(mockContent.getProperty(JCR_DATA)).thenReturn(mockData);
+        when(mockData.getBinary()).thenReturn(mockBin);
+
+        Datastream.dedupIngest = true;
+        try {
+            testObj.setContent(mockStream, null, checksum, null);
+        } finally {
+            Datastream.dedupIngest = false;
+        }
+        verify(mockContent).setProperty(JCR_DATA, mockBin);
+        verify(mockVF, never()).createBinary(any(InputStream.class),
+                any(String.class));
+        verify(mockStream, never()).read();
+        verify(mockStream, never()).read(any(byte[].class), anyInt(),
+                anyInt());
+    }
+
+    @Test
+    public void testSetContentWithAStorageHintIsNotDeduplicated()
+        throws Exception {
+        final String hex = "0123456789abcdef0123456789abcdef01234567";
+        final URI checksum = new URI("urn:sha1:" + hex);
+        final org.modeshape.jcr.api.Binary mockBin =
+                mock(org.modeshape.jcr.api.Binary.class);
+        when(mockBin.getHexHash()).thenReturn(hex);
+        final StoragePolicyDecisionPoint mockPolicy =
+                mock(StoragePolicyDecisionPoint.class);
+        when(mockPolicy.evaluatePolicies(mockDsNode)).thenReturn("tier-2");
+
+        final InputStream mockStream = mock(InputStream.class);
+        final Node mockContent = getContentNodeMock(8);
+        when(mockDsNode.getSession()).thenReturn(mockSession);
+        when(mockDsNode.getNode(JCR_CONTENT)).thenReturn(mockContent);
+        when(mockSession.getValueFactory()).thenReturn(mockVF);
+        when(mockVF.createBinary(mockStream, "tier-2")).thenReturn(mockBin);
+        final Property mockData = mock(Property.class);
+        when(mockContent.setProperty(JCR_DATA, mockBin)).thenReturn(mockData);
+        when(mockContent.getProperty(JCR_DATA)).thenReturn(mockData);
+        when(mockData.getBinary()).thenReturn(mockBin);
+
+        Datastream.dedupIngest = true;
+        try {
+            testObj.setContent(mockStream, null, checksum, mockPolicy);
+        } finally {
+            Datastream.dedupIngest = false;
+        }
+        verify(mockVF).createBinary(mockStream, "tier-2");
+        verify(mockSession, never()).getWorkspace();
+    }
+
     @Test
     public void getContentSize() throws RepositoryException {
         final int expectedContentLength = 2;
@@ -26,6 +26,7 @@ import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_RESOURCE;
 import static org.fcrepo.jcr.FedoraJcrTypes.JCR_CREATED;
 import static org.fcrepo.jcr.FedoraJcrTypes.JCR_LASTMODIFIED;
 import static org.fcrepo.kernel.FedoraResource.hasMixin;
+import static org.fcrepo.kernel.rdf.GraphProperties.PROBLEMS_MODEL_NAME;
 import static org.fcrepo.kernel.rdf.JcrRdfTools.getProblemsModel;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.getBaseVersion;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.getVersionHistory;
@@ -264,6 +265,63 @@ public class FedoraResourceTest {
         assertEquals(mockResource, dataset.getContext().get(Symbol.create("uri")));
     }
 
+    @Test
+    public void testUpdatePropertiesDatasetWithData() throws Exception {
+
+        mockStatic(JcrRdfTools.class);
+        final GraphSubjects mockSubjects = mock(GraphSubjects.class);
+        when(JcrRdfTools.withContext(mockSubjects, mockSession)).thenReturn(mockJcrRdfTools);
+        when(mockSubjects.getGraphSubject(mockNode)).thenReturn(
+                createResource("info:fedora/xyz"));
+
+        final Dataset dataset =
+            testObj.updatePropertiesDataset(mockSubjects,
+                    "INSERT DATA { <> <info:a> \"b\" } ;\n"
+                            + "DELETE DATA { <> <info:a> \"c\" }");
+
+        verify(mockJcrRdfTools, never()).getJcrTriples(mockNode);
+        verify(mockJcrRdfTools, never()).getTreeTriples(mockNode);
+        assertTrue(dataset.getNamedModel(PROBLEMS_MODEL_NAME).isEmpty());
+    }
+
+    @Test
+    public void testUpdatePropertiesDatasetAboutTheObject() throws Exception {
+
+        mockStatic(JcrRdfTools.class);
+        final GraphSubjects mockSubjects = mock(GraphSubjects.class);
+        when(JcrRdfTools.withContext(mockSubjects, mockSession)).thenReturn(mockJcrRdfTools);
+        when(mockSubjects.getGraphSubject(mockNode)).thenReturn(
+                createResource("info:fedora/xyz"));
+        when(mockJcrRdfTools.getJcrTriples(mockNode)).thenReturn(
+                new RdfStream(mockTriple));
+
+        testObj.updatePropertiesDataset(mockSubjects,
+                "DELETE { <> <info:a> ?o } INSERT { <> <info:a> \"b\" } "
+                        + "WHERE { <> <info:a> ?o }");
+
+        verify(mockJcrRdfTools).getJcrTriples(mockNode);
+        verify(mockJcrRdfTools, never()).getTreeTriples(mockNode);
+    }
+
+    @Test
+    public void testUpdatePropertiesDatasetAboutAnything() throws Exception {
+
+        mockStatic(JcrRdfTools.class);
+        final GraphSubjects mockSubjects = mock(GraphSubjects.class);
+        when(JcrRdfTools.withContext(mockSubjects, mockSession)).thenReturn(mockJcrRdfTools);
+        when(mockSubjects.getGraphSubject(mockNode)).thenReturn(
+                createResource("info:fedora/xyz"));
+        when(mockJcrRdfTools.getJcrTriples(mockNode)).thenReturn(
+                new RdfStream(mockTriple));
+        when(mockJcrRdfTools.getTreeTriples(mockNode)).thenReturn(
+                new RdfStream(mockTriple));
+
+        testObj.updatePropertiesDataset(mockSubjects,
+                "DELETE { ?s <info:a> ?o } WHERE { ?s <info:a> ?o }");
+
+        verify(mockJcrRdfTools).getTreeTriples(mockNode);
+    }
+
     @Test
     public void testGetVersionDataset() throws Exception {
 
@@ -17,6 +17,7 @@
 package org.fcrepo.kernel;
 
 import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.singleton;
 import static org.fcrepo.kernel.Transaction.State.COMMITED;
 import static org.fcrepo.kernel.Transaction.State.DIRTY;
 import static org.fcrepo.kernel.Transaction.State.NEW;
@@ -30,6 +31,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.Workspace;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -42,6 +44,9 @@ public class TransactionTest {
     @Mock
     private Session mockSession;
 
+    @Mock
+    private Workspace mockWorkspace;
+
     @Before
     public void setUp() {
         initMocks(this);
@@ -68,6 +73,19 @@ public class TransactionTest {
         assertTrue(update <= currentTimeMillis());
     }
 
+    @Test
+    public void testCommitWithoutCheckpoints() throws RepositoryException {
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        when(mockWorkspace.getName()).thenReturn("default");
+        testObj.addPathToVersion("/a");
+        assertEquals("default", testObj.getWorkspaceName());
+        testObj.commit(false);
+        verify(mockSession).save();
+        assertEquals(singleton("/a"), testObj.getVersionedPaths());
+        verify(mockWorkspace, never()).getVersionManager();
+        assertEquals(COMMITED, testObj.getState());
+    }
+
     @Test
     public void testExpire() throws RepositoryException {
         final long orig = testObj.getExpires().getTime();
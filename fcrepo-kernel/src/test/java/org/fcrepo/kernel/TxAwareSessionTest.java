@@ -53,6 +53,19 @@ public class TxAwareSessionTest {
         verify(mockSession).getItem("/xyz");
     }
 
+    @Test
+    public void shouldDelegateLookups() throws RepositoryException {
+        when(mockSession.nodeExists("/xyz")).thenReturn(true);
+        assertTrue(testObj.nodeExists("/xyz"));
+        testObj.getNode("/xyz");
+        verify(mockSession).getNode("/xyz");
+    }
+
+    @Test
+    public void shouldKnowItsTransaction() {
+        assertEquals("txid", ((TxSession) testObj).getTxId());
+    }
+
     @Test
     public void shouldWrapImpersonateToReturnAnotherTxAwareSession()
             throws RepositoryException {
@@ -18,10 +18,15 @@ package org.fcrepo.kernel.observer;
 
 import static com.google.common.base.Predicates.alwaysFalse;
 import static com.google.common.base.Predicates.alwaysTrue;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isFedoraDatastream;
 import static org.fcrepo.kernel.utils.FedoraTypesUtils.isFedoraObject;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -162,4 +167,48 @@ public class DefaultFilterTest {
             isFedoraObject = holdO;
         }
     }
+
+    @Test
+    public void shouldRememberNodesByIdentifier() throws RepositoryException {
+        when(mockEvent.getIdentifier()).thenReturn("some-id");
+        when(mockSession.getItem(testPath)).thenReturn(mockNode);
+        final Predicate<Node> holdDS = isFedoraDatastream;
+        final Predicate<Node> holdO = isFedoraObject;
+        try {
+            isFedoraDatastream = alwaysFalse();
+            isFedoraObject = alwaysTrue();
+            assertTrue(testObj.apply(mockEvent));
+            assertTrue(testObj.apply(mockEvent));
+            verify(mockSession, times(1)).getItem(testPath);
+        } finally {
+            isFedoraDatastream = holdDS;
+            isFedoraObject = holdO;
+        }
+    }
+
+    @Test
+    public void shouldForgetNodesWhoseTypesChange() throws RepositoryException {
+        final Event mixinEvent = mock(Event.class);
+        when(mixinEvent.getIdentifier()).thenReturn("some-id");
+        when(mixinEvent.getType()).thenReturn(PROPERTY_CHANGED);
+        when(mixinEvent.getPath()).thenReturn(testPath + "/jcr:mixinTypes");
+        when(mockEvent.getIdentifier()).thenReturn("some-id");
+        when(mockSession.getItem(testPath)).thenReturn(mockNode);
+        when(mockSession.getItem(testPath + "/jcr:mixinTypes")).thenReturn(
+                mockProperty);
+        when(mockProperty.getParent()).thenReturn(mockNode);
+        final Predicate<Node> holdDS = isFedoraDatastream;
+        final Predicate<Node> holdO = isFedoraObject;
+        try {
+            isFedoraDatastream = alwaysFalse();
+            isFedoraObject = alwaysFalse();
+            assertFalse(testObj.apply(mockEvent));
+            isFedoraObject = alwaysTrue();
+            assertTrue(testObj.apply(mixinEvent));
+            assertTrue(testObj.apply(mockEvent));
+        } finally {
+            isFedoraDatastream = holdDS;
+            isFedoraObject = holdO;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.fcrepo.kernel.observer;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Map;
+import java.util.Set;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.observation.Event;
@@ -25,6 +26,7 @@ import javax.jcr.observation.Event;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 public class FedoraEventTest {
 
@@ -42,6 +44,32 @@ public class FedoraEventTest {
         assertEquals(1, e.getType());
     }
 
+    @Test
+    public void testCoalescedTypesAndProperties() {
+        final FedoraEvent coalesced =
+            ((FedoraEvent) e).addType(2).addProperty("dc:title");
+        assertEquals(ImmutableSet.of(1, 2), coalesced.getTypes());
+        assertEquals(ImmutableSet.of("dc:title"), coalesced.getProperties());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTypesCannotBeChanged() {
+        ((FedoraEvent) e).getTypes().add(2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPropertiesCannotBeChanged() {
+        ((FedoraEvent) e).getProperties().add("dc:title");
+    }
+
+    @Test
+    public void testTypesAreACopy() {
+        final FedoraEvent event = (FedoraEvent) e;
+        final Set<Integer> before = event.getTypes();
+        event.addType(2);
+        assertEquals(ImmutableSet.of(1), before);
+    }
+
     @Test
     public void testGetPath() throws Exception {
         assertEquals("Path", e.getPath());
@@ -18,11 +18,19 @@ package org.fcrepo.kernel.observer;
 
 import static com.google.common.collect.Iterables.filter;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
 import static org.fcrepo.kernel.observer.SimpleObserver.EVENT_TYPES;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -30,8 +38,8 @@ import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
-import javax.jcr.Node;
 import javax.jcr.Session;
 import javax.jcr.Workspace;
 import javax.jcr.observation.Event;
@@ -41,12 +49,15 @@ import javax.jcr.observation.ObservationManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.modeshape.jcr.api.Repository;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.eventbus.EventBus;
 
@@ -78,6 +89,7 @@ public class SimpleObserverTest {
     public void setUp() throws Exception {
         initMocks(this);
         testObj = new SimpleObserver();
+        setField("poster", testObj, sameThreadExecutor());
     }
 
     @Test
@@ -92,6 +104,18 @@ public class SimpleObserverTest {
                 null, false);
     }
 
+    @Test
+    public void testStopWaitsForPostedEvents() throws Exception {
+        final ExecutorService mockPoster = mock(ExecutorService.class);
+        when(mockPoster.awaitTermination(30, SECONDS)).thenReturn(true);
+        setField("poster", testObj, mockPoster);
+        testObj.stop();
+        final InOrder order = inOrder(mockPoster);
+        order.verify(mockPoster).shutdown();
+        order.verify(mockPoster).awaitTermination(30, SECONDS);
+        verify(mockPoster, never()).shutdownNow();
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testOnEvent() throws Exception {
@@ -100,9 +124,7 @@ public class SimpleObserverTest {
         setField("session", testObj, mockSession);
         final Event mockEvent = mock(Event.class);
         when(mockEvent.getPath()).thenReturn("/foo/bar");
-        final Node mockNode = mock(Node.class);
-        when(mockNode.isNode()).thenReturn(true);
-        when(mockSession.getItem(any(String.class))).thenReturn(mockNode);
+        when(mockSession.nodeExists("/foo/bar")).thenReturn(true);
         final EventIterator mockEvents = mock(EventIterator.class);
         final List<Event> iterable = asList(new Event[] {mockEvent});
         mockStatic(Iterables.class);
@@ -111,6 +133,43 @@ public class SimpleObserverTest {
         verify(mockBus).post(any(Event.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOnEventCoalescesByNode() throws Exception {
+        setField("eventBus", testObj, mockBus);
+        setField("eventFilter", testObj, mockFilter);
+        setField("session", testObj, mockSession);
+        final Event nodeAdded = mock(Event.class);
+        when(nodeAdded.getType()).thenReturn(NODE_ADDED);
+        when(nodeAdded.getPath()).thenReturn("/foo/bar");
+        final Event propertyAdded = mock(Event.class);
+        when(propertyAdded.getType()).thenReturn(PROPERTY_ADDED);
+        when(propertyAdded.getPath()).thenReturn("/foo/bar/dc:title");
+        final Event propertyChanged = mock(Event.class);
+        when(propertyChanged.getType()).thenReturn(PROPERTY_CHANGED);
+        when(propertyChanged.getPath()).thenReturn("/foo/bar/dc:subject");
+        final Event elsewhere = mock(Event.class);
+        when(elsewhere.getType()).thenReturn(PROPERTY_ADDED);
+        when(elsewhere.getPath()).thenReturn("/foo/gone/dc:title");
+        when(mockSession.nodeExists("/foo/bar")).thenReturn(true);
+        final EventIterator mockEvents = mock(EventIterator.class);
+        final List<Event> iterable =
+            asList(nodeAdded, propertyAdded, propertyChanged, elsewhere);
+        mockStatic(Iterables.class);
+        when(filter(any(Iterable.class), eq(mockFilter))).thenReturn(iterable);
+        testObj.onEvent(mockEvents);
+
+        final ArgumentCaptor<FedoraEvent> posted =
+            ArgumentCaptor.forClass(FedoraEvent.class);
+        verify(mockBus).post(posted.capture());
+        verify(mockSession, times(1)).nodeExists("/foo/bar");
+        assertEquals("/foo/bar", posted.getValue().getPath());
+        assertEquals(ImmutableSet.of(NODE_ADDED, PROPERTY_ADDED,
+                PROPERTY_CHANGED), posted.getValue().getTypes());
+        assertEquals(ImmutableSet.of("dc:title", "dc:subject"), posted
+                .getValue().getProperties());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testOnEventAllFiltered() throws Exception {
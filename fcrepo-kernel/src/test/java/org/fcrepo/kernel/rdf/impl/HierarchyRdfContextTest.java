@@ -17,24 +17,35 @@
 package org.fcrepo.kernel.rdf.impl;
 
 import static com.google.common.collect.ImmutableSet.of;
+import static com.hp.hpl.jena.graph.NodeFactory.createURI;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createPlainLiteral;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
 import static com.hp.hpl.jena.vocabulary.RDF.type;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.sleep;
 import static org.fcrepo.kernel.RdfLexicon.CONTAINER;
 import static org.fcrepo.kernel.RdfLexicon.HAS_CHILD;
 import static org.fcrepo.kernel.RdfLexicon.HAS_PARENT;
+import static org.fcrepo.kernel.RdfLexicon.INLINED_RESOURCE;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERSHIP_OBJECT;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERSHIP_PREDICATE;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERSHIP_SUBJECT;
 import static org.fcrepo.kernel.RdfLexicon.MEMBERS_INLINED;
 import static org.fcrepo.kernel.RdfLexicon.MEMBER_SUBJECT;
+import static org.fcrepo.kernel.RdfLexicon.NEXT_PAGE;
 import static org.fcrepo.kernel.RdfLexicon.PAGE;
 import static org.fcrepo.kernel.RdfLexicon.PAGE_OF;
+import static org.fcrepo.kernel.rdf.impl.HierarchyRdfContext.continuationToken;
 import static org.fcrepo.kernel.testutilities.TestNodeIterator.nodeIterator;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.modeshape.jcr.api.JcrConstants.JCR_CONTENT;
@@ -44,9 +55,13 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -54,17 +69,26 @@ import javax.jcr.nodetype.NodeDefinition;
 import javax.jcr.nodetype.NodeType;
 
 import org.fcrepo.kernel.rdf.GraphSubjects;
+import org.fcrepo.kernel.rdf.HierarchyRdfContextOptions;
 import org.fcrepo.kernel.services.LowLevelStorageService;
 import org.fcrepo.kernel.testutilities.TestPropertyIterator;
-import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Resource;
 
@@ -110,6 +134,296 @@ public class HierarchyRdfContextTest {
 
     }
 
+    @Test
+    public void shouldOnlyDescribeChildrenOnThePage()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2, mockChildNode3,
+                        mockChildNode4, mockChildNode5));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(1, 2, false, null,
+                    nextPage));
+        assertEquals("Didn't find the right number of children!", 2,
+                Iterators.size(actual.listObjectsOfProperty(HAS_CHILD)));
+        assertTrue(actual.contains(testSubject, HAS_CHILD, createResource(
+                RESOURCE_PREFIX + "/2")));
+        assertTrue(actual.contains(testSubject, HAS_CHILD, createResource(
+                RESOURCE_PREFIX + "/3")));
+        assertTrue("Didn't find a link to the next page!", actual.contains(
+                testPage, NEXT_PAGE, createResource(NEXT_PAGE_PREFIX +
+                        continuationToken(3, "mockChildNode3"))));
+        // children off the page are never described
+        verify(mockChildNode, never()).getProperties();
+        verify(mockChildNode4, never()).getProperties();
+        verify(mockChildNode5, never()).getMixinNodeTypes();
+    }
+
+    @Test
+    public void shouldDescribeNoChildrenPastTheLast()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(10, 2, false, null,
+                    nextPage));
+        assertFalse(actual.listObjectsOfProperty(HAS_CHILD).hasNext());
+        assertFalse(actual.listObjectsOfProperty(NEXT_PAGE).hasNext());
+    }
+
+    @Test
+    public void shouldNotCountUndescribedChildrenInTheOffset()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        buildContentNode();
+        when(mockContentNode.getName()).thenReturn(JCR_CONTENT);
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockContentNode, mockChildNode, mockChildNode2,
+                        mockChildNode3));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(1, 1, false, null,
+                    nextPage));
+        assertEquals("Pages overlap!", ImmutableSet.of(createResource(
+                RESOURCE_PREFIX + "/2")), ImmutableSet.copyOf(actual
+                .listObjectsOfProperty(HAS_CHILD)));
+        assertTrue("Didn't find a link to the next page!", actual.contains(
+                testPage, NEXT_PAGE, createResource(NEXT_PAGE_PREFIX +
+                        continuationToken(3, "mockChildNode2"))));
+    }
+
+    @Test
+    public void shouldNotLinkPastTheLastPage() throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(0, 2, false, null,
+                    nextPage));
+        assertEquals(2, Iterators.size(actual.listObjectsOfProperty(HAS_CHILD)));
+        assertFalse(actual.contains(testPage, NEXT_PAGE));
+    }
+
+    @Test
+    public void shouldListChildrenWithoutTheirProperties()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(0, -1, true, null, null));
+        assertEquals(2, Iterators.size(actual.listObjectsOfProperty(HAS_CHILD)));
+        assertFalse(actual.contains(testPage, INLINED_RESOURCE));
+        assertTrue(actual.contains(testPage, MEMBERS_INLINED,
+                createPlainLiteral("false")));
+        verify(mockChildNode, never()).getMixinNodeTypes();
+        verify(mockChildNode2, never()).getMixinNodeTypes();
+    }
+
+    @Test
+    public void shouldResumeFromAContinuationToken()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2, mockChildNode3,
+                        mockChildNode4, mockChildNode5));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(0, 1, true,
+                    continuationToken(3, "mockChildNode3"), nextPage));
+        assertEquals(1, Iterators.size(actual.listObjectsOfProperty(HAS_CHILD)));
+        assertTrue(actual.contains(testSubject, HAS_CHILD, createResource(
+                RESOURCE_PREFIX + "/4")));
+        assertTrue(actual.contains(testPage, NEXT_PAGE, createResource(
+                NEXT_PAGE_PREFIX + continuationToken(4, "mockChildNode4"))));
+        verify(mockChildNode2, never()).getName();
+    }
+
+    @Test
+    public void shouldResumeAfterChildrenChanged() throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        // a child was removed from before where the last page ended
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode2, mockChildNode3, mockChildNode4,
+                        mockChildNode5),
+                nodeIterator(mockChildNode2, mockChildNode3, mockChildNode4,
+                        mockChildNode5));
+
+        final Model actual =
+            getResults(new HierarchyRdfContextOptions(0, 1, true,
+                    continuationToken(3, "mockChildNode3"), nextPage));
+        assertTrue(actual.contains(testSubject, HAS_CHILD, createResource(
+                RESOURCE_PREFIX + "/4")));
+        assertTrue(actual.contains(testPage, NEXT_PAGE, createResource(
+                NEXT_PAGE_PREFIX + continuationToken(3, "mockChildNode4"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectABadContinuationToken() throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        getResults(new HierarchyRdfContextOptions(0, 1, false, "not a token",
+                nextPage));
+    }
+
+    @Test
+    public void shouldDescribeChildrenInParallel() throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(
+                nodeIterator(mockChildNode, mockChildNode2, mockChildNode3,
+                        mockChildNode4, mockChildNode5));
+        when(mockWorkerSession.getNode(MOCK_CHILD_NODE_PATH)).thenReturn(
+                mockChildNode);
+        when(mockWorkerSession.getNode(MOCK_NODE_PATH + "/2")).thenReturn(
+                mockChildNode2);
+        when(mockWorkerSession.getNode(MOCK_NODE_PATH + "3")).thenReturn(
+                mockChildNode3);
+
+        final List<Triple> actual =
+            ImmutableList.copyOf(new HierarchyRdfContext(mockNode,
+                    mockGraphSubjects, mockLowLevelStorageService,
+                    new HierarchyRdfContextOptions(0, 3, false, null,
+                            nextPage, workerSessions, workerSubjects)));
+        final List<Triple> children =
+            ImmutableList.copyOf(Iterables.filter(actual,
+                    new Predicate<Triple>() {
+
+                        @Override
+                        public boolean apply(final Triple t) {
+                            return t.getPredicate().equals(HAS_CHILD.asNode());
+                        }
+                    }));
+        assertEquals("Children came out of order!", ImmutableList.of(
+                testChildSubject.asNode(),
+                createURI(RESOURCE_PREFIX + "/2"),
+                createURI(RESOURCE_PREFIX + "/3")), ImmutableList
+                .copyOf(Iterables.transform(children,
+                        new Function<Triple, com.hp.hpl.jena.graph.Node>() {
+
+                            @Override
+                            public com.hp.hpl.jena.graph.Node apply(
+                                    final Triple t) {
+                                return t.getObject();
+                            }
+                        })));
+        assertTrue("Didn't find a link to the next page!", actual
+                .contains(Triple.create(testPage.asNode(), NEXT_PAGE.asNode(),
+                        createURI(NEXT_PAGE_PREFIX +
+                                continuationToken(3, "mockChildNode3")))));
+        assertTrue("Didn't log in for a worker!", sessionsHandedOut.get() > 0);
+        verify(mockWorkerSession, times(sessionsHandedOut.get())).logout();
+        verify(mockWorkerSession, never()).getNode(MOCK_NODE_PATH + "4");
+    }
+
+    @Test
+    public void shouldShareWorkerSessionsAcrossChildren()
+        throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        final int count = 4 * Runtime.getRuntime().availableProcessors();
+        final Node[] children = new Node[count];
+        Arrays.fill(children, mockChildNode);
+        when(mockNode.getNodes()).thenReturn(nodeIterator(children));
+        when(mockWorkerSession.getNode(MOCK_CHILD_NODE_PATH)).thenReturn(
+                mockChildNode);
+
+        ImmutableList.copyOf(new HierarchyRdfContext(mockNode,
+                mockGraphSubjects, mockLowLevelStorageService,
+                new HierarchyRdfContextOptions(0, -1, false, null, null,
+                        workerSessions, workerSubjects)));
+
+        verify(mockWorkerSession, times(count)).getNode(MOCK_CHILD_NODE_PATH);
+        assertTrue("Logged in once for each child!",
+                sessionsHandedOut.get() < count);
+        assertEquals("Workers didn't get subjects for their own sessions!",
+                sessionsHandedOut.get(), subjectsHandedOut.get());
+        verify(mockWorkerSession, times(sessionsHandedOut.get())).logout();
+    }
+
+    @Test
+    public void shouldLogOutWorkersWhenClosedEarly()
+        throws RepositoryException, InterruptedException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        final int count = 4 * Runtime.getRuntime().availableProcessors();
+        final Node[] children = new Node[count];
+        Arrays.fill(children, mockChildNode);
+        when(mockNode.getNodes()).thenReturn(nodeIterator(children));
+        when(mockWorkerSession.getNode(MOCK_CHILD_NODE_PATH)).thenReturn(
+                mockChildNode);
+        final AtomicInteger loggedOut = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                loggedOut.incrementAndGet();
+                return null;
+            }
+        }).when(mockWorkerSession).logout();
+
+        final HierarchyRdfContext context =
+            new HierarchyRdfContext(mockNode, mockGraphSubjects,
+                    mockLowLevelStorageService, new HierarchyRdfContextOptions(
+                            0, -1, false, null, null, workerSessions,
+                            workerSubjects));
+        while (context.hasNext() &&
+                !context.next().getPredicate().equals(HAS_CHILD.asNode())) {
+            // read up to the first child
+        }
+        context.close();
+
+        // children already in hand finish on their own, then let go
+        final long deadline = currentTimeMillis() + 5000;
+        while (loggedOut.get() < sessionsHandedOut.get() &&
+                currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+        assertTrue("Didn't log in for a worker!", sessionsHandedOut.get() > 0);
+        assertEquals("Worker sessions were left logged in!", sessionsHandedOut
+                .get(), loggedOut.get());
+        verify(mockWorkerSession, atMost(count - 1)).getNode(
+                MOCK_CHILD_NODE_PATH);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldPassOnAWorkerFailure() throws RepositoryException {
+        nodeIsContainer();
+        when(mockNode.hasNodes()).thenReturn(true);
+        buildChildNodes();
+        when(mockNode.getNodes()).thenReturn(nodeIterator(mockChildNode));
+        when(mockWorkerSession.getNode(MOCK_CHILD_NODE_PATH)).thenThrow(
+                new PathNotFoundException());
+        try {
+            getResults(new HierarchyRdfContextOptions(0, -1, false, null,
+                    null, workerSessions, workerSubjects));
+        } finally {
+            verify(mockWorkerSession).logout();
+        }
+    }
+
     @Test
     public void testNodeWithContent() throws RepositoryException, IOException {
         buildContentNode();
@@ -269,12 +583,8 @@ public class HierarchyRdfContextTest {
                 mockBinaryProperty);
         when(mockBinaryProperty.getName()).thenReturn(JCR_DATA);
         when(mockBinaryProperty.getParent()).thenReturn(mockContentNode);
-        when(mockCacheEntry.getExternalIdentifier()).thenReturn(
-                testExternalIdentifier);
-        when(
-                mockLowLevelStorageService
-                        .getLowLevelCacheEntries(mockContentNode)).thenReturn(
-                of(mockCacheEntry));
+        when(mockLowLevelStorageService.getLocations(mockContentNode))
+                .thenReturn(of(testExternalIdentifier));
 
         when(mockContentNode.getProperties()).thenReturn(
                 new TestPropertyIterator(mockBinaryProperty));
@@ -285,6 +595,12 @@ public class HierarchyRdfContextTest {
                 mockLowLevelStorageService).asModel();
     }
 
+    private Model getResults(final HierarchyRdfContextOptions options)
+        throws RepositoryException {
+        return new HierarchyRdfContext(mockNode, mockGraphSubjects,
+                mockLowLevelStorageService, options).asModel();
+    }
+
     private void
             logRdf(final String message, final Model model) throws IOException {
         LOGGER.debug(message);
@@ -318,6 +634,18 @@ public class HierarchyRdfContextTest {
     private static final Resource testContentSubject =
         createResource(MOCK_NODE_PATH + JCR_CONTENT);
 
+    private static final String NEXT_PAGE_PREFIX = RESOURCE_PREFIX
+            + "/page?continue=";
+
+    private static final Function<String, com.hp.hpl.jena.graph.Node> nextPage =
+        new Function<String, com.hp.hpl.jena.graph.Node>() {
+
+            @Override
+            public com.hp.hpl.jena.graph.Node apply(final String token) {
+                return createURI(NEXT_PAGE_PREFIX + token);
+            }
+        };
+
     private static final String testBinaryKey = "testBinaryKey";
 
     private static final String testExternalIdentifier =
@@ -330,6 +658,33 @@ public class HierarchyRdfContextTest {
     private Node mockNode, mockParentNode, mockChildNode, mockChildNode2,
             mockChildNode3, mockChildNode4, mockChildNode5, mockContentNode;
 
+    @Mock
+    private Session mockWorkerSession;
+
+    private final AtomicInteger sessionsHandedOut = new AtomicInteger();
+
+    private final Supplier<Session> workerSessions = new Supplier<Session>() {
+
+        @Override
+        public Session get() {
+            sessionsHandedOut.incrementAndGet();
+            return mockWorkerSession;
+        }
+    };
+
+    private final AtomicInteger subjectsHandedOut = new AtomicInteger();
+
+    private final Function<Session, GraphSubjects> workerSubjects =
+        new Function<Session, GraphSubjects>() {
+
+            @Override
+            public GraphSubjects apply(final Session session) {
+                assertEquals(mockWorkerSession, session);
+                subjectsHandedOut.incrementAndGet();
+                return mockGraphSubjects;
+            }
+        };
+
     @Mock
     private NodeIterator mockNodes;
 
@@ -348,9 +703,6 @@ public class HierarchyRdfContextTest {
     @Mock
     private Property mockBinaryProperty;
 
-    @Mock
-    private LowLevelCacheEntry mockCacheEntry;
-
     private static final Logger LOGGER =
         getLogger(HierarchyRdfContextTest.class);
 
@@ -20,6 +20,7 @@ import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
 import static org.fcrepo.kernel.RdfLexicon.HAS_CONTENT;
 import static org.fcrepo.kernel.RdfLexicon.HAS_LOCATION;
 import static org.fcrepo.kernel.RdfLexicon.IS_CONTENT_OF;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -38,7 +39,6 @@ import javax.jcr.nodetype.NodeType;
 
 import org.fcrepo.kernel.rdf.GraphSubjects;
 import org.fcrepo.kernel.services.LowLevelStorageService;
-import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -66,6 +66,18 @@ public class PropertiesRdfContextTest {
                         MOCK_EXTERNAL_IDENTIFIER));
     }
 
+    @Test
+    public void testWithoutLowLevelStorageTriples()
+        throws RepositoryException {
+        final Model results =
+            new PropertiesRdfContext(mockNode, mockGraphSubjects, null)
+                    .asModel();
+        assertTrue("Didn't find triple showing node has content!", results
+                .contains(mockSubject, HAS_CONTENT, mockContentSubject));
+        assertFalse("Found a location nobody asked for!", results.contains(
+                mockContentSubject, HAS_LOCATION));
+    }
+
     @Before
     public void setUp() throws RepositoryException {
         initMocks(this);
@@ -77,12 +89,8 @@ public class PropertiesRdfContextTest {
         when(mockNode.getMixinNodeTypes()).thenReturn(new NodeType[] {});
         when(mockContentNode.getMixinNodeTypes()).thenReturn(new NodeType[] {});
         when(mockContentNode.hasProperties()).thenReturn(false);
-        when(
-                mockLowLevelStorageService
-                        .getLowLevelCacheEntries(mockContentNode)).thenReturn(
-                ImmutableSet.of(mockLowLevelCacheEntry));
-        when(mockLowLevelCacheEntry.getExternalIdentifier()).thenReturn(
-                MOCK_EXTERNAL_IDENTIFIER);
+        when(mockLowLevelStorageService.getLocations(mockContentNode))
+                .thenReturn(ImmutableSet.of(MOCK_EXTERNAL_IDENTIFIER));
         when(mockGraphSubjects.getGraphSubject(mockNode)).thenReturn(
                 mockSubject);
         when(mockGraphSubjects.getGraphSubject(mockContentNode)).thenReturn(
@@ -119,9 +127,6 @@ public class PropertiesRdfContextTest {
     @Mock
     private Repository mockRepository;
 
-    @Mock
-    private LowLevelCacheEntry mockLowLevelCacheEntry;
-
     private void
             logRdf(final String message, final Model model) throws IOException {
         LOGGER.debug(message);
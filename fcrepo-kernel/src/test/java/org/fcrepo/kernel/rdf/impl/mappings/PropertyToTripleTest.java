@@ -30,6 +30,9 @@ import static javax.jcr.PropertyType.REFERENCE;
 import static javax.jcr.PropertyType.STRING;
 import static javax.jcr.PropertyType.URI;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -37,6 +40,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.ItemNotFoundException;
@@ -97,6 +101,50 @@ public class PropertyToTripleTest {
                 .getSubject());
     }
 
+    @Test
+    public void testExpandMultiValuedProperty() throws RepositoryException {
+
+        when(mockProperty.isMultiple()).thenReturn(true);
+        when(mockProperty.getValues()).thenReturn(
+                new Value[] {mockValue, mockValue2});
+        when(mockValue.getString()).thenReturn(TEST_VALUE);
+        when(mockValue.getType()).thenReturn(STRING);
+        when(mockValue2.getString()).thenReturn(TEST_VALUE + "2");
+        when(mockValue2.getType()).thenReturn(STRING);
+        final List<Triple> ts =
+            ImmutableList.copyOf(testPropertyToTriple.expandValues().apply(
+                    mockProperty));
+
+        assertEquals("Got wrong number of triples!", 2, ts.size());
+        assertEquals("Got wrong RDF object!", TEST_VALUE, ts.get(0)
+                .getObject().getLiteralValue());
+        assertEquals("Got wrong RDF object!", TEST_VALUE + "2", ts.get(1)
+                .getObject().getLiteralValue());
+        for (final Triple t : ts) {
+            assertEquals("Got wrong RDF predicate!", createProperty(
+                    TEST_PROPERTY_NAME).asNode(), t.getPredicate());
+            assertEquals("Got wrong RDF subject!",
+                    TEST_NODE_SUBJECT.asNode(), t.getSubject());
+        }
+        verify(mockGraphSubjects, times(1)).getGraphSubject(mockNode);
+    }
+
+    @Test
+    public void testExpandSingleValuedProperty() throws RepositoryException {
+
+        when(mockProperty.isMultiple()).thenReturn(false);
+        when(mockValue.getString()).thenReturn(TEST_VALUE);
+        when(mockValue.getType()).thenReturn(STRING);
+        final List<Triple> ts =
+            ImmutableList.copyOf(testPropertyToTriple.expandValues().apply(
+                    mockProperty));
+
+        assertEquals("Got wrong number of triples!", 1, ts.size());
+        assertEquals("Got wrong RDF object!", TEST_VALUE, ts.get(0)
+                .getObject().getLiteralValue());
+        verify(mockProperty, never()).getValues();
+    }
+
     @Test
     public void testSingleValuedResourceTriple() throws RepositoryException {
 
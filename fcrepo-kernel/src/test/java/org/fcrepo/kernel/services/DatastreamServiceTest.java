@@ -281,7 +281,7 @@ public class DatastreamServiceTest implements FedoraJcrTypes {
                 testObj.runFixityAndFixProblems(mockDatastream);
 
         verify(mockBadResult).setRepaired();
-        verify(mockBadEntry).storeValue(mockIS);
+        verify(mockBadEntry).repairFrom(mockGoodEntry);
 
         assertTrue("expected to find good result", fixityResults
                 .contains(mockGoodResult));
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FixityEngineTest {
+
+    private FixityEngine testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new FixityEngine(4, 1);
+    }
+
+    @After
+    public void tearDown() {
+        testObj.shutdown();
+    }
+
+    @Test
+    public void testInvokeAllMergesResults() {
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put("a", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return of("a-result");
+            }
+        });
+        tasks.put("b", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return of("b-result", "b-other-result");
+            }
+        });
+
+        final Set<String> results = testObj.invokeAll(tasks);
+        assertEquals(3, results.size());
+        assertTrue(results.contains("a-result"));
+        assertTrue(results.contains("b-other-result"));
+    }
+
+    @Test
+    public void testInvokeAllRunsStoresInParallel() {
+        // each task waits for the other, so this only completes if the two
+        // stores' tasks are running at the same time
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        for (final String store : new String[] {"a", "b"}) {
+            tasks.put(store, new Callable<Set<String>>() {
+
+                @Override
+                public Set<String> call() throws InterruptedException {
+                    latch.countDown();
+                    latch.await();
+                    return of(store);
+                }
+            });
+        }
+
+        assertEquals(2, testObj.invokeAll(tasks).size());
+    }
+
+    @Test
+    public void testInvokeAllLimitsConcurrencyPerStore()
+        throws InterruptedException {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Callable<Set<String>> task = new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() throws InterruptedException {
+                final int current = inFlight.incrementAndGet();
+                if (current > maxInFlight.get()) {
+                    maxInFlight.set(current);
+                }
+                Thread.sleep(20);
+                inFlight.decrementAndGet();
+                return of("ok");
+            }
+        };
+
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put("a", task);
+        final FixityEngine engine = testObj;
+        final Thread other = new Thread() {
+
+            @Override
+            public void run() {
+                engine.invokeAll(tasks);
+            }
+        };
+        other.start();
+        testObj.invokeAll(tasks);
+        other.join();
+
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvokeAllPropagatesFailures() {
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put("a", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                throw new IllegalStateException("broken store");
+            }
+        });
+
+        testObj.invokeAll(tasks);
+    }
+
+    @Test(timeout = 5000)
+    public void testAFailureDoesNotInterruptRunningTasks()
+        throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put("a", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() throws InterruptedException {
+                started.await();
+                throw new IllegalStateException("broken store");
+            }
+        });
+        tasks.put("b", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    interrupted.set(true);
+                }
+                finished.countDown();
+                return of("b");
+            }
+        });
+
+        try {
+            testObj.invokeAll(tasks);
+        } catch (final IllegalStateException e) {
+            // expected
+        } finally {
+            release.countDown();
+        }
+        finished.await();
+        assertFalse("A running task was interrupted!", interrupted.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testQueuedTasksDontHoldPoolThreads()
+        throws InterruptedException {
+        final FixityEngine engine = new FixityEngine(2, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final Thread slow = invokeInBackground(engine, "a",
+                    new Callable<Set<String>>() {
+
+                        @Override
+                        public Set<String> call() throws InterruptedException {
+                            started.countDown();
+                            release.await();
+                            return of("slow");
+                        }
+                    });
+            started.await();
+            // waits behind the slow task for store "a"
+            final Thread queued = invokeInBackground(engine, "a",
+                    new Callable<Set<String>>() {
+
+                        @Override
+                        public Set<String> call() {
+                            return of("queued");
+                        }
+                    });
+            Thread.sleep(50);
+
+            // another store still gets the pool's other thread
+            final Map<String, Callable<Set<String>>> tasks =
+                    new LinkedHashMap<>();
+            tasks.put("b", new Callable<Set<String>>() {
+
+                @Override
+                public Set<String> call() {
+                    return of("b");
+                }
+            });
+            assertEquals(of("b"), engine.invokeAll(tasks));
+
+            release.countDown();
+            slow.join();
+            queued.join();
+        } finally {
+            release.countDown();
+            engine.shutdown();
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testNoWorkIsTakenAfterShutdown() {
+        testObj.shutdown();
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put("a", new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return of("a");
+            }
+        });
+
+        testObj.invokeAll(tasks);
+    }
+
+    @Test
+    public void testTheSharedEngineIsShared() {
+        assertSame(FixityEngine.shared(), FixityEngine.shared());
+    }
+
+    private static Thread invokeInBackground(final FixityEngine engine,
+            final String store, final Callable<Set<String>> task) {
+        final Map<String, Callable<Set<String>>> tasks = new LinkedHashMap<>();
+        tasks.put(store, task);
+        final Thread thread = new Thread() {
+
+            @Override
+            public void run() {
+                engine.invokeAll(tasks);
+            }
+        };
+        thread.start();
+        return thread;
+    }
+}
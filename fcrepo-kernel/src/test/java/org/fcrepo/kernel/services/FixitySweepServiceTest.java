@@ -0,0 +1,247 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.google.common.io.Files.createTempDir;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static javax.jcr.query.Query.JCR_SQL2;
+import static org.fcrepo.jcr.FedoraJcrTypes.CONTENT_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+
+import org.fcrepo.kernel.Datastream;
+import org.fcrepo.kernel.utils.FixityResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class FixitySweepServiceTest {
+
+    @Mock
+    private Repository mockRepo;
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private Workspace mockWorkspace;
+
+    @Mock
+    private QueryManager mockQueryManager;
+
+    @Mock
+    private Query mockQuery;
+
+    @Mock
+    private QueryResult mockResult;
+
+    @Mock
+    private DatastreamService mockDatastreamService;
+
+    @Mock
+    private Node mockBinary;
+
+    @Mock
+    private Node mockDsNode;
+
+    @Mock
+    private Property mockSize;
+
+    @Mock
+    private Datastream mockDatastream;
+
+    private File stateFile;
+
+    private FixitySweepService testObj;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        initMocks(this);
+        when(mockRepo.login()).thenReturn(mockSession);
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        when(mockWorkspace.getQueryManager()).thenReturn(mockQueryManager);
+        when(mockQueryManager.createQuery(anyString(), eq(JCR_SQL2)))
+                .thenReturn(mockQuery);
+        when(mockQuery.execute()).thenReturn(mockResult);
+        when(mockBinary.getPath()).thenReturn("/a/ds/jcr:content");
+        when(mockBinary.getParent()).thenReturn(mockDsNode);
+        when(mockBinary.hasProperty(CONTENT_SIZE)).thenReturn(true);
+        when(mockBinary.getProperty(CONTENT_SIZE)).thenReturn(mockSize);
+        when(mockSize.getLong()).thenReturn(1024L);
+        when(mockDatastreamService.asDatastream(mockDsNode)).thenReturn(
+                mockDatastream);
+
+        stateFile = new File(createTempDir(), "sweep.properties");
+        testObj = new FixitySweepService();
+        testObj.setRepository(mockRepo);
+        testObj.setDatastreamService(mockDatastreamService);
+        testObj.setStateFile(stateFile);
+        testObj.setRates(1e9, 1e6);
+    }
+
+    @Test
+    public void testSweepBatchChecksAndAdvances() throws RepositoryException,
+        IOException {
+        final FixityResult good = new FixityResult();
+        good.status.add(FixityResult.FixityState.SUCCESS);
+        when(mockDatastreamService.runFixityAndFixProblems(mockDatastream))
+                .thenReturn(singleton(good));
+        when(mockResult.getNodes()).thenReturn(nodes(mockBinary));
+
+        final long checked = FixitySweepService.sweepCheckCounter.getCount();
+        assertEquals(1, testObj.sweepBatch());
+        verify(mockDatastreamService).runFixityAndFixProblems(mockDatastream);
+        verify(mockSession).logout();
+        assertEquals(checked + 1, FixitySweepService.sweepCheckCounter
+                .getCount());
+
+        // progress survives a restart
+        final FixitySweepState state = FixitySweepState.load(stateFile);
+        assertEquals("/a/ds/jcr:content", state.getCursor());
+
+        // and the next batch starts after the cursor
+        when(mockResult.getNodes()).thenReturn(nodes());
+        final FixitySweepService restarted = new FixitySweepService();
+        restarted.setRepository(mockRepo);
+        restarted.setStateFile(stateFile);
+        assertEquals(0, restarted.sweepBatch());
+        verify(mockQueryManager).createQuery(
+                FixitySweepService.getQuery("/a/ds/jcr:content"), JCR_SQL2);
+    }
+
+    @Test
+    public void testBatchesPageThroughOneQuery() throws RepositoryException,
+        IOException {
+        final FixityResult good = new FixityResult();
+        good.status.add(FixityResult.FixityState.SUCCESS);
+        when(mockDatastreamService.runFixityAndFixProblems(mockDatastream))
+                .thenReturn(singleton(good));
+        when(mockResult.getNodes()).thenReturn(
+                nodes(mockBinary, mockBinary, mockBinary));
+        testObj.setBatchSize(2);
+
+        assertEquals(2, testObj.sweepBatch());
+        verify(mockSession, never()).logout();
+        assertEquals(1, testObj.sweepBatch());
+        // the results ran out, so the cycle's query is done with
+        verify(mockSession).logout();
+        verify(mockRepo, times(1)).login();
+        verify(mockQuery, times(1)).execute();
+    }
+
+    @Test
+    public void testBytesAreCountedForEveryCopy() throws RepositoryException,
+        IOException {
+        final FixityResult good = new FixityResult();
+        good.status.add(FixityResult.FixityState.SUCCESS);
+        when(mockDatastreamService.runFixityAndFixProblems(mockDatastream))
+                .thenReturn(asList(good, new FixityResult(), good));
+        when(mockResult.getNodes()).thenReturn(nodes(mockBinary, mockBinary));
+        // 3072 bytes a second, and each binary has three 1024-byte copies
+        testObj.setRates(3072, 1e6);
+
+        final long start = System.nanoTime();
+        assertEquals(2, testObj.sweepBatch());
+        // the second check waits a second for the copies the first one read,
+        // not a third of one
+        assertTrue(System.nanoTime() - start > MILLISECONDS.toNanos(700));
+    }
+
+    @Test
+    public void testSweepCountsFailures() throws RepositoryException,
+        IOException {
+        when(mockDatastreamService.runFixityAndFixProblems(mockDatastream))
+                .thenReturn(singleton(new FixityResult()));
+        when(mockResult.getNodes()).thenReturn(nodes(mockBinary));
+        final long failed = FixitySweepService.sweepFailureCounter.getCount();
+        assertEquals(1, testObj.sweepBatch());
+        assertEquals(failed + 1, FixitySweepService.sweepFailureCounter
+                .getCount());
+    }
+
+    @Test
+    public void testGetQuery() {
+        final String first = FixitySweepService.getQuery(null);
+        assertTrue(first.contains("[fedora:binary]"));
+        assertTrue(first.endsWith("ORDER BY [jcr:path]"));
+        assertTrue(FixitySweepService.getQuery("/o'brien").contains(
+                "[jcr:path] > '/o''brien'"));
+    }
+
+    @Test
+    public void testCompleteCycle() throws IOException {
+        final FixitySweepState state = FixitySweepState.load(stateFile);
+        state.advance("/somewhere");
+        state.completeCycle();
+        state.save();
+        final FixitySweepState reloaded = FixitySweepState.load(stateFile);
+        assertNull(reloaded.getCursor());
+        assertEquals(1, reloaded.getCycles());
+    }
+
+    private static NodeIterator nodes(final Node... nodes) {
+        final Iterator<Node> it = asList(nodes).iterator();
+        final NodeIterator mockIterator = mock(NodeIterator.class);
+        when(mockIterator.hasNext()).thenAnswer(
+                new Answer<Boolean>() {
+
+                    @Override
+                    public Boolean answer(
+                            final InvocationOnMock inv) {
+                        return it.hasNext();
+                    }
+                });
+        when(mockIterator.nextNode()).thenAnswer(
+                new Answer<Node>() {
+
+                    @Override
+                    public Node answer(
+                            final InvocationOnMock inv) {
+                        return it.next();
+                    }
+                });
+        return mockIterator;
+    }
+}
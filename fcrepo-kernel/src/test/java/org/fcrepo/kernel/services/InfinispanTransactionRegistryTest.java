@@ -0,0 +1,169 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.infinispan.configuration.cache.CacheMode.LOCAL;
+import static org.infinispan.configuration.cache.CacheMode.REPL_SYNC;
+import static org.fcrepo.kernel.services.InfinispanTransactionRegistry.CACHE_NAME;
+import static org.fcrepo.kernel.utils.TestHelpers.setField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Repository;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ClusteringConfiguration;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.Transport;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.modeshape.jcr.GetBinaryStore;
+import org.modeshape.jcr.value.binary.BinaryStore;
+import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
+
+public class InfinispanTransactionRegistryTest {
+
+    private static final String THIS_NODE = "http://node1/rest";
+
+    private static final String OTHER_NODE = "http://node2/rest";
+
+    private InfinispanTransactionRegistry testObj;
+
+    @Mock
+    private Repository mockRepo;
+
+    @Mock
+    private GetBinaryStore mockGetBinaryStore;
+
+    @Mock
+    private InfinispanBinaryStore mockStore;
+
+    @Mock
+    private Cache<Object, Object> mockBinaryCache;
+
+    @Mock
+    private EmbeddedCacheManager mockCM;
+
+    @Mock
+    private Cache<Object, Object> mockOwners;
+
+    @Mock
+    private Transport mockTransport;
+
+    @Mock
+    private Configuration mockConfiguration;
+
+    @Mock
+    private ClusteringConfiguration mockClustering;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        initMocks(this);
+        testObj = new InfinispanTransactionRegistry();
+        testObj.setRepository(mockRepo);
+        testObj.setNodeUrl(THIS_NODE);
+        setField(testObj, "getBinaryStore", mockGetBinaryStore);
+        when(mockGetBinaryStore.apply(mockRepo)).thenReturn(mockStore);
+        final List<Cache<?, ?>> caches =
+            asList(new Cache<?, ?>[] {mockBinaryCache});
+        when(mockStore.getCaches()).thenReturn(caches);
+        when(mockBinaryCache.getCacheManager()).thenReturn(mockCM);
+        when(mockCM.getTransport()).thenReturn(mockTransport);
+        when(mockCM.getCacheNames()).thenReturn(Collections.<String> emptySet());
+        when(mockCM.getCache(CACHE_NAME)).thenReturn(mockOwners);
+        when(mockOwners.getCacheConfiguration()).thenReturn(mockConfiguration);
+        when(mockConfiguration.clustering()).thenReturn(mockClustering);
+        when(mockClustering.cacheMode()).thenReturn(REPL_SYNC);
+        testObj.setUp();
+    }
+
+    @Test
+    public void testDefinesAReplicatedCache() {
+        verify(mockCM).defineConfiguration(eq(CACHE_NAME),
+                any(Configuration.class));
+    }
+
+    @Test
+    public void testRegister() {
+        testObj.register("tx", 1000);
+        verify(mockOwners).put("tx", THIS_NODE, 1000, MILLISECONDS);
+        testObj.unregister("tx");
+        verify(mockOwners).remove("tx", THIS_NODE);
+    }
+
+    @Test
+    public void testLocate() {
+        when(mockOwners.get("remote")).thenReturn(OTHER_NODE);
+        when(mockOwners.get("local")).thenReturn(THIS_NODE);
+        assertEquals(OTHER_NODE, testObj.locate("remote"));
+        assertNull(testObj.locate("local"));
+        assertNull(testObj.locate("missing"));
+    }
+
+    @Test
+    public void testWithoutANodeUrl() {
+        testObj.setNodeUrl(null);
+        testObj.register("tx", 1000);
+        verify(mockOwners, never()).put(anyString(), anyString(), anyLong(),
+                any(TimeUnit.class));
+    }
+
+    @Test
+    public void testWithoutInfinispan() throws NoSuchFieldException {
+        when(mockGetBinaryStore.apply(mockRepo)).thenReturn(
+                mock(BinaryStore.class));
+        testObj = new InfinispanTransactionRegistry();
+        testObj.setRepository(mockRepo);
+        testObj.setNodeUrl(THIS_NODE);
+        setField(testObj, "getBinaryStore", mockGetBinaryStore);
+        testObj.setUp();
+        testObj.register("tx", 1000);
+        assertNull(testObj.locate("tx"));
+    }
+
+    @Test
+    public void testWithALocalCache() throws NoSuchFieldException {
+        when(mockCM.getCacheNames()).thenReturn(singleton(CACHE_NAME));
+        when(mockClustering.cacheMode()).thenReturn(LOCAL);
+        testObj = new InfinispanTransactionRegistry();
+        testObj.setRepository(mockRepo);
+        testObj.setNodeUrl(THIS_NODE);
+        setField(testObj, "getBinaryStore", mockGetBinaryStore);
+        testObj.setUp();
+        testObj.register("tx", 1000);
+        verify(mockOwners, never()).put(anyString(), anyString(), anyLong(),
+                any(TimeUnit.class));
+    }
+}
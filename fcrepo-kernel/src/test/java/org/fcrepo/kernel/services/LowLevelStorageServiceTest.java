@@ -16,14 +16,24 @@
 
 package org.fcrepo.kernel.services;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.collect.ImmutableSet.of;
+import static com.google.common.io.Files.createTempDir;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.SettableFuture.create;
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.fcrepo.kernel.services.ServiceHelpers.getClusterExecutor;
+import static org.fcrepo.kernel.services.ServiceHelpers.getClusterMembers;
+import static org.fcrepo.metrics.RegistryService.getMetrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -33,6 +43,9 @@ import static org.modeshape.jcr.api.JcrConstants.JCR_DATA;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.spy;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -51,9 +64,13 @@ import org.fcrepo.kernel.services.functions.GetCacheStore;
 import org.fcrepo.kernel.utils.LowLevelCacheEntry;
 import org.fcrepo.kernel.utils.impl.CacheStoreEntry;
 import org.fcrepo.kernel.utils.impl.LocalBinaryStoreEntry;
+import org.fcrepo.kernel.utils.infinispan.ChunkManifest;
 import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distexec.DistributedExecutorService;
 import org.infinispan.loaders.CacheStore;
+import org.infinispan.remoting.transport.Address;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -63,12 +80,15 @@ import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
+import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
 import org.modeshape.jcr.value.binary.infinispan.InfinispanBinaryStore;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.SettableFuture;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockIgnore({"org.slf4j.*", "javax.xml.parsers.*", "org.apache.xerces.*"})
@@ -139,6 +159,61 @@ public class LowLevelStorageServiceTest {
         assertEquals("/foo", actual.iterator().next().getExternalIdentifier());
     }
 
+    @Test
+    public void testGetLocationsIsRemembered() throws RepositoryException {
+        final BinaryKey key = new BinaryKey("locations-key");
+        when(mockNode.getProperty(JCR_DATA)).thenReturn(mockProperty);
+        when(mockStore.toString()).thenReturn("foo");
+        when(mockKeyFunc.apply(mockProperty)).thenReturn(key);
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(mockStore);
+        final LowLevelStorageService testObj =
+                spy(new LowLevelStorageService());
+        testObj.setGetBinaryStore(mockStoreFunc);
+        testObj.setGetBinaryKey(mockKeyFunc);
+        testObj.setRepository(mockRepo);
+        assertEquals(ImmutableSet.of("/foo"), testObj.getLocations(mockNode));
+        assertEquals(ImmutableSet.of("/foo"), testObj.getLocations(mockNode));
+        verify(mockStoreFunc, times(1)).apply(mockRepo);
+
+        LowLevelStorageService.invalidateLocations(key);
+        testObj.getLocations(mockNode);
+        verify(mockStoreFunc, times(2)).apply(mockRepo);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testPartialLocationsAreNotRemembered() throws Exception {
+
+        mockStatic(ServiceHelpers.class);
+
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        final DistributedExecutorService mockCluster =
+                mock(DistributedExecutorService.class);
+        when(getClusterExecutor(infinispanBinaryStore)).thenReturn(mockCluster);
+        final Address slowNode = mock(Address.class);
+        when(slowNode.toString()).thenReturn("slow");
+        when(getClusterMembers(infinispanBinaryStore)).thenReturn(
+                asList(slowNode));
+        final SettableFuture<Collection<String>> slowFuture = create();
+        when(mockCluster.submit(eq(slowNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) slowFuture);
+
+        final BinaryKey key = new BinaryKey("partial-locations-key");
+        when(mockNode.getProperty(JCR_DATA)).thenReturn(mockProperty);
+        when(mockKeyFunc.apply(mockProperty)).thenReturn(key);
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(infinispanBinaryStore);
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setGetBinaryStore(mockStoreFunc);
+        testObj.setGetBinaryKey(mockKeyFunc);
+        testObj.setRepository(mockRepo);
+        testObj.setClusterTimeout(50);
+
+        assertTrue(testObj.getLocations(mockNode).isEmpty());
+        testObj.getLocations(mockNode);
+        verify(mockStoreFunc, times(2)).apply(mockRepo);
+    }
+
     @Test
     public void shouldRetrieveLowLevelCacheEntryForDefaultBinaryStore()
             throws RepositoryException {
@@ -222,10 +297,10 @@ public class LowLevelStorageServiceTest {
                 mock(Future.class);
         final Future<Collection<LowLevelCacheEntry>> future2 =
                 mock(Future.class);
-        when(future1.get(any(Long.class), eq(MILLISECONDS))).thenReturn(
-                cacheResponse1);
-        when(future2.get(any(Long.class), eq(MILLISECONDS))).thenReturn(
-                cacheResponse2);
+        when(future1.isDone()).thenReturn(true);
+        when(future1.get()).thenReturn(cacheResponse1);
+        when(future2.isDone()).thenReturn(true);
+        when(future2.get()).thenReturn(cacheResponse2);
 
         final List<Future<?>> mockClusterResults = new ArrayList<Future<?>>(2);
         mockClusterResults.add(future1);
@@ -257,6 +332,281 @@ public class LowLevelStorageServiceTest {
 
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void shouldReportClusterMembersThatTimeOut() throws Exception {
+
+        mockStatic(ServiceHelpers.class);
+
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        final DistributedExecutorService mockCluster =
+                mock(DistributedExecutorService.class);
+        when(getClusterExecutor(infinispanBinaryStore)).thenReturn(mockCluster);
+
+        final Address fastNode = mock(Address.class);
+        when(fastNode.toString()).thenReturn("fast");
+        final Address slowNode = mock(Address.class);
+        when(slowNode.toString()).thenReturn("slow");
+        when(getClusterMembers(infinispanBinaryStore)).thenReturn(
+                asList(fastNode, slowNode));
+
+        final BinaryKey key = new BinaryKey("key-123");
+        final Set<String> fastResponse = of("fast-result");
+
+        final Future<Collection<String>> fastFuture =
+                immediateFuture((Collection<String>) fastResponse);
+        final SettableFuture<Collection<String>> slowFuture = create();
+
+        when(mockCluster.submit(eq(fastNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) fastFuture);
+        when(mockCluster.submit(eq(slowNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) slowFuture);
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setClusterTimeout(50);
+
+        final Function<LowLevelCacheEntry, String> testFunc =
+                mock(Function.class);
+        final ClusterResults<String> results =
+                testObj.collectClusterResults(infinispanBinaryStore, key,
+                        testFunc);
+
+        assertEquals(fastResponse, results.getResults());
+        assertEquals(of("slow"), results.getTimedOutMembers());
+        assertFalse(results.isComplete());
+        assertTrue(slowFuture.isCancelled());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void shouldNotCountAnInterruptedCallAsATimeout() throws Exception {
+
+        mockStatic(ServiceHelpers.class);
+
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        final DistributedExecutorService mockCluster =
+                mock(DistributedExecutorService.class);
+        when(getClusterExecutor(infinispanBinaryStore)).thenReturn(mockCluster);
+
+        final Address slowNode = mock(Address.class);
+        when(slowNode.toString()).thenReturn("slow");
+        when(getClusterMembers(infinispanBinaryStore)).thenReturn(
+                asList(slowNode));
+        final SettableFuture<Collection<String>> slowFuture = create();
+        when(mockCluster.submit(eq(slowNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) slowFuture);
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setClusterTimeout(5000);
+        final long timeoutsBefore =
+                LowLevelStorageService.clusterTimeoutCounter.getCount();
+
+        Thread.currentThread().interrupt();
+        try {
+            testObj.collectClusterResults(infinispanBinaryStore,
+                    new BinaryKey("key-123"), mock(Function.class));
+            fail("Expected the interrupt to stop the wait");
+        } catch (final InterruptedException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(timeoutsBefore,
+                LowLevelStorageService.clusterTimeoutCounter.getCount());
+        assertTrue(slowFuture.isCancelled());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotLetClusterResultsBeChanged() {
+        final ClusterResults<String> results = new ClusterResults<>();
+        results.addResults(asList("a"));
+        results.getResults().add("b");
+    }
+
+    @Test
+    public void shouldTimeEachClusterMemberWhenItAnswers() throws Exception {
+
+        mockStatic(ServiceHelpers.class);
+
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        final DistributedExecutorService mockCluster =
+                mock(DistributedExecutorService.class);
+        when(getClusterExecutor(infinispanBinaryStore)).thenReturn(mockCluster);
+
+        final Address quickNode = mock(Address.class);
+        when(quickNode.toString()).thenReturn("quick-to-answer");
+        final Address laggingNode = mock(Address.class);
+        when(laggingNode.toString()).thenReturn("lagging-to-answer");
+        // the lagging member is asked first, so waiting on members in order
+        // would hold up the quick one
+        when(getClusterMembers(infinispanBinaryStore)).thenReturn(
+                asList(laggingNode, quickNode));
+
+        final SettableFuture<Collection<String>> laggingFuture = create();
+        when(mockCluster.submit(eq(laggingNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) laggingFuture);
+        when(mockCluster.submit(eq(quickNode), any(CacheLocalTransform.class)))
+                .thenReturn((Future) immediateFuture(asList("quick-result")));
+        final Thread lagging = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    sleep(200);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                laggingFuture.set(asList("lagging-result"));
+            }
+        };
+        lagging.start();
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setClusterTimeout(5000);
+
+        final Function<LowLevelCacheEntry, String> testFunc =
+                mock(Function.class);
+        final ClusterResults<String> results =
+                testObj.collectClusterResults(infinispanBinaryStore,
+                        new BinaryKey("key-123"), testFunc);
+        lagging.join();
+
+        assertTrue(results.isComplete());
+        assertEquals(2, results.getResults().size());
+        final long quickest =
+                getMetrics().timer(
+                        name(LowLevelStorageService.class,
+                                "cluster-node-latency", "quick-to-answer"))
+                        .getSnapshot().getMax();
+        final long slowest =
+                getMetrics().timer(
+                        name(LowLevelStorageService.class,
+                                "cluster-node-latency", "lagging-to-answer"))
+                        .getSnapshot().getMin();
+        assertTrue("Quick member should not be timed as the lagging one",
+                quickest < slowest);
+        assertTrue(slowest >= MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void shouldFindTheLocalFileForAFileSystemBinaryStore()
+        throws RepositoryException, IOException {
+        final String id = "0123456789abcdef0123456789abcdef01234567";
+        final File directory = createTempDir();
+        final File tier = new File(directory, "01/23/45");
+        tier.mkdirs();
+        final File binaryFile = new File(tier, id);
+        binaryFile.createNewFile();
+
+        final FileSystemBinaryStore fsStore = mock(FileSystemBinaryStore.class);
+        when(fsStore.getDirectory()).thenReturn(directory);
+        when(mockNode.getProperty(JCR_DATA)).thenReturn(mockProperty);
+        when(mockKeyFunc.apply(mockProperty)).thenReturn(new BinaryKey(id));
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(fsStore);
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setGetBinaryStore(mockStoreFunc);
+        testObj.setGetBinaryKey(mockKeyFunc);
+        testObj.setRepository(mockRepo);
+
+        assertEquals(binaryFile, testObj.getLocalFile(mockNode));
+
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(mockStore);
+        assertNull(testObj.getLocalFile(mockNode));
+    }
+
+    @Test
+    public void shouldSeekInALocalInfinispanBinaryStore() throws Exception {
+        final String dataKey = "key-123-data";
+        final Cache<?, ?> blobCache = mock(Cache.class, RETURNS_DEEP_STUBS);
+        when(blobCache.getCacheConfiguration().clustering().cacheMode())
+                .thenReturn(CacheMode.LOCAL);
+        final List<Cache<?, ?>> caches = new ArrayList<Cache<?, ?>>();
+        caches.add(mock(Cache.class));
+        caches.add(blobCache);
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        when(infinispanBinaryStore.getCaches()).thenReturn(caches);
+
+        final CacheStore cacheStore = mock(CacheStore.class);
+        when(cacheStore.containsKey(dataKey + "-0")).thenReturn(true);
+        final InternalCacheEntry chunk = mock(InternalCacheEntry.class);
+        when(chunk.getValue()).thenReturn(new byte[] {1, 2, 3});
+        when(cacheStore.load(dataKey + "-0")).thenReturn(chunk);
+        final GetCacheStore mockCacheStoreFunc = mock(GetCacheStore.class);
+        when(mockCacheStoreFunc.apply(blobCache)).thenReturn(cacheStore);
+
+        when(mockNode.getProperty(JCR_DATA)).thenReturn(mockProperty);
+        when(mockKeyFunc.apply(mockProperty)).thenReturn(
+                new BinaryKey("key-123"));
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(infinispanBinaryStore);
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setGetBinaryStore(mockStoreFunc);
+        testObj.setGetBinaryKey(mockKeyFunc);
+        testObj.setGetCacheStore(mockCacheStoreFunc);
+        testObj.setRepository(mockRepo);
+
+        final InputStream stream = testObj.getLocalChunkStream(mockNode);
+        assertEquals(2, stream.skip(2));
+        assertEquals(3, stream.read());
+
+        // the chunk size is worked out from the stored chunks
+        final InternalCacheEntry secondChunk = mock(InternalCacheEntry.class);
+        when(secondChunk.getValue()).thenReturn(new byte[] {4, 5});
+        when(cacheStore.load(dataKey + "-1")).thenReturn(secondChunk);
+        when(cacheStore.containsKey(dataKey + "-1")).thenReturn(true);
+        final InputStream chunked = testObj.getLocalChunkStream(mockNode);
+        assertEquals(4, chunked.skip(4));
+        assertEquals(5, chunked.read());
+
+        // nor can a clustered cache
+        when(blobCache.getCacheConfiguration().clustering().cacheMode())
+                .thenReturn(CacheMode.DIST_SYNC);
+        assertNull(testObj.getLocalChunkStream(mockNode));
+
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(mockStore);
+        assertNull(testObj.getLocalChunkStream(mockNode));
+    }
+
+    @Test
+    public void shouldRemoveManifestsWithTheirBinaries() {
+        final Cache<?, ?> blobCache = mock(Cache.class);
+        final List<Cache<?, ?>> caches = new ArrayList<Cache<?, ?>>();
+        caches.add(mock(Cache.class));
+        caches.add(blobCache);
+        final InfinispanBinaryStore infinispanBinaryStore =
+                mock(InfinispanBinaryStore.class);
+        when(infinispanBinaryStore.getCaches()).thenReturn(caches);
+        final CompositeBinaryStore compositeStore =
+                mock(CompositeBinaryStore.class);
+        final HashMap<String, BinaryStore> namedStores = new HashMap<>();
+        namedStores.put("a", infinispanBinaryStore);
+        namedStores.put("b", mock(FileSystemBinaryStore.class));
+        when(compositeStore.getNamedStoreIterator()).thenReturn(
+                namedStores.entrySet().iterator());
+        final GetCacheStore mockCacheStoreFunc = mock(GetCacheStore.class);
+        when(mockCacheStoreFunc.apply(blobCache)).thenReturn(
+                mock(CacheStore.class));
+        when(mockStoreFunc.apply(mockRepo)).thenReturn(compositeStore);
+
+        final LowLevelStorageService testObj = new LowLevelStorageService();
+        testObj.setGetBinaryStore(mockStoreFunc);
+        testObj.setGetCacheStore(mockCacheStoreFunc);
+        testObj.setRepository(mockRepo);
+
+        testObj.removeManifestsWithBinaries();
+        verify(blobCache).addListener(
+                any(ChunkManifest.RemoveWithBinary.class));
+        testObj.stopRemovingManifests();
+        verify(blobCache).removeListener(
+                any(ChunkManifest.RemoveWithBinary.class));
+    }
+
     @Test
     public void shouldReturnAnEmptySetForMissingBinaryStore()
             throws RepositoryException {
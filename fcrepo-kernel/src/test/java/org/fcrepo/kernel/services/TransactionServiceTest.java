@@ -17,27 +17,33 @@
 package org.fcrepo.kernel.services;
 
 import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.singleton;
 import static org.fcrepo.kernel.Transaction.State.NEW;
 import static org.fcrepo.kernel.services.TransactionService.FCREPO4_TX_ID;
+import static org.fcrepo.kernel.utils.TestHelpers.setField;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
-import java.lang.reflect.Field;
 import java.util.Date;
-import java.util.Map;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.fcrepo.kernel.Transaction;
+import org.fcrepo.kernel.exception.RemoteTransactionException;
 import org.fcrepo.kernel.exception.TransactionMissingException;
 import org.junit.Before;
 import org.junit.Test;
@@ -60,19 +66,19 @@ public class TransactionServiceTest {
     @Mock
     private Session mockSession;
 
+    @Mock
+    private TransactionRegistry mockRegistry;
+
+    @Mock
+    private VersionCheckpointQueue mockCheckpointQueue;
+
     @Before
     public void setup() throws Exception {
         initMocks(this);
         service = new TransactionService();
         when(mockTx.getId()).thenReturn(IS_A_TX);
-        final Field txsField =
-                TransactionService.class.getDeclaredField("transactions");
-        txsField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        final Map<String, Transaction> txs =
-                (Map<String, Transaction>) txsField
-                        .get(TransactionService.class);
-        txs.put(IS_A_TX, mockTx);
+        when(mockTx.getExpires()).thenReturn(new Date());
+        service.register(mockTx);
     }
 
     @Test
@@ -83,6 +89,20 @@ public class TransactionServiceTest {
         verify(mockTx).rollback();
     }
 
+    @Test
+    public void testUsedTransactionDoesNotExpire() throws Exception {
+        final Transaction usedTx = mock(Transaction.class);
+        when(usedTx.getId()).thenReturn("used");
+        when(usedTx.getExpires()).thenReturn(
+                new Date(currentTimeMillis() - 5000),
+                new Date(currentTimeMillis() + 60000));
+        service.register(usedTx);
+        service.removeAndRollbackExpired();
+        verify(usedTx, never()).rollback();
+        assertTrue(service.exists("used"));
+        service.rollback("used");
+    }
+
     @Test
     public void testExpirationThrowsRepositoryException() throws Exception {
         final Date fiveSecondsAgo = new Date(currentTimeMillis() - 5000);
@@ -111,6 +131,42 @@ public class TransactionServiceTest {
         service.getTransaction(NOT_A_TX);
     }
 
+    @Test
+    public void testGetTxOpenOnAnotherNode() throws Exception {
+        setField(service, "transactionRegistry", mockRegistry);
+        when(mockRegistry.locate(NOT_A_TX)).thenReturn("http://node2/rest");
+        try {
+            service.getTransaction(NOT_A_TX);
+            fail("Expected a RemoteTransactionException!");
+        } catch (final RemoteTransactionException e) {
+            assertEquals("http://node2/rest", e.getLocation());
+        }
+    }
+
+    @Test
+    public void testRegistryFollowsTransactions() throws Exception {
+        setField(service, "transactionRegistry", mockRegistry);
+        final Transaction tx = service.beginTransaction(mock(Session.class));
+        verify(mockRegistry).register(eq(tx.getId()), anyLong());
+        service.commit(tx.getId());
+        verify(mockRegistry).unregister(tx.getId());
+    }
+
+    @Test
+    public void testRegistryRecordIsRenewedWhileTheTransactionIsUsed()
+        throws Exception {
+        setField(service, "transactionRegistry", mockRegistry);
+        final Transaction usedTx = mock(Transaction.class);
+        when(usedTx.getId()).thenReturn("shared");
+        when(usedTx.getExpires()).thenReturn(
+                new Date(currentTimeMillis() - 5000),
+                new Date(currentTimeMillis() + 60000));
+        service.register(usedTx);
+        service.removeAndRollbackExpired();
+        verify(mockRegistry, times(2)).register(eq("shared"), anyLong());
+        service.rollback("shared");
+    }
+
     @Test
     public void testGetTxForSession() throws Exception {
         when(mockSession.getNamespaceURI(FCREPO4_TX_ID)).thenReturn(IS_A_TX);
@@ -137,6 +193,23 @@ public class TransactionServiceTest {
         verify(mockTx).commit();
     }
 
+    @Test
+    public void testCommitTxWithQueuedVersioning() throws Exception {
+        setField(service, "checkpointQueue", mockCheckpointQueue);
+        when(mockTx.getWorkspaceName()).thenReturn("default");
+        when(mockTx.getVersionedPaths()).thenReturn(singleton("/a"));
+        service.commit(IS_A_TX);
+        verify(mockTx).commit(false);
+        verify(mockCheckpointQueue).enqueue("default", singleton("/a"));
+    }
+
+    @Test
+    public void testCommitTxWithSynchronousVersioning() throws Exception {
+        setField(service, "checkpointQueue", mockCheckpointQueue);
+        service.commit(IS_A_TX, true);
+        verify(mockTx).commit();
+    }
+
     @Test(expected = RepositoryException.class)
     public void testCommitRemovedTransaction() throws Exception {
         final Transaction tx = service.commit(IS_A_TX);
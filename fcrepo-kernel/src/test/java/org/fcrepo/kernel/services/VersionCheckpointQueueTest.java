@@ -0,0 +1,200 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.services;
+
+import static com.google.common.io.Files.createTempDir;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.version.VersionManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class VersionCheckpointQueueTest {
+
+    private VersionCheckpointQueue testObj;
+
+    @Mock
+    private Repository mockRepository;
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private Workspace mockWorkspace;
+
+    @Mock
+    private VersionManager mockVersionManager;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        initMocks(this);
+        testObj = new VersionCheckpointQueue();
+        testObj.setRepository(mockRepository);
+        when(mockRepository.login("default")).thenReturn(mockSession);
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        when(mockWorkspace.getVersionManager()).thenReturn(mockVersionManager);
+    }
+
+    @Test
+    public void testCheckpointsInOneSession() throws Exception {
+        testObj.enqueue("default", asList("/a", "/b", "/c"));
+        assertEquals(3, testObj.getDepth());
+        assertEquals(0, testObj.checkpointBatch());
+        assertEquals(0, testObj.getDepth());
+        verify(mockVersionManager).checkpoint("/a");
+        verify(mockVersionManager).checkpoint("/b");
+        verify(mockVersionManager).checkpoint("/c");
+        verify(mockRepository, times(1)).login("default");
+        verify(mockSession).logout();
+    }
+
+    @Test
+    public void testBatchSize() throws Exception {
+        testObj.setBatchSize(2);
+        testObj.enqueue("default", asList("/a", "/b", "/c"));
+        testObj.checkpointBatch();
+        assertEquals(1, testObj.getDepth());
+        testObj.checkpointBatch();
+        verify(mockVersionManager).checkpoint("/c");
+    }
+
+    @Test
+    public void testFailedCheckpointIsRetried() throws Exception {
+        doThrow(new RepositoryException()).doNothing().when(
+                mockVersionManager).checkpoint("/a");
+        testObj.enqueue("default", singleton("/a"));
+        assertEquals(1, testObj.checkpointBatch());
+        assertEquals(1, testObj.getDepth());
+        assertEquals(0, testObj.checkpointBatch());
+        verify(mockVersionManager, times(2)).checkpoint("/a");
+    }
+
+    @Test
+    public void testCheckpointOfRemovedNodeIsDropped() throws Exception {
+        doThrow(new PathNotFoundException()).when(mockVersionManager)
+                .checkpoint("/a");
+        testObj.enqueue("default", singleton("/a"));
+        assertEquals(0, testObj.checkpointBatch());
+        assertEquals(0, testObj.getDepth());
+    }
+
+    @Test
+    public void testFailedLoginIsRetried() throws Exception {
+        when(mockRepository.login("default")).thenThrow(
+                new RepositoryException()).thenReturn(mockSession);
+        testObj.enqueue("default", asList("/a", "/b"));
+        assertEquals(2, testObj.checkpointBatch());
+        assertEquals(0, testObj.checkpointBatch());
+        verify(mockVersionManager).checkpoint("/b");
+    }
+
+    @Test
+    public void testPersistentFailureIsGivenUpOn() throws Exception {
+        testObj.setMaxAttempts(2);
+        doThrow(new RepositoryException()).when(mockVersionManager)
+                .checkpoint("/a");
+        testObj.enqueue("default", singleton("/a"));
+        assertEquals(1, testObj.checkpointBatch());
+        assertEquals(0, testObj.checkpointBatch());
+        assertEquals(0, testObj.getDepth());
+        verify(mockVersionManager, times(2)).checkpoint("/a");
+    }
+
+    @Test
+    public void testStopMakesQueuedCheckpoints() throws Exception {
+        testObj.setBatchSize(2);
+        testObj.enqueue("default", asList("/a", "/b", "/c"));
+        testObj.stop();
+        assertEquals(0, testObj.getDepth());
+        verify(mockVersionManager).checkpoint("/a");
+        verify(mockVersionManager).checkpoint("/b");
+        verify(mockVersionManager).checkpoint("/c");
+    }
+
+    @Test
+    public void testQueuedCheckpointsSurviveARestart() throws Exception {
+        final File journal = new File(createTempDir(), "checkpoints.journal");
+        testObj.setJournalFile(journal);
+        testObj.setBatchSize(1);
+        testObj.recover();
+        testObj.enqueue("default", asList("/a", "/b c", "/d"));
+        testObj.checkpointBatch();
+        verify(mockVersionManager).checkpoint("/a");
+
+        // the server dies without making the rest
+        final VersionCheckpointQueue restarted = new VersionCheckpointQueue();
+        restarted.setRepository(mockRepository);
+        restarted.setJournalFile(journal);
+        restarted.recover();
+        assertEquals(2, restarted.getDepth());
+        assertEquals(0, restarted.checkpointBatch());
+        verify(mockVersionManager).checkpoint("/b c");
+        verify(mockVersionManager).checkpoint("/d");
+
+        final VersionCheckpointQueue again = new VersionCheckpointQueue();
+        again.setJournalFile(journal);
+        again.recover();
+        assertEquals(0, again.getDepth());
+        assertEquals(0, journal.length());
+    }
+
+    @Test
+    public void testStopDoesNotInterruptTheWorker() throws Exception {
+        testObj.setJournalFile(new File(createTempDir(),
+                "checkpoints.journal"));
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                try {
+                    Thread.sleep(200);
+                } catch (final InterruptedException e) {
+                    interrupted.set(true);
+                }
+                return null;
+            }
+        }).when(mockVersionManager).checkpoint("/a");
+        testObj.start();
+        testObj.enqueue("default", singleton("/a"));
+        Thread.sleep(50);
+        testObj.stop();
+        assertFalse("The worker was interrupted!", interrupted.get());
+        verify(mockVersionManager).checkpoint("/a");
+    }
+}
@@ -37,6 +37,24 @@ public class ContentDigestTest {
                 create("urn:sha1:fake"), asURI("SHA1", "fake"));
     }
 
+    @Test
+    public void testSHA256() {
+        assertEquals("Failed to produce a proper content digest URI!",
+                create("urn:sha256:fake"), asURI("SHA-256", "fake"));
+    }
+
+    @Test
+    public void testMD5() {
+        assertEquals("Failed to produce a proper content digest URI!",
+                create("urn:md5:fake"), asURI("MD5", "fake"));
+    }
+
+    @Test
+    public void testGetAlgorithmSHA256() {
+        assertEquals("Failed to produce a proper digest algorithm!", "SHA-256",
+                getAlgorithm(asURI("SHA-256", "fake")));
+    }
+
     @Test
     public void testGetAlgorithm() {
         assertEquals("Failed to produce a proper digest algorithm!", "SHA-1",
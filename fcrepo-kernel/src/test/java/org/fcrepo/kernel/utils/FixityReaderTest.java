@@ -0,0 +1,54 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.utils;
+
+import static java.util.Arrays.asList;
+import static org.fcrepo.kernel.utils.ContentDigest.asURI;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.Test;
+
+public class FixityReaderTest {
+
+    @Test
+    public void testReadFully() throws IOException, NoSuchAlgorithmException {
+        final byte[] bytes = new byte[FixityReader.BLOCK_SIZE * 2 + 17];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        final FixityReader testObj =
+                new FixityReader(asList("SHA-1", "SHA-256", "MD5", "SHA-1"));
+        testObj.readFully(new ByteArrayInputStream(bytes));
+
+        assertEquals(bytes.length, testObj.getByteCount());
+        assertEquals(3, testObj.getChecksums().size());
+        for (final String algorithm : asList("SHA-1", "SHA-256", "MD5")) {
+            assertEquals(asURI(algorithm, MessageDigest.getInstance(algorithm)
+                    .digest(bytes)), testObj.getChecksum(algorithm));
+        }
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void testUnknownAlgorithm() throws NoSuchAlgorithmException {
+        new FixityReader(asList("NOT-A-DIGEST"));
+    }
+}
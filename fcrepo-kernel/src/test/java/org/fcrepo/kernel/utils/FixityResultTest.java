@@ -16,6 +16,7 @@
 
 package org.fcrepo.kernel.utils;
 
+import static java.util.Arrays.asList;
 import static org.fcrepo.kernel.utils.FixityResult.FixityState.SUCCESS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -42,6 +43,10 @@ public class FixityResultTest {
 
         assertNotEquals(new FixityResult(99L, new URI("urn:321")),
                 new FixityResult(100L, new URI("urn:123")));
+
+        assertNotEquals(new FixityResult(null, 100L, new URI("urn:123"),
+                asList(new URI("urn:md5:456"))), new FixityResult(100L,
+                new URI("urn:123")));
     }
 
     @Test
@@ -58,6 +63,11 @@ public class FixityResultTest {
 
         assertNotEquals(new FixityResult(99L, new URI("urn:321")).hashCode(),
                 new FixityResult(100L, new URI("urn:123")).hashCode());
+
+        assertEquals(new FixityResult(null, 100L, new URI("urn:123"),
+                asList(new URI("urn:md5:456"))).hashCode(), new FixityResult(
+                null, 100L, new URI("urn:123"), asList(new URI("urn:md5:456")))
+                .hashCode());
     }
 
     @Test
@@ -82,4 +92,23 @@ public class FixityResultTest {
         assertFalse("unexpected match when size and checksum differs", result
                 .matches(99L, new URI("urn:312")));
     }
+
+    @Test
+    public void testMatchesAnyComputedChecksum() throws Exception {
+        final FixityResult result =
+                new FixityResult(null, 100L, new URI("urn:sha1:123"), asList(
+                        new URI("urn:sha256:456"), new URI("urn:md5:789")));
+        assertEquals(3, result.getComputedChecksums().size());
+        assertTrue("expected fixity to match", result.matches(new URI(
+                "urn:sha256:456")));
+        assertFalse("unexpected match when checksum differs", result
+                .matches(new URI("urn:sha256:123")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testComputedChecksumsCannotBeChanged() throws Exception {
+        final FixityResult result =
+                new FixityResult(100L, new URI("urn:sha1:123"));
+        result.getComputedChecksums().add(new URI("urn:sha256:456"));
+    }
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils;
+
+import static javax.jcr.PropertyType.STRING;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getPredicate;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getPropertyName;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getPropertyType;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.getRdfUri;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.invalidate;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.putPropertyName;
+import static org.fcrepo.kernel.utils.JcrNamespaceSnapshot.putPropertyType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class JcrNamespaceSnapshotTest {
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private Workspace mockWorkspace;
+
+    @Mock
+    private NamespaceRegistry mockRegistry;
+
+    @Before
+    public void setUp() throws RepositoryException {
+        initMocks(this);
+        when(mockSession.getWorkspace()).thenReturn(mockWorkspace);
+        when(mockWorkspace.getNamespaceRegistry()).thenReturn(mockRegistry);
+        when(mockRegistry.getURI("ex")).thenReturn("http://example.com/ns#");
+    }
+
+    @Test
+    public void testGetRdfUriOnlyAsksTheRegistryOnce()
+        throws RepositoryException {
+        assertEquals("http://example.com/ns#Thing", getRdfUri(mockSession,
+                "ex:Thing"));
+        assertEquals("http://example.com/ns#Thing", getRdfUri(mockSession,
+                "ex:Thing"));
+        verify(mockRegistry, times(1)).getURI("ex");
+    }
+
+    @Test
+    public void testInvalidate() throws RepositoryException {
+        getRdfUri(mockSession, "ex:Thing");
+        invalidate();
+        when(mockRegistry.getURI("ex")).thenReturn("http://example.org/ns/");
+        assertEquals("http://example.org/ns/Thing", getRdfUri(mockSession,
+                "ex:Thing"));
+    }
+
+    @Test
+    public void testGetPredicateIsRememberedByName()
+        throws RepositoryException {
+        final Property mockProperty = mock(Property.class);
+        when(mockProperty.getSession()).thenReturn(mockSession);
+        when(mockProperty.getName()).thenReturn("info:some-property");
+        final com.hp.hpl.jena.rdf.model.Property predicate =
+            getPredicate(mockProperty);
+        assertEquals("info:some-property", predicate.getURI());
+        assertSame(predicate, getPredicate(mockProperty));
+    }
+
+    @Test
+    public void testGetPredicateWithoutASession() throws RepositoryException {
+        final Property mockProperty = mock(Property.class);
+        when(mockProperty.getName()).thenReturn("info:some-property");
+        assertEquals("info:some-property", getPredicate(mockProperty)
+                .getURI());
+    }
+
+    @Test
+    public void testPropertyNamesAndTypesAreForgottenOnInvalidate() {
+        putPropertyName("info:some-predicate", "info:some-predicate");
+        putPropertyType("some:type", "some:property", STRING);
+        assertEquals("info:some-predicate",
+                getPropertyName("info:some-predicate"));
+        assertEquals(Integer.valueOf(STRING), getPropertyType("some:type",
+                "some:property"));
+        invalidate();
+        assertNull(getPropertyName("info:some-predicate"));
+        assertNull(getPropertyType("some:type", "some:property"));
+    }
+}
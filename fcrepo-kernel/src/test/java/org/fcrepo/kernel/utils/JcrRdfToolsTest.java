@@ -59,6 +59,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -88,6 +89,7 @@ import javax.jcr.nodetype.NodeDefinition;
 import javax.jcr.nodetype.NodeType;
 import javax.jcr.nodetype.NodeTypeIterator;
 import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.PropertyDefinition;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
@@ -144,6 +146,7 @@ public class JcrRdfToolsTest {
     @Before
     public final void setUp() throws RepositoryException {
         initMocks(this);
+        JcrNamespaceSnapshot.invalidate();
         testSubjects = new DefaultGraphSubjects(mockSession);
         testObj = new JcrRdfTools(testSubjects, mockSession);
         buildMockNodeAndSurroundings();
@@ -618,6 +621,31 @@ public class JcrRdfToolsTest {
                 mockNode, p));
     }
 
+    @Test
+    public final void shouldRememberPredicateTranslations()
+        throws RepositoryException {
+        final Property p = createProperty(mockUri, "uuid");
+        testObj.getPropertyNameFromPredicate(mockNode, p);
+        assertEquals("some-prefix:uuid", testObj.getPropertyNameFromPredicate(
+                mockNode, p));
+        verify(mockNsRegistry, times(1)).isRegisteredUri(mockUri);
+    }
+
+    @Test
+    public final void shouldRememberPropertyTypes() throws RepositoryException {
+        final NodeType mockType = mock(NodeType.class);
+        final PropertyDefinition mockDefinition =
+            mock(PropertyDefinition.class);
+        when(mockType.getName()).thenReturn("some:type");
+        when(mockType.getPropertyDefinitions()).thenReturn(
+                new PropertyDefinition[] {mockDefinition});
+        when(mockDefinition.getName()).thenReturn("some:property");
+        when(mockDefinition.getRequiredType()).thenReturn(STRING);
+        assertEquals(STRING, testObj.getPropertyType(mockType, "some:property"));
+        assertEquals(STRING, testObj.getPropertyType(mockType, "some:property"));
+        verify(mockType, times(1)).getPropertyDefinitions();
+    }
+
     private void logRDF(final Model rdf) throws IOException {
         try (final Writer writer = new StringWriter()) {
             rdf.write(writer);
@@ -22,7 +22,10 @@ import static org.fcrepo.kernel.utils.FixityResult.FixityState.SUCCESS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
@@ -38,6 +41,7 @@ import java.security.NoSuchAlgorithmException;
 
 import org.fcrepo.kernel.utils.impl.CacheStoreEntry;
 import org.fcrepo.kernel.utils.impl.LocalBinaryStoreEntry;
+import org.fcrepo.kernel.utils.infinispan.ChunkManifest;
 import org.fcrepo.kernel.utils.infinispan.StoreChunkInputStream;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.loaders.CacheStore;
@@ -45,6 +49,7 @@ import org.infinispan.loaders.CacheStoreConfig;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -160,7 +165,55 @@ public class LowLevelCacheEntryTest {
                 new CacheStoreEntry(mockLowLevelCacheStore, "foo", testKey);
         final byte[] bytes = new byte[] {0, 1, 2, 3, 4};
         ispnEntry.storeValue(new ByteArrayInputStream(bytes));
-        verify(mockLowLevelCacheStore).store(any(InternalCacheEntry.class));
+        // the chunk, and its manifest
+        verify(mockLowLevelCacheStore, times(2)).store(
+                any(InternalCacheEntry.class));
+    }
+
+    @Test
+    public void testRepairWithoutAManifestComparesEveryChunk()
+        throws Exception {
+        final String dataKey = testKey.toString() + "-data";
+        final byte[] goodChunk = new byte[] {0, 1, 2, 3};
+        final CacheStore goodStore = mock(CacheStore.class);
+        final InternalCacheEntry good0 = mock(InternalCacheEntry.class);
+        when(good0.getValue()).thenReturn(goodChunk);
+        final InternalCacheEntry good1 = mock(InternalCacheEntry.class);
+        when(good1.getValue()).thenReturn(new byte[] {4, 5});
+        when(goodStore.load(dataKey + "-0")).thenReturn(good0);
+        when(goodStore.load(dataKey + "-1")).thenReturn(good1);
+        when(goodStore.containsKey(dataKey + "-1")).thenReturn(true);
+
+        final InternalCacheEntry ours0 = mock(InternalCacheEntry.class);
+        when(ours0.getValue()).thenReturn(goodChunk.clone());
+        final InternalCacheEntry ours1 = mock(InternalCacheEntry.class);
+        when(ours1.getValue()).thenReturn(new byte[] {4, 6});
+        when(mockLowLevelCacheStore.load(dataKey + "-0")).thenReturn(ours0);
+        when(mockLowLevelCacheStore.load(dataKey + "-1")).thenReturn(ours1);
+
+        testIspnObj.repairFrom(new CacheStoreEntry(goodStore, "foo", testKey));
+
+        final ArgumentCaptor<InternalCacheEntry> stored =
+                forClass(InternalCacheEntry.class);
+        verify(mockLowLevelCacheStore, times(2)).store(stored.capture());
+        // the damaged chunk, and the new manifest
+        assertEquals(dataKey + "-1", stored.getAllValues().get(0).getKey());
+        assertEquals(dataKey + "-manifest", stored.getAllValues().get(1)
+                .getKey());
+        final ChunkManifest manifest =
+                ChunkManifest.fromBytes((byte[]) stored.getAllValues().get(1)
+                        .getValue());
+        assertEquals(2, manifest.getChunkCount());
+        assertTrue(manifest.matches(0, goodChunk));
+        // chunked the way the good copy was
+        assertEquals(goodChunk.length, manifest.getChunkSize());
+        // and the good copy gets the same manifest, for the next repair
+        final ArgumentCaptor<InternalCacheEntry> goodManifest =
+                forClass(InternalCacheEntry.class);
+        verify(goodStore).store(goodManifest.capture());
+        assertEquals(dataKey + "-manifest", goodManifest.getValue().getKey());
+        assertEquals(manifest, ChunkManifest.fromBytes((byte[]) goodManifest
+                .getValue().getValue()));
     }
 
     @Test
@@ -273,6 +273,30 @@ public class NodePropertiesToolsTest {
         verify(mockProperty, never()).setValue(any(Value[].class));
     }
 
+    @Test
+    public void addValuesToExistingMultiValuedPropertyAtOnce()
+        throws RepositoryException {
+        when(mockProperty.isMultiple()).thenReturn(true);
+        when(mockNode.hasProperty("mockPropertyName")).thenReturn(true);
+        when(mockProperty.getValues()).thenReturn(new Value[] {previousValue});
+        testNodePropertiesTools.appendOrReplaceNodeProperty(subjects, mockNode,
+                "mockPropertyName", asList(previousValue, mockValue, mockRefValue));
+        verify(mockProperty).setValue(
+                new Value[] {previousValue, mockValue, mockRefValue});
+    }
+
+    @Test
+    public void replaceSingleValuedPropertyWithLastOfValues()
+        throws RepositoryException {
+        when(mockDefinition.isMultiple()).thenReturn(false);
+        when(mockNode.hasProperty("mockPropertyName")).thenReturn(false);
+        when(mockNode.setProperty("mockPropertyName", mockValue, 0)).thenReturn(mockProperty);
+        testNodePropertiesTools.appendOrReplaceNodeProperty(subjects, mockNode,
+                "mockPropertyName", asList(previousValue, mockValue));
+        verify(mockNode).setProperty("mockPropertyName", mockValue, 0);
+        verify(mockNode, never()).setProperty("mockPropertyName", previousValue, 0);
+    }
+
     @Test
     public void shouldBeANoopWhenRemovingPropertyThatDoesntExist()
             throws RepositoryException {
@@ -321,6 +345,18 @@ public class NodePropertiesToolsTest {
         verify(mockProperty).setValue((Value[]) null);
     }
 
+    @Test
+    public void shouldRemoveValuesFromAMultiValuedPropertyAtOnce()
+        throws RepositoryException {
+        when(mockProperty.isMultiple()).thenReturn(true);
+        when(mockNode.hasProperty("mockPropertyName")).thenReturn(true);
+        when(mockProperty.getValues()).thenReturn(
+                new Value[] {previousValue, mockValue, mockRefValue});
+        testNodePropertiesTools.removeNodeProperty(subjects, mockNode,
+                "mockPropertyName", asList(mockValue, mockRefValue));
+        verify(mockProperty).setValue(new Value[] {previousValue});
+    }
+
     @Test
     public void shouldRemoveAMultiValuedUriProperty() throws RepositoryException {
         when(mockProperty.isMultiple()).thenReturn(true);
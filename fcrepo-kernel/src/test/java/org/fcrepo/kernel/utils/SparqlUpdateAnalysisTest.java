@@ -0,0 +1,106 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils;
+
+import static com.hp.hpl.jena.graph.NodeFactory.createURI;
+import static com.hp.hpl.jena.update.UpdateFactory.create;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SparqlUpdateAnalysisTest {
+
+    private static final String SUBJECT = "http://localhost/fcrepo/xyz";
+
+    private static SparqlUpdateAnalysis analyze(final String update) {
+        return new SparqlUpdateAnalysis(create(update, SUBJECT),
+                createURI(SUBJECT));
+    }
+
+    @Test
+    public void testInsertAndDeleteData() {
+        final SparqlUpdateAnalysis analysis =
+            analyze("INSERT DATA { <> <info:a> \"b\" } ;\n"
+                    + "DELETE DATA { <info:other> <info:a> \"c\" }");
+        assertTrue(analysis.isDataOnly());
+        assertFalse(analysis.isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testDataInANamedGraph() {
+        final SparqlUpdateAnalysis analysis =
+            analyze("INSERT DATA { GRAPH <info:g> { <> <info:a> \"b\" } }");
+        assertFalse(analysis.isDataOnly());
+        assertFalse(analysis.isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternAboutTheSubject() {
+        final SparqlUpdateAnalysis analysis =
+            analyze("PREFIX dc: <http://purl.org/dc/elements/1.1/>\n"
+                    + "DELETE { <> dc:title ?o } INSERT { <> dc:title \"b\" } "
+                    + "WHERE { <> dc:title ?o FILTER (?o != \"b\") }");
+        assertFalse(analysis.isDataOnly());
+        assertTrue(analysis.isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternAboutAnotherSubject() {
+        assertFalse(analyze(
+                "DELETE { ?s <info:a> ?o } WHERE { ?s <info:a> ?o }")
+                .isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternWithAVariablePredicate() {
+        assertFalse(analyze("DELETE WHERE { <> ?p ?o }").isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternWithAManagedPredicate() {
+        assertFalse(analyze(
+                "INSERT { <> <info:a> ?c } WHERE { <> "
+                        + "<http://fedora.info/definitions/v4/repository#hasChild> ?c }")
+                .isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternWithAnRdfType() {
+        assertTrue(analyze(
+                "INSERT { <> a <info:SomeType> } WHERE { }")
+                .isAboutSubjectOnly());
+        assertFalse(analyze(
+                "INSERT { <> <info:a> ?t } WHERE { <> a ?t }")
+                .isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testPatternWithExists() {
+        assertFalse(analyze(
+                "INSERT { <> <info:a> \"b\" } WHERE { "
+                        + "FILTER EXISTS { ?s <info:a> \"c\" } }")
+                .isAboutSubjectOnly());
+    }
+
+    @Test
+    public void testOtherOperations() {
+        final SparqlUpdateAnalysis analysis = analyze("CLEAR DEFAULT");
+        assertFalse(analysis.isDataOnly());
+        assertFalse(analysis.isAboutSubjectOnly());
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2013 DuraSpace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fcrepo.kernel.utils.infinispan;
+
+import static java.util.Arrays.asList;
+import static org.fcrepo.kernel.utils.TestHelpers.randomData;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.loaders.CacheLoaderException;
+import org.infinispan.loaders.CacheStore;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ChunkManifestTest {
+
+    private static final String DATA_KEY = "key-to-a-mock-blob-data";
+
+    @Test
+    public void testRoundTrip() {
+        final byte[] a = randomData(16);
+        final byte[] b = randomData(8);
+        final ChunkManifest manifest =
+                new ChunkManifest(16, asList(ChunkManifest.digest(a),
+                        ChunkManifest.digest(b)));
+        final ChunkManifest copy = ChunkManifest.fromBytes(manifest.toBytes());
+        assertEquals(manifest, copy);
+        assertEquals(16, copy.getChunkSize());
+        assertEquals(2, copy.getChunkCount());
+        assertTrue(copy.matches(0, a));
+        assertTrue(copy.matches(1, b));
+        assertFalse(copy.matches(0, b));
+        assertFalse(copy.matches(2, b));
+        assertFalse(copy.matches(0, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedManifest() {
+        final ChunkManifest manifest =
+                new ChunkManifest(16, asList(ChunkManifest
+                        .digest(randomData(16))));
+        final byte[] bytes = manifest.toBytes();
+        final byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        ChunkManifest.fromBytes(truncated);
+    }
+
+    @Test
+    public void testStoreAndLoad() throws CacheLoaderException {
+        final CacheStore mockStore = mock(CacheStore.class);
+        assertNull(ChunkManifest.load(mockStore, DATA_KEY));
+
+        final ChunkManifest manifest =
+                new ChunkManifest(16, asList(ChunkManifest
+                        .digest(randomData(16))));
+        manifest.store(mockStore, DATA_KEY);
+        final ArgumentCaptor<InternalCacheEntry> stored =
+                ArgumentCaptor.forClass(InternalCacheEntry.class);
+        verify(mockStore).store(stored.capture());
+        assertEquals(DATA_KEY + ChunkManifest.MANIFEST_SUFFIX, stored
+                .getValue().getKey());
+
+        when(mockStore.load(any())).thenReturn(stored.getValue());
+        assertEquals(manifest, ChunkManifest.load(mockStore, DATA_KEY));
+    }
+
+    @Test
+    public void testLoadKeepsTheManifestOfMissingChunks()
+        throws CacheLoaderException {
+        final CacheStore mockStore = mock(CacheStore.class);
+        final InternalCacheEntry mockEntry = mock(InternalCacheEntry.class);
+        final ChunkManifest manifest =
+                new ChunkManifest(16, asList(ChunkManifest
+                        .digest(randomData(16))));
+        when(mockEntry.getValue()).thenReturn(manifest.toBytes());
+        when(mockStore.load(DATA_KEY + ChunkManifest.MANIFEST_SUFFIX))
+                .thenReturn(mockEntry);
+
+        // the chunks aren't there, which is what a repair needs it for
+        assertEquals(manifest, ChunkManifest.load(mockStore, DATA_KEY));
+        verify(mockStore, never()).remove(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRemoveWithBinary() throws CacheLoaderException {
+        final CacheStore mockStore = mock(CacheStore.class);
+        final ChunkManifest.RemoveWithBinary listener =
+                new ChunkManifest.RemoveWithBinary(mockStore);
+        final CacheEntryRemovedEvent<Object, Object> event =
+                mock(CacheEntryRemovedEvent.class);
+
+        // only once the first chunk is gone
+        when(event.isPre()).thenReturn(true);
+        when(event.getKey()).thenReturn(DATA_KEY + "-0");
+        listener.chunkRemoved(event);
+        when(event.isPre()).thenReturn(false);
+        when(event.getKey()).thenReturn(DATA_KEY + "-10");
+        listener.chunkRemoved(event);
+        verify(mockStore, never()).remove(any());
+
+        when(event.getKey()).thenReturn(DATA_KEY + "-0");
+        listener.chunkRemoved(event);
+        verify(mockStore).remove(DATA_KEY + ChunkManifest.MANIFEST_SUFFIX);
+    }
+
+    @Test
+    public void testChunkSizeOfAStoredBinary() throws CacheLoaderException {
+        final CacheStore mockStore = mock(CacheStore.class);
+        // nothing stored
+        assertEquals(StoreChunkOutputStream.CHUNKSIZE, ChunkManifest
+                .chunkSizeOf(mockStore, DATA_KEY));
+
+        final InternalCacheEntry first = mock(InternalCacheEntry.class);
+        when(first.getValue()).thenReturn(randomData(4096));
+        when(mockStore.load(DATA_KEY + "-0")).thenReturn(first);
+        when(mockStore.containsKey(DATA_KEY + "-0")).thenReturn(true);
+        // one chunk could have been written with any bigger chunk size
+        assertEquals(StoreChunkOutputStream.CHUNKSIZE, ChunkManifest
+                .chunkSizeOf(mockStore, DATA_KEY));
+
+        when(mockStore.containsKey(DATA_KEY + "-1")).thenReturn(true);
+        assertEquals(4096, ChunkManifest.chunkSizeOf(mockStore, DATA_KEY));
+
+        final InternalCacheEntry manifest = mock(InternalCacheEntry.class);
+        when(manifest.getValue()).thenReturn(
+                new ChunkManifest(8192, asList(ChunkManifest
+                        .digest(randomData(16)))).toBytes());
+        when(mockStore.load(DATA_KEY + ChunkManifest.MANIFEST_SUFFIX))
+                .thenReturn(manifest);
+        assertEquals(8192, ChunkManifest.chunkSizeOf(mockStore, DATA_KEY));
+    }
+}
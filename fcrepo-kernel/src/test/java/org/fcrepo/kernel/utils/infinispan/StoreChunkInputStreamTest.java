@@ -18,14 +18,19 @@ package org.fcrepo.kernel.utils.infinispan;
 
 import static org.fcrepo.kernel.utils.TestHelpers.randomData;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.fcrepo.kernel.utils.TestHelpers;
 import org.infinispan.container.entries.InternalCacheEntry;
@@ -34,6 +39,8 @@ import org.infinispan.loaders.CacheStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class StoreChunkInputStreamTest {
 
@@ -123,26 +130,188 @@ public class StoreChunkInputStreamTest {
     @Test
     public void testSkipMultipleBuffers() throws IOException,
             CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
         final byte[] data = randomData(DATA_SIZE);
         when(mockEntry.getValue()).thenReturn(data);
-        when(mockStore.load(anyString())).thenReturn(mockEntry).thenReturn(
-                mockEntry).thenReturn(null);
-        long expected = (DATA_SIZE);
+        when(mockStore.load(MOCK_KEY + "-1")).thenReturn(mockEntry);
         // ask for more than the buffer
         long actual = testObj.skip(DATA_SIZE + 1);
-        // we should skip only one complete buffer
-        assertEquals(expected, actual);
+        // we land one byte into the second chunk
+        assertEquals(DATA_SIZE + 1, actual);
         // ok, skip all but the last byte remaining
-        expected = (DATA_SIZE - 1);
+        final long expected = (DATA_SIZE - 2);
         actual = testObj.skip(expected);
-        // new buffer, mostly skipped
         assertEquals(expected, actual);
         // we should still have 1 more byte
-        assertTrue(testObj.read() > -1);
+        assertEquals(data[DATA_SIZE - 1] & 0xff, testObj.read());
         // but only the one
         assertEquals(-1, testObj.read());
-        // and we only had two cacheEntries
-        verify(mockEntry, times(2)).getValue();
+        // and we only loaded the chunk we landed in
+        verify(mockEntry, times(1)).getValue();
+    }
+
+    @Test
+    public void testSkipOnlyLoadsTargetChunk() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_KEY + "-5")).thenReturn(mockEntry);
+        final long offset = 5L * DATA_SIZE + 17;
+        assertEquals(offset, testObj.skip(offset));
+        assertEquals(data[17] & 0xff, testObj.read());
+        verify(mockStore, times(1)).load(anyString());
+        verify(mockStore, never()).load(MOCK_FIRST_CHUNK);
+    }
+
+    @Test
+    public void testSkipToChunkBoundaryDefersLoad() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_KEY + "-2")).thenReturn(mockEntry);
+        when(mockStore.containsKey(MOCK_KEY + "-2")).thenReturn(true);
+        assertEquals(2L * DATA_SIZE, testObj.skip(2L * DATA_SIZE));
+        verify(mockStore, never()).load(anyString());
+        assertEquals(data[0] & 0xff, testObj.read());
+    }
+
+    @Test
+    public void testSkipToAChunkBoundaryPastTheEnd() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        final byte[] data = randomData(DATA_SIZE / 2);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_KEY + "-1")).thenReturn(mockEntry);
+        when(mockStore.containsKey(MOCK_KEY + "-1")).thenReturn(true);
+        // the data ends half way through the second chunk
+        assertEquals(DATA_SIZE + DATA_SIZE / 2, testObj
+                .skip(4L * DATA_SIZE));
+        assertEquals(-1, testObj.read());
+        verify(mockStore, never()).load(MOCK_FIRST_CHUNK);
+    }
+
+    @Test
+    public void testSkipToTheEndOfTheLastFullChunk() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_KEY + "-1")).thenReturn(mockEntry);
+        when(mockStore.containsKey(MOCK_KEY + "-1")).thenReturn(true);
+        assertEquals(2L * DATA_SIZE, testObj.skip(2L * DATA_SIZE));
+        assertEquals(-1, testObj.read());
+    }
+
+    @Test
+    public void testSkipPastTheEndOfAShortChunk() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        final byte[] data = randomData(DATA_SIZE / 2);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_KEY + "-1")).thenReturn(mockEntry);
+        // we can only skip to the end of the data
+        assertEquals(DATA_SIZE + DATA_SIZE / 2, testObj
+                .skip(2L * DATA_SIZE - 1));
+        assertEquals(-1, testObj.read());
+        assertEquals(0, testObj.skip(1));
+    }
+
+    @Test
+    public void testSkipIntoAMissingChunk() throws IOException {
+        testObj = new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE);
+        assertEquals(0, testObj.skip(3L * DATA_SIZE + 1));
+        assertEquals(-1, testObj.read());
+    }
+
+    @Test
+    public void testReadAhead() throws IOException, CacheLoaderException {
+        testObj =
+                new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE, 2);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(MOCK_FIRST_CHUNK)).thenReturn(mockEntry);
+        when(mockStore.load(MOCK_KEY + "-1")).thenReturn(mockEntry);
+        when(mockStore.load(MOCK_KEY + "-2")).thenReturn(mockEntry);
+        testObj.read();
+        // the next two chunks are loaded while we read the first
+        verify(mockStore, timeout(5000)).load(MOCK_KEY + "-1");
+        verify(mockStore, timeout(5000)).load(MOCK_KEY + "-2");
+        verify(mockStore, never()).load(MOCK_KEY + "-3");
+
+        // and are used, rather than loaded again
+        final byte[] buffer = new byte[DATA_SIZE];
+        long total = 1;
+        int read;
+        while ((read = testObj.read(buffer, 0, DATA_SIZE)) != -1) {
+            total += read;
+        }
+        assertEquals(3 * DATA_SIZE, total);
+        verify(mockStore, times(1)).load(MOCK_KEY + "-1");
+        verify(mockStore, times(1)).load(MOCK_KEY + "-2");
+        verify(mockStore, times(1)).load(MOCK_KEY + "-3");
+        testObj.close();
+    }
+
+    @Test
+    public void testReadAheadAfterSkip() throws IOException,
+            CacheLoaderException {
+        testObj =
+                new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE, 1);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(anyString())).thenReturn(mockEntry);
+        testObj.read();
+        verify(mockStore, timeout(5000)).load(MOCK_KEY + "-1");
+        // skip past the prefetched chunk; it is dropped, not read
+        assertEquals(3L * DATA_SIZE, testObj.skip(3L * DATA_SIZE));
+        assertEquals(data[1] & 0xff, testObj.read());
+        verify(mockStore, times(1)).load(MOCK_KEY + "-3");
+        verify(mockStore, timeout(5000)).load(MOCK_KEY + "-4");
+        verify(mockStore, never()).load(MOCK_KEY + "-2");
+        testObj.close();
+    }
+
+    @Test
+    public void testSkippingAPrefetchDoesNotInterruptIt() throws Exception {
+        testObj =
+                new StoreChunkInputStream(mockStore, MOCK_KEY, DATA_SIZE, 1);
+        final byte[] data = randomData(DATA_SIZE);
+        when(mockEntry.getValue()).thenReturn(data);
+        when(mockStore.load(anyString())).thenReturn(mockEntry);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        when(mockStore.load(MOCK_KEY + "-1")).thenAnswer(
+                new Answer<InternalCacheEntry>() {
+
+                    @Override
+                    public InternalCacheEntry answer(
+                            final InvocationOnMock invocation)
+                        throws InterruptedException {
+                        loading.countDown();
+                        try {
+                            release.await();
+                        } catch (final InterruptedException e) {
+                            interrupted.set(true);
+                        }
+                        interrupted.compareAndSet(false, Thread
+                                .currentThread().isInterrupted());
+                        loaded.countDown();
+                        return mockEntry;
+                    }
+                });
+        testObj.read();
+        loading.await();
+        // skip past the chunk being loaded, then give up on the stream
+        testObj.skip(3L * DATA_SIZE);
+        testObj.close();
+        release.countDown();
+        loaded.await();
+        assertFalse("A prefetch was interrupted in the store",
+                interrupted.get());
     }
 
     @Test
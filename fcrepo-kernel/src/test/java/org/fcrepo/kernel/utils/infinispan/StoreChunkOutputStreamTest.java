@@ -16,9 +16,15 @@
 
 package org.fcrepo.kernel.utils.infinispan;
 
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.copyOfRange;
 import static org.fcrepo.kernel.utils.TestHelpers.randomData;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -31,6 +37,7 @@ import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
 public class StoreChunkOutputStreamTest {
@@ -78,4 +85,57 @@ public class StoreChunkOutputStreamTest {
         verify(mockStore, times(2)).store(any(InternalCacheEntry.class));
         assertEquals(2, testObj.getNumberChunks());
     }
+
+    @Test
+    public void testWritingNewKeySkipsLoad() throws IOException,
+            CacheLoaderException {
+        testObj = new StoreChunkOutputStream(mockStore, MOCK_KEY, true);
+        final byte[] data = randomData(DATA_SIZE);
+        for (int i = 0; i < 1025; i++) {
+            testObj.write(data);
+        }
+        testObj.close();
+        verify(mockStore, never()).load(anyString());
+        verify(mockStore, times(2)).store(any(InternalCacheEntry.class));
+    }
+
+    @Test
+    public void testChunkContents() throws IOException, CacheLoaderException {
+        final byte[] data = randomData(DATA_SIZE + 1);
+        // single bytes and arrays that straddle the chunk boundary
+        testObj.write(data[0]);
+        for (int i = 0; i < 1024; i++) {
+            testObj.write(data, 1, DATA_SIZE);
+        }
+        testObj.write(data, 0, 3);
+        testObj.close();
+        // closing twice stores nothing more
+        testObj.close();
+
+        final ArgumentCaptor<InternalCacheEntry> stored =
+                forClass(InternalCacheEntry.class);
+        verify(mockStore, times(2)).store(stored.capture());
+        final byte[] first = (byte[]) stored.getAllValues().get(0).getValue();
+        final byte[] last = (byte[]) stored.getAllValues().get(1).getValue();
+        assertEquals(StoreChunkOutputStream.CHUNKSIZE, first.length);
+        assertEquals(4, last.length);
+        assertEquals(data[0], first[0]);
+        assertEquals(data[1], first[1]);
+        assertEquals(data[DATA_SIZE], last[0]);
+        assertEquals(data[2], last[3]);
+        assertEquals(MOCK_KEY + "-1", stored.getAllValues().get(1).getKey());
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        testObj = new StoreChunkOutputStream(mockStore, MOCK_KEY, 16, true);
+        final byte[] data = randomData(20);
+        testObj.write(data);
+        testObj.close();
+        final ChunkManifest manifest = testObj.getManifest();
+        assertEquals(16, manifest.getChunkSize());
+        assertEquals(2, manifest.getChunkCount());
+        assertTrue(manifest.matches(0, copyOf(data, 16)));
+        assertTrue(manifest.matches(1, copyOfRange(data, 16, 20)));
+    }
 }
@@ -26,10 +26,16 @@ import static org.fcrepo.kernel.RdfLexicon.JCR_NAMESPACE;
 import static org.fcrepo.kernel.RdfLexicon.PAGE;
 import static org.fcrepo.kernel.RdfLexicon.REPOSITORY_NAMESPACE;
 import static org.fcrepo.kernel.RdfLexicon.RESTAPI_NAMESPACE;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
@@ -44,6 +50,7 @@ import org.mockito.Mock;
 import com.google.common.collect.ObjectArrays;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.Resource;
 import com.hp.hpl.jena.rdf.model.ResourceFactory;
 import com.hp.hpl.jena.rdf.model.Statement;
@@ -80,7 +87,7 @@ public class PersistingRdfStreamConsumerTest {
                 }
             };
 
-        testPersister.consumeAsync();
+        assertTrue(testPersister.consumeAsync().get());
 
         assertTrue("Failed to operate on ordinary property!",
                 acceptedStatements.contains(propertyStatement)
@@ -114,6 +121,46 @@ public class PersistingRdfStreamConsumerTest {
 
     }
 
+    @Test
+    public void testGroupsTriplesBySubjectAndPredicate() throws Exception {
+        final Statement anotherPropertyStatement =
+            m.asStatement(create(propertyTriple.getSubject(), propertyTriple
+                    .getPredicate(), createAnon()));
+        when(
+                mockGraphSubjects.isFedoraGraphSubject(anotherPropertyStatement
+                        .getSubject())).thenReturn(true);
+        final List<List<Statement>> groups = new ArrayList<>();
+
+        testPersister =
+            new PersistingRdfStreamConsumer(mockGraphSubjects, mockSession,
+                    new RdfStream(propertyStatement, anotherPropertyStatement)) {
+
+                @Override
+                protected void operateOnProperties(final Node subjectNode,
+                    final Property predicate, final List<Statement> statements)
+                    throws RepositoryException {
+                    groups.add(statements);
+                }
+
+                @Override
+                protected void operateOnProperty(final Statement s,
+                    final Node subjectNode) throws RepositoryException {
+                }
+
+                @Override
+                protected void operateOnMixin(final Resource mixinResource,
+                        final Node subjectNode) throws RepositoryException {
+                }
+            };
+        testPersister.consume();
+
+        assertEquals(1, groups.size());
+        assertEquals(asList(propertyStatement, anotherPropertyStatement),
+                groups.get(0));
+        verify(mockGraphSubjects, times(1)).getNodeFromGraphSubject(
+                propertyStatement.getSubject());
+    }
+
     @Test(expected = ExecutionException.class)
     public void testBadStream() throws Exception {
         when(mockTriples.hasNext())
@@ -23,6 +23,7 @@ import static com.hp.hpl.jena.graph.Triple.create;
 import static com.hp.hpl.jena.rdf.model.ModelFactory.createDefaultModel;
 import static com.hp.hpl.jena.rdf.model.ResourceFactory.createResource;
 import static com.hp.hpl.jena.vocabulary.RDF.type;
+import static java.util.Arrays.asList;
 import static javax.jcr.PropertyType.STRING;
 import static javax.jcr.PropertyType.UNDEFINED;
 import static org.fcrepo.jcr.FedoraJcrTypes.FEDORA_RESOURCE;
@@ -114,6 +115,22 @@ public class RdfAdderTest {
 
     }
 
+    @Test
+    public void testAddingValuesOfAPropertyTogether() throws Exception {
+        when(mockPropertyDefinition.isMultiple()).thenReturn(true);
+        final Statement anotherDescriptiveStmnt =
+            m.asStatement(create(mockNodeSubject.asNode(),
+                    createURI(propertyLongName), createLiteral("Another.")));
+        when(mockValueFactory.createValue("Another.", STRING)).thenReturn(
+                mockOtherValue);
+        testAdder = new RdfAdder(mockGraphSubjects, mockSession, testStream);
+        testAdder.operateOnProperties(mockNode, descriptiveStmnt
+                .getPredicate(), asList(descriptiveStmnt,
+                anotherDescriptiveStmnt));
+        verify(mockNode).setProperty(propertyShortName,
+                new Value[] {mockValue, mockOtherValue}, 0);
+    }
+
     @Test
     public void testAddingModelWithStreamNamespace() throws Exception {
         testAdder = new RdfAdder(mockGraphSubjects, mockSession, testStream);
@@ -220,6 +237,9 @@ public class RdfAdderTest {
     @Mock
     private Value mockValue;
 
+    @Mock
+    private Value mockOtherValue;
+
     @Mock
     private NamespaceRegistry mockNamespaceRegistry;
 
@@ -181,6 +181,24 @@ public class RdfStreamTest {
         assertEquals(triple3, testStream.next());
     }
 
+    @Test
+    public void testCloseRunsClosersOnce() {
+        final Runnable mockCloser = mock(Runnable.class);
+        testStream.onClose(mockCloser);
+        testStream.close();
+        testStream.close();
+        verify(mockCloser).run();
+    }
+
+    @Test
+    public void testCloseReachesConcatenatedStreams() {
+        final Runnable mockCloser = mock(Runnable.class);
+        final RdfStream testStream2 =
+            new RdfStream(ImmutableSet.of(triple3)).onClose(mockCloser);
+        testStream.concat(testStream2).limit(1).close();
+        verify(mockCloser).run();
+    }
+
     @Test
     public void testAddNamespace() {
         testStream.namespace(prefix1, uri1);